@@ -0,0 +1,57 @@
+package com.example.demo.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 基准测试的入口
+ * 接受与JMH相同的命令行参数，没有指定-rf和-rff时把结果以JSON格式写入
+ * results目录下按时间命名的文件，便于保存每次运行的结果并比较变化趋势。
+ */
+public class BenchmarkRunner {
+
+    private static final String RESULT_DIRECTORY = "results";
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        // 列出基准测试、显示帮助等不运行测试的操作交给JMH处理
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (commandLine.getResultFormat().hasValue() || commandLine.getResult().hasValue()) {
+            new Runner(options.build()).run();
+            return;
+        }
+        File directory = new File(RESULT_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建结果目录: " + directory.getAbsolutePath());
+        }
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        File result = new File(directory, "jmh-" + timestamp + ".json");
+        options.resultFormat(ResultFormatType.JSON).result(result.getPath());
+        new Runner(options.build()).run();
+        System.out.println("结果已保存到 " + result.getAbsolutePath());
+    }
+}
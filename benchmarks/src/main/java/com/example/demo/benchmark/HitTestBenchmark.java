@@ -0,0 +1,99 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点点击测试的基准测试
+ * 比较空间索引查找与原来逐个遍历所有节点的查找方式
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitTestBenchmark {
+
+    private static final int PROBE_COUNT = 4096; // 必须是2的幂
+    private static final double NODE_WIDTH = 120;
+    private static final double NODE_HEIGHT = 40;
+
+    @Param({"1000", "100000"})
+    private int nodeCount;
+
+    private MindMap mindMap;
+    private final double[] probes = new double[PROBE_COUNT * 2];
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        mindMap = new MindMap("root");
+        List<MindMapNode> nodes = new ArrayList<>(nodeCount);
+        nodes.add(mindMap.getRootNode());
+        while (nodes.size() < nodeCount) {
+            MindMapNode parent = nodes.get(random.nextInt(nodes.size()));
+            nodes.add(mindMap.addChildNode(parent, "node " + nodes.size()));
+        }
+
+        // 节点按网格排列，间距略大于节点尺寸，随机使用不同形状
+        int columns = (int) Math.ceil(Math.sqrt(nodeCount));
+        MindMapNode.NodeShape[] shapes = MindMapNode.NodeShape.values();
+        for (int i = 0; i < nodes.size(); i++) {
+            MindMapNode node = nodes.get(i);
+            node.setWidth(NODE_WIDTH);
+            node.setHeight(NODE_HEIGHT);
+            node.setX((i % columns) * (NODE_WIDTH + 30));
+            node.setY((i / columns) * (NODE_HEIGHT + 20));
+            node.setShape(shapes[random.nextInt(shapes.length)]);
+        }
+
+        double maxX = columns * (NODE_WIDTH + 30);
+        double maxY = (nodeCount / columns + 1) * (NODE_HEIGHT + 20);
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            probes[i * 2] = random.nextDouble() * maxX;
+            probes[i * 2 + 1] = random.nextDouble() * maxY;
+        }
+
+        // 预先建立索引
+        mindMap.getSpatialIndex().findNodeAt(0, 0);
+    }
+
+    @Benchmark
+    public MindMapNode spatialIndex() {
+        int probe = (cursor++ & (PROBE_COUNT - 1)) * 2;
+        return mindMap.getSpatialIndex().findNodeAt(probes[probe], probes[probe + 1]);
+    }
+
+    @Benchmark
+    public MindMapNode linearScan() {
+        int probe = (cursor++ & (PROBE_COUNT - 1)) * 2;
+        double x = probes[probe];
+        double y = probes[probe + 1];
+        for (MindMapNode node : mindMap.getAllNodes()) {
+            if (x >= node.getX() && x <= node.getX() + node.getWidth()
+                    && y >= node.getY() && y <= node.getY() + node.getHeight()) {
+                return node;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试使用的合成思维导图
+ * 同样的形状、节点数和种子总是生成同样的树，不同次运行的结果可以直接比较。
+ */
+public final class MindMapGenerator {
+
+    /**
+     * 平衡树每个节点的子节点数
+     */
+    static final int BALANCED_FAN_OUT = 8;
+
+    /**
+     * 链的最大深度
+     * 布局和模型中有按深度递归的方法，单条100万层的链会让任何线程栈溢出，
+     * 因此超过这个深度后从根节点开始一条新的链。
+     */
+    static final int CHAIN_DEPTH = 1000;
+
+    /**
+     * 树的形状
+     */
+    public enum Shape {
+        /** 每个节点有固定数量子节点的完全树 */
+        BALANCED,
+        /** 从根节点出发的若干条长链 */
+        CHAIN,
+        /** 所有节点都是根节点的子节点 */
+        STAR,
+        /** 随机挑选父节点，接近实际使用中不规则的思维导图 */
+        RANDOM
+    }
+
+    private MindMapGenerator() {
+    }
+
+    /**
+     * 在思维导图的根节点下生成节点，节点尺寸已经设置好，可以直接布局
+     * @param mindMap 只有根节点的思维导图
+     * @param shape 树的形状
+     * @param nodeCount 节点总数，包括根节点
+     * @param seed 随机种子
+     * @return 节点按创建顺序排列的列表，第一个是根节点
+     */
+    public static List<MindMapNode> generate(MindMap mindMap, Shape shape, int nodeCount, long seed) {
+        Random random = new Random(seed);
+        List<MindMapNode> nodes = new ArrayList<>(nodeCount);
+        MindMapNode root = mindMap.getRootNode();
+        setSize(root, random);
+        nodes.add(root);
+        while (nodes.size() < nodeCount) {
+            int index = nodes.size();
+            MindMapNode parent;
+            switch (shape) {
+                case BALANCED:
+                    parent = nodes.get((index - 1) / BALANCED_FAN_OUT);
+                    break;
+                case CHAIN:
+                    parent = (index - 1) % CHAIN_DEPTH == 0 ? root : nodes.get(index - 1);
+                    break;
+                case STAR:
+                    parent = root;
+                    break;
+                default:
+                    parent = nodes.get(random.nextInt(index));
+                    break;
+            }
+            MindMapNode child = mindMap.addChildNode(parent, "node " + index);
+            setSize(child, random);
+            nodes.add(child);
+        }
+        return nodes;
+    }
+
+    /**
+     * 生成新的思维导图
+     * @param shape 树的形状
+     * @param nodeCount 节点总数，包括根节点
+     * @param seed 随机种子
+     * @return 思维导图
+     */
+    public static MindMap generate(Shape shape, int nodeCount, long seed) {
+        MindMap mindMap = new MindMap("root");
+        generate(mindMap, shape, nodeCount, seed);
+        return mindMap;
+    }
+
+    private static void setSize(MindMapNode node, Random random) {
+        node.setWidth(80 + random.nextInt(80));
+        node.setHeight(40);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+/**
+ * 思维导图模型操作的基准测试：按ID查找节点、增删节点、删除子树和遍历所有节点
+ * 遍历的几种方式用 -prof gc 比较每次调用分配的内存
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+public class ModelBenchmark {
+
+    private static final int PROBE_COUNT = 4096; // 必须是2的幂
+
+    /**
+     * 每次删除的子树大小，足够大使每次调用前重建子树的开销可以忽略
+     */
+    private static final int SUBTREE_SIZE = 10000;
+
+    @Param({"BALANCED", "CHAIN", "STAR", "RANDOM"})
+    private MindMapGenerator.Shape shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int nodeCount;
+
+    private MindMap mindMap;
+    private final String[] probeIds = new String[PROBE_COUNT];
+    private final MindMapNode[] probeParents = new MindMapNode[PROBE_COUNT];
+    private MindMapNode subtreeParent;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mindMap = new MindMap("root");
+        List<MindMapNode> nodes = MindMapGenerator.generate(mindMap, shape, nodeCount, 42);
+        Random random = new Random(7);
+        for (int i = 0; i < PROBE_COUNT; i++) {
+            probeIds[i] = nodes.get(random.nextInt(nodes.size())).getId();
+            probeParents[i] = nodes.get(random.nextInt(nodes.size()));
+        }
+        // 最后创建的节点：链中最深的节点，其他形状中的叶子节点
+        subtreeParent = nodes.get(nodes.size() - 1);
+    }
+
+    /**
+     * 按ID查找随机的节点
+     */
+    @Benchmark
+    public MindMapNode lookupById() {
+        return mindMap.getNodeById(probeIds[cursor++ & (PROBE_COUNT - 1)]);
+    }
+
+    /**
+     * 在随机的节点下添加一个子节点再删除，思维导图的大小保持不变
+     */
+    @Benchmark
+    public boolean addAndDeleteLeaf() {
+        MindMapNode leaf = mindMap.addChildNode(probeParents[cursor++ & (PROBE_COUNT - 1)], "edit");
+        return mindMap.deleteNode(leaf);
+    }
+
+    /**
+     * 复制所有节点后遍历
+     */
+    @Benchmark
+    public double iterateCopy() {
+        double sum = 0;
+        for (MindMapNode node : mindMap.getAllNodes()) {
+            sum += node.getX();
+        }
+        return sum;
+    }
+
+    /**
+     * 通过只读视图遍历所有节点
+     */
+    @Benchmark
+    public double iterateView() {
+        double sum = 0;
+        for (MindMapNode node : mindMap.getNodes()) {
+            sum += node.getX();
+        }
+        return sum;
+    }
+
+    /**
+     * 不创建迭代器遍历所有节点
+     */
+    @Benchmark
+    public int forEachNode() {
+        int[] count = new int[1];
+        mindMap.forEachNode(node -> count[0] += node.getChildren().size());
+        return count[0];
+    }
+
+    /**
+     * 并行遍历所有节点
+     */
+    @Benchmark
+    public double parallelStream() {
+        return StreamSupport.stream(mindMap.nodeSpliterator(), true)
+                .mapToDouble(MindMapNode::getX)
+                .sum();
+    }
+
+    /**
+     * 删除一个随机形状的子树，每次调用前重新建立
+     */
+    @Benchmark
+    public boolean deleteSubtree(Subtree subtree) {
+        return mindMap.deleteNode(subtree.root);
+    }
+
+    /**
+     * 待删除的子树
+     */
+    @State(Scope.Thread)
+    public static class Subtree {
+
+        private MindMapNode root;
+
+        @Setup(Level.Invocation)
+        public void build(ModelBenchmark benchmark) {
+            MindMap mindMap = benchmark.mindMap;
+            root = mindMap.addChildNode(benchmark.subtreeParent, "subtree");
+            MindMapNode[] nodes = new MindMapNode[SUBTREE_SIZE];
+            nodes[0] = root;
+            Random random = new Random(SUBTREE_SIZE);
+            for (int i = 1; i < SUBTREE_SIZE; i++) {
+                nodes[i] = mindMap.addChildNode(nodes[random.nextInt(i)], "node");
+            }
+        }
+    }
+}
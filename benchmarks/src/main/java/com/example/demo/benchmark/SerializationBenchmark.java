@@ -0,0 +1,97 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.util.FileManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存和打开文件的基准测试
+ * 保存包括同步到磁盘，结果与文件系统有关，比较时应使用同一台机器。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m", "-Xmx4g"})
+public class SerializationBenchmark {
+
+    @Param({"BALANCED", "CHAIN", "STAR", "RANDOM"})
+    private MindMapGenerator.Shape shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int nodeCount;
+
+    private MindMap mindMap;
+    private File savedFile;
+    private File scratchFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mindMap = MindMapGenerator.generate(shape, nodeCount, 42);
+        savedFile = Files.createTempFile("benchmark", ".dt").toFile();
+        scratchFile = Files.createTempFile("benchmark", ".dt").toFile();
+        FileManager.writeMindMap(mindMap, savedFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        savedFile.delete();
+        scratchFile.delete();
+    }
+
+    /**
+     * 保存整个思维导图
+     */
+    @Benchmark
+    public File save() throws IOException {
+        FileManager.writeMindMap(mindMap, scratchFile);
+        return scratchFile;
+    }
+
+    /**
+     * 打开文件，大文件只加载根节点附近的节点
+     */
+    @Benchmark
+    public Object open() throws IOException, ClassNotFoundException {
+        return FileManager.readMindMap(savedFile);
+    }
+
+    /**
+     * 打开文件并加载所有节点
+     */
+    @Benchmark
+    public MindMap openFully() throws IOException, ClassNotFoundException {
+        MindMap loaded = (MindMap) FileManager.readMindMap(savedFile);
+        loaded.loadAll();
+        return loaded;
+    }
+
+    /**
+     * 保存后重新打开并加载所有节点
+     */
+    @Benchmark
+    public MindMap roundTrip() throws IOException, ClassNotFoundException {
+        FileManager.writeMindMap(mindMap, scratchFile);
+        MindMap loaded = (MindMap) FileManager.readMindMap(scratchFile);
+        loaded.loadAll();
+        return loaded;
+    }
+}
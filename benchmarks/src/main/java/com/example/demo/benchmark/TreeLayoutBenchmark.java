@@ -0,0 +1,158 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.layout.TreeCloneLayout;
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 树状布局和子树统计信息的基准测试
+ * 比较节点缓存的子树高度、节点总数和深度与原来每次递归重新计算的方式
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeLayoutBenchmark {
+
+    private static final double CANVAS_WIDTH = 1600;
+    private static final double CANVAS_HEIGHT = 1000;
+    private static final double VERTICAL_GAP = 50;
+
+    @Param({"100000"})
+    private int nodeCount;
+
+    private MindMap mindMap;
+    private List<MindMapNode> nodes;
+    private MindMapNode editParent;
+    private final TreeCloneLayout layout = new TreeCloneLayout();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        mindMap = new MindMap("root");
+        nodes = new ArrayList<>(nodeCount);
+        nodes.add(mindMap.getRootNode());
+        while (nodes.size() < nodeCount) {
+            MindMapNode parent = nodes.get(random.nextInt(nodes.size()));
+            MindMapNode child = mindMap.addChildNode(parent, "node " + nodes.size());
+            child.setWidth(80 + random.nextInt(80));
+            child.setHeight(40);
+            nodes.add(child);
+        }
+        editParent = nodes.get(nodes.size() - 1).getParent();
+        layout.applyLayout(mindMap, CANVAS_WIDTH, CANVAS_HEIGHT);
+    }
+
+    /**
+     * 重新布局，子树高度使用缓存
+     */
+    @Benchmark
+    public MindMap layoutCached() {
+        layout.applyLayout(mindMap, CANVAS_WIDTH, CANVAS_HEIGHT);
+        return mindMap;
+    }
+
+    /**
+     * 增删一个叶子节点后重新布局，只有该节点的祖先链需要重新计算
+     */
+    @Benchmark
+    public MindMap layoutAfterEdit() {
+        MindMapNode leaf = mindMap.addChildNode(editParent, "edit");
+        leaf.setHeight(40);
+        mindMap.deleteNode(leaf);
+        layout.applyLayout(mindMap, CANVAS_WIDTH, CANVAS_HEIGHT);
+        return mindMap;
+    }
+
+    /**
+     * 原来的布局方式：按子树高度分配左右两侧时递归计算每个第一层子节点的子树高度
+     */
+    @Benchmark
+    public double subtreeHeightsRecursive() {
+        double total = 0;
+        for (MindMapNode child : mindMap.getRootNode().getChildren()) {
+            total += recursiveSubtreeHeight(child);
+        }
+        return total;
+    }
+
+    /**
+     * 使用缓存的子树高度
+     */
+    @Benchmark
+    public double subtreeHeightsCached() {
+        double total = 0;
+        for (MindMapNode child : mindMap.getRootNode().getChildren()) {
+            total += child.getSubtreeExtent(VERTICAL_GAP);
+        }
+        return total;
+    }
+
+    /**
+     * 对每个节点递归计算深度和子树节点总数
+     */
+    @Benchmark
+    public long metricsRecursive() {
+        long total = 0;
+        for (MindMapNode node : nodes) {
+            total += recursiveDepth(node) + recursiveNodeCount(node);
+        }
+        return total;
+    }
+
+    /**
+     * 对每个节点读取缓存的深度和子树节点总数
+     */
+    @Benchmark
+    public long metricsCached() {
+        long total = 0;
+        for (MindMapNode node : nodes) {
+            total += node.getDepth() + node.getTotalNodeCount();
+        }
+        return total;
+    }
+
+    private static double recursiveSubtreeHeight(MindMapNode node) {
+        List<MindMapNode> children = node.getChildren();
+        if (children.isEmpty()) {
+            return node.getHeight();
+        }
+        double childrenHeight = 0;
+        for (MindMapNode child : children) {
+            childrenHeight += recursiveSubtreeHeight(child);
+        }
+        childrenHeight += VERTICAL_GAP * (children.size() - 1);
+        return Math.max(node.getHeight(), childrenHeight);
+    }
+
+    private static int recursiveDepth(MindMapNode node) {
+        return node.getParent() == null ? 0 : recursiveDepth(node.getParent()) + 1;
+    }
+
+    private static int recursiveNodeCount(MindMapNode node) {
+        int count = 1;
+        for (MindMapNode child : node.getChildren()) {
+            count += recursiveNodeCount(child);
+        }
+        return count;
+    }
+}
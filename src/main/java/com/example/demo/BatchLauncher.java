@@ -0,0 +1,332 @@
+package com.example.demo;
+
+import com.example.demo.layout.LayoutStrategies;
+import com.example.demo.layout.LayoutStrategy;
+import com.example.demo.layout.NodeGeometry;
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import com.example.demo.util.ExportScene;
+import com.example.demo.util.FileManager;
+import com.example.demo.util.ImageExporter;
+import com.example.demo.util.JsonExporter;
+import com.example.demo.util.MindMapJournal;
+import com.example.demo.view.MindMapStyle;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 命令行批处理启动器
+ * 不创建窗口，也不启动JavaFX，直接读取.dt文件、按指定的布局重新排列并导出为PNG、SVG或JSON。
+ * 多个文件在线程池中并行处理，每个文件使用独立的思维导图和布局实例。
+ * 结束时报告JVM启动耗时以及每个文件和整体的吞吐量，便于估算批处理任务的规模。
+ */
+public class BatchLauncher {
+
+    private static final String USAGE = String.join("\n",
+            "用法: BatchLauncher [选项] <文件或目录>...",
+            "  --format <png|svg|json>  导出格式，默认png",
+            "  --layout <名称>          重新布局使用的策略，默认保留文件中的位置",
+            "                           可选：" + String.join(", ", LayoutStrategies.names()),
+            "  --out <目录>             输出目录，默认与输入文件相同",
+            "  --dpi <数值>             PNG的分辨率，默认96",
+            "  --threads <数量>         并行处理的线程数，默认为处理器核数",
+            "  --canvas <宽x高>         布局使用的画布尺寸，默认1200x800");
+
+    private static final String FILE_EXTENSION = ".dt";
+
+    private String format = "png";
+    private String layoutName;
+    private File outputDirectory;
+    private double dpi = ImageExporter.SCREEN_DPI;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private double canvasWidth = 1200;
+    private double canvasHeight = 800;
+    private final List<File> inputs = new ArrayList<>();
+
+    /**
+     * 主方法
+     * @param args 命令行参数
+     */
+    public static void main(String[] args) {
+        long mainStart = System.nanoTime();
+        // 导出只使用Java2D离屏绘制，不需要显示设备
+        System.setProperty("java.awt.headless", "true");
+
+        BatchLauncher launcher = new BatchLauncher();
+        try {
+            launcher.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        System.exit(launcher.run(mainStart));
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                inputs.add(new File(arg));
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("缺少参数值: " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "--format":
+                        format = value.toLowerCase(Locale.ROOT);
+                        if (!Arrays.asList("png", "svg", "json").contains(format)) {
+                            throw new IllegalArgumentException("不支持的导出格式: " + value);
+                        }
+                        break;
+                    case "--layout":
+                        if (LayoutStrategies.create(value) == null) {
+                            throw new IllegalArgumentException("未知的布局: " + value);
+                        }
+                        layoutName = value;
+                        break;
+                    case "--out":
+                        outputDirectory = new File(value);
+                        break;
+                    case "--dpi":
+                        dpi = Double.parseDouble(value);
+                        break;
+                    case "--threads":
+                        threads = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--canvas":
+                        String[] size = value.toLowerCase(Locale.ROOT).split("x");
+                        canvasWidth = Double.parseDouble(size[0]);
+                        canvasHeight = Double.parseDouble(size[1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知的选项: " + arg);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("无效的参数值: " + arg + " " + value);
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("没有指定输入文件");
+        }
+    }
+
+    /**
+     * 处理所有文件并输出报告
+     * @param mainStart 进入main方法时的时间
+     * @return 进程退出码，有文件失败时为1
+     */
+    private int run(long mainStart) {
+        List<File> files = collectFiles();
+        if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            System.err.println("无法创建输出目录: " + outputDirectory);
+            return 1;
+        }
+
+        long startupMillis = ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis()
+                        - (System.nanoTime() - mainStart) / 1_000_000)
+                .orElse(-1L);
+        System.out.printf("JVM启动耗时: %s，%d 个文件，%d 个线程%n",
+                startupMillis >= 0 ? startupMillis + " ms" : "未知", files.size(), threads);
+
+        long batchStart = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Result>> futures = new ArrayList<>(files.size());
+        for (File file : files) {
+            futures.add(executor.submit(() -> process(file)));
+        }
+
+        int failed = 0;
+        long totalNodes = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            Result result;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // 没有等到结果的文件都算作失败，避免被中断时报告成功
+                for (int j = i; j < files.size(); j++) {
+                    Result interrupted = new Result(files.get(j));
+                    interrupted.error = "处理被中断";
+                    System.out.println(interrupted);
+                    failed++;
+                }
+                break;
+            } catch (ExecutionException e) {
+                // process自己捕获所有异常，这里不会发生
+                throw new IllegalStateException(e.getCause());
+            }
+            System.out.println(result);
+            if (result.error != null) {
+                failed++;
+            } else {
+                totalNodes += result.nodes;
+            }
+        }
+        executor.shutdownNow();
+
+        double seconds = (System.nanoTime() - batchStart) / 1e9;
+        System.out.printf("完成: %d 个成功，%d 个失败，耗时 %.2f s，%.2f 个文件/秒，%.0f 个节点/秒%n",
+                files.size() - failed, failed, seconds, files.size() / seconds, totalNodes / seconds);
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * 展开输入参数，目录中的.dt文件按名称排序
+     */
+    private List<File> collectFiles() {
+        List<File> files = new ArrayList<>();
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                File[] children = input.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(FILE_EXTENSION));
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                }
+            } else {
+                files.add(input);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 处理单个文件，在线程池中执行
+     * @param file 输入文件
+     * @return 处理结果，失败时包含错误信息
+     */
+    private Result process(File file) {
+        Result result = new Result(file);
+        try {
+            long start = System.nanoTime();
+            Object loaded = FileManager.readMindMap(file);
+            if (!(loaded instanceof MindMap)) {
+                throw new IllegalArgumentException("不是有效的思维导图文件");
+            }
+            MindMap mindMap = (MindMap) loaded;
+            mindMap.loadAll();
+            // 编辑日志中已经保存的修改也属于文件内容
+            MindMapJournal.replayCommitted(mindMap, file);
+            result.nodes = mindMap.getNodeCount();
+            long loadedAt = System.nanoTime();
+            result.loadMillis = (loadedAt - start) / 1e6;
+
+            measureNodes(mindMap);
+            if (layoutName != null) {
+                LayoutStrategy layout = LayoutStrategies.create(layoutName);
+                // 支持几何存储的布局直接在数组上计算，不支持时在节点上布局
+                NodeGeometry geometry = NodeGeometry.capture(mindMap);
+                if (layout.applyLayout(geometry, canvasWidth, canvasHeight)) {
+                    geometry.publish();
+                } else {
+                    layout.applyLayout(mindMap, canvasWidth, canvasHeight);
+                }
+            }
+            long laidOutAt = System.nanoTime();
+            result.layoutMillis = (laidOutAt - loadedAt) / 1e6;
+
+            File output = outputFile(file);
+            switch (format) {
+                case "svg":
+                    ImageExporter.writeSvg(captureScene(mindMap), output, null);
+                    break;
+                case "json":
+                    JsonExporter.write(mindMap, output);
+                    break;
+                default:
+                    ImageExporter.writeImage(captureScene(mindMap), output, "png", dpi, null);
+                    break;
+            }
+            result.exportMillis = (System.nanoTime() - laidOutAt) / 1e6;
+            result.output = output;
+        } catch (Exception | OutOfMemoryError e) {
+            result.error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        return result;
+    }
+
+    private ExportScene captureScene(MindMap mindMap) {
+        // 与视图相同：最大线长为画布短边的0.8倍
+        return ExportScene.capture(mindMap, Math.min(canvasWidth, canvasHeight) * 0.8);
+    }
+
+    private File outputFile(File input) {
+        String name = input.getName();
+        if (name.toLowerCase(Locale.ROOT).endsWith(FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - FILE_EXTENSION.length());
+        }
+        File directory = outputDirectory != null ? outputDirectory : input.getAbsoluteFile().getParentFile();
+        return new File(directory, name + "." + format);
+    }
+
+    /**
+     * 为还没有尺寸的节点计算大小，与视图中的规则相同
+     * 文件中保存了节点尺寸，只有旧文件或者外部生成的文件才需要计算。
+     * 使用Java2D的字体度量代替JavaFX的Text，不需要启动JavaFX。
+     */
+    private static void measureNodes(MindMap mindMap) {
+        FontRenderContext context = new FontRenderContext(null, true, true);
+        Map<Double, Font> fonts = new HashMap<>();
+        for (MindMapNode node : mindMap.getNodes()) {
+            if (node.getWidth() > 0 && node.getHeight() > 0) {
+                continue;
+            }
+            Font font = fonts.computeIfAbsent(node.getFontSize(),
+                    size -> new Font(MindMapStyle.FONT_FAMILY, Font.PLAIN, 1).deriveFont(size.floatValue()));
+            double textWidth = font.getStringBounds(node.getText(), context).getWidth();
+            double baseWidth = Math.max(MindMapStyle.NODE_MIN_WIDTH, textWidth + 2 * MindMapStyle.NODE_PADDING);
+            node.setWidth(baseWidth * node.getSizeScale());
+            node.setHeight(MindMapStyle.NODE_HEIGHT * node.getSizeScale());
+        }
+    }
+
+    /**
+     * 单个文件的处理结果
+     */
+    private static final class Result {
+        final File input;
+        File output;
+        int nodes;
+        double loadMillis;
+        double layoutMillis;
+        double exportMillis;
+        String error;
+
+        Result(File input) {
+            this.input = input;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return String.format("失败 %s: %s", input.getName(), error);
+            }
+            double totalMillis = loadMillis + layoutMillis + exportMillis;
+            return String.format("%s -> %s: %d 个节点，读取 %.1f ms，布局 %.1f ms，导出 %.1f ms，%.0f 个节点/秒",
+                    input.getName(), output.getName(), nodes, loadMillis, layoutMillis, exportMillis,
+                    nodes / (totalMillis / 1000));
+        }
+    }
+}
@@ -7,17 +7,25 @@ import com.example.demo.theme.Theme;
 import com.example.demo.theme.ThemeManager;
 import com.example.demo.util.FileManager;
 import com.example.demo.util.ImageExporter;
+import com.example.demo.util.Log;
+import com.example.demo.util.Metrics;
+import com.example.demo.util.MindMapJournal;
+import com.example.demo.util.MindMapPersistenceService;
 import com.example.demo.view.MindMapTreeView;
 import com.example.demo.view.MindMapView;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.scene.control.SplitPane;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -28,6 +36,8 @@ import java.util.Optional;
  */
 public class MindMapController {
 
+    private static final Log LOG = Log.get(MindMapController.class);
+
     @FXML
     private BorderPane rootPane;
 
@@ -43,6 +53,12 @@ public class MindMapController {
     @FXML
     private Button exitConnectionModeButton;
 
+    @FXML
+    private ProgressBar fileProgressBar;
+
+    @FXML
+    private Button cancelFileTaskButton;
+
     @FXML
     private javafx.scene.layout.Pane mindMapViewContainer;
 
@@ -72,6 +88,9 @@ public class MindMapController {
     @FXML
     private Button deleteNodeButton; // 删除节点按钮
 
+    @FXML
+    private ToggleButton performanceHudToggle; // 性能面板开关
+
     @FXML
     private Button toggleSidebarButton; // 菜单收起/展开按钮
 
@@ -80,6 +99,12 @@ public class MindMapController {
 
     private MindMap mindMap;
     private LayoutStrategy currentLayout;
+    // 当前思维导图的编辑日志，思维导图还没有保存到文件时为null
+    private MindMapJournal journal;
+    // 后台保存和打开
+    private final MindMapPersistenceService persistenceService = new MindMapPersistenceService();
+    // 正在执行的保存或打开任务
+    private Task<?> fileTask;
 
     // 记录侧边栏是否已收起
     private boolean sidebarCollapsed = false;
@@ -140,20 +165,14 @@ public class MindMapController {
                 // 设置节点点击监听器
                 mindMapView.setNodeClickListener(this::handleNodeClicked);
                 treeView.setNodeSelectListener(this::handleNodeSelected);
+                // 在树形视图中展开尚未加载的分支后，只重新布局该分支
+                treeView.setBranchLoadListener(mindMapView::applyIncrementalLayout);
 
                 // 设置控制器实例
                 mindMapView.setController(this);
 
-                // 注释掉右键菜单事件处理，因为我们还没有实现MindMapEvent类
-                // mindMapView.addEventHandler(MindMapEvent.ADD_CHILD_NODE, this::handleAddChildNode);
-                // mindMapView.addEventHandler(MindMapEvent.ADD_SIBLING_NODE, this::handleAddSiblingNode);
-                // mindMapView.addEventHandler(MindMapEvent.CONNECT_NODE, this::handleConnectNode);
-                // mindMapView.addEventHandler(MindMapEvent.DISCONNECT_NODE, this::handleDisconnectNode);
-                // mindMapView.addEventHandler(MindMapEvent.EDIT_NODE_TEXT, this::handleEditNodeText);
-                // mindMapView.addEventHandler(MindMapEvent.CHANGE_NODE_SHAPE, this::handleChangeNodeShape);
-                // mindMapView.addEventHandler(MindMapEvent.CHANGE_NODE_SIZE, this::handleChangeNodeSize);
-                // mindMapView.addEventHandler(MindMapEvent.CHANGE_NODE_FONT, this::handleChangeNodeFont);
-                // mindMapView.addEventHandler(MindMapEvent.DELETE_NODE, this::handleDeleteNode);
+                // 模型的修改通过MindMapEvent.MODEL_CHANGED事件通知视图，
+                // 思维导图视图和树形视图在setMindMap时各自订阅，只更新发生变化的部分
 
                 // 清空布局菜单项
                 layoutMenuButton.getItems().clear();
@@ -161,21 +180,21 @@ public class MindMapController {
                 // 添加布局菜单项
                 MenuItem autoLayoutItem = new MenuItem("自动布局");
                 autoLayoutItem.setOnAction(event -> {
-                    System.out.println("Auto layout menu item clicked");
+                    LOG.debug("Auto layout menu item clicked");
                     setLayout(new TreeCloneLayout());
                 });
                 layoutMenuButton.getItems().add(autoLayoutItem);
 
                 MenuItem leftLayoutItem = new MenuItem("左侧布局");
                 leftLayoutItem.setOnAction(event -> {
-                    System.out.println("Left layout menu item clicked");
+                    LOG.debug("Left layout menu item clicked");
                     setLayout(new LeftCloneLayout());
                 });
                 layoutMenuButton.getItems().add(leftLayoutItem);
 
                 MenuItem rightLayoutItem = new MenuItem("右侧布局");
                 rightLayoutItem.setOnAction(event -> {
-                    System.out.println("Right layout menu item clicked");
+                    LOG.debug("Right layout menu item clicked");
                     setLayout(new RightCloneLayout());
                 });
                 layoutMenuButton.getItems().add(rightLayoutItem);
@@ -189,7 +208,7 @@ public class MindMapController {
                 // 更新按钮状态
                 updateButtonStates(null);
             } catch (Exception e) {
-                e.printStackTrace();
+                LOG.error("初始化失败", e);
                 showAlert("初始化失败: " + e.getMessage());
             }
         });
@@ -200,28 +219,31 @@ public class MindMapController {
      */
     @FXML
     public void createNewMindMap() {
-        // 检查是否需要保存当前思维导图
-        if (!checkSaveBeforeAction()) {
+        if (isFileTaskRunning()) {
             return;
         }
 
-        // 显示输入对话框
-        TextInputDialog dialog = new TextInputDialog("中心主题");
-        dialog.setTitle("新建思维导图");
-        dialog.setHeaderText("请输入中心主题");
-        dialog.setContentText("中心主题:");
-
-        Optional<String> result = dialog.showAndWait();
-        if (result.isPresent()) {
-            // 创建新的思维导图
-            mindMap = new MindMap(result.get());
+        // 检查是否需要保存当前思维导图
+        checkSaveBeforeAction(() -> {
+            // 显示输入对话框
+            TextInputDialog dialog = new TextInputDialog("中心主题");
+            dialog.setTitle("新建思维导图");
+            dialog.setHeaderText("请输入中心主题");
+            dialog.setContentText("中心主题:");
+
+            Optional<String> result = dialog.showAndWait();
+            if (result.isPresent()) {
+                // 创建新的思维导图，第一次保存之后才开始记录编辑日志
+                closeJournal();
+                mindMap = new MindMap(result.get());
 
-            // 更新视图
-            updateViews();
+                // 更新视图
+                updateViews();
 
-            // 更新标题
-            updateTitle();
-        }
+                // 更新标题
+                updateTitle();
+            }
+        });
     }
 
     /**
@@ -229,22 +251,40 @@ public class MindMapController {
      */
     @FXML
     public void openMindMap() {
-        // 检查是否需要保存当前思维导图
-        if (!checkSaveBeforeAction()) {
+        if (isFileTaskRunning()) {
             return;
         }
 
-        // 加载思维导图
-        MindMap loadedMap = FileManager.loadMindMap(getStage());
-        if (loadedMap != null) {
-            mindMap = loadedMap;
+        // 检查是否需要保存当前思维导图
+        checkSaveBeforeAction(() -> {
+            File file = FileManager.chooseOpenFile(getStage());
+            if (file == null) {
+                return;
+            }
 
-            // 更新视图
-            updateViews();
+            // 在后台加载思维导图
+            Task<MindMap> task = persistenceService.load(file);
+            task.setOnSucceeded(event -> {
+                closeJournal();
+                mindMap = task.getValue();
+                attachJournal();
 
-            // 更新标题
-            updateTitle();
-        }
+                // 更新视图
+                updateViews();
+
+                // 更新标题
+                updateTitle();
+
+                showInformation("打开成功", file.getName());
+                if (mindMap.isModified()) {
+                    FileManager.showInfoAlert(getStage(), "恢复未保存的修改",
+                            "上次关闭前有没有保存的修改，已经从编辑日志中恢复。");
+                }
+            });
+            task.setOnFailed(event -> FileManager.showLoadError(getStage(), task.getException()));
+            task.setOnCancelled(event -> showInformation("打开已取消", file.getName()));
+            runFileTask(task);
+        });
     }
 
     /**
@@ -252,9 +292,8 @@ public class MindMapController {
      */
     @FXML
     public void saveMindMap() {
-        if (mindMap != null) {
-            FileManager.saveMindMap(mindMap, getStage());
-            updateTitle();
+        if (mindMap != null && !isFileTaskRunning()) {
+            saveCurrentMindMap(null);
         }
     }
 
@@ -263,9 +302,21 @@ public class MindMapController {
      */
     @FXML
     public void saveAsMindMap() {
-        if (mindMap != null) {
-            FileManager.saveAsMindMap(mindMap, getStage());
-            updateTitle();
+        if (mindMap != null && !isFileTaskRunning()) {
+            File file = FileManager.chooseSaveAsFile(mindMap, getStage());
+            if (file != null) {
+                saveToFile(file, null);
+            }
+        }
+    }
+
+    /**
+     * 取消正在执行的保存或打开
+     */
+    @FXML
+    public void cancelFileTask() {
+        if (fileTask != null) {
+            fileTask.cancel();
         }
     }
 
@@ -274,8 +325,10 @@ public class MindMapController {
      */
     @FXML
     public void exportAsJPG() {
-        if (mindMap != null) {
-            ImageExporter.exportAsJPG(mindMapView, getStage());
+        if (mindMap != null && !isFileTaskRunning()) {
+            // 先完成待处理的布局，导出的位置与屏幕上一致
+            mindMapView.flush();
+            runExportTask(ImageExporter.exportAsJPG(mindMap, mindMapView.getMaxLineLength(), getStage()));
         }
     }
 
@@ -284,8 +337,63 @@ public class MindMapController {
      */
     @FXML
     public void exportAsPNG() {
-        if (mindMap != null) {
-            ImageExporter.exportAsPNG(mindMapView, getStage());
+        if (mindMap != null && !isFileTaskRunning()) {
+            // 先完成待处理的布局，导出的位置与屏幕上一致
+            mindMapView.flush();
+            runExportTask(ImageExporter.exportAsPNG(mindMap, mindMapView.getMaxLineLength(), getStage()));
+        }
+    }
+
+    /**
+     * 导出为SVG矢量图
+     */
+    @FXML
+    public void exportAsSVG() {
+        if (mindMap != null && !isFileTaskRunning()) {
+            // 先完成待处理的布局，导出的位置与屏幕上一致
+            mindMapView.flush();
+            runExportTask(ImageExporter.exportAsSVG(mindMap, mindMapView.getMaxLineLength(), getStage()));
+        }
+    }
+
+    /**
+     * 导出为PDF文档
+     */
+    @FXML
+    public void exportAsPDF() {
+        if (mindMap != null && !isFileTaskRunning()) {
+            // 先完成待处理的布局，导出的位置与屏幕上一致
+            mindMapView.flush();
+            runExportTask(ImageExporter.exportAsPDF(mindMap, mindMapView.getMaxLineLength(), getStage()));
+        }
+    }
+
+    /**
+     * 显示或隐藏绘图区的性能面板
+     */
+    @FXML
+    public void togglePerformanceHud() {
+        mindMapView.setPerformanceHudVisible(performanceHudToggle.isSelected());
+    }
+
+    /**
+     * 把运行时指标和最近的日志导出为JSON文件，用于分析性能问题
+     */
+    @FXML
+    public void exportDiagnostics() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("导出性能数据");
+        fileChooser.setInitialFileName("diagnostics.json");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON文件", "*.json"));
+        File file = fileChooser.showSaveDialog(getStage());
+        if (file == null) {
+            return;
+        }
+        try {
+            Metrics.dump(file);
+            showInformation("导出成功", file.getName());
+        } catch (IOException e) {
+            FileManager.showExportError(getStage(), e);
         }
     }
 
@@ -309,10 +417,11 @@ public class MindMapController {
         Optional<String> result = dialog.showAndWait();
         if (result.isPresent()) {
             // 添加子节点
-            mindMap.addChildNode(selectedNode, result.get());
+            MindMapNode newNode = mindMap.addChildNode(selectedNode, result.get());
+            mindMapView.updateNodeSize(newNode);
 
-            // 更新视图
-            updateViews();
+            // 更新视图，只重新布局受影响的子树
+            updateViewsAfterStructureChange(selectedNode);
 
             // 标记为已修改
             mindMap.setModified(true);
@@ -345,10 +454,14 @@ public class MindMapController {
         Optional<String> result = dialog.showAndWait();
         if (result.isPresent()) {
             // 添加兄弟节点
-            mindMap.addSiblingNode(selectedNode, result.get());
+            MindMapNode parent = selectedNode.getParent();
+            MindMapNode newNode = mindMap.addSiblingNode(selectedNode, result.get());
+            if (newNode != null) {
+                mindMapView.updateNodeSize(newNode);
+            }
 
-            // 更新视图
-            updateViews();
+            // 更新视图，只重新布局受影响的子树
+            updateViewsAfterStructureChange(parent);
 
             // 标记为已修改
             mindMap.setModified(true);
@@ -381,10 +494,11 @@ public class MindMapController {
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
             // 删除节点
+            MindMapNode parent = selectedNode.getParent();
             mindMap.deleteNode(selectedNode);
 
-            // 更新视图
-            updateViews();
+            // 更新视图，只重新布局受影响的子树
+            updateViewsAfterStructureChange(parent);
 
             // 标记为已修改
             mindMap.setModified(true);
@@ -431,17 +545,18 @@ public class MindMapController {
 
             // 将节点添加到思维导图
             mindMap.addFreeNode(newNode);
-            System.out.println("Added free node as independent root: " + newNode.getText() + " (ID: " + newNode.getId() + ")");
-            System.out.println("Total nodes after adding free node: " + mindMap.getAllNodes().size());
+            LOG.debug("Added free node as independent root: {} (ID: {}), total nodes: {}",
+                    newNode.getText(), newNode.getId(), mindMap.getNodeCount());
 
             // 更新视图
-            updateViews();
+            updateMindMapView();
 
             // 选中新创建的节点
-            mindMap.clearAllSelections();
-            newNode.setSelected(true);
+            mindMap.update(() -> {
+                mindMap.clearAllSelections();
+                newNode.setSelected(true);
+            });
             mindMapView.setSelectedNode(newNode);
-            mindMapView.draw();
 
             // 标记为已修改
             mindMap.setModified(true);
@@ -523,9 +638,10 @@ public class MindMapController {
             statusLabel.setText("连接模式: 已选择源节点 '" + node.getText() + "'，请点击目标节点");
 
             // 高亮显示源节点
-            mindMap.clearAllSelections();
-            connectSourceNode.setSelected(true);
-            mindMapView.draw();
+            mindMap.update(() -> {
+                mindMap.clearAllSelections();
+                connectSourceNode.setSelected(true);
+            });
 
             // 更新连接模式指示器显示当前源节点
             HBox statusBar = (HBox) rootPane.getBottom();
@@ -606,14 +722,17 @@ public class MindMapController {
                 }
             }
 
-            // 创建新连接
-            connectSourceNode.addChild(targetNode);
+            // 创建新连接，先加载原有的子节点以保持子节点顺序
+            mindMap.update(() -> {
+                mindMap.loadChildren(connectSourceNode);
+                connectSourceNode.addChild(targetNode);
+            });
 
             // 更新视图
-            updateViews();
+            updateMindMapView();
 
             // 标记为已修改
-            mindMap.setModified(true);
+            mindMap.nodeEdited(targetNode);
             updateTitle();
 
             // 更新连接模式指示器
@@ -684,19 +803,26 @@ public class MindMapController {
 
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
-                // 获取所有子节点
+                // 获取所有子节点，尚未加载的子节点也需要断开
+                mindMap.loadChildren(selectedNode);
                 List<MindMapNode> children = new ArrayList<>(selectedNode.getChildren());
 
-                // 断开所有连接
-                for (MindMapNode child : children) {
-                    selectedNode.removeChild(child);
+                // 断开所有连接，合并为一次通知
+                mindMap.beginUpdate();
+                try {
+                    for (MindMapNode child : children) {
+                        selectedNode.removeChild(child);
 
-                    // 将节点设置为手动定位，保持其当前位置
-                    child.setManuallyPositioned(true);
+                        // 将节点设置为手动定位，保持其当前位置
+                        child.setManuallyPositioned(true);
+                        mindMap.nodeEdited(child);
+                    }
+                } finally {
+                    mindMap.endUpdate();
                 }
 
                 // 更新视图
-                updateViews();
+                updateMindMapView();
 
                 // 标记为已修改
                 mindMap.setModified(true);
@@ -729,10 +855,10 @@ public class MindMapController {
             selectedNode.setManuallyPositioned(true);
 
             // 更新视图
-            updateViews();
+            updateMindMapView();
 
             // 标记为已修改
-            mindMap.setModified(true);
+            mindMap.nodeEdited(selectedNode);
             updateTitle();
 
             showInformation("取消连接成功", "节点连接已取消，该节点现在是一个独立节点。");
@@ -786,14 +912,11 @@ public class MindMapController {
                     break;
             }
 
-            // 设置节点形状
+            // 设置节点形状，视图通过修改事件重绘
             selectedNode.setShape(shape);
 
-            // 更新视图
-            mindMapView.draw();
-
             // 标记为已修改
-            mindMap.setModified(true);
+            mindMap.nodeEdited(selectedNode);
             updateTitle();
 
             showInformation("形状已更改", "节点形状已更改为" + shapeStr);
@@ -850,14 +973,11 @@ public class MindMapController {
             // 设置节点大小
             selectedNode.setSizeScale(scale);
 
-            // 更新节点大小
+            // 更新节点大小，视图通过修改事件重绘
             mindMapView.updateNodeSize(selectedNode);
 
-            // 更新视图
-            mindMapView.draw();
-
             // 标记为已修改
-            mindMap.setModified(true);
+            mindMap.nodeEdited(selectedNode);
             updateTitle();
 
             showInformation("大小已调整", "节点大小已调整为" + sizeStr);
@@ -896,14 +1016,11 @@ public class MindMapController {
                 // 设置节点字体大小
                 selectedNode.setFontSize(fontSize);
 
-                // 更新节点大小
+                // 更新节点大小，视图通过修改事件重绘
                 mindMapView.updateNodeSize(selectedNode);
 
-                // 更新视图
-                mindMapView.draw();
-
                 // 标记为已修改
-                mindMap.setModified(true);
+                mindMap.nodeEdited(selectedNode);
                 updateTitle();
 
                 showInformation("字体大小已调整", "节点字体大小已调整为" + fontSize);
@@ -944,11 +1061,8 @@ public class MindMapController {
             MindMapNode.LineStyle newStyle = getLineStyleFromName(result.get());
             selectedNode.setLineStyle(newStyle);
 
-            // 重绘思维导图
-            mindMapView.draw();
-
             // 标记为已修改
-            mindMap.setModified(true);
+            mindMap.nodeEdited(selectedNode);
             updateTitle();
 
             // 显示成功消息
@@ -1017,10 +1131,10 @@ public class MindMapController {
             mindMapView.updateNodeSize(selectedNode);
 
             // 更新视图
-            updateViews();
+            updateMindMapView();
 
             // 标记为已修改
-            mindMap.setModified(true);
+            mindMap.nodeEdited(selectedNode);
             updateTitle();
 
             showInformation("文本已更新", "节点文本已更新");
@@ -1053,7 +1167,7 @@ public class MindMapController {
      * @param layout 布局策略
      */
     private void setLayout(LayoutStrategy layout) {
-        System.out.println("Setting layout to: " + layout.getName());
+        LOG.debug("Setting layout to: {}", layout.getName());
 
         // 检查是否选中了中心节点
         MindMapNode selectedNode = mindMapView.getSelectedNode();
@@ -1072,22 +1186,22 @@ public class MindMapController {
         mindMapView.setLayoutStrategy(layout);
 
         // 强制重新布局和绘制
-        System.out.println("Forcing layout application...");
+        LOG.debug("Forcing layout application...");
         mindMapView.applyLayout();
         mindMapView.draw();
-        System.out.println("Layout applied and redrawn.");
+        LOG.debug("Layout applied and redrawn.");
 
         // 更新布局菜单按钮文本
         layoutMenuButton.setText(layout.getName());
-        System.out.println("Layout menu button text updated to: " + layout.getName());
+        LOG.debug("Layout menu button text updated to: {}", layout.getName());
 
         // 标记思维导图为已修改
         if (mindMap != null) {
             mindMap.setModified(true);
             updateTitle();
-            System.out.println("Mind map marked as modified.");
+            LOG.debug("Mind map marked as modified.");
         } else {
-            System.out.println("WARNING: Mind map is null!");
+            LOG.warn("Mind map is null!");
         }
     }
 
@@ -1168,31 +1282,51 @@ public class MindMapController {
         // 更新画布背景色
         mindMapView.setStyle("-fx-background-color: " + Theme.toRGBCode(theme.getBackgroundColor()) + ";");
 
-        // 更新节点颜色
-        for (MindMapNode node : mindMap.getAllNodes()) {
-            // 根据节点类型设置不同的颜色
-            if (node.isCenterNode()) {
-                // 中心节点使用蓝色
-                node.setColor(theme.getBlue());
-            } else if (node.getParent() == null) {
-                // 自由节点使用绿色
-                node.setColor(theme.getGreen());
-            } else {
-                // 其他节点根据深度使用不同的颜色
-                int depth = getNodeDepth(node);
-                switch (depth % 6) {
-                    case 0: node.setColor(theme.getPurple()); break;
-                    case 1: node.setColor(theme.getOrange()); break;
-                    case 2: node.setColor(theme.getTeal()); break;
-                    case 3: node.setColor(theme.getRed()); break;
-                    case 4: node.setColor(theme.getIndigo()); break;
-                    case 5: node.setColor(theme.getYellow()); break;
+        // 更新节点颜色，所有修改合并为一次通知
+        // 颜色真正变化的节点逐个记录到编辑日志，否则保存时只提交日志，重新打开后主题修改会丢失
+        boolean edited = false;
+        mindMap.beginUpdate();
+        try {
+            for (MindMapNode node : mindMap.getNodes()) {
+                javafx.scene.paint.Color color = getThemeColor(theme, node);
+                if (!color.equals(node.getColor())) {
+                    node.setColor(color);
+                    mindMap.nodeEdited(node);
+                    edited = true;
                 }
             }
+        } finally {
+            mindMap.endUpdate();
+        }
+        if (edited) {
+            updateTitle();
         }
+    }
 
-        // 重绘思维导图
-        mindMapView.draw();
+    /**
+     * 获取主题中节点对应的颜色
+     * @param theme 主题
+     * @param node 节点
+     * @return 颜色
+     */
+    private javafx.scene.paint.Color getThemeColor(Theme theme, MindMapNode node) {
+        // 根据节点类型设置不同的颜色
+        if (node.isCenterNode()) {
+            // 中心节点使用蓝色
+            return theme.getBlue();
+        } else if (node.getParent() == null) {
+            // 自由节点使用绿色
+            return theme.getGreen();
+        }
+        // 其他节点根据深度使用不同的颜色
+        switch (getNodeDepth(node) % 6) {
+            case 0: return theme.getPurple();
+            case 1: return theme.getOrange();
+            case 2: return theme.getTeal();
+            case 3: return theme.getRed();
+            case 4: return theme.getIndigo();
+            default: return theme.getYellow();
+        }
     }
 
     /**
@@ -1231,16 +1365,13 @@ public class MindMapController {
      * @param node 被选择的节点
      */
     private void handleNodeSelected(MindMapNode node) {
-        // 清除所有选中状态
-        mindMap.clearAllSelections();
-
-        // 设置新的选中节点
-        if (node != null) {
-            node.setSelected(true);
-        }
-
-        // 重绘思维导图视图
-        mindMapView.draw();
+        // 清除原来的选中状态并选中新节点，视图通过修改事件重绘
+        mindMap.update(() -> {
+            mindMap.clearAllSelections();
+            if (node != null) {
+                node.setSelected(true);
+            }
+        });
 
         // 更新按钮状态
         updateButtonStates(node);
@@ -1270,14 +1401,31 @@ public class MindMapController {
      * 更新所有视图
      */
     private void updateViews() {
-        // 更新思维导图视图
-        mindMapView.setMindMap(mindMap);
-        mindMapView.setLayoutStrategy(currentLayout);
+        updateMindMapView();
 
         // 更新树形视图
         treeView.setMindMap(mindMap);
     }
 
+    /**
+     * 只更新思维导图视图
+     * 编辑操作之后树形视图通过修改事件更新受影响的树形项，不需要重新创建
+     */
+    private void updateMindMapView() {
+        mindMapView.setMindMap(mindMap);
+        mindMapView.setLayoutStrategy(currentLayout);
+    }
+
+    /**
+     * 在节点增删后更新思维导图视图
+     * 尽量只重新布局子节点发生变化的节点所在的子树，树形视图通过修改事件更新
+     * @param changedNode 子节点发生变化的节点
+     */
+    private void updateViewsAfterStructureChange(MindMapNode changedNode) {
+        mindMapView.setSelectedNode(null);
+        mindMapView.applyIncrementalLayout(changedNode);
+    }
+
     /**
      * 更新标题
      */
@@ -1294,10 +1442,164 @@ public class MindMapController {
     }
 
     /**
-     * 检查是否需要保存当前思维导图
-     * @return 是否可以继续操作
+     * 保存当前思维导图
+     * 已有编辑日志时只需提交日志，否则在后台写出完整的文件
+     * @param onSaved 保存成功之后执行的操作，可以为null
+     */
+    private void saveCurrentMindMap(Runnable onSaved) {
+        if (journal != null) {
+            try {
+                journal.commit();
+                mindMap.setModified(false);
+                updateTitle();
+                if (onSaved != null) {
+                    onSaved.run();
+                }
+                return;
+            } catch (IOException e) {
+                // 日志写入失败时改为完整保存
+                LOG.warn("提交编辑日志失败", e);
+                closeJournal();
+            }
+        }
+        File file = FileManager.chooseSaveFile(mindMap, getStage());
+        if (file != null) {
+            saveToFile(file, onSaved);
+        }
+    }
+
+    /**
+     * 在后台把当前思维导图完整写入文件，成功后在该文件旁重新开始记录编辑日志
+     * @param file 目标文件
+     * @param onSaved 保存成功之后执行的操作，可以为null
+     */
+    private void saveToFile(File file, Runnable onSaved) {
+        // 完整的快照会使原来的日志作废，保存期间不再记录
+        closeJournal();
+        MindMap savingMap = mindMap;
+        long editCount = savingMap.getEditCount();
+
+        Task<Void> task = persistenceService.save(savingMap, file);
+        task.setOnSucceeded(event -> {
+            // 保存期间又有编辑时这些编辑不在快照中，也没有记入日志，下次保存仍需完整写出
+            if (savingMap == mindMap && savingMap.getEditCount() == editCount) {
+                attachJournal();
+            }
+            updateTitle();
+            showInformation("保存成功", file.getName());
+            if (onSaved != null) {
+                onSaved.run();
+            }
+        });
+        task.setOnFailed(event -> {
+            attachJournal();
+            FileManager.showSaveError(getStage(), task.getException());
+        });
+        task.setOnCancelled(event -> {
+            attachJournal();
+            showInformation("保存已取消", file.getName());
+        });
+        runFileTask(task);
+    }
+
+    /**
+     * 在状态栏显示导出进度，完成后提示结果
+     * @param task 已经开始执行的导出任务，用户取消选择时为null
+     */
+    private void runExportTask(Task<File> task) {
+        if (task == null) {
+            return;
+        }
+        task.setOnSucceeded(event -> showInformation("导出成功", task.getValue().getName()));
+        task.setOnFailed(event -> FileManager.showExportError(getStage(), task.getException()));
+        task.setOnCancelled(event -> showInformation("导出已取消", task.getTitle()));
+        runFileTask(task);
+    }
+
+    /**
+     * 在状态栏显示后台任务的进度，任务结束后恢复
+     * @param task 已经开始执行的任务
+     */
+    private void runFileTask(Task<?> task) {
+        fileTask = task;
+        statusLabel.textProperty().bind(task.messageProperty());
+        fileProgressBar.progressProperty().bind(task.progressProperty());
+        setFileTaskControlsVisible(true);
+        task.runningProperty().addListener((observable, wasRunning, running) -> {
+            if (!running) {
+                statusLabel.textProperty().unbind();
+                statusLabel.setText("已就绪");
+                fileProgressBar.progressProperty().unbind();
+                setFileTaskControlsVisible(false);
+                fileTask = null;
+            }
+        });
+    }
+
+    private void setFileTaskControlsVisible(boolean visible) {
+        fileProgressBar.setVisible(visible);
+        fileProgressBar.setManaged(visible);
+        cancelFileTaskButton.setVisible(visible);
+        cancelFileTaskButton.setManaged(visible);
+    }
+
+    /**
+     * 判断是否有正在执行的保存或打开，有则提示用户等待
+     * @return 是否有正在执行的任务
+     */
+    private boolean isFileTaskRunning() {
+        if (fileTask != null) {
+            showAlert("正在保存或打开文件，请稍候");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 丢弃上次保存之后记录到日志中的编辑
+     */
+    private void discardUnsavedEdits() {
+        if (journal != null) {
+            try {
+                journal.discardUncommitted();
+            } catch (IOException e) {
+                LOG.warn("丢弃编辑日志失败", e);
+            }
+        }
+    }
+
+    /**
+     * 为已保存到文件的当前思维导图打开编辑日志
+     */
+    private void attachJournal() {
+        closeJournal();
+        if (mindMap == null || mindMap.getFilePath() == null) {
+            return;
+        }
+        try {
+            journal = MindMapJournal.attach(mindMap, new File(mindMap.getFilePath()));
+        } catch (IOException e) {
+            LOG.warn("无法打开编辑日志", e);
+            showAlert("无法打开编辑日志，只能完整保存文件");
+        }
+    }
+
+    /**
+     * 关闭当前思维导图的编辑日志
+     */
+    private void closeJournal() {
+        if (journal != null) {
+            journal.close(mindMap);
+            journal = null;
+        }
+    }
+
+    /**
+     * 检查是否需要保存当前思维导图，然后继续操作
+     * 需要完整保存时操作在后台保存成功之后才会执行
+     * @param action 要继续执行的操作，用户取消或保存失败时不执行
      */
-    private boolean checkSaveBeforeAction() {
+    private void checkSaveBeforeAction(Runnable action) {
         if (mindMap != null && mindMap.isModified()) {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("保存更改");
@@ -1313,14 +1615,17 @@ public class MindMapController {
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent()) {
                 if (result.get() == saveButton) {
-                    return FileManager.saveMindMap(mindMap, getStage());
+                    saveCurrentMindMap(action);
+                    return;
+                } else if (result.get() == noSaveButton) {
+                    discardUnsavedEdits();
                 } else if (result.get() == cancelButton) {
-                    return false;
+                    return;
                 }
             }
         }
 
-        return true;
+        action.run();
     }
 
     /**
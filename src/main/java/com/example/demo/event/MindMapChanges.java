@@ -0,0 +1,208 @@
+package com.example.demo.event;
+
+import com.example.demo.model.MindMapNode;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 一批合并后的思维导图修改记录
+ * 同一次编辑中对同一个节点的多次修改只记录一次，按修改类型分组，每组内按第一次修改的顺序排列。
+ * 在同一批中先添加后删除的节点不会出现；删除后又加入的节点按移动处理。
+ * <p>
+ * 某一类修改涉及的节点超过{@link #MAX_RECORDED_NODES}时不再逐个记录，
+ * {@link #isOverflowed(Type)}返回true，订阅者应把这一类修改当作整个思维导图都发生了变化，
+ * 例如加载整个文件或完整布局之后。
+ */
+public final class MindMapChanges {
+
+    /**
+     * 修改类型
+     */
+    public enum Type {
+        // 节点被添加、删除或父节点发生变化
+        STRUCTURE,
+        // 位置或大小
+        GEOMETRY,
+        // 文本
+        TEXT,
+        // 形状、颜色、字体大小、连线样式
+        STYLE,
+        // 选中状态
+        SELECTION
+    }
+
+    // 每一类修改最多逐个记录的节点数量
+    public static final int MAX_RECORDED_NODES = 10_000;
+
+    private final Set<MindMapNode> added = new LinkedHashSet<>();
+    private final Set<MindMapNode> removed = new LinkedHashSet<>();
+    private final Set<MindMapNode> moved = new LinkedHashSet<>();
+    private final Set<MindMapNode> geometry = new LinkedHashSet<>();
+    private final Set<MindMapNode> text = new LinkedHashSet<>();
+    private final Set<MindMapNode> style = new LinkedHashSet<>();
+    private final Set<MindMapNode> selection = new LinkedHashSet<>();
+    private final EnumSet<Type> types = EnumSet.noneOf(Type.class);
+    private final EnumSet<Type> overflowed = EnumSet.noneOf(Type.class);
+
+    /**
+     * 记录节点被加入思维导图
+     * @param node 节点
+     */
+    public void recordAdded(MindMapNode node) {
+        types.add(Type.STRUCTURE);
+        if (overflowed.contains(Type.STRUCTURE)) {
+            return;
+        }
+        if (removed.remove(node)) {
+            moved.add(node);
+        } else {
+            added.add(node);
+        }
+        checkStructureOverflow();
+    }
+
+    /**
+     * 记录节点从思维导图中删除，同时丢弃该节点的其他修改
+     * @param node 节点
+     */
+    public void recordRemoved(MindMapNode node) {
+        types.add(Type.STRUCTURE);
+        geometry.remove(node);
+        text.remove(node);
+        style.remove(node);
+        selection.remove(node);
+        if (overflowed.contains(Type.STRUCTURE)) {
+            return;
+        }
+        moved.remove(node);
+        if (!added.remove(node)) {
+            removed.add(node);
+        }
+        checkStructureOverflow();
+    }
+
+    /**
+     * 记录节点的父节点发生了变化
+     * @param node 节点
+     */
+    public void recordMoved(MindMapNode node) {
+        types.add(Type.STRUCTURE);
+        if (overflowed.contains(Type.STRUCTURE) || added.contains(node) || removed.contains(node)) {
+            return;
+        }
+        moved.add(node);
+        checkStructureOverflow();
+    }
+
+    /**
+     * 记录节点的属性发生了变化，同一批中新加入的节点不再单独记录
+     * @param node 节点
+     * @param type 修改类型，不能是{@link Type#STRUCTURE}
+     */
+    public void record(MindMapNode node, Type type) {
+        types.add(type);
+        if (overflowed.contains(type) || added.contains(node)) {
+            return;
+        }
+        Set<MindMapNode> nodes = nodesOf(type);
+        nodes.add(node);
+        if (nodes.size() > MAX_RECORDED_NODES) {
+            overflowed.add(type);
+            nodes.clear();
+        }
+    }
+
+    /**
+     * 判断是否没有任何修改
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        return types.isEmpty();
+    }
+
+    /**
+     * 判断是否包含某一类修改
+     * @param type 修改类型
+     * @return 是否包含
+     */
+    public boolean contains(Type type) {
+        return types.contains(type);
+    }
+
+    /**
+     * 判断某一类修改是否因为涉及的节点太多而没有逐个记录
+     * @param type 修改类型
+     * @return 是否溢出
+     */
+    public boolean isOverflowed(Type type) {
+        return overflowed.contains(type);
+    }
+
+    /**
+     * 获取发生某一类属性修改的节点，结构修改使用{@link #getAdded()}等方法
+     * @param type 修改类型
+     * @return 节点，溢出时为空
+     */
+    public Set<MindMapNode> getNodes(Type type) {
+        return Collections.unmodifiableSet(nodesOf(type));
+    }
+
+    /**
+     * 获取新加入的节点，父节点总是先于子节点
+     * @return 节点，溢出时为空
+     */
+    public Set<MindMapNode> getAdded() {
+        return Collections.unmodifiableSet(added);
+    }
+
+    /**
+     * 获取被删除的节点，子节点总是先于父节点
+     * @return 节点，溢出时为空
+     */
+    public Set<MindMapNode> getRemoved() {
+        return Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * 获取父节点发生变化的节点，不包括新加入和被删除的节点
+     * @return 节点，溢出时为空
+     */
+    public Set<MindMapNode> getMoved() {
+        return Collections.unmodifiableSet(moved);
+    }
+
+    private Set<MindMapNode> nodesOf(Type type) {
+        switch (type) {
+            case GEOMETRY:
+                return geometry;
+            case TEXT:
+                return text;
+            case STYLE:
+                return style;
+            case SELECTION:
+                return selection;
+            default:
+                throw new IllegalArgumentException("结构修改没有单独的节点集合: " + type);
+        }
+    }
+
+    private void checkStructureOverflow() {
+        if (added.size() + removed.size() + moved.size() > MAX_RECORDED_NODES) {
+            overflowed.add(Type.STRUCTURE);
+            added.clear();
+            removed.clear();
+            moved.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MindMapChanges{types=" + types + ", overflowed=" + overflowed
+                + ", added=" + added.size() + ", removed=" + removed.size() + ", moved=" + moved.size()
+                + ", geometry=" + geometry.size() + ", text=" + text.size()
+                + ", style=" + style.size() + ", selection=" + selection.size() + "}";
+    }
+}
@@ -6,6 +6,8 @@ import javafx.event.EventType;
 
 /**
  * 思维导图事件类
+ * {@link #MODEL_CHANGED}事件由思维导图在每次编辑之后发出，携带这次编辑合并后的修改记录，
+ * 通过{@link com.example.demo.model.MindMap#addChangeHandler}订阅。
  */
 public class MindMapEvent extends Event {
     
@@ -20,8 +22,10 @@ public class MindMapEvent extends Event {
     public static final EventType<MindMapEvent> DELETE_NODE = new EventType<>(ANY, "DELETE_NODE");
     public static final EventType<MindMapEvent> CONNECT_NODE = new EventType<>(ANY, "CONNECT_NODE");
     public static final EventType<MindMapEvent> DISCONNECT_NODE = new EventType<>(ANY, "DISCONNECT_NODE");
+    public static final EventType<MindMapEvent> MODEL_CHANGED = new EventType<>(ANY, "MODEL_CHANGED");
     
     private final MindMapNode node;
+    private final MindMapChanges changes;
     
     /**
      * 创建思维导图事件
@@ -31,6 +35,18 @@ public class MindMapEvent extends Event {
     public MindMapEvent(EventType<MindMapEvent> eventType, MindMapNode node) {
         super(eventType);
         this.node = node;
+        this.changes = null;
+    }
+
+    /**
+     * 创建模型修改事件
+     * @param source 发生修改的思维导图
+     * @param changes 合并后的修改记录
+     */
+    public MindMapEvent(Object source, MindMapChanges changes) {
+        super(source, null, MODEL_CHANGED);
+        this.node = null;
+        this.changes = changes;
     }
     
     /**
@@ -40,4 +56,12 @@ public class MindMapEvent extends Event {
     public MindMapNode getNode() {
         return node;
     }
+
+    /**
+     * 获取修改记录
+     * @return 修改记录，只有{@link #MODEL_CHANGED}事件才有
+     */
+    public MindMapChanges getChanges() {
+        return changes;
+    }
 }
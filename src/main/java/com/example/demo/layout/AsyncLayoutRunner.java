@@ -0,0 +1,201 @@
+package com.example.demo.layout;
+
+import com.example.demo.event.MindMapEvent;
+import com.example.demo.model.MindMap;
+import com.example.demo.util.Log;
+import com.example.demo.util.Metrics;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.util.Duration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台布局执行器
+ * 较大的思维导图在后台线程上计算布局，计算期间界面保持响应；
+ * 计算结果回到JavaFX线程后一次性写回节点。
+ * 新的布局请求会使之前未完成的计算作废。
+ * 计算期间订阅模型的修改，一旦模型被修改（编辑、拖动、尺寸更新等）立即作废当前计算，
+ * 布局线程在各阶段之间检查后提前结束；之后等模型连续{@link #RESTART_DELAY_MILLIS}毫秒没有修改，
+ * 再按修改后的模型重新布局一次。连续的修改因此只引起一次重新布局，不会每次都从头开始而始终无法完成。
+ */
+public class AsyncLayoutRunner {
+
+    private static final Log LOG = Log.get(AsyncLayoutRunner.class);
+
+    // 节点数少于此值时直接同步布局，避免多出一帧旧位置
+    public static final int SYNC_THRESHOLD = 2000;
+    // 计算期间模型被修改后，等待模型不再变化的时间
+    static final int RESTART_DELAY_MILLIS = 150;
+
+    // 布局计算的耗时，同步和后台布局都计入，同时按布局策略分别记录为layout.time.类名
+    private static final Metrics.Distribution LAYOUT_TIME = Metrics.timer("layout.time");
+    private static final Metrics.Gauge LAYOUT_NODES = Metrics.gauge("layout.nodes");
+    private static final Metrics.Counter LAYOUT_CANCELLED = Metrics.counter("layout.cancelled");
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "layout-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 每次请求递增，只有与当前代数相同的计算结果才会被采用
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> pending;
+
+    // 正在计算或等待重新开始的布局所对应的思维导图，期间订阅它的修改
+    private MindMap watched;
+    private final EventHandler<MindMapEvent> changeHandler = event -> modelChanged();
+    // 模型修改之后延迟执行的重新布局
+    private PauseTransition restartDelay;
+    private Runnable restart;
+
+    /**
+     * 执行布局，必须在JavaFX线程上调用
+     * @param mindMap 思维导图
+     * @param strategy 布局策略
+     * @param canvasWidth 画布宽度
+     * @param canvasHeight 画布高度
+     * @param onPublished 后台计算的结果写回节点之后执行的操作，同步布局时不会调用
+     */
+    public void run(MindMap mindMap, LayoutStrategy strategy, double canvasWidth, double canvasHeight,
+                    Runnable onPublished) {
+        long requestGeneration = cancel();
+        LAYOUT_NODES.set(mindMap.getNodeCount());
+        Metrics.Distribution strategyTime = Metrics.timer("layout.time." + strategy.getClass().getSimpleName());
+
+        if (mindMap.getNodeCount() < SYNC_THRESHOLD) {
+            long start = System.nanoTime();
+            // 布局对节点位置的修改合并为一次通知
+            mindMap.beginUpdate();
+            try {
+                strategy.applyLayout(mindMap, canvasWidth, canvasHeight);
+            } finally {
+                mindMap.endUpdate();
+            }
+            long elapsed = System.nanoTime() - start;
+            LAYOUT_TIME.record(elapsed);
+            strategyTime.record(elapsed);
+            return;
+        }
+
+        LayoutSnapshot snapshot = LayoutSnapshot.capture(mindMap);
+        long modCount = mindMap.getModCount();
+        watch(mindMap);
+        restart = () -> run(mindMap, strategy, canvasWidth, canvasHeight, onPublished);
+        pending = executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                if (!snapshot.compute(strategy, canvasWidth, canvasHeight,
+                        () -> generation.get() != requestGeneration)) {
+                    LAYOUT_CANCELLED.increment();
+                    return;
+                }
+            } catch (RuntimeException | StackOverflowError e) {
+                LOG.error("Background layout failed: " + strategy.getClass().getSimpleName(), e);
+                // 清除未完成的标记，否则增量布局会一直被禁用
+                Platform.runLater(() -> {
+                    if (generation.get() == requestGeneration) {
+                        pending = null;
+                        unwatch();
+                    }
+                });
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            LAYOUT_TIME.record(elapsed);
+            strategyTime.record(elapsed);
+            if (generation.get() != requestGeneration) {
+                return;
+            }
+            Platform.runLater(() -> {
+                // 计算期间有新的请求，或者模型已经被修改，结果已经过期
+                if (generation.get() != requestGeneration) {
+                    return;
+                }
+                // 没有经过修改事件的修改同样按修改处理，等模型稳定后重新布局
+                if (mindMap.getModCount() != modCount) {
+                    modelChanged();
+                    return;
+                }
+                pending = null;
+                // 写回结果本身会修改模型，先取消订阅
+                unwatch();
+                mindMap.beginUpdate();
+                try {
+                    snapshot.publish();
+                } finally {
+                    mindMap.endUpdate();
+                }
+                onPublished.run();
+            });
+        });
+    }
+
+    /**
+     * 计算期间或等待重新布局期间模型被修改：作废当前计算，并在模型稳定之后重新布局
+     */
+    private void modelChanged() {
+        generation.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        if (restartDelay == null) {
+            restartDelay = new PauseTransition(Duration.millis(RESTART_DELAY_MILLIS));
+            restartDelay.setOnFinished(event -> {
+                Runnable action = restart;
+                unwatch();
+                if (action != null) {
+                    action.run();
+                }
+            });
+        }
+        // 每次修改都重新计时，连续的修改合并为一次重新布局
+        restartDelay.playFromStart();
+    }
+
+    private void watch(MindMap mindMap) {
+        if (watched != mindMap) {
+            unwatch();
+            watched = mindMap;
+            mindMap.addChangeHandler(changeHandler);
+        }
+    }
+
+    private void unwatch() {
+        if (restartDelay != null) {
+            restartDelay.stop();
+        }
+        if (watched != null) {
+            watched.removeChangeHandler(changeHandler);
+            watched = null;
+        }
+        restart = null;
+    }
+
+    /**
+     * 作废所有未完成的布局计算
+     * @return 新的代数
+     */
+    public long cancel() {
+        unwatch();
+        long next = generation.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        return next;
+    }
+
+    /**
+     * 判断是否有正在进行或等待重新开始的后台布局
+     * @return 是否有未完成的计算
+     */
+    public boolean isRunning() {
+        return pending != null || watched != null;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.demo.layout;
+
+import com.example.demo.model.MindMapNode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 布局用的临时缓冲区
+ * 布局算法需要按层级分组节点、记录每个节点的深度或序号，这些信息按节点在遍历中的序号
+ * 存放在可复用的数组中，代替每次布局都新建的HashMap和装箱的整数。
+ * 数组在节点数超过容量时扩大，之后保持最近布局过的最大的图所需的大小，同样规模的图重复布局不再分配内存。
+ * 超过{@link #RETAINED_CAPACITY}的数组只在两种情况下缩小：连续{@link #TRIM_WINDOW}次布局用到的容量
+ * 都不到数组长度的一半（例如换成了小得多的图），缩小到这些布局中的最大用量；或者缓冲区闲置超过
+ * {@link #IDLE_TRIM_NANOS}，下次获取时换回初始大小。
+ * <p>
+ * 布局可能同时在JavaFX线程和后台布局线程上执行，每个线程使用自己的缓冲区，
+ * 通过{@link #forCurrentThread()}获取。同一线程上的布局不会嵌套，用完后调用{@link #release()}。
+ */
+final class LayoutScratch {
+
+    // 不超过此长度的数组总是保留
+    static final int RETAINED_CAPACITY = 16_384;
+    // 统计最大用量的布局次数，满一轮后按其中的最大用量决定是否缩小
+    static final int TRIM_WINDOW = 16;
+    // 闲置超过此时间后，下次获取缓冲区时缩小过大的数组
+    static final long IDLE_TRIM_NANOS = 60_000_000_000L;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_LEVEL_CAPACITY = 16;
+
+    private static final ThreadLocal<LayoutScratch> SCRATCH = ThreadLocal.withInitial(LayoutScratch::new);
+
+    // 按遍历顺序存放的节点，下标即节点序号
+    private MindMapNode[] nodes = new MindMapNode[INITIAL_CAPACITY];
+    // 按层遍历时第level层的节点为 nodes[levelStart[level] .. levelStart[level + 1])
+    private int[] levelStart = new int[INITIAL_LEVEL_CAPACITY];
+    // 先序遍历时每个节点的深度
+    private int[] depths = new int[INITIAL_CAPACITY];
+    // 先序遍历用的栈
+    private MindMapNode[] stack = new MindMapNode[INITIAL_CAPACITY];
+    private int[] stackDepths = new int[INITIAL_CAPACITY];
+    private int size;
+    private int levelCount;
+    // 本次先序遍历中栈的最大深度，释放时只清除用过的部分
+    private int stackUsed;
+
+    // 当前一轮中各数组的最大用量、已经释放的次数和上一次释放的时间
+    private int peakNodes;
+    private int peakStack;
+    private int peakLevels;
+    private int releases;
+    private long releasedAt;
+
+    private LayoutScratch() {
+    }
+
+    /**
+     * 获取当前线程的缓冲区，闲置过久时先缩小过大的数组
+     * @return 缓冲区
+     */
+    static LayoutScratch forCurrentThread() {
+        LayoutScratch scratch = SCRATCH.get();
+        if (scratch.releases > 0 && System.nanoTime() - scratch.releasedAt > IDLE_TRIM_NANOS) {
+            scratch.trim(0, 0, 0);
+        }
+        return scratch;
+    }
+
+    /**
+     * 从根节点开始按层遍历
+     * 每一层的节点按先序中的顺序排列，与逐层递归收集的结果相同，第0层只有根节点
+     * @param root 根节点
+     */
+    void collectLevels(MindMapNode root) {
+        size = 0;
+        levelCount = 0;
+        nodes[size++] = root;
+        int levelBegin = 0;
+        while (levelBegin < size) {
+            int levelEnd = size;
+            ensureLevelCapacity(levelCount + 2);
+            levelStart[levelCount++] = levelBegin;
+            for (int i = levelBegin; i < levelEnd; i++) {
+                List<MindMapNode> children = nodes[i].getChildren();
+                ensureNodeCapacity(size + children.size());
+                for (int c = 0; c < children.size(); c++) {
+                    nodes[size++] = children.get(c);
+                }
+            }
+            levelBegin = levelEnd;
+        }
+        levelStart[levelCount] = size;
+    }
+
+    /**
+     * 从根节点开始先序遍历，记录每个节点的深度，不使用递归
+     * 节点序号即先序中的序号
+     * @param root 根节点
+     */
+    void collectPreorder(MindMapNode root) {
+        size = 0;
+        levelCount = 0;
+        int top = 0;
+        stack[top] = root;
+        stackDepths[top++] = 0;
+        while (top > 0) {
+            MindMapNode node = stack[--top];
+            stack[top] = null;
+            int depth = stackDepths[top];
+            ensureNodeCapacity(size + 1);
+            nodes[size] = node;
+            depths[size++] = depth;
+            levelCount = Math.max(levelCount, depth + 1);
+
+            // 子节点逆序入栈，出栈顺序即为先序
+            List<MindMapNode> children = node.getChildren();
+            ensureStackCapacity(top + children.size());
+            for (int c = children.size() - 1; c >= 0; c--) {
+                stack[top] = children.get(c);
+                stackDepths[top++] = depth + 1;
+            }
+            stackUsed = Math.max(stackUsed, top);
+        }
+    }
+
+    /**
+     * 清除对节点的引用，避免缓冲区使已经关闭的思维导图无法回收
+     * 只清除这次遍历用过的位置；遍历中途抛出异常时栈中可能留有节点，同样清除。
+     * 每{@link #TRIM_WINDOW}次释放检查一次，缩小这一轮中用量不到一半的大数组
+     */
+    void release() {
+        Arrays.fill(nodes, 0, size, null);
+        Arrays.fill(stack, 0, Math.min(stackUsed, stack.length), null);
+        peakNodes = Math.max(peakNodes, size);
+        peakStack = Math.max(peakStack, stackUsed);
+        peakLevels = Math.max(peakLevels, levelCount + 1);
+        size = 0;
+        levelCount = 0;
+        stackUsed = 0;
+        releasedAt = System.nanoTime();
+        if (++releases % TRIM_WINDOW == 0) {
+            trim(peakNodes, peakStack, peakLevels);
+            peakNodes = 0;
+            peakStack = 0;
+            peakLevels = 0;
+        }
+    }
+
+    /**
+     * 把超过{@link #RETAINED_CAPACITY}并且超过用量两倍的数组换成刚好容纳用量的新数组
+     * 数组中没有需要保留的内容
+     */
+    private void trim(int nodeUsage, int stackUsage, int levelUsage) {
+        if (shouldTrim(nodes.length, nodeUsage)) {
+            int length = Math.max(INITIAL_CAPACITY, nodeUsage);
+            nodes = new MindMapNode[length];
+            depths = new int[length];
+        }
+        if (shouldTrim(stack.length, stackUsage)) {
+            int length = Math.max(INITIAL_CAPACITY, stackUsage);
+            stack = new MindMapNode[length];
+            stackDepths = new int[length];
+        }
+        if (shouldTrim(levelStart.length, levelUsage)) {
+            levelStart = new int[Math.max(INITIAL_LEVEL_CAPACITY, levelUsage)];
+        }
+    }
+
+    private static boolean shouldTrim(int length, int usage) {
+        return length > RETAINED_CAPACITY && length > 2L * usage;
+    }
+
+    /**
+     * 获取遍历到的节点数量
+     * @return 节点数量
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 获取指定序号的节点
+     * @param ordinal 节点序号
+     * @return 节点
+     */
+    MindMapNode node(int ordinal) {
+        return nodes[ordinal];
+    }
+
+    /**
+     * 获取层数，即最大深度加一
+     * @return 层数
+     */
+    int levelCount() {
+        return levelCount;
+    }
+
+    /**
+     * 获取一层第一个节点的序号，只适用于{@link #collectLevels(MindMapNode)}
+     * @param level 层级
+     * @return 序号
+     */
+    int levelStart(int level) {
+        return levelStart[level];
+    }
+
+    /**
+     * 获取一层最后一个节点之后的序号，只适用于{@link #collectLevels(MindMapNode)}
+     * @param level 层级
+     * @return 序号
+     */
+    int levelEnd(int level) {
+        return levelStart[level + 1];
+    }
+
+    /**
+     * 获取节点的深度，只适用于{@link #collectPreorder(MindMapNode)}
+     * @param ordinal 节点序号
+     * @return 深度
+     */
+    int depth(int ordinal) {
+        return depths[ordinal];
+    }
+
+    /**
+     * 获取一个按层级下标的整数数组，内容为0，用于统计先序遍历中每层的节点数
+     * 与按层遍历的分组共用同一数组
+     * @return 长度不小于层数的数组
+     */
+    int[] levelCounts() {
+        ensureLevelCapacity(levelCount + 1);
+        Arrays.fill(levelStart, 0, levelCount + 1, 0);
+        return levelStart;
+    }
+
+    private void ensureNodeCapacity(int capacity) {
+        if (capacity > nodes.length) {
+            int newLength = Math.max(capacity, nodes.length * 2);
+            nodes = Arrays.copyOf(nodes, newLength);
+            depths = Arrays.copyOf(depths, newLength);
+        }
+    }
+
+    private void ensureStackCapacity(int capacity) {
+        if (capacity > stack.length) {
+            int newLength = Math.max(capacity, stack.length * 2);
+            stack = Arrays.copyOf(stack, newLength);
+            stackDepths = Arrays.copyOf(stackDepths, newLength);
+        }
+    }
+
+    private void ensureLevelCapacity(int capacity) {
+        if (capacity > levelStart.length) {
+            levelStart = Arrays.copyOf(levelStart, Math.max(capacity, levelStart.length * 2));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.demo.layout;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 布局快照
+ * 在JavaFX线程上把树结构和节点尺寸复制到{@link NodeGeometry}中，
+ * 支持几何存储的布局策略直接在数组上计算；其他策略在布局线程上根据快照构建一份独立的
+ * 思维导图副本并在副本上计算位置，结果写回数组。最后再回到JavaFX线程一次性更新原节点。
+ * 副本中的节点使用原节点的ID，并按原思维导图的遍历顺序加入映射表，
+ * 依赖节点ID或遍历顺序的布局在副本上与同步布局一致。
+ */
+final class LayoutSnapshot {
+
+    private final NodeGeometry geometry;
+    // 构建副本时需要的节点信息，按几何存储的下标存放
+    private final String[] ids;
+    private final String[] texts;
+    private final boolean[] centerNodes;
+    // 原思维导图中节点的遍历顺序，只保存引用，在布局线程上换算成下标
+    private final MindMapNode[] iterationOrder;
+
+    private LayoutSnapshot(NodeGeometry geometry, MindMapNode[] iterationOrder) {
+        this.geometry = geometry;
+        this.iterationOrder = iterationOrder;
+        ids = new String[geometry.size()];
+        texts = new String[geometry.size()];
+        centerNodes = new boolean[geometry.size()];
+    }
+
+    /**
+     * 复制思维导图的结构和节点尺寸，必须在JavaFX线程上调用
+     * @param mindMap 思维导图
+     * @return 快照
+     */
+    static LayoutSnapshot capture(MindMap mindMap) {
+        LayoutSnapshot snapshot = new LayoutSnapshot(NodeGeometry.capture(mindMap),
+                mindMap.getNodes().toArray(new MindMapNode[0]));
+        for (int i = 0; i < snapshot.texts.length; i++) {
+            MindMapNode node = snapshot.geometry.getNode(i);
+            snapshot.ids[i] = node.getId();
+            snapshot.texts[i] = node.getText();
+            snapshot.centerNodes[i] = node.isCenterNode();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 执行布局，可以在任意线程上调用
+     * 在构建副本、布局和取回结果这几个阶段之间检查是否已被取消，取消后不再继续
+     * @param strategy 布局策略
+     * @param canvasWidth 画布宽度
+     * @param canvasHeight 画布高度
+     * @param cancelled 返回true表示结果已经不再需要
+     * @return 是否完成计算，被取消时返回false
+     */
+    boolean compute(LayoutStrategy strategy, double canvasWidth, double canvasHeight, BooleanSupplier cancelled) {
+        int count = geometry.size();
+        if (cancelled.getAsBoolean()) {
+            return false;
+        }
+        if (count == 0 || strategy.applyLayout(geometry, canvasWidth, canvasHeight)) {
+            return !cancelled.getAsBoolean();
+        }
+
+        // 构建独立的副本，副本不会被其他线程访问
+        MindMapNode[] copies = new MindMapNode[count];
+        for (int i = 0; i < count; i++) {
+            MindMapNode node = new MindMapNode(ids[i], texts[i]);
+            node.setCenterNode(centerNodes[i]);
+            node.setWidth(geometry.width[i]);
+            node.setHeight(geometry.height[i]);
+            node.setX(geometry.x[i]);
+            node.setY(geometry.y[i]);
+            node.setManuallyPositioned(geometry.manuallyPositioned[i]);
+            copies[i] = node;
+        }
+        // 先连接父子关系，再按原思维导图的遍历顺序加入映射表
+        // 父节点的下标总是小于子节点，按下标顺序添加即可保持子节点的顺序
+        for (int i = 0; i < count; i++) {
+            int parent = geometry.parent[i];
+            if (parent != NodeGeometry.NONE) {
+                copies[parent].addChild(copies[i]);
+            }
+        }
+        int root = geometry.getRoot();
+        MindMap copy = new MindMap(copies[root]);
+        Map<MindMapNode, Integer> indexOf = new IdentityHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            indexOf.put(geometry.getNode(i), i);
+        }
+        for (MindMapNode original : iterationOrder) {
+            Integer index = indexOf.get(original);
+            if (index != null && index != root) {
+                copy.addNodeToMap(copies[index]);
+            }
+        }
+
+        if (cancelled.getAsBoolean()) {
+            return false;
+        }
+        strategy.applyLayout(copy, canvasWidth, canvasHeight);
+        if (cancelled.getAsBoolean()) {
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            geometry.x[i] = copies[i].getX();
+            geometry.y[i] = copies[i].getY();
+            geometry.manuallyPositioned[i] = copies[i].isManuallyPositioned();
+        }
+        return true;
+    }
+
+    /**
+     * 将计算结果写回原节点，必须在JavaFX线程上调用
+     */
+    void publish() {
+        geometry.publish();
+    }
+}
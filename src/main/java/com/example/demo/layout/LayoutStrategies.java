@@ -0,0 +1,58 @@
+package com.example.demo.layout;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 按名称创建布局策略
+ * 布局的显示名称{@link LayoutStrategy#getName()}有重复，这里使用类名作为唯一的名称，
+ * 供命令行等没有界面的场合选择布局。
+ */
+public final class LayoutStrategies {
+
+    private static final Map<String, Supplier<LayoutStrategy>> FACTORIES = new LinkedHashMap<>();
+
+    static {
+        FACTORIES.put("AutoLayout", AutoLayout::new);
+        FACTORIES.put("ForceLayout", ForceLayout::new);
+        FACTORIES.put("LeftCloneLayout", LeftCloneLayout::new);
+        FACTORIES.put("LeftForceLayout", LeftForceLayout::new);
+        FACTORIES.put("LeftLayout", LeftLayout::new);
+        FACTORIES.put("LogicalLayout", LogicalLayout::new);
+        FACTORIES.put("RightCloneLayout", RightCloneLayout::new);
+        FACTORIES.put("RightForceLayout", RightForceLayout::new);
+        FACTORIES.put("RightLayout", RightLayout::new);
+        FACTORIES.put("StandardLayout", StandardLayout::new);
+        FACTORIES.put("TreeCloneLayout", TreeCloneLayout::new);
+        FACTORIES.put("TreeForceLayout", TreeForceLayout::new);
+        FACTORIES.put("TreeListLayout", TreeListLayout::new);
+    }
+
+    private LayoutStrategies() {
+    }
+
+    /**
+     * 创建布局策略的新实例
+     * @param name 布局类名，不区分大小写
+     * @return 布局策略，名称未知时返回null
+     */
+    public static LayoutStrategy create(String name) {
+        for (Map.Entry<String, Supplier<LayoutStrategy>> entry : FACTORIES.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                return entry.getValue().get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取所有可用的布局名称
+     * @return 布局类名
+     */
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(FACTORIES.keySet());
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.layout;
 
 import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
 
 /**
  * 思维导图布局策略接口
@@ -14,6 +15,34 @@ public interface LayoutStrategy {
      * @param canvasHeight 画布高度
      */
     void applyLayout(MindMap mindMap, double canvasWidth, double canvasHeight);
+
+    /**
+     * 某个节点的子节点发生增删后，只重新布局受影响的部分
+     * 调用前整张图必须已经用本策略以相同的画布尺寸完整布局过。
+     * 不支持增量布局的策略返回false，调用方应改为执行完整布局
+     * @param mindMap 要布局的思维导图
+     * @param changedNode 子节点列表发生变化的节点
+     * @param canvasWidth 画布宽度
+     * @param canvasHeight 画布高度
+     * @return 是否已完成增量布局
+     */
+    default boolean applyIncrementalLayout(MindMap mindMap, MindMapNode changedNode,
+                                           double canvasWidth, double canvasHeight) {
+        return false;
+    }
+
+    /**
+     * 在节点几何存储上执行完整布局，结果与{@link #applyLayout(MindMap, double, double)}相同
+     * 数组上的布局不访问节点对象，可以在任意线程上执行，大型思维导图应优先使用。
+     * 不支持的策略返回false，调用方应改为在节点上布局
+     * @param geometry 节点几何存储
+     * @param canvasWidth 画布宽度
+     * @param canvasHeight 画布高度
+     * @return 是否已完成布局
+     */
+    default boolean applyLayout(NodeGeometry geometry, double canvasWidth, double canvasHeight) {
+        return false;
+    }
     
     /**
      * 获取布局名称
@@ -2,11 +2,7 @@ package com.example.demo.layout;
 
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import com.example.demo.util.Log;
 
 /**
  * 左侧强制布局策略实现
@@ -14,16 +10,18 @@ import java.util.Map;
  */
 public class LeftForceLayout implements LayoutStrategy {
 
+    private static final Log LOG = Log.get(LeftForceLayout.class);
+
     private static final double HORIZONTAL_GAP = 180; // 水平间距
     private static final double VERTICAL_GAP = 35;    // 垂直间距
 
     @Override
     public void applyLayout(MindMap mindMap, double canvasWidth, double canvasHeight) {
-        System.out.println("LeftForceLayout.applyLayout called with canvas size: " + canvasWidth + "x" + canvasHeight);
+        LOG.debug("LeftForceLayout.applyLayout called with canvas size: {}x{}", canvasWidth, canvasHeight);
 
         // 获取根节点
         MindMapNode rootNode = mindMap.getRootNode();
-        System.out.println("Root node: " + rootNode.getText());
+        LOG.debug("Root node: {}", rootNode.getText());
 
         // 不重置节点的手动定位标志，保留手动定位的节点位置
 
@@ -32,45 +30,56 @@ public class LeftForceLayout implements LayoutStrategy {
             rootNode.setX(canvasWidth * 0.7 - rootNode.getWidth() / 2);
             rootNode.setY(canvasHeight / 2 - rootNode.getHeight() / 2);
         }
-        System.out.println("Root node position set to: (" + rootNode.getX() + ", " + rootNode.getY() + ")");
-
-        // 计算每个节点的深度和在其层级中的索引
-        Map<MindMapNode, Integer> depthMap = new HashMap<>();
-        Map<Integer, List<MindMapNode>> levelMap = new HashMap<>();
-
-        // 计算节点深度和层级分组
-        calculateDepthAndLevels(rootNode, 0, depthMap, levelMap);
-
-        // 获取最大深度
-        int maxDepth = 0;
-        for (int depth : depthMap.values()) {
-            maxDepth = Math.max(maxDepth, depth);
+        LOG.debug("Root node position set to: ({}, {})", rootNode.getX(), rootNode.getY());
+
+        // 按层级分组节点，第depth层的节点序号为 [levelStart(depth), levelEnd(depth))
+        LayoutScratch scratch = LayoutScratch.forCurrentThread();
+        try {
+            scratch.collectLevels(rootNode);
+            layoutLevels(scratch, rootNode);
+        } finally {
+            scratch.release();
         }
-        System.out.println("Max depth: " + maxDepth);
+    }
+
+    /**
+     * 逐层布局节点
+     * @param scratch 按层分组的节点
+     * @param rootNode 根节点
+     */
+    private void layoutLevels(LayoutScratch scratch, MindMapNode rootNode) {
+        int maxDepth = scratch.levelCount() - 1;
+        LOG.debug("Max depth: {}", maxDepth);
 
         // 布局所有节点（全部在左侧）
         for (int depth = 1; depth <= maxDepth; depth++) {
-            List<MindMapNode> nodesAtDepth = levelMap.getOrDefault(depth, new ArrayList<>());
-            if (nodesAtDepth.isEmpty()) continue;
+            int start = scratch.levelStart(depth);
+            int end = scratch.levelEnd(depth);
+            if (start == end) continue;
 
-            System.out.println("Laying out " + nodesAtDepth.size() + " nodes at depth " + depth);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Laying out {} nodes at depth {}", end - start, depth);
+            }
 
             // 计算左侧X坐标
             double x = rootNode.getX() - (depth * HORIZONTAL_GAP);
 
             // 计算节点总高度
-            double totalHeight = calculateTotalHeight(nodesAtDepth);
+            double totalHeight = calculateTotalHeight(scratch, start, end);
 
             // 计算起始Y坐标，使节点垂直居中
             double startY = rootNode.getY() - (totalHeight / 2);
 
             // 布局节点
-            for (MindMapNode node : nodesAtDepth) {
+            for (int i = start; i < end; i++) {
+                MindMapNode node = scratch.node(i);
                 if (!node.isManuallyPositioned()) {
                     node.setX(x);
                     node.setY(startY + node.getHeight() / 2);
                 }
-                System.out.println("Node " + node.getText() + " positioned at (" + node.getX() + ", " + node.getY() + ")");
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Node {} positioned at ({}, {})", node.getText(), node.getX(), node.getY());
+                }
 
                 startY += node.getHeight() + VERTICAL_GAP;
             }
@@ -78,47 +87,24 @@ public class LeftForceLayout implements LayoutStrategy {
     }
 
     /**
-     * 递归计算节点的深度并按层级分组
-     * @param node 当前节点
-     * @param depth 当前深度
-     * @param depthMap 深度映射
-     * @param levelMap 层级映射
-     */
-    private void calculateDepthAndLevels(MindMapNode node, int depth,
-                                        Map<MindMapNode, Integer> depthMap,
-                                        Map<Integer, List<MindMapNode>> levelMap) {
-        // 记录节点深度
-        depthMap.put(node, depth);
-
-        // 将节点添加到对应层级
-        if (!levelMap.containsKey(depth)) {
-            levelMap.put(depth, new ArrayList<>());
-        }
-        levelMap.get(depth).add(node);
-
-        // 递归处理子节点
-        for (MindMapNode child : node.getChildren()) {
-            calculateDepthAndLevels(child, depth + 1, depthMap, levelMap);
-        }
-    }
-
-    /**
-     * 计算节点列表的总高度
-     * @param nodes 节点列表
+     * 计算一层节点的总高度
+     * @param scratch 按层分组的节点
+     * @param start 第一个节点的序号
+     * @param end 最后一个节点之后的序号
      * @return 总高度
      */
-    private double calculateTotalHeight(List<MindMapNode> nodes) {
-        if (nodes.isEmpty()) {
+    private double calculateTotalHeight(LayoutScratch scratch, int start, int end) {
+        if (start == end) {
             return 0;
         }
 
         double totalHeight = 0;
-        for (MindMapNode node : nodes) {
-            totalHeight += node.getHeight();
+        for (int i = start; i < end; i++) {
+            totalHeight += scratch.node(i).getHeight();
         }
 
         // 添加节点间的间距
-        totalHeight += VERTICAL_GAP * (nodes.size() - 1);
+        totalHeight += VERTICAL_GAP * (end - start - 1);
 
         return totalHeight;
     }
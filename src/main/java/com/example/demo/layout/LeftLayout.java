@@ -3,7 +3,6 @@ package com.example.demo.layout;
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -32,16 +31,29 @@ public class LeftLayout implements LayoutStrategy {
             return;
         }
 
-        // 按子节点数量分组，使布局更平衡
-        List<List<MindMapNode>> levels = groupNodesByLevel(rootNode);
+        // 按层级分组节点，第depth层的节点序号为 [levelStart(depth), levelEnd(depth))
+        LayoutScratch scratch = LayoutScratch.forCurrentThread();
+        try {
+            scratch.collectLevels(rootNode);
+            layoutLevels(scratch, rootNode);
+        } finally {
+            scratch.release();
+        }
+    }
 
-        // 布局每一层级的节点
-        for (int i = 0; i < levels.size(); i++) {
-            List<MindMapNode> levelNodes = levels.get(i);
-            int depth = i + 1; // 层级深度，从1开始
+    /**
+     * 逐层布局节点
+     * @param scratch 按层分组的节点
+     * @param rootNode 根节点
+     */
+    private void layoutLevels(LayoutScratch scratch, MindMapNode rootNode) {
+        // 布局每一层级的节点，层级深度从1开始
+        for (int depth = 1; depth < scratch.levelCount(); depth++) {
+            int start = scratch.levelStart(depth);
+            int end = scratch.levelEnd(depth);
 
             // 计算当前层级的总高度
-            double totalHeight = calculateTotalHeight(levelNodes);
+            double totalHeight = calculateTotalHeight(scratch, start, end);
 
             // 计算当前层级的X坐标
             double levelX = rootNode.getX() - (HORIZONTAL_GAP * depth);
@@ -50,7 +62,8 @@ public class LeftLayout implements LayoutStrategy {
             double startY = rootNode.getY() - (totalHeight / 2);
 
             // 布局当前层级的所有节点
-            for (MindMapNode node : levelNodes) {
+            for (int i = start; i < end; i++) {
+                MindMapNode node = scratch.node(i);
                 // 如果节点已经被手动定位，则不改变其位置
                 if (!node.isManuallyPositioned()) {
                     // 计算节点缩放比例，越深层级越小
@@ -68,59 +81,24 @@ public class LeftLayout implements LayoutStrategy {
     }
 
     /**
-     * 按层级对节点进行分组
-     * @param rootNode 根节点
-     * @return 分组后的节点列表，每个列表代表一个层级
-     */
-    private List<List<MindMapNode>> groupNodesByLevel(MindMapNode rootNode) {
-        List<List<MindMapNode>> levels = new ArrayList<>();
-        groupNodesByLevelRecursive(rootNode, 0, levels);
-        return levels;
-    }
-
-    /**
-     * 递归对节点进行分组
-     * @param node 当前节点
-     * @param level 当前层级
-     * @param levels 分组结果
-     */
-    private void groupNodesByLevelRecursive(MindMapNode node, int level, List<List<MindMapNode>> levels) {
-        List<MindMapNode> children = node.getChildren();
-        if (children.isEmpty()) {
-            return;
-        }
-
-        // 确保层级列表大小足够
-        while (levels.size() <= level) {
-            levels.add(new ArrayList<>());
-        }
-
-        // 将子节点添加到当前层级
-        levels.get(level).addAll(children);
-
-        // 递归处理每个子节点
-        for (MindMapNode child : children) {
-            groupNodesByLevelRecursive(child, level + 1, levels);
-        }
-    }
-
-    /**
-     * 计算节点列表的总高度
-     * @param nodes 节点列表
+     * 计算一层节点的总高度
+     * @param scratch 按层分组的节点
+     * @param start 第一个节点的序号
+     * @param end 最后一个节点之后的序号
      * @return 总高度
      */
-    private double calculateTotalHeight(List<MindMapNode> nodes) {
-        if (nodes.isEmpty()) {
+    private double calculateTotalHeight(LayoutScratch scratch, int start, int end) {
+        if (start == end) {
             return 0;
         }
 
         double totalHeight = 0;
-        for (MindMapNode node : nodes) {
-            totalHeight += node.getHeight();
+        for (int i = start; i < end; i++) {
+            totalHeight += scratch.node(i).getHeight();
         }
 
         // 添加节点间的间距
-        totalHeight += VERTICAL_GAP * (nodes.size() - 1);
+        totalHeight += VERTICAL_GAP * (end - start - 1);
 
         return totalHeight;
     }
@@ -3,10 +3,10 @@ package com.example.demo.layout;
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 右向逻辑布局策略实现
@@ -30,89 +30,186 @@ public class LogicalLayout implements LayoutStrategy {
             rootNode.setY(canvasHeight / 2 - rootNode.getHeight() / 2);
         }
         
-        // 计算每个节点的深度和子树高度
-        Map<MindMapNode, Integer> depthMap = new HashMap<>();
-        Map<MindMapNode, Double> subtreeHeightMap = new HashMap<>();
-        calculateDepthAndHeight(rootNode, 0, depthMap, subtreeHeightMap);
-        
-        // 布局整棵树
-        layoutTree(rootNode, depthMap, subtreeHeightMap);
+        // 布局整棵树，子树高度由节点缓存，只有发生变化的分支才会重新计算
+        layoutTree(rootNode);
     }
-    
+
     /**
-     * 计算节点的深度和子树高度
-     * @param node 当前节点
-     * @param depth 当前深度
-     * @param depthMap 深度映射
-     * @param subtreeHeightMap 子树高度映射
-     * @return 子树高度
+     * 在几何存储上布局
+     * 先从后往前汇总子树范围，再按先序从前往后放置每个节点的子节点，父节点总是先于子节点确定位置
      */
-    private double calculateDepthAndHeight(MindMapNode node, int depth, 
-                                          Map<MindMapNode, Integer> depthMap, 
-                                          Map<MindMapNode, Double> subtreeHeightMap) {
-        depthMap.put(node, depth);
-        
-        List<MindMapNode> children = node.getChildren();
-        if (children.isEmpty()) {
-            subtreeHeightMap.put(node, node.getHeight());
-            return node.getHeight();
+    @Override
+    public boolean applyLayout(NodeGeometry geometry, double canvasWidth, double canvasHeight) {
+        int root = geometry.getRoot();
+        if (root == NodeGeometry.NONE) {
+            return true;
         }
-        
-        double totalHeight = 0;
-        for (MindMapNode child : children) {
-            totalHeight += calculateDepthAndHeight(child, depth + 1, depthMap, subtreeHeightMap);
+        double[] xs = geometry.x;
+        double[] ys = geometry.y;
+        double[] widths = geometry.width;
+        double[] heights = geometry.height;
+        int[] firstChild = geometry.firstChild;
+        int[] nextSibling = geometry.nextSibling;
+        boolean[] manuallyPositioned = geometry.manuallyPositioned;
+
+        if (!manuallyPositioned[root]) {
+            xs[root] = 50;
+            ys[root] = canvasHeight / 2 - heights[root] / 2;
         }
-        
-        // 添加子节点间的间距
-        totalHeight += VERTICAL_GAP * (children.size() - 1);
-        
-        // 如果子树高度小于节点自身高度，则使用节点自身高度
-        totalHeight = Math.max(totalHeight, node.getHeight());
-        
-        subtreeHeightMap.put(node, totalHeight);
-        return totalHeight;
+
+        double[] extents = geometry.subtreeExtents(VERTICAL_GAP);
+        int end = geometry.subtreeEnd(root);
+        for (int node = root; node < end; node++) {
+            int first = firstChild[node];
+            if (first == NodeGeometry.NONE) {
+                continue;
+            }
+            double totalHeight = 0;
+            int count = 0;
+            for (int child = first; child != NodeGeometry.NONE; child = nextSibling[child]) {
+                totalHeight += extents[child];
+                count++;
+            }
+            totalHeight += VERTICAL_GAP * (count - 1);
+
+            double x = xs[node] + widths[node] + HORIZONTAL_GAP;
+            double startY = ys[node] + (heights[node] / 2) - (totalHeight / 2);
+            for (int child = first; child != NodeGeometry.NONE; child = nextSibling[child]) {
+                double childHeight = extents[child];
+                if (!manuallyPositioned[child]) {
+                    xs[child] = x;
+                    ys[child] = startY + (childHeight / 2) - (heights[child] / 2);
+                }
+                startY += childHeight + VERTICAL_GAP;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 增量布局
+     * 子树高度的变化只会影响变化节点的祖先：从根节点沿路径向下，重新放置路径上每个节点的子节点，
+     * 不在路径上的兄弟子树内部结构不变，只需要整体平移；最后完整布局变化节点自身的子树
+     */
+    @Override
+    public boolean applyIncrementalLayout(MindMap mindMap, MindMapNode changedNode,
+                                          double canvasWidth, double canvasHeight) {
+        MindMapNode rootNode = mindMap.getRootNode();
+
+        // 根节点位置变化时整棵树都会移动，改为完整布局
+        if (!rootNode.isManuallyPositioned()
+                && (rootNode.getX() != 50 || rootNode.getY() != canvasHeight / 2 - rootNode.getHeight() / 2)) {
+            return false;
+        }
+
+        // 收集从变化节点到根节点的路径
+        List<MindMapNode> path = new ArrayList<>();
+        for (MindMapNode node = changedNode; node != null; node = node.getParent()) {
+            path.add(node);
+        }
+        if (path.get(path.size() - 1) != rootNode) {
+            // 自由节点的子树不参与布局
+            return true;
+        }
+
+        for (int i = path.size() - 1; i > 0; i--) {
+            placeChildren(path.get(i), path.get(i - 1));
+        }
+        layoutTree(changedNode);
+        return true;
     }
     
     /**
      * 布局树
      * @param node 当前节点
-     * @param depthMap 深度映射
-     * @param subtreeHeightMap 子树高度映射
      */
-    private void layoutTree(MindMapNode node, 
-                           Map<MindMapNode, Integer> depthMap, 
-                           Map<MindMapNode, Double> subtreeHeightMap) {
+    private void layoutTree(MindMapNode node) {
         List<MindMapNode> children = node.getChildren();
         if (children.isEmpty()) {
             return;
         }
         
-        int depth = depthMap.get(node);
         double x = node.getX() + node.getWidth() + HORIZONTAL_GAP;
-        
-        // 计算子节点的起始Y坐标，使子树垂直居中于父节点
-        double totalHeight = 0;
-        for (MindMapNode child : children) {
-            totalHeight += subtreeHeightMap.get(child);
-        }
-        totalHeight += VERTICAL_GAP * (children.size() - 1);
-        
-        double startY = node.getY() + (node.getHeight() / 2) - (totalHeight / 2);
+        double startY = childrenStartY(node);
         
         // 布局所有子节点
         for (MindMapNode child : children) {
+            double childHeight = child.getSubtreeExtent(VERTICAL_GAP);
             if (!child.isManuallyPositioned()) {
-                double childHeight = subtreeHeightMap.get(child);
-                
                 // 设置节点位置
                 child.setX(x);
                 child.setY(startY + (childHeight / 2) - (child.getHeight() / 2));
             }
             
             // 递归布局子节点
-            layoutTree(child, depthMap, subtreeHeightMap);
+            layoutTree(child);
             
-            startY += subtreeHeightMap.get(child) + VERTICAL_GAP;
+            startY += childHeight + VERTICAL_GAP;
+        }
+    }
+
+    /**
+     * 重新放置节点的直接子节点
+     * 路径上的子节点只更新自身位置，它的子节点在下一层处理；其他子节点连同子树一起平移
+     * @param node 当前节点
+     * @param pathChild 路径上的子节点
+     */
+    private void placeChildren(MindMapNode node, MindMapNode pathChild) {
+        double x = node.getX() + node.getWidth() + HORIZONTAL_GAP;
+        double startY = childrenStartY(node);
+
+        for (MindMapNode child : node.getChildren()) {
+            double childHeight = child.getSubtreeExtent(VERTICAL_GAP);
+            if (!child.isManuallyPositioned()) {
+                double newY = startY + (childHeight / 2) - (child.getHeight() / 2);
+                if (child == pathChild) {
+                    child.setX(x);
+                    child.setY(newY);
+                } else {
+                    translateSubtree(child, x - child.getX(), newY - child.getY());
+                }
+            }
+            startY += childHeight + VERTICAL_GAP;
+        }
+    }
+
+    /**
+     * 计算子节点的起始Y坐标，使子树垂直居中于父节点
+     * @param node 父节点
+     * @return 起始Y坐标
+     */
+    private double childrenStartY(MindMapNode node) {
+        List<MindMapNode> children = node.getChildren();
+        double totalHeight = 0;
+        for (MindMapNode child : children) {
+            totalHeight += child.getSubtreeExtent(VERTICAL_GAP);
+        }
+        totalHeight += VERTICAL_GAP * (children.size() - 1);
+        return node.getY() + (node.getHeight() / 2) - (totalHeight / 2);
+    }
+
+    /**
+     * 平移节点及其子树。子节点的位置相对于父节点，
+     * 所以平移会传递给所有非手动定位的后代，手动定位的节点及其子树保持不动
+     * @param node 要平移的节点
+     * @param dx X方向偏移
+     * @param dy Y方向偏移
+     */
+    private void translateSubtree(MindMapNode node, double dx, double dy) {
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        Deque<MindMapNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            MindMapNode current = stack.pop();
+            current.setX(current.getX() + dx);
+            current.setY(current.getY() + dy);
+            for (MindMapNode child : current.getChildren()) {
+                if (!child.isManuallyPositioned()) {
+                    stack.push(child);
+                }
+            }
         }
     }
     
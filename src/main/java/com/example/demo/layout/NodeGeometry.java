@@ -0,0 +1,239 @@
+package com.example.demo.layout;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+
+import java.util.List;
+
+/**
+ * 节点几何存储
+ * 把节点的位置、尺寸和树结构按列存放在基本类型数组中，节点用从0开始的下标表示，
+ * 布局算法在数组上计算，不需要访问节点对象，也没有装箱和哈希查找。
+ * <p>
+ * 节点按先序排列：主根节点的下标为0，每个节点的子树占据紧随其后的一段连续下标，
+ * 子节点的下标总是大于父节点。因此从前往后遍历一次就能自上而下地处理整棵树，
+ * 从后往前遍历一次就能自下而上地汇总子树，都不需要递归。
+ * 主根节点的树之后依次是各个自由节点的树，没有父节点的各个根节点也用nextSibling串起来。
+ * <p>
+ * 每个节点约占50字节，一百万个节点约50MB。
+ */
+public final class NodeGeometry {
+
+    // 没有父节点、子节点或下一个兄弟节点时的下标
+    public static final int NONE = -1;
+
+    private int size;
+    private final MindMapNode[] originals;
+
+    final double[] x;
+    final double[] y;
+    final double[] width;
+    final double[] height;
+    final int[] parent;
+    final int[] firstChild;
+    final int[] nextSibling;
+    final boolean[] manuallyPositioned;
+
+    private NodeGeometry(int capacity) {
+        originals = new MindMapNode[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        width = new double[capacity];
+        height = new double[capacity];
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        manuallyPositioned = new boolean[capacity];
+    }
+
+    /**
+     * 复制思维导图中所有已加载节点的位置、尺寸和树结构，必须在JavaFX线程上调用
+     * @param mindMap 思维导图
+     * @return 几何存储
+     */
+    public static NodeGeometry capture(MindMap mindMap) {
+        MindMapNode rootNode = mindMap.getRootNode();
+        int capacity = mindMap.getNodeCount();
+        NodeGeometry geometry = new NodeGeometry(capacity);
+        // 遍历用的栈和每个节点最后一个子节点的下标，所有树共用
+        MindMapNode[] stack = new MindMapNode[capacity];
+        int[] stackParents = new int[capacity];
+        int[] lastChild = new int[capacity];
+
+        geometry.captureTree(rootNode, stack, stackParents, lastChild);
+        int previousRoot = 0;
+        for (MindMapNode node : mindMap.getRootNodes()) {
+            if (node != rootNode && geometry.size < capacity) {
+                geometry.nextSibling[previousRoot] = geometry.size;
+                previousRoot = geometry.size;
+                geometry.captureTree(node, stack, stackParents, lastChild);
+            }
+        }
+        return geometry;
+    }
+
+    /**
+     * 按先序把一棵树追加到已复制的节点之后
+     * @param treeRoot 树的根节点
+     * @param stack 遍历用的节点栈
+     * @param stackParents 栈中每个节点的父节点下标
+     * @param lastChild 每个节点当前最后一个子节点的下标
+     */
+    private void captureTree(MindMapNode treeRoot, MindMapNode[] stack, int[] stackParents, int[] lastChild) {
+        int capacity = originals.length;
+        int top = 0;
+        stack[top] = treeRoot;
+        stackParents[top++] = NONE;
+        // 子节点逆序入栈，出栈顺序即为先序
+        while (top > 0 && size < capacity) {
+            MindMapNode node = stack[--top];
+            stack[top] = null;
+            int parentIndex = stackParents[top];
+            int index = size++;
+
+            originals[index] = node;
+            x[index] = node.getX();
+            y[index] = node.getY();
+            width[index] = node.getWidth();
+            height[index] = node.getHeight();
+            manuallyPositioned[index] = node.isManuallyPositioned();
+            parent[index] = parentIndex;
+            firstChild[index] = NONE;
+            nextSibling[index] = NONE;
+            if (parentIndex != NONE) {
+                if (firstChild[parentIndex] == NONE) {
+                    firstChild[parentIndex] = index;
+                } else {
+                    nextSibling[lastChild[parentIndex]] = index;
+                }
+                lastChild[parentIndex] = index;
+            }
+
+            List<MindMapNode> children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0 && top < capacity; i--) {
+                stack[top] = children.get(i);
+                stackParents[top++] = index;
+            }
+        }
+    }
+
+    /**
+     * 将计算结果写回原节点，必须在JavaFX线程上调用
+     */
+    public void publish() {
+        for (int i = 0; i < size; i++) {
+            MindMapNode node = originals[i];
+            if (node.getX() != x[i]) {
+                node.setX(x[i]);
+            }
+            if (node.getY() != y[i]) {
+                node.setY(y[i]);
+            }
+            node.setManuallyPositioned(manuallyPositioned[i]);
+        }
+    }
+
+    /**
+     * 获取节点数量
+     * @return 节点数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 获取主根节点的下标
+     * @return 主根节点的下标，没有节点时为{@link #NONE}
+     */
+    public int getRoot() {
+        return size > 0 ? 0 : NONE;
+    }
+
+    /**
+     * 获取节点子树之后的第一个下标，节点的子树为 [index, subtreeEnd(index))
+     * @param index 节点下标
+     * @return 子树结束的下标（不含）
+     */
+    public int subtreeEnd(int index) {
+        for (int i = index; i != NONE; i = parent[i]) {
+            if (nextSibling[i] != NONE) {
+                return nextSibling[i];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 计算每个节点的子树范围：叶子节点为自身高度，
+     * 否则为所有子节点的子树范围加上子节点间距之和，且不小于自身高度，与{@link MindMapNode#getSubtreeExtent(double)}一致
+     * @param gap 子节点之间的间距
+     * @return 按节点下标存放的子树范围
+     */
+    public double[] subtreeExtents(double gap) {
+        double[] extents = new double[size];
+        for (int i = size - 1; i >= 0; i--) {
+            int child = firstChild[i];
+            if (child == NONE) {
+                extents[i] = height[i];
+                continue;
+            }
+            double total = 0;
+            int count = 0;
+            for (; child != NONE; child = nextSibling[child]) {
+                total += extents[child];
+                count++;
+            }
+            total += gap * (count - 1);
+            extents[i] = Math.max(height[i], total);
+        }
+        return extents;
+    }
+
+    public MindMapNode getNode(int index) {
+        return originals[index];
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public void setX(int index, double value) {
+        x[index] = value;
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public void setY(int index, double value) {
+        y[index] = value;
+    }
+
+    public double getWidth(int index) {
+        return width[index];
+    }
+
+    public double getHeight(int index) {
+        return height[index];
+    }
+
+    public int getParent(int index) {
+        return parent[index];
+    }
+
+    public int getFirstChild(int index) {
+        return firstChild[index];
+    }
+
+    public int getNextSibling(int index) {
+        return nextSibling[index];
+    }
+
+    public boolean isManuallyPositioned(int index) {
+        return manuallyPositioned[index];
+    }
+
+    public void setManuallyPositioned(int index, boolean value) {
+        manuallyPositioned[index] = value;
+    }
+}
@@ -2,11 +2,10 @@ package com.example.demo.layout;
 
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
+import com.example.demo.util.Log;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 右侧克隆布局
@@ -14,8 +13,10 @@ import java.util.Map;
  */
 public class RightCloneLayout extends CloneBasedLayout {
 
+    private static final Log LOG = Log.get(RightCloneLayout.class);
+
     @Override
-    protected void doLayout(MindMap mindMap, Map<String, NodeInfo> nodeInfoMap, double canvasWidth, double canvasHeight) {
+    protected void doLayout(MindMap mindMap, double canvasWidth, double canvasHeight) {
         // 获取根节点
         MindMapNode rootNode = mindMap.getRootNode();
 
@@ -24,7 +25,7 @@ public class RightCloneLayout extends CloneBasedLayout {
             rootNode.setX(canvasWidth * 0.2 - rootNode.getWidth());
             rootNode.setY(canvasHeight / 2);
         }
-        System.out.println("Root node position set to: (" + rootNode.getX() + ", " + rootNode.getY() + ")");
+        LOG.debug("Root node position set to: ({}, {})", rootNode.getX(), rootNode.getY());
 
         // 获取所有子节点
         List<MindMapNode> children = new ArrayList<>(rootNode.getChildren());
@@ -100,52 +101,6 @@ public class RightCloneLayout extends CloneBasedLayout {
         }
     }
 
-    /**
-     * 递归计算节点的深度并按层级分组
-     * @param node 当前节点
-     * @param depth 当前深度
-     * @param depthMap 深度映射
-     * @param levelMap 层级映射
-     */
-    private void calculateDepthAndLevels(MindMapNode node, int depth,
-                                        Map<MindMapNode, Integer> depthMap,
-                                        Map<Integer, List<MindMapNode>> levelMap) {
-        // 记录节点深度
-        depthMap.put(node, depth);
-
-        // 将节点添加到对应层级
-        if (!levelMap.containsKey(depth)) {
-            levelMap.put(depth, new ArrayList<>());
-        }
-        levelMap.get(depth).add(node);
-
-        // 递归处理子节点
-        for (MindMapNode child : node.getChildren()) {
-            calculateDepthAndLevels(child, depth + 1, depthMap, levelMap);
-        }
-    }
-
-    /**
-     * 计算节点列表的总高度
-     * @param nodes 节点列表
-     * @return 总高度
-     */
-    private double calculateTotalHeight(List<MindMapNode> nodes) {
-        if (nodes.isEmpty()) {
-            return 0;
-        }
-
-        double totalHeight = 0;
-        for (MindMapNode node : nodes) {
-            totalHeight += node.getHeight();
-        }
-
-        // 添加节点间的间距
-        totalHeight += VERTICAL_GAP * (nodes.size() - 1);
-
-        return totalHeight;
-    }
-
     @Override
     public String getName() {
         return "右侧布局";
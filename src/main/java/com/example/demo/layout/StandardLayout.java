@@ -2,6 +2,7 @@ package com.example.demo.layout;
 
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
+import com.example.demo.util.Log;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,24 +17,26 @@ import java.util.List;
  */
 public class StandardLayout implements LayoutStrategy {
 
+    private static final Log LOG = Log.get(StandardLayout.class);
+
     private static final double HORIZONTAL_GAP = 150; // 水平间距
     private static final double VERTICAL_GAP = 30;    // 垂直间距
     private static final double LEVEL_SCALE = 0.9;    // 每层级缩放比例
 
     @Override
     public void applyLayout(MindMap mindMap, double canvasWidth, double canvasHeight) {
-        System.out.println("StandardLayout.applyLayout called with canvas size: " + canvasWidth + "x" + canvasHeight);
+        LOG.debug("StandardLayout.applyLayout called with canvas size: {}x{}", canvasWidth, canvasHeight);
 
         MindMapNode rootNode = mindMap.getRootNode();
-        System.out.println("Root node: " + rootNode.getText() + ", position before: (" + rootNode.getX() + ", " + rootNode.getY() + ")");
+        LOG.debug("Root node: {}, position before: ({}, {})", rootNode.getText(), rootNode.getX(), rootNode.getY());
 
         // 如果根节点没有被手动定位，则设置其位置在画布中心
         if (!rootNode.isManuallyPositioned()) {
             rootNode.setX(canvasWidth / 2 - rootNode.getWidth() / 2);
             rootNode.setY(canvasHeight / 2 - rootNode.getHeight() / 2);
-            System.out.println("Root node position set to: (" + rootNode.getX() + ", " + rootNode.getY() + ")");
+            LOG.debug("Root node position set to: ({}, {})", rootNode.getX(), rootNode.getY());
         } else {
-            System.out.println("Root node is manually positioned, not changing position.");
+            LOG.debug("Root node is manually positioned, not changing position.");
         }
 
         List<MindMapNode> children = rootNode.getChildren();
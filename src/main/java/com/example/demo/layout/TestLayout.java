@@ -2,28 +2,31 @@ package com.example.demo.layout;
 
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
+import com.example.demo.util.Log;
 
-import java.util.List;
+import java.util.Collection;
 
 /**
  * 测试布局策略实现
  * 一个简单的布局算法，将所有节点放置在明显不同的位置
  */
 public class TestLayout implements LayoutStrategy {
+
+    private static final Log LOG = Log.get(TestLayout.class);
     
     @Override
     public void applyLayout(MindMap mindMap, double canvasWidth, double canvasHeight) {
-        System.out.println("TestLayout.applyLayout called with canvas size: " + canvasWidth + "x" + canvasHeight);
+        LOG.debug("TestLayout.applyLayout called with canvas size: {}x{}", canvasWidth, canvasHeight);
         
         MindMapNode rootNode = mindMap.getRootNode();
         
         // 将根节点放在画布中心
         rootNode.setX(canvasWidth / 2);
         rootNode.setY(canvasHeight / 2);
-        System.out.println("Root node position set to: (" + rootNode.getX() + ", " + rootNode.getY() + ")");
+        LOG.debug("Root node position set to: ({}, {})", rootNode.getX(), rootNode.getY());
         
         // 获取所有节点
-        List<MindMapNode> allNodes = mindMap.getAllNodes();
+        Collection<MindMapNode> allNodes = mindMap.getNodes();
         
         // 将所有非根节点放置在一个圆形上
         int nodeCount = allNodes.size() - 1; // 减去根节点
@@ -41,7 +44,9 @@ public class TestLayout implements LayoutStrategy {
                     // 设置节点位置
                     node.setX(x);
                     node.setY(y);
-                    System.out.println("Node " + node.getText() + " position set to: (" + x + ", " + y + ")");
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("Node {} position set to: ({}, {})", node.getText(), x, y);
+                    }
                     
                     index++;
                 }
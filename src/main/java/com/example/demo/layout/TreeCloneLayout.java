@@ -2,11 +2,12 @@ package com.example.demo.layout;
 
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
+import com.example.demo.util.Log;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 树状克隆布局
@@ -14,8 +15,10 @@ import java.util.Map;
  */
 public class TreeCloneLayout extends CloneBasedLayout {
 
+    private static final Log LOG = Log.get(TreeCloneLayout.class);
+
     @Override
-    protected void doLayout(MindMap mindMap, Map<String, NodeInfo> nodeInfoMap, double canvasWidth, double canvasHeight) {
+    protected void doLayout(MindMap mindMap, double canvasWidth, double canvasHeight) {
         // 获取根节点
         MindMapNode rootNode = mindMap.getRootNode();
 
@@ -24,7 +27,7 @@ public class TreeCloneLayout extends CloneBasedLayout {
             rootNode.setX(canvasWidth / 2 - rootNode.getWidth() / 2);
             rootNode.setY(canvasHeight / 2 - rootNode.getHeight() / 2);
         }
-        System.out.println("Root node position set to: (" + rootNode.getX() + ", " + rootNode.getY() + ")");
+        LOG.debug("Root node position set to: ({}, {})", rootNode.getX(), rootNode.getY());
 
         // 获取所有子节点
         List<MindMapNode> children = new ArrayList<>(rootNode.getChildren());
@@ -36,22 +39,16 @@ public class TreeCloneLayout extends CloneBasedLayout {
         List<MindMapNode> leftNodes = new ArrayList<>();
         List<MindMapNode> rightNodes = new ArrayList<>();
 
-        // 计算每个节点及其子节点的高度
-        Map<MindMapNode, Double> nodeHeightMap = new HashMap<>();
-        for (MindMapNode child : children) {
-            nodeHeightMap.put(child, calculateNodeHeight(child));
-        }
-
         // 平均分配节点到左右两侧，使两侧高度尽量平衡
         double leftHeight = 0;
         double rightHeight = 0;
 
-        // 按节点高度降序排序
-        children.sort((a, b) -> Double.compare(nodeHeightMap.get(b), nodeHeightMap.get(a)));
+        // 按节点高度降序排序，子树高度由节点缓存
+        children.sort((a, b) -> Double.compare(calculateNodeHeight(b), calculateNodeHeight(a)));
 
         // 贪心算法分配节点
         for (MindMapNode child : children) {
-            double height = nodeHeightMap.get(child);
+            double height = calculateNodeHeight(child);
             if (leftHeight <= rightHeight) {
                 leftNodes.add(child);
                 leftHeight += height;
@@ -103,26 +100,247 @@ public class TreeCloneLayout extends CloneBasedLayout {
     }
 
     /**
-     * 递归计算节点及其子节点的总高度
+     * 在几何存储上布局，规则与节点上的布局相同
+     * 每个第一层子节点的子树在先序中占据一段连续下标，整段都在同一侧，
+     * 按先序逐个放置子树中每个节点的子节点即可，不需要递归
+     */
+    @Override
+    protected boolean doLayout(NodeGeometry geometry, double canvasWidth, double canvasHeight) {
+        int root = geometry.getRoot();
+        double[] xs = geometry.x;
+        double[] ys = geometry.y;
+        double[] widths = geometry.width;
+        double[] heights = geometry.height;
+        int[] firstChild = geometry.firstChild;
+        int[] nextSibling = geometry.nextSibling;
+
+        xs[root] = canvasWidth / 2 - widths[root] / 2;
+        ys[root] = canvasHeight / 2 - heights[root] / 2;
+
+        int count = 0;
+        for (int child = firstChild[root]; child != NodeGeometry.NONE; child = nextSibling[child]) {
+            count++;
+        }
+        if (count == 0) {
+            return true;
+        }
+        int[] children = new int[count];
+        count = 0;
+        for (int child = firstChild[root]; child != NodeGeometry.NONE; child = nextSibling[child]) {
+            children[count++] = child;
+        }
+
+        // 按子树高度降序排序后贪心分配到左右两侧
+        double[] extents = geometry.subtreeExtents(VERTICAL_GAP);
+        sortByDescendingKey(children, extents);
+        boolean[] onLeft = new boolean[count];
+        double leftHeight = 0;
+        double rightHeight = 0;
+        double leftTotal = 0;
+        double rightTotal = 0;
+        int leftCount = 0;
+        for (int i = 0; i < count; i++) {
+            int child = children[i];
+            if (leftHeight <= rightHeight) {
+                onLeft[i] = true;
+                leftHeight += extents[child];
+                leftTotal += heights[child];
+                leftCount++;
+            } else {
+                rightHeight += extents[child];
+                rightTotal += heights[child];
+            }
+        }
+        leftTotal += VERTICAL_GAP * (leftCount - 1);
+        rightTotal += VERTICAL_GAP * (count - leftCount - 1);
+
+        double leftY = ys[root] - (leftTotal / 2);
+        double rightY = ys[root] - (rightTotal / 2);
+        double leftX = xs[root] - HORIZONTAL_GAP;
+        double rightX = xs[root] + widths[root] + HORIZONTAL_GAP;
+        for (int i = 0; i < count; i++) {
+            int top = children[i];
+            if (onLeft[i]) {
+                xs[top] = leftX - widths[top];
+                ys[top] = leftY;
+                leftY += heights[top] + VERTICAL_GAP;
+            } else {
+                xs[top] = rightX;
+                ys[top] = rightY;
+                rightY += heights[top] + VERTICAL_GAP;
+            }
+
+            // 第二层以下只按自身高度排列，左侧子节点右对齐到父节点左边，右侧子节点左对齐到父节点右边
+            boolean left = onLeft[i];
+            int end = geometry.subtreeEnd(top);
+            for (int node = top; node < end; node++) {
+                int first = firstChild[node];
+                if (first == NodeGeometry.NONE) {
+                    continue;
+                }
+                double totalHeight = 0;
+                int childCount = 0;
+                for (int child = first; child != NodeGeometry.NONE; child = nextSibling[child]) {
+                    totalHeight += heights[child];
+                    childCount++;
+                }
+                totalHeight += VERTICAL_GAP * (childCount - 1);
+
+                double startY = ys[node] + (heights[node] / 2) - (totalHeight / 2);
+                for (int child = first; child != NodeGeometry.NONE; child = nextSibling[child]) {
+                    xs[child] = left
+                            ? xs[node] - HORIZONTAL_GAP - widths[child]
+                            : xs[node] + widths[node] + HORIZONTAL_GAP;
+                    ys[child] = startY;
+                    startY += heights[child] + VERTICAL_GAP;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按键值降序稳定排序，与List.sort的结果一致
+     * @param items 节点下标
+     * @param keys 按节点下标存放的键值
+     */
+    private static void sortByDescendingKey(int[] items, double[] keys) {
+        int[] buffer = new int[items.length];
+        for (int width = 1; width < items.length; width *= 2) {
+            for (int low = 0; low < items.length - width; low += 2 * width) {
+                int middle = low + width;
+                int high = Math.min(low + 2 * width, items.length);
+                System.arraycopy(items, low, buffer, low, high - low);
+                int i = low;
+                int j = middle;
+                for (int k = low; k < high; k++) {
+                    if (j >= high || (i < middle && Double.compare(keys[buffer[j]], keys[buffer[i]]) <= 0)) {
+                        items[k] = buffer[i++];
+                    } else {
+                        items[k] = buffer[j++];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算节点及其子节点的总高度
+     * 取节点自身高度和子节点总高度（含间距）的最大值，结果由节点缓存
      * @param node 节点
      * @return 总高度
      */
     private double calculateNodeHeight(MindMapNode node) {
-        List<MindMapNode> children = node.getChildren();
-        if (children.isEmpty()) {
-            return node.getHeight();
+        return node.getSubtreeExtent(VERTICAL_GAP);
+    }
+
+    /**
+     * 增量布局
+     * 第二层以下的子节点只按自身高度排列，所以一个节点的子节点变化只影响它自己的子树；
+     * 只要根节点位置不变，并且根节点的子节点按子树高度重新分配后左右两侧及其顺序都不变，
+     * 就只需要重新布局变化节点的子树，否则改为完整布局
+     */
+    @Override
+    public boolean applyIncrementalLayout(MindMap mindMap, MindMapNode changedNode,
+                                          double canvasWidth, double canvasHeight) {
+        MindMapNode rootNode = mindMap.getRootNode();
+        if (changedNode == rootNode) {
+            return false;
+        }
+
+        // 找到变化节点所在的第一层子节点
+        MindMapNode topNode = changedNode;
+        while (topNode.getParent() != null && topNode.getParent() != rootNode) {
+            topNode = topNode.getParent();
+        }
+        if (topNode.getParent() != rootNode) {
+            // 自由节点的子树不参与布局，只需和完整布局一样标记为手动定位
+            for (MindMapNode child : changedNode.getChildren()) {
+                child.setManuallyPositioned(true);
+            }
+            return true;
+        }
+
+        // 完整布局总会把根节点放在画布中心
+        if (rootNode.getX() != canvasWidth / 2 - rootNode.getWidth() / 2
+                || rootNode.getY() != canvasHeight / 2 - rootNode.getHeight() / 2) {
+            return false;
+        }
+        if (!isTopLevelArrangementUnchanged(rootNode)) {
+            return false;
         }
 
-        double childrenHeight = 0;
+        // 与完整布局一样，先清除子树的手动定位标志，布局后再重新设置
+        setDescendantsManuallyPositioned(changedNode, false);
+        double rootCenterX = rootNode.getX() + rootNode.getWidth() / 2;
+        if (topNode.getX() + topNode.getWidth() / 2 < rootCenterX) {
+            layoutChildrenLeft(changedNode, changedNode.getX() - HORIZONTAL_GAP);
+        } else {
+            layoutChildrenRight(changedNode, changedNode.getX() + changedNode.getWidth() + HORIZONTAL_GAP);
+        }
+        setDescendantsManuallyPositioned(changedNode, true);
+        return true;
+    }
+
+    /**
+     * 按完整布局的规则重新分配根节点的子节点，判断每一侧的节点及其上下顺序是否与当前位置一致
+     * @param rootNode 根节点
+     * @return 是否不变
+     */
+    private boolean isTopLevelArrangementUnchanged(MindMapNode rootNode) {
+        List<MindMapNode> children = new ArrayList<>(rootNode.getChildren());
+        children.sort((a, b) -> Double.compare(calculateNodeHeight(b), calculateNodeHeight(a)));
+
+        List<MindMapNode> leftNodes = new ArrayList<>();
+        List<MindMapNode> rightNodes = new ArrayList<>();
+        double leftHeight = 0;
+        double rightHeight = 0;
         for (MindMapNode child : children) {
-            childrenHeight += calculateNodeHeight(child);
+            double height = calculateNodeHeight(child);
+            if (leftHeight <= rightHeight) {
+                leftNodes.add(child);
+                leftHeight += height;
+            } else {
+                rightNodes.add(child);
+                rightHeight += height;
+            }
         }
 
-        // 添加子节点间的间距
-        childrenHeight += VERTICAL_GAP * (children.size() - 1);
+        double rootCenterX = rootNode.getX() + rootNode.getWidth() / 2;
+        return isPlacedInOrder(leftNodes, rootCenterX, true) && isPlacedInOrder(rightNodes, rootCenterX, false);
+    }
 
-        // 返回节点自身高度和子节点总高度的最大值
-        return Math.max(node.getHeight(), childrenHeight);
+    /**
+     * 判断节点是否都位于指定一侧，并且从上到下的顺序与列表顺序一致
+     * @param nodes 节点列表
+     * @param rootCenterX 根节点中心X坐标
+     * @param left 是否为左侧
+     * @return 是否一致
+     */
+    private boolean isPlacedInOrder(List<MindMapNode> nodes, double rootCenterX, boolean left) {
+        double previousY = Double.NEGATIVE_INFINITY;
+        for (MindMapNode node : nodes) {
+            boolean onLeft = node.getX() + node.getWidth() / 2 < rootCenterX;
+            if (onLeft != left || node.getY() <= previousY) {
+                return false;
+            }
+            previousY = node.getY();
+        }
+        return true;
+    }
+
+    /**
+     * 设置节点所有后代的手动定位标志
+     * @param node 节点
+     * @param manuallyPositioned 是否手动定位
+     */
+    private void setDescendantsManuallyPositioned(MindMapNode node, boolean manuallyPositioned) {
+        Deque<MindMapNode> stack = new ArrayDeque<>(node.getChildren());
+        while (!stack.isEmpty()) {
+            MindMapNode current = stack.pop();
+            current.setManuallyPositioned(manuallyPositioned);
+            stack.addAll(current.getChildren());
+        }
     }
 
     /**
@@ -201,52 +419,6 @@ public class TreeCloneLayout extends CloneBasedLayout {
         }
     }
 
-    /**
-     * 递归计算节点的深度并按层级分组
-     * @param node 当前节点
-     * @param depth 当前深度
-     * @param depthMap 深度映射
-     * @param levelMap 层级映射
-     */
-    private void calculateDepthAndLevels(MindMapNode node, int depth,
-                                        Map<MindMapNode, Integer> depthMap,
-                                        Map<Integer, List<MindMapNode>> levelMap) {
-        // 记录节点深度
-        depthMap.put(node, depth);
-
-        // 将节点添加到对应层级
-        if (!levelMap.containsKey(depth)) {
-            levelMap.put(depth, new ArrayList<>());
-        }
-        levelMap.get(depth).add(node);
-
-        // 递归处理子节点
-        for (MindMapNode child : node.getChildren()) {
-            calculateDepthAndLevels(child, depth + 1, depthMap, levelMap);
-        }
-    }
-
-    /**
-     * 计算节点列表的总宽度
-     * @param nodes 节点列表
-     * @return 总宽度
-     */
-    private double calculateTotalWidth(List<MindMapNode> nodes) {
-        if (nodes.isEmpty()) {
-            return 0;
-        }
-
-        double totalWidth = 0;
-        for (MindMapNode node : nodes) {
-            totalWidth += node.getWidth();
-        }
-
-        // 添加节点间的间距
-        totalWidth += HORIZONTAL_GAP * (nodes.size() - 1);
-
-        return totalWidth;
-    }
-
     @Override
     public String getName() {
         return "自动布局";
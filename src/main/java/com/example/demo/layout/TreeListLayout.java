@@ -2,10 +2,7 @@ package com.example.demo.layout;
 
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
-
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import com.example.demo.util.Log;
 
 /**
  * 树形列表布局策略实现
@@ -13,45 +10,51 @@ import java.util.Map;
  */
 public class TreeListLayout implements LayoutStrategy {
 
+    private static final Log LOG = Log.get(TreeListLayout.class);
+
     private static final double HORIZONTAL_GAP = 180; // 水平间距
     private static final double VERTICAL_GAP = 35;    // 垂直间距
 
     @Override
     public void applyLayout(MindMap mindMap, double canvasWidth, double canvasHeight) {
-        System.out.println("TreeListLayout.applyLayout called with canvas size: " + canvasWidth + "x" + canvasHeight);
+        LOG.debug("TreeListLayout.applyLayout called with canvas size: {}x{}", canvasWidth, canvasHeight);
 
         MindMapNode rootNode = mindMap.getRootNode();
 
-        // 计算每个节点的深度和在其层级中的索引
-        Map<MindMapNode, Integer> depthMap = new HashMap<>();
-        Map<MindMapNode, Integer> indexMap = new HashMap<>();
-
         // 计算节点总数，用于确定垂直间距
-        int totalNodes = mindMap.getAllNodes().size();
+        int totalNodes = mindMap.getNodeCount();
         double availableHeight = canvasHeight - 100; // 留出上下边距
         double nodeSpacing = Math.min(VERTICAL_GAP, availableHeight / (totalNodes + 1));
 
-        // 计算节点深度和索引
-        calculateDepthAndIndex(rootNode, 0, 0, depthMap, indexMap);
-
-        // 获取最大深度
-        int maxDepth = 0;
-        for (int depth : depthMap.values()) {
-            maxDepth = Math.max(maxDepth, depth);
+        // 按先序遍历，节点的索引就是先序中的序号，与树形列表中的行号一致
+        LayoutScratch scratch = LayoutScratch.forCurrentThread();
+        try {
+            scratch.collectPreorder(rootNode);
+            layoutNodes(scratch, canvasHeight, nodeSpacing);
+        } finally {
+            scratch.release();
         }
+    }
 
+    /**
+     * 按深度和索引布局节点，只处理根节点的子树，自由节点保持原位
+     * @param scratch 先序排列的节点
+     * @param canvasHeight 画布高度
+     * @param nodeSpacing 节点的垂直间距
+     */
+    private void layoutNodes(LayoutScratch scratch, double canvasHeight, double nodeSpacing) {
         // 计算每个深度级别的节点数量
-        Map<Integer, Integer> depthCountMap = new HashMap<>();
-        for (int depth : depthMap.values()) {
-            depthCountMap.put(depth, depthCountMap.getOrDefault(depth, 0) + 1);
+        int[] depthCounts = scratch.levelCounts();
+        for (int index = 0; index < scratch.size(); index++) {
+            depthCounts[scratch.depth(index)]++;
         }
 
         // 布局所有节点
-        for (MindMapNode node : mindMap.getAllNodes()) {
+        for (int index = 0; index < scratch.size(); index++) {
+            MindMapNode node = scratch.node(index);
             if (!node.isManuallyPositioned()) {
-                int depth = depthMap.get(node);
-                int index = indexMap.get(node);
-                int nodesAtDepth = depthCountMap.get(depth);
+                int depth = scratch.depth(index);
+                int nodesAtDepth = depthCounts[depth];
 
                 // 计算X坐标 - 基于深度
                 double x = 50 + (depth * HORIZONTAL_GAP);
@@ -65,39 +68,17 @@ public class TreeListLayout implements LayoutStrategy {
                 node.setX(x);
                 node.setY(y);
 
-                System.out.println("Node " + node.getText() + " (depth=" + depth + ", index=" + index +
-                                  ") positioned at (" + x + ", " + y + ")");
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Node {} (depth={}, index={}) positioned at ({}, {})", node.getText(), depth, index, x, y);
+                }
             } else {
-                System.out.println("Node " + node.getText() + " is manually positioned, not changing position.");
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Node {} is manually positioned, not changing position.", node.getText());
+                }
             }
         }
     }
 
-    /**
-     * 递归计算节点的深度和索引
-     * @param node 当前节点
-     * @param depth 当前深度
-     * @param index 当前索引
-     * @param depthMap 深度映射
-     * @param indexMap 索引映射
-     * @return 下一个索引
-     */
-    private int calculateDepthAndIndex(MindMapNode node, int depth, int index,
-                                      Map<MindMapNode, Integer> depthMap,
-                                      Map<MindMapNode, Integer> indexMap) {
-        // 记录节点深度和索引
-        depthMap.put(node, depth);
-        indexMap.put(node, index);
-
-        // 递归处理子节点
-        int nextIndex = index + 1;
-        for (MindMapNode child : node.getChildren()) {
-            nextIndex = calculateDepthAndIndex(child, depth + 1, nextIndex, depthMap, indexMap);
-        }
-
-        return nextIndex;
-    }
-
     @Override
     public String getName() {
         return "树形列表布局";
@@ -1,10 +1,24 @@
 package com.example.demo.model;
 
+import com.example.demo.event.MindMapChanges;
+import com.example.demo.event.MindMapEvent;
+import javafx.event.EventHandler;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  * 表示一个完整的思维导图
@@ -17,6 +31,28 @@ public class MindMap implements Serializable {
     private boolean modified;
     private String name;
     private Map<String, MindMapNode> nodeMap;
+    // 所有节点的只读视图，不复制
+    private transient Collection<MindMapNode> nodesView;
+    // 没有父节点的节点：主根节点和各个自由节点，按加入的顺序排列
+    private transient Set<MindMapNode> rootNodes;
+    // 空间索引，第一次使用时创建
+    private transient NodeSpatialIndex spatialIndex;
+    // 下一个加入的节点的绘制顺序
+    private transient long nextZOrder;
+    // 结构或几何信息的修改次数，用于判断后台计算的结果是否已经过期
+    private transient long modCount;
+    // 被标记为已修改的次数，用于判断后台保存期间是否又有编辑
+    private transient long editCount;
+    // 部分加载时用于读取尚未加载的分支，全部加载后为null
+    private transient NodeLoader nodeLoader;
+    // 编辑监听器，例如编辑日志
+    private transient MindMapEditListener editListener;
+    // 修改事件的订阅者，没有订阅者时不记录修改
+    private transient List<EventHandler<? super MindMapEvent>> changeHandlers;
+    // 尚未发出的修改记录
+    private transient MindMapChanges pendingChanges;
+    // beginUpdate的嵌套层数，为0时每次修改立即发出
+    private transient int updateDepth;
 
     /**
      * 创建一个新的思维导图
@@ -28,7 +64,22 @@ public class MindMap implements Serializable {
         this.modified = false;
         this.name = "未命名";
         this.nodeMap = new HashMap<>();
-        this.nodeMap.put(rootNode.getId(), rootNode);
+        this.rootNodes = new LinkedHashSet<>();
+        register(rootNode);
+    }
+
+    /**
+     * 使用已有的根节点创建思维导图，用于从文件中恢复思维导图
+     * 根节点的子节点不会自动加入映射表，需要通过{@link #addNodeToMap(MindMapNode)}逐个加入
+     * @param rootNode 根节点
+     */
+    public MindMap(MindMapNode rootNode) {
+        this.rootNode = rootNode;
+        this.modified = false;
+        this.name = "未命名";
+        this.nodeMap = new HashMap<>();
+        this.rootNodes = new LinkedHashSet<>();
+        register(rootNode);
     }
 
     /**
@@ -81,6 +132,18 @@ public class MindMap implements Serializable {
      */
     public void setModified(boolean modified) {
         this.modified = modified;
+        if (modified) {
+            editCount++;
+        }
+    }
+
+    /**
+     * 获取思维导图被标记为已修改的次数
+     * 任何编辑都会使其增加，包括文本和样式的修改
+     * @return 编辑次数
+     */
+    public long getEditCount() {
+        return editCount;
     }
 
     /**
@@ -101,11 +164,20 @@ public class MindMap implements Serializable {
 
     /**
      * 根据ID获取节点
+     * 部分加载时，如果节点尚未加载，会先加载它所在的分支
      * @param id 节点ID
      * @return 节点对象，如果不存在则返回null
      */
     public MindMapNode getNodeById(String id) {
-        return nodeMap.get(id);
+        MindMapNode node = nodeMap.get(id);
+        while (node == null && nodeLoader != null) {
+            MindMapNode ancestor = nodeLoader.findLoadedAncestor(id);
+            if (ancestor == null || !loadChildren(ancestor)) {
+                break;
+            }
+            node = nodeMap.get(id);
+        }
+        return node;
     }
 
     /**
@@ -113,7 +185,7 @@ public class MindMap implements Serializable {
      * @param node 要添加的节点
      */
     public void addNodeToMap(MindMapNode node) {
-        nodeMap.put(node.getId(), node);
+        register(node);
     }
 
     /**
@@ -121,23 +193,93 @@ public class MindMap implements Serializable {
      * @param id 要移除的节点ID
      */
     public void removeNodeFromMap(String id) {
-        nodeMap.remove(id);
+        unregister(nodeMap.get(id));
+    }
+
+    /**
+     * 获取节点总数
+     * 部分加载时只包括已加载的节点
+     * @return 节点数量
+     */
+    public int getNodeCount() {
+        return nodeMap.size();
+    }
+
+    /**
+     * 获取结构或几何信息的修改次数
+     * 节点的增删、父子关系以及位置和大小的任何变化都会使其增加
+     * @return 修改次数
+     */
+    public long getModCount() {
+        return modCount;
     }
 
     /**
-     * 获取所有节点
+     * 获取所有节点的副本
+     * 每次调用都会复制，只在遍历期间需要增删节点时使用，其他情况使用{@link #getNodes()}或{@link #forEachNode}
+     * 部分加载时只包括已加载的节点
      * @return 所有节点的列表
      */
     public List<MindMapNode> getAllNodes() {
         return new ArrayList<>(nodeMap.values());
     }
 
+    /**
+     * 获取所有节点的只读视图，不复制，遍历期间不能增删节点
+     * 部分加载时只包括已加载的节点
+     * @return 所有节点
+     */
+    public Collection<MindMapNode> getNodes() {
+        if (nodesView == null) {
+            nodesView = Collections.unmodifiableCollection(nodeMap.values());
+        }
+        return nodesView;
+    }
+
+    /**
+     * 对每个节点执行操作，不创建迭代器，遍历期间不能增删节点
+     * @param action 操作
+     */
+    public void forEachNode(Consumer<? super MindMapNode> action) {
+        nodeMap.values().forEach(action);
+    }
+
+    /**
+     * 获取所有节点的可分割迭代器，可用于并行流，例如
+     * {@code StreamSupport.stream(mindMap.nodeSpliterator(), true)}
+     * 迭代器知道准确的节点数量，并行遍历时按哈希表的桶均匀分割。遍历期间不能增删节点。
+     * @return 可分割迭代器
+     */
+    public Spliterator<MindMapNode> nodeSpliterator() {
+        return nodeMap.values().spliterator();
+    }
+
+    /**
+     * 获取没有父节点的节点：主根节点总是第一个，之后是各个自由节点，按加入的顺序排列
+     * 随节点的增删和父子关系的变化维护，不需要扫描所有节点
+     * @return 只读视图
+     */
+    public Set<MindMapNode> getRootNodes() {
+        return Collections.unmodifiableSet(rootNodes);
+    }
+
+    /**
+     * 获取自由节点的数量，即除主根节点之外没有父节点的节点数量
+     * @return 自由节点数量
+     */
+    public int getFreeNodeCount() {
+        return rootNodes.size() - 1;
+    }
+
     /**
      * 清除所有选中状态
      */
     public void clearAllSelections() {
-        for (MindMapNode node : nodeMap.values()) {
-            node.setSelected(false);
+        beginUpdate();
+        try {
+            nodeMap.values().forEach(node -> node.setSelected(false));
+        } finally {
+            endUpdate();
         }
     }
 
@@ -148,6 +290,18 @@ public class MindMap implements Serializable {
      * @return 新创建的子节点
      */
     public MindMapNode addChildNode(MindMapNode parent, String text) {
+        beginUpdate();
+        try {
+            return doAddChildNode(parent, text);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    private MindMapNode doAddChildNode(MindMapNode parent, String text) {
+        // 先加载原有的子节点，保持子节点顺序
+        loadChildren(parent);
+
         // 创建新节点
         MindMapNode child = new MindMapNode(text);
 
@@ -165,10 +319,10 @@ public class MindMap implements Serializable {
         parent.addChild(child);
 
         // 添加到节点映射
-        nodeMap.put(child.getId(), child);
+        register(child);
 
         // 标记为已修改
-        setModified(true);
+        nodeEdited(child);
 
         return child;
     }
@@ -186,11 +340,17 @@ public class MindMap implements Serializable {
         }
 
         MindMapNode parent = sibling.getParent();
-        MindMapNode newNode = new MindMapNode(text);
-        parent.addChild(newNode);
-        nodeMap.put(newNode.getId(), newNode);
-        setModified(true);
-        return newNode;
+        beginUpdate();
+        try {
+            loadChildren(parent);
+            MindMapNode newNode = new MindMapNode(text);
+            parent.addChild(newNode);
+            register(newNode);
+            nodeEdited(newNode);
+            return newNode;
+        } finally {
+            endUpdate();
+        }
     }
 
     /**
@@ -199,8 +359,28 @@ public class MindMap implements Serializable {
      */
     public void addFreeNode(MindMapNode node) {
         // 将节点添加到映射表中
-        nodeMap.put(node.getId(), node);
+        register(node);
+        nodeEdited(node);
+    }
+
+    /**
+     * 设置编辑监听器
+     * @param editListener 编辑监听器，为null时不再通知
+     */
+    public void setEditListener(MindMapEditListener editListener) {
+        this.editListener = editListener;
+    }
+
+    /**
+     * 标记节点被用户修改，并通知编辑监听器
+     * 修改节点的文本、样式、位置或父节点之后调用
+     * @param node 被修改的节点
+     */
+    public void nodeEdited(MindMapNode node) {
         setModified(true);
+        if (editListener != null) {
+            editListener.nodeEdited(node);
+        }
     }
 
     /**
@@ -214,18 +394,27 @@ public class MindMap implements Serializable {
             return false;
         }
 
-        // 递归删除所有子节点
-        deleteNodeRecursively(node);
+        if (editListener != null) {
+            editListener.nodeDeleted(node);
+        }
 
-        // 从父节点中移除
-        MindMapNode parent = node.getParent();
-        boolean result = parent.removeChild(node);
+        beginUpdate();
+        try {
+            // 递归删除所有子节点
+            deleteNodeRecursively(node);
 
-        if (result) {
-            setModified(true);
-        }
+            // 从父节点中移除，自由节点没有父节点
+            MindMapNode parent = node.getParent();
+            boolean result = parent == null || parent.removeChild(node);
+
+            if (result) {
+                setModified(true);
+            }
 
-        return result;
+            return result;
+        } finally {
+            endUpdate();
+        }
     }
 
     /**
@@ -242,6 +431,296 @@ public class MindMap implements Serializable {
         }
 
         // 从映射表中移除当前节点
+        unregister(node);
+    }
+
+    /**
+     * 设置节点加载器，使思维导图进入部分加载状态
+     * 已加载但子节点列表为空的节点会根据加载器标记尚未加载的子节点数量
+     * @param nodeLoader 节点加载器，为null时释放原来的加载器
+     */
+    public void setNodeLoader(NodeLoader nodeLoader) {
+        if (this.nodeLoader != null && this.nodeLoader != nodeLoader) {
+            this.nodeLoader.close();
+        }
+        this.nodeLoader = nodeLoader;
+        for (MindMapNode node : nodeMap.values()) {
+            node.setUnloadedChildCount(nodeLoader != null && node.getChildren().isEmpty()
+                    ? nodeLoader.getChildCount(node) : 0);
+        }
+    }
+
+    /**
+     * 判断思维导图是否已经全部加载
+     * @return 是否全部加载
+     */
+    public boolean isFullyLoaded() {
+        return nodeLoader == null;
+    }
+
+    /**
+     * 获取文件中的节点总数，全部加载后与{@link #getNodeCount()}相同
+     * @return 节点总数
+     */
+    public int getTotalNodeCount() {
+        return nodeLoader != null ? nodeLoader.getTotalNodeCount() : nodeMap.size();
+    }
+
+    /**
+     * 加载节点尚未加载的子节点
+     * @param node 节点
+     * @return 是否加载了新的节点
+     */
+    public boolean loadChildren(MindMapNode node) {
+        if (nodeLoader == null || !node.hasUnloadedChildren() || node.getOwner() != this) {
+            return false;
+        }
+
+        List<MindMapNode> children = nodeLoader.loadChildren(node);
+        node.setUnloadedChildCount(0);
+        beginUpdate();
+        try {
+            for (MindMapNode child : children) {
+                node.addChild(child);
+                register(child);
+                child.setUnloadedChildCount(nodeLoader.getChildCount(child));
+            }
+        } finally {
+            endUpdate();
+        }
+        return !children.isEmpty();
+    }
+
+    /**
+     * 加载所有尚未加载的节点并释放节点加载器，例如在保存之前
+     */
+    public void loadAll() {
+        if (nodeLoader == null) {
+            return;
+        }
+
+        Deque<MindMapNode> pending = new ArrayDeque<>();
+        for (MindMapNode node : nodeMap.values()) {
+            if (node.hasUnloadedChildren()) {
+                pending.push(node);
+            }
+        }
+        beginUpdate();
+        try {
+            while (!pending.isEmpty()) {
+                MindMapNode node = pending.pop();
+                if (loadChildren(node)) {
+                    for (MindMapNode child : node.getChildren()) {
+                        if (child.hasUnloadedChildren()) {
+                            pending.push(child);
+                        }
+                    }
+                }
+            }
+        } finally {
+            endUpdate();
+        }
+        setNodeLoader(null);
+    }
+
+    /**
+     * 获取空间索引，用于按区域查找节点和连线
+     * @return 空间索引
+     */
+    public NodeSpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = new NodeSpatialIndex(nodeMap.values());
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * 订阅修改事件
+     * 每次修改之后，或者最外层的{@link #endUpdate()}之后，在修改所在的线程上收到一个
+     * {@link MindMapEvent#MODEL_CHANGED}事件，包含这期间合并后的所有修改。
+     * 处理事件时对思维导图的修改会在处理完成后作为下一批发出。
+     * 自动布局引起的位置变化也会发出，需要区分用户编辑时使用{@link #setEditListener}。
+     * @param handler 事件处理器
+     */
+    public void addChangeHandler(EventHandler<? super MindMapEvent> handler) {
+        if (changeHandlers == null) {
+            changeHandlers = new ArrayList<>();
+        }
+        changeHandlers.add(handler);
+    }
+
+    /**
+     * 取消订阅修改事件
+     * @param handler 事件处理器
+     */
+    public void removeChangeHandler(EventHandler<? super MindMapEvent> handler) {
+        if (changeHandlers != null) {
+            changeHandlers.remove(handler);
+        }
+    }
+
+    /**
+     * 开始一组修改，直到对应的{@link #endUpdate()}之前的修改合并为一批发出
+     * 可以嵌套，只有最外层结束时才发出
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * 结束一组修改，最外层结束时发出合并后的修改
+     */
+    public void endUpdate() {
+        if (updateDepth > 0 && --updateDepth == 0) {
+            fireChanges();
+        }
+    }
+
+    /**
+     * 作为一组修改执行操作，等同于在操作前后调用{@link #beginUpdate()}和{@link #endUpdate()}
+     * @param edit 修改操作
+     */
+    public void update(Runnable edit) {
+        beginUpdate();
+        try {
+            edit.run();
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * 节点的位置、大小或父节点发生变化时由节点调用
+     * @param node 发生变化的节点
+     */
+    void nodeGeometryChanged(MindMapNode node) {
+        modCount++;
+        if (spatialIndex != null) {
+            spatialIndex.markDirty(node);
+        }
+        if (changeHandlers != null && !changeHandlers.isEmpty()) {
+            changes().record(node, MindMapChanges.Type.GEOMETRY);
+            fireChangesIfIdle();
+        }
+    }
+
+    /**
+     * 节点的父节点发生变化时由节点调用
+     * @param node 发生变化的节点
+     */
+    void nodeParentChanged(MindMapNode node) {
+        if (node.getParent() == null) {
+            rootNodes.add(node);
+        } else {
+            rootNodes.remove(node);
+        }
+        if (changeHandlers != null && !changeHandlers.isEmpty()) {
+            changes().recordMoved(node);
+        }
+        nodeGeometryChanged(node);
+    }
+
+    /**
+     * 节点的文本、样式或选中状态发生变化时由节点调用
+     * @param node 发生变化的节点
+     * @param type 修改类型
+     */
+    void nodeChanged(MindMapNode node, MindMapChanges.Type type) {
+        if (changeHandlers != null && !changeHandlers.isEmpty()) {
+            changes().record(node, type);
+            fireChangesIfIdle();
+        }
+    }
+
+    private MindMapChanges changes() {
+        if (pendingChanges == null) {
+            pendingChanges = new MindMapChanges();
+        }
+        return pendingChanges;
+    }
+
+    private void fireChangesIfIdle() {
+        if (updateDepth == 0) {
+            fireChanges();
+        }
+    }
+
+    /**
+     * 发出尚未发出的修改，处理器引起的修改在之后作为新的一批发出
+     */
+    private void fireChanges() {
+        while (pendingChanges != null) {
+            MindMapChanges changes = pendingChanges;
+            pendingChanges = null;
+            if (changes.isEmpty() || changeHandlers == null || changeHandlers.isEmpty()) {
+                continue;
+            }
+            MindMapEvent event = new MindMapEvent(this, changes);
+            updateDepth++;
+            try {
+                // 复制一份，处理器可能在处理期间取消订阅
+                for (EventHandler<? super MindMapEvent> handler : new ArrayList<>(changeHandlers)) {
+                    handler.handle(event);
+                }
+            } finally {
+                updateDepth--;
+            }
+        }
+    }
+
+    /**
+     * 将节点加入映射表，并让节点在变化时通知本思维导图
+     * @param node 要加入的节点
+     */
+    private void register(MindMapNode node) {
+        nodeMap.put(node.getId(), node);
+        node.setOwner(this);
+        node.setZOrder(nextZOrder++);
+        if (node.getParent() == null) {
+            rootNodes.add(node);
+        }
+        if (changeHandlers != null && !changeHandlers.isEmpty()) {
+            changes().recordAdded(node);
+        }
+        nodeGeometryChanged(node);
+    }
+
+    /**
+     * 将节点从映射表和空间索引中移除
+     * @param node 要移除的节点，可以为null
+     */
+    private void unregister(MindMapNode node) {
+        if (node == null) {
+            return;
+        }
         nodeMap.remove(node.getId());
+        rootNodes.remove(node);
+        modCount++;
+        if (node.getOwner() == this) {
+            node.setOwner(null);
+        }
+        if (spatialIndex != null) {
+            spatialIndex.remove(node);
+        }
+        if (changeHandlers != null && !changeHandlers.isEmpty()) {
+            changes().recordRemoved(node);
+            fireChangesIfIdle();
+        }
+    }
+
+    /**
+     * 反序列化后重新关联节点并收集根节点，空间索引在下一次使用时重建
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        rootNodes = new LinkedHashSet<>();
+        rootNodes.add(rootNode);
+        for (MindMapNode node : nodeMap.values()) {
+            node.setOwner(this);
+            node.setZOrder(nextZOrder++);
+            if (node.getParent() == null) {
+                rootNodes.add(node);
+            }
+        }
     }
 }
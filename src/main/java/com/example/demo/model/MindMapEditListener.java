@@ -0,0 +1,21 @@
+package com.example.demo.model;
+
+/**
+ * 思维导图编辑监听器
+ * 在节点被添加、删除，或文本、样式、位置、父节点被用户修改时得到通知，
+ * 用于把每次编辑记录到日志中。自动布局引起的位置变化不会通知。
+ */
+public interface MindMapEditListener {
+
+    /**
+     * 节点被添加，或者属性、位置、父节点发生了变化
+     * @param node 节点，通知时已经是修改后的状态
+     */
+    void nodeEdited(MindMapNode node);
+
+    /**
+     * 节点及其所有子节点被删除
+     * @param node 被删除的节点，通知时仍然保留原来的父节点
+     */
+    void nodeDeleted(MindMapNode node);
+}
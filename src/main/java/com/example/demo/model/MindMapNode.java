@@ -1,7 +1,11 @@
 package com.example.demo.model;
 
+import com.example.demo.event.MindMapChanges;
+
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.UUID;
 
@@ -33,6 +37,23 @@ public class MindMapNode implements Serializable {
     private double colorBlue = color.getBlue();
     private double colorOpacity = color.getOpacity();
     private LineStyle lineStyle = LineStyle.SOLID; // 连接线样式，默认为实线
+    // 节点所属的思维导图，用于在几何信息变化时更新空间索引
+    private transient MindMap owner;
+    // 绘制顺序，数值越大越靠上
+    private transient long zOrder;
+    // 子树范围缓存，供布局使用，按子节点间距区分
+    private transient boolean extentValid;
+    private transient double cachedExtentGap;
+    private transient double cachedExtent;
+    // 子树总高度和节点总数缓存
+    private transient boolean metricsValid;
+    private transient double cachedTotalHeight;
+    private transient int cachedNodeCount;
+    // 节点深度缓存，父节点变化时沿子树向下失效
+    private transient boolean depthValid;
+    private transient int cachedDepth;
+    // 部分加载时尚未加载的子节点数量
+    private transient int unloadedChildCount;
 
     /**
      * 连接线样式枚举
@@ -60,7 +81,16 @@ public class MindMapNode implements Serializable {
      * @param text 节点文本
      */
     public MindMapNode(String text) {
-        this.id = UUID.randomUUID().toString();
+        this(UUID.randomUUID().toString(), text);
+    }
+
+    /**
+     * 使用指定ID创建节点，用于从文件中恢复节点
+     * @param id 节点ID
+     * @param text 节点文本
+     */
+    public MindMapNode(String id, String text) {
+        this.id = id;
         this.text = text;
         this.children = new ArrayList<>();
         this.selected = false;
@@ -73,6 +103,20 @@ public class MindMapNode implements Serializable {
     public void addChild(MindMapNode child) {
         children.add(child);
         child.setParent(this);
+        invalidateSubtreeMetrics();
+        child.parentChanged();
+    }
+
+    /**
+     * 在指定位置插入子节点
+     * @param index 插入位置，超出范围时添加到末尾
+     * @param child 子节点
+     */
+    public void addChild(int index, MindMapNode child) {
+        children.add(Math.max(0, Math.min(index, children.size())), child);
+        child.setParent(this);
+        invalidateSubtreeMetrics();
+        child.parentChanged();
     }
 
     /**
@@ -81,14 +125,30 @@ public class MindMapNode implements Serializable {
      * @return 是否成功删除
      */
     public boolean removeChild(MindMapNode child) {
-        return children.remove(child);
+        boolean removed = children.remove(child);
+        if (removed) {
+            invalidateSubtreeMetrics();
+        }
+        if (removed && child.parent == this) {
+            // 被移除的子节点不再有父节点
+            child.setParent(null);
+            child.parentChanged();
+        }
+        return removed;
     }
 
     /**
      * 删除所有子节点
      */
     public void removeAllChildren() {
+        for (MindMapNode child : children) {
+            if (child.parent == this) {
+                child.setParent(null);
+                child.parentChanged();
+            }
+        }
         children.clear();
+        invalidateSubtreeMetrics();
     }
 
     /**
@@ -113,6 +173,7 @@ public class MindMapNode implements Serializable {
      */
     public void setText(String text) {
         this.text = text;
+        changed(MindMapChanges.Type.TEXT);
     }
 
     /**
@@ -129,6 +190,7 @@ public class MindMapNode implements Serializable {
      */
     public void setParent(MindMapNode parent) {
         this.parent = parent;
+        invalidateDepth();
     }
 
     /**
@@ -153,6 +215,7 @@ public class MindMapNode implements Serializable {
      */
     public void setX(double x) {
         this.x = x;
+        geometryChanged();
     }
 
     /**
@@ -162,6 +225,7 @@ public class MindMapNode implements Serializable {
      */
     public void setX(double x, boolean manually) {
         this.x = x;
+        geometryChanged();
         if (manually) {
             this.manuallyPositioned = true;
         }
@@ -181,6 +245,7 @@ public class MindMapNode implements Serializable {
      */
     public void setY(double y) {
         this.y = y;
+        geometryChanged();
         // 注意：这里不标记为手动定位，因为这个方法主要由布局算法调用
     }
 
@@ -191,6 +256,7 @@ public class MindMapNode implements Serializable {
      */
     public void setY(double y, boolean manually) {
         this.y = y;
+        geometryChanged();
         if (manually) {
             this.manuallyPositioned = true;
         }
@@ -210,6 +276,7 @@ public class MindMapNode implements Serializable {
      */
     public void setWidth(double width) {
         this.width = width;
+        geometryChanged();
     }
 
     /**
@@ -225,7 +292,11 @@ public class MindMapNode implements Serializable {
      * @param height 高度
      */
     public void setHeight(double height) {
+        if (this.height != height) {
+            invalidateSubtreeMetrics();
+        }
         this.height = height;
+        geometryChanged();
     }
 
     /**
@@ -241,7 +312,10 @@ public class MindMapNode implements Serializable {
      * @param selected 选中状态
      */
     public void setSelected(boolean selected) {
-        this.selected = selected;
+        if (this.selected != selected) {
+            this.selected = selected;
+            changed(MindMapChanges.Type.SELECTION);
+        }
     }
 
     // 标记该节点是否为中心节点
@@ -263,6 +337,31 @@ public class MindMapNode implements Serializable {
         this.centerNode = centerNode;
     }
 
+    /**
+     * 判断节点是否还有尚未加载的子节点
+     * 部分加载的思维导图中，这样的分支相当于被折叠，可以通过{@link MindMap#loadChildren(MindMapNode)}展开
+     * @return 是否有尚未加载的子节点
+     */
+    public boolean hasUnloadedChildren() {
+        return unloadedChildCount > 0;
+    }
+
+    /**
+     * 获取尚未加载的子节点数量
+     * @return 尚未加载的子节点数量
+     */
+    public int getUnloadedChildCount() {
+        return unloadedChildCount;
+    }
+
+    /**
+     * 设置尚未加载的子节点数量，由所属思维导图调用
+     * @param unloadedChildCount 尚未加载的子节点数量
+     */
+    void setUnloadedChildCount(int unloadedChildCount) {
+        this.unloadedChildCount = unloadedChildCount;
+    }
+
     /**
      * 判断是否为叶子节点
      * @return 是否为叶子节点
@@ -301,6 +400,7 @@ public class MindMapNode implements Serializable {
      */
     public void setShape(NodeShape shape) {
         this.shape = shape;
+        changed(MindMapChanges.Type.STYLE);
     }
 
     /**
@@ -320,6 +420,8 @@ public class MindMapNode implements Serializable {
         // 调整宽高
         this.width = this.width * sizeScale;
         this.height = this.height * sizeScale;
+        invalidateSubtreeMetrics();
+        geometryChanged();
     }
 
     /**
@@ -336,6 +438,7 @@ public class MindMapNode implements Serializable {
      */
     public void setFontSize(double fontSize) {
         this.fontSize = fontSize;
+        changed(MindMapChanges.Type.STYLE);
     }
 
     /**
@@ -352,6 +455,7 @@ public class MindMapNode implements Serializable {
      */
     public void setColor(javafx.scene.paint.Color color) {
         this.color = color;
+        changed(MindMapChanges.Type.STYLE);
     }
 
     /**
@@ -368,6 +472,7 @@ public class MindMapNode implements Serializable {
      */
     public void setLineStyle(LineStyle lineStyle) {
         this.lineStyle = lineStyle;
+        changed(MindMapChanges.Type.STYLE);
     }
 
     /**
@@ -375,10 +480,11 @@ public class MindMapNode implements Serializable {
      * @return 节点深度
      */
     public int getDepth() {
-        if (parent == null) {
-            return 0;
+        if (!depthValid) {
+            cachedDepth = parent == null ? 0 : parent.getDepth() + 1;
+            depthValid = true;
         }
-        return parent.getDepth() + 1;
+        return cachedDepth;
     }
 
     /**
@@ -386,11 +492,8 @@ public class MindMapNode implements Serializable {
      * @return 节点总数
      */
     public int getTotalNodeCount() {
-        int count = 1; // 当前节点
-        for (MindMapNode child : children) {
-            count += child.getTotalNodeCount();
-        }
-        return count;
+        updateMetrics();
+        return cachedNodeCount;
     }
 
     /**
@@ -398,15 +501,185 @@ public class MindMapNode implements Serializable {
      * @return 总高度
      */
     public double getTotalHeight() {
-        if (isLeafNode()) {
-            return height;
+        updateMetrics();
+        return cachedTotalHeight;
+    }
+
+    /**
+     * 重新计算子树总高度和节点总数，缓存有效时直接返回
+     */
+    private void updateMetrics() {
+        if (metricsValid) {
+            return;
         }
 
+        int count = 1; // 当前节点
         double totalHeight = 0;
         for (MindMapNode child : children) {
-            totalHeight += child.getTotalHeight();
+            child.updateMetrics();
+            count += child.cachedNodeCount;
+            totalHeight += child.cachedTotalHeight;
+        }
+
+        cachedNodeCount = count;
+        cachedTotalHeight = isLeafNode() ? height : Math.max(height, totalHeight);
+        metricsValid = true;
+    }
+
+    /**
+     * 获取子树在垂直方向上占用的范围：叶子节点为自身高度，
+     * 否则为所有子节点的子树范围加上子节点间距之和，且不小于自身高度。
+     * 结果会被缓存，子节点增删或高度变化时沿祖先链失效，未变化的分支不会重复计算
+     * @param gap 子节点之间的间距
+     * @return 子树范围
+     */
+    public double getSubtreeExtent(double gap) {
+        if (extentValid && gap == cachedExtentGap) {
+            return cachedExtent;
+        }
+
+        double extent;
+        if (children.isEmpty()) {
+            extent = height;
+        } else {
+            double total = 0;
+            for (MindMapNode child : children) {
+                total += child.getSubtreeExtent(gap);
+            }
+            total += gap * (children.size() - 1);
+            extent = Math.max(height, total);
+        }
+
+        cachedExtent = extent;
+        cachedExtentGap = gap;
+        extentValid = true;
+        return extent;
+    }
+
+    /**
+     * 使本节点及所有祖先节点的子树缓存失效（子树范围、总高度和节点总数）
+     * 缓存的节点的所有后代一定也已缓存，所以遇到两种缓存都已失效的祖先即可停止
+     */
+    private void invalidateSubtreeMetrics() {
+        for (MindMapNode node = this; node != null && (node.extentValid || node.metricsValid); node = node.parent) {
+            node.extentValid = false;
+            node.metricsValid = false;
+        }
+    }
+
+    /**
+     * 使本节点及所有后代节点的深度缓存失效
+     * 深度已缓存的节点的所有祖先一定也已缓存，所以遇到已经失效的节点即可跳过其子树
+     */
+    private void invalidateDepth() {
+        if (!depthValid) {
+            return;
+        }
+        Deque<MindMapNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            MindMapNode node = stack.pop();
+            node.depthValid = false;
+            for (MindMapNode child : node.children) {
+                if (child.depthValid) {
+                    stack.push(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取节点所属的思维导图
+     * @return 所属思维导图，未加入思维导图时为null
+     */
+    MindMap getOwner() {
+        return owner;
+    }
+
+    /**
+     * 设置节点所属的思维导图
+     * @param owner 所属思维导图
+     */
+    void setOwner(MindMap owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * 获取节点的绘制顺序，数值越大越靠上
+     * @return 绘制顺序
+     */
+    public long getZOrder() {
+        return zOrder;
+    }
+
+    /**
+     * 设置节点的绘制顺序
+     * @param zOrder 绘制顺序
+     */
+    void setZOrder(long zOrder) {
+        this.zOrder = zOrder;
+    }
+
+    /**
+     * 判断点是否落在节点的实际形状内，而不只是包围矩形内
+     * 圆角矩形的圆角很小，按矩形处理
+     * @param px X坐标
+     * @param py Y坐标
+     * @return 是否在节点形状内
+     */
+    public boolean containsPoint(double px, double py) {
+        if (px < x || px > x + width || py < y || py > y + height) {
+            return false;
+        }
+        double halfWidth = width / 2;
+        double halfHeight = height / 2;
+        if (halfWidth <= 0 || halfHeight <= 0) {
+            return true;
+        }
+        // 相对中心点的距离，所有形状都关于中心对称
+        double dx = Math.abs(px - (x + halfWidth));
+        double dy = Math.abs(py - (y + halfHeight));
+        switch (shape) {
+            case ELLIPSE:
+                double nx = dx / halfWidth;
+                double ny = dy / halfHeight;
+                return nx * nx + ny * ny <= 1;
+            case DIAMOND:
+                return dx / halfWidth + dy / halfHeight <= 1;
+            case HEXAGON:
+                // 六边形左右两个顶点在中线上，上下边各向内收进宽度的六分之一
+                return dx <= halfWidth - (width / 6) * (dy / halfHeight);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 通知所属思维导图节点的位置、大小或父节点发生了变化
+     */
+    private void geometryChanged() {
+        if (owner != null) {
+            owner.nodeGeometryChanged(this);
+        }
+    }
+
+    /**
+     * 通知所属思维导图节点的父节点发生了变化
+     */
+    private void parentChanged() {
+        if (owner != null) {
+            owner.nodeParentChanged(this);
+        }
+    }
+
+    /**
+     * 通知所属思维导图节点的文本、样式或选中状态发生了变化
+     * @param type 修改类型
+     */
+    private void changed(MindMapChanges.Type type) {
+        if (owner != null) {
+            owner.nodeChanged(this, type);
         }
-        return Math.max(height, totalHeight);
     }
 
     @Override
@@ -0,0 +1,43 @@
+package com.example.demo.model;
+
+import java.util.List;
+
+/**
+ * 节点加载器
+ * 用于部分加载的思维导图：只有已经展开的分支才会创建节点对象，
+ * 其余节点留在文件中，需要时由加载器读取
+ */
+public interface NodeLoader {
+
+    /**
+     * 获取节点在文件中的子节点数量
+     * @param node 已加载的节点
+     * @return 子节点数量
+     */
+    int getChildCount(MindMapNode node);
+
+    /**
+     * 从文件中读取节点的所有子节点，返回的节点尚未加入父节点和思维导图
+     * @param node 已加载的节点
+     * @return 子节点列表，按文件中的顺序排列
+     */
+    List<MindMapNode> loadChildren(MindMapNode node);
+
+    /**
+     * 查找指定ID的节点最近的已加载祖先节点
+     * @param id 节点ID
+     * @return 最近的已加载祖先节点，文件中没有该节点时返回null
+     */
+    MindMapNode findLoadedAncestor(String id);
+
+    /**
+     * 获取文件中的节点总数
+     * @return 节点总数
+     */
+    int getTotalNodeCount();
+
+    /**
+     * 释放加载器占用的资源，之后不会再被调用
+     */
+    void close();
+}
@@ -0,0 +1,166 @@
+package com.example.demo.model;
+
+import com.example.demo.util.QuadTree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 思维导图的空间索引
+ * 分别为节点和连线维护一棵四叉树，用于快速查找某个区域内的节点和连线。
+ * 节点位置变化时只记录下来，等到下一次查询时再统一更新索引，
+ * 这样布局时连续多次修改同一个节点也只需要更新一次。
+ */
+public class NodeSpatialIndex {
+
+    private final QuadTree<MindMapNode> nodes = new QuadTree<>();
+    // 连线以子节点为键，范围是父节点与子节点的包围矩形
+    private final QuadTree<MindMapNode> connections = new QuadTree<>();
+    // 等待更新的节点
+    private final Set<MindMapNode> pending = new HashSet<>();
+
+    // 点击测试的查询状态，复用同一个回调以避免每次查询都分配对象
+    private double hitX;
+    private double hitY;
+    private MindMapNode hitResult;
+    private final Consumer<MindMapNode> hitTestAction = this::hitTest;
+
+    /**
+     * 根据已有节点创建索引
+     * @param allNodes 思维导图中的所有节点
+     */
+    NodeSpatialIndex(Collection<MindMapNode> allNodes) {
+        for (MindMapNode node : allNodes) {
+            update(node);
+        }
+    }
+
+    /**
+     * 记录节点的位置、大小或父节点发生了变化
+     * @param node 发生变化的节点
+     */
+    void markDirty(MindMapNode node) {
+        pending.add(node);
+    }
+
+    /**
+     * 从索引中移除节点及连向它的连线
+     * @param node 要移除的节点
+     */
+    void remove(MindMapNode node) {
+        pending.remove(node);
+        nodes.remove(node);
+        connections.remove(node);
+    }
+
+    /**
+     * 查询与指定矩形相交的节点
+     * @param minX 左边界
+     * @param minY 上边界
+     * @param maxX 右边界
+     * @param maxY 下边界
+     * @param action 对每个节点执行的操作
+     */
+    public void queryNodes(double minX, double minY, double maxX, double maxY, Consumer<? super MindMapNode> action) {
+        flush();
+        nodes.query(minX, minY, maxX, maxY, action);
+    }
+
+    /**
+     * 查询可能与指定矩形相交的连线
+     * @param minX 左边界
+     * @param minY 上边界
+     * @param maxX 右边界
+     * @param maxY 下边界
+     * @param action 对每条连线的子节点执行的操作，连线的另一端是它的父节点
+     */
+    public void queryConnections(double minX, double minY, double maxX, double maxY, Consumer<? super MindMapNode> action) {
+        flush();
+        connections.query(minX, minY, maxX, maxY, action);
+    }
+
+    /**
+     * 查找指定坐标处最上层的节点
+     * 只检查包围矩形包含该点的节点，并按节点的实际形状判断，重叠时绘制顺序靠后的节点优先
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 找到的节点，如果没有则返回null
+     */
+    public MindMapNode findNodeAt(double x, double y) {
+        flush();
+        hitX = x;
+        hitY = y;
+        hitResult = null;
+        nodes.query(x, y, x, y, hitTestAction);
+        MindMapNode result = hitResult;
+        hitResult = null;
+        return result;
+    }
+
+    /**
+     * 获取已索引的节点数量
+     * @return 节点数量
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * 检查单个候选节点，保留绘制顺序最靠后的命中节点
+     * @param node 包围矩形包含查询点的节点
+     */
+    private void hitTest(MindMapNode node) {
+        if ((hitResult == null || node.getZOrder() > hitResult.getZOrder()) && node.containsPoint(hitX, hitY)) {
+            hitResult = node;
+        }
+    }
+
+    /**
+     * 将记录下来的变化更新到索引中
+     */
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<MindMapNode> changed = new ArrayList<>(pending);
+        pending.clear();
+        for (MindMapNode node : changed) {
+            update(node);
+            // 节点移动后，连向子节点的连线范围也随之变化
+            for (MindMapNode child : node.getChildren()) {
+                updateConnection(child);
+            }
+        }
+    }
+
+    /**
+     * 更新单个节点及连向它的连线
+     * @param node 节点
+     */
+    private void update(MindMapNode node) {
+        nodes.put(node, node.getX(), node.getY(),
+                node.getX() + node.getWidth(), node.getY() + node.getHeight());
+        updateConnection(node);
+    }
+
+    /**
+     * 更新连向指定节点的连线
+     * @param child 连线的子节点
+     */
+    private void updateConnection(MindMapNode child) {
+        MindMapNode parent = child.getParent();
+        if (parent == null) {
+            connections.remove(child);
+            return;
+        }
+        connections.put(child,
+                Math.min(parent.getX(), child.getX()),
+                Math.min(parent.getY(), child.getY()),
+                Math.max(parent.getX() + parent.getWidth(), child.getX() + child.getWidth()),
+                Math.max(parent.getY() + parent.getHeight(), child.getY() + child.getHeight()));
+    }
+}
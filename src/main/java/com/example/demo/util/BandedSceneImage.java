@@ -0,0 +1,462 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMapNode;
+import com.example.demo.view.MindMapStyle;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.LineMetrics;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * 按水平条带逐段绘制的导出图像
+ * 整张图像从不完整存在于内存中：只保留一个全宽、固定行数的条带，
+ * 图像写入器按行读取像素时，才用Java2D把下一个条带绘制出来。
+ * 节点和连线事先按条带分桶，每个条带只绘制与它相交的图形。
+ * 条带必须按从上到下的顺序读取，PNG和JPEG写入器都满足这一点。
+ */
+final class BandedSceneImage implements RenderedImage {
+
+    // 条带缓冲区的目标大小
+    private static final int BAND_BYTES = 32 * 1024 * 1024;
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final float[] DASHES = {5, 5};
+    // JPEG格式支持的最大边长
+    private static final int JPEG_MAX_DIMENSION = 65500;
+
+    private final ExportScene scene;
+    private final double scale;
+    private final int width;
+    private final int height;
+    private final int bandHeight;
+    private final ImageExporter.Progress progress;
+
+    // 条带缓冲区，像素按B、G、R顺序存放
+    private final BufferedImage band;
+    private final byte[] bandPixels;
+    private final Graphics2D graphics;
+    private int bandTop = -1;
+
+    // 每个条带中的连线和节点序号，压缩存储：条带i的内容位于start[i]到start[i + 1]之间
+    private final int[] connectionStarts;
+    private final int[] connectionItems;
+    private final int[] nodeStarts;
+    private final int[] nodeItems;
+
+    private final Map<Double, Font> fonts = new HashMap<>();
+    private final CubicCurve2D.Double curve = new CubicCurve2D.Double();
+    private final Path2D.Double path = new Path2D.Double();
+    private final Rectangle2D.Double rectangle = new Rectangle2D.Double();
+    private final RoundRectangle2D.Double roundRectangle = new RoundRectangle2D.Double();
+    private final Ellipse2D.Double ellipse = new Ellipse2D.Double();
+    private final Stroke solidStroke;
+    private final Stroke dashedStroke;
+    private final Stroke nodeStroke = new BasicStroke(1);
+    private final Color lineColor = toAwtColor(MindMapStyle.LINE_COLOR);
+
+    /**
+     * @param scene 绘制快照
+     * @param scale 每个场景单位对应的像素数
+     * @param progress 进度回调，每绘制一个条带报告一次，可以为null
+     * @throws IOException 图像太大
+     */
+    BandedSceneImage(ExportScene scene, double scale, ImageExporter.Progress progress) throws IOException {
+        this.scene = scene;
+        this.scale = scale;
+        this.progress = progress;
+        long pixelWidth = Math.max(1, (long) Math.ceil(scene.getWidth() * scale));
+        long pixelHeight = Math.max(1, (long) Math.ceil(scene.getHeight() * scale));
+        if (pixelWidth * BYTES_PER_PIXEL > Integer.MAX_VALUE || pixelHeight > Integer.MAX_VALUE) {
+            throw new IOException("图像尺寸过大：" + pixelWidth + " × " + pixelHeight + " 像素");
+        }
+        width = (int) pixelWidth;
+        height = (int) pixelHeight;
+        bandHeight = (int) Math.max(1, Math.min(height, BAND_BYTES / ((long) width * BYTES_PER_PIXEL)));
+
+        band = new BufferedImage(width, bandHeight, BufferedImage.TYPE_3BYTE_BGR);
+        bandPixels = ((DataBufferByte) band.getRaster().getDataBuffer()).getData();
+        graphics = band.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        float lineWidth = (float) MindMapStyle.LINE_WIDTH;
+        solidStroke = new BasicStroke(lineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        dashedStroke = new BasicStroke(lineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 10,
+                DASHES, 0);
+
+        int bandCount = (height + bandHeight - 1) / bandHeight;
+        double[] bounds = new double[4];
+        double[] connectionBounds = new double[scene.connectionCount * 2];
+        for (int i = 0; i < scene.connectionCount; i++) {
+            scene.getConnectionBounds(i, bounds);
+            connectionBounds[i * 2] = bounds[1];
+            connectionBounds[i * 2 + 1] = bounds[3];
+        }
+        double[] nodeBounds = new double[scene.nodeCount * 2];
+        for (int i = 0; i < scene.nodeCount; i++) {
+            // 边框宽度为1，向外扩展一个单位
+            nodeBounds[i * 2] = scene.nodeY[i] - 1;
+            nodeBounds[i * 2 + 1] = scene.nodeY[i] + scene.nodeHeight[i] + 1;
+        }
+        connectionStarts = new int[bandCount + 1];
+        connectionItems = bucket(connectionBounds, scene.connectionCount, bandCount, connectionStarts);
+        nodeStarts = new int[bandCount + 1];
+        nodeItems = bucket(nodeBounds, scene.nodeCount, bandCount, nodeStarts);
+    }
+
+    /**
+     * 按纵向范围把图形分到条带中，同一条带内保持原来的顺序
+     * @param bounds 每个图形的minY和maxY（场景坐标）
+     * @param count 图形数量
+     * @param bandCount 条带数量
+     * @param starts 写入每个条带的起始位置，长度为bandCount + 1
+     * @return 所有条带的图形序号
+     */
+    private int[] bucket(double[] bounds, int count, int bandCount, int[] starts) {
+        int[] firstBands = new int[count];
+        int[] lastBands = new int[count];
+        for (int i = 0; i < count; i++) {
+            firstBands[i] = bandOf(bounds[i * 2], bandCount);
+            lastBands[i] = bandOf(bounds[i * 2 + 1], bandCount);
+            for (int b = firstBands[i]; b <= lastBands[i]; b++) {
+                starts[b + 1]++;
+            }
+        }
+        for (int b = 0; b < bandCount; b++) {
+            starts[b + 1] += starts[b];
+        }
+        int[] items = new int[starts[bandCount]];
+        int[] next = new int[bandCount];
+        System.arraycopy(starts, 0, next, 0, bandCount);
+        for (int i = 0; i < count; i++) {
+            for (int b = firstBands[i]; b <= lastBands[i]; b++) {
+                items[next[b]++] = i;
+            }
+        }
+        return items;
+    }
+
+    private int bandOf(double sceneY, int bandCount) {
+        double row = Math.floor((sceneY - scene.minY) * scale);
+        return (int) Math.max(0, Math.min(bandCount - 1, row / bandHeight));
+    }
+
+    /**
+     * 确保包含指定行的条带已经绘制
+     * @param row 图像中的行
+     */
+    private void ensureBand(int row) {
+        if (bandTop >= 0 && row >= bandTop && row < bandTop + bandHeight) {
+            return;
+        }
+        int index = row / bandHeight;
+        if (progress != null) {
+            try {
+                progress.update(index * bandHeight, height);
+            } catch (IOException e) {
+                // 图像写入器的接口不能抛出受检异常，由ImageExporter还原
+                throw new UncheckedIOException(e);
+            }
+        }
+        bandTop = index * bandHeight;
+        paintBand(index);
+    }
+
+    private void paintBand(int index) {
+        graphics.setTransform(new AffineTransform());
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, bandHeight);
+
+        AffineTransform transform = AffineTransform.getTranslateInstance(0, -bandTop);
+        transform.scale(scale, scale);
+        transform.translate(-scene.minX, -scene.minY);
+        graphics.setTransform(transform);
+
+        // 先画连线，节点盖在连线上面
+        graphics.setColor(lineColor);
+        for (int k = connectionStarts[index]; k < connectionStarts[index + 1]; k++) {
+            paintConnection(connectionItems[k]);
+        }
+        for (int k = nodeStarts[index]; k < nodeStarts[index + 1]; k++) {
+            paintNode(nodeItems[k]);
+        }
+    }
+
+    private void paintConnection(int i) {
+        double[] c = scene.connectionCurves;
+        int o = i * 8;
+        curve.setCurve(c[o], c[o + 1], c[o + 2], c[o + 3], c[o + 4], c[o + 5], c[o + 6], c[o + 7]);
+        graphics.setStroke(scene.connectionDashed[i] ? dashedStroke : solidStroke);
+        graphics.draw(curve);
+
+        if (scene.connectionArrowed[i]) {
+            // 画布上箭头使用图形上下文默认的黑色填充
+            double[] a = scene.connectionArrows;
+            int p = i * 6;
+            path.reset();
+            path.moveTo(a[p], a[p + 1]);
+            path.lineTo(a[p + 2], a[p + 3]);
+            path.lineTo(a[p + 4], a[p + 5]);
+            path.closePath();
+            graphics.setColor(Color.BLACK);
+            graphics.fill(path);
+            graphics.setColor(lineColor);
+        }
+    }
+
+    private void paintNode(int i) {
+        double x = scene.nodeX[i];
+        double y = scene.nodeY[i];
+        double w = scene.nodeWidth[i];
+        double h = scene.nodeHeight[i];
+        Shape shape = nodeShape(scene.nodeShapes[i], x, y, w, h);
+        graphics.setColor(new Color(scene.nodeFills[i], true));
+        graphics.fill(shape);
+        graphics.setStroke(nodeStroke);
+        graphics.setColor(new Color(scene.nodeStrokes[i], true));
+        graphics.draw(shape);
+
+        String text = scene.nodeTexts[i];
+        if (text == null || text.isEmpty()) {
+            graphics.setColor(lineColor);
+            return;
+        }
+        Font font = fonts.computeIfAbsent(scene.nodeFontSizes[i],
+                size -> new Font(MindMapStyle.FONT_FAMILY, Font.PLAIN, 1).deriveFont(size.floatValue()));
+        graphics.setFont(font);
+        // 与节点图形相同：水平居中，基线位于 y + (高度 + 文字高度) / 2
+        double textWidth = font.getStringBounds(text, graphics.getFontRenderContext()).getWidth();
+        LineMetrics metrics = font.getLineMetrics(text, graphics.getFontRenderContext());
+        double textHeight = metrics.getAscent() + metrics.getDescent();
+        graphics.setColor(Color.WHITE);
+        graphics.drawString(text, (float) (x + (w - textWidth) / 2), (float) (y + (h + textHeight) / 2));
+        graphics.setColor(lineColor);
+    }
+
+    private Shape nodeShape(MindMapNode.NodeShape shapeType, double x, double y, double w, double h) {
+        switch (shapeType) {
+            case ROUNDED_RECTANGLE:
+                double arc = MindMapStyle.NODE_CORNER_RADIUS;
+                roundRectangle.setRoundRect(x, y, w, h, arc, arc);
+                return roundRectangle;
+            case ELLIPSE:
+                ellipse.setFrame(x, y, w, h);
+                return ellipse;
+            case DIAMOND:
+                path.reset();
+                path.moveTo(x + w / 2, y);
+                path.lineTo(x + w, y + h / 2);
+                path.lineTo(x + w / 2, y + h);
+                path.lineTo(x, y + h / 2);
+                path.closePath();
+                return path;
+            case HEXAGON:
+                double sixthWidth = w / 6;
+                path.reset();
+                path.moveTo(x + sixthWidth, y);
+                path.lineTo(x + w - sixthWidth, y);
+                path.lineTo(x + w, y + h / 2);
+                path.lineTo(x + w - sixthWidth, y + h);
+                path.lineTo(x + sixthWidth, y + h);
+                path.lineTo(x, y + h / 2);
+                path.closePath();
+                return path;
+            default:
+                rectangle.setRect(x, y, w, h);
+                return rectangle;
+        }
+    }
+
+    private static Color toAwtColor(javafx.scene.paint.Color color) {
+        return new Color((float) color.getRed(), (float) color.getGreen(),
+                (float) color.getBlue(), (float) color.getOpacity());
+    }
+
+    /**
+     * 释放绘图资源
+     */
+    void dispose() {
+        graphics.dispose();
+    }
+
+    /**
+     * 创建整张图像的单个栅格，像素在读取时才按条带绘制
+     * JPEG写入器只有一个图块时会取出这个栅格逐行读取。
+     * @return 栅格
+     * @throws IOException 图像字节数超过数组的上限，或者边长超过JPEG格式的上限
+     */
+    Raster createLazyRaster() throws IOException {
+        long size = (long) width * height * BYTES_PER_PIXEL;
+        if (size > Integer.MAX_VALUE || width > JPEG_MAX_DIMENSION || height > JPEG_MAX_DIMENSION) {
+            throw new IOException("图像太大，超过JPEG导出的上限，请降低分辨率或导出为PNG");
+        }
+        SampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+                width, height, BYTES_PER_PIXEL, width * BYTES_PER_PIXEL, new int[]{2, 1, 0});
+        return Raster.createRaster(sampleModel, new LazyDataBuffer((int) size), null);
+    }
+
+    /**
+     * 按需绘制的数据缓冲区，下标与整张图像的B、G、R字节一一对应
+     */
+    private final class LazyDataBuffer extends DataBuffer {
+        private final int rowBytes = width * BYTES_PER_PIXEL;
+
+        LazyDataBuffer(int size) {
+            super(TYPE_BYTE, size);
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            ensureBand(i / rowBytes);
+            return bandPixels[i - bandTop * rowBytes] & 0xff;
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            throw new UnsupportedOperationException("导出图像是只读的");
+        }
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return java.awt.Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return band.getColorModel();
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return band.getSampleModel();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return height;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        try {
+            return createLazyRaster();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Raster getData() {
+        throw new UnsupportedOperationException("导出图像只能按行读取");
+    }
+
+    /**
+     * 读取一个区域，区域不能跨越条带，PNG写入器每次只读取一行
+     */
+    @Override
+    public Raster getData(Rectangle rect) {
+        ensureBand(rect.y);
+        if (rect.y + rect.height > bandTop + bandHeight) {
+            throw new UnsupportedOperationException("读取区域跨越了多个条带");
+        }
+        return band.getRaster().createChild(rect.x, rect.y - bandTop, rect.width, rect.height,
+                rect.x, rect.y, null);
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        throw new UnsupportedOperationException("导出图像只能按行读取");
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import com.example.demo.view.ConnectionGeometry;
+import com.example.demo.view.MindMapStyle;
+import javafx.scene.paint.Color;
+
+import java.util.Collection;
+
+/**
+ * 导出用的绘制快照
+ * 在JavaFX线程上把所有节点和连线的最终几何、文字和颜色复制到数组中，
+ * 之后可以在任意线程上绘制，不依赖场景图，也不需要窗口。
+ * 连线与画布使用同一个{@link ConnectionGeometry}计算，导出结果和屏幕上一致。
+ */
+public final class ExportScene {
+
+    /** 内容四周留出的空白 */
+    public static final double MARGIN = 20;
+
+    final int nodeCount;
+    final double[] nodeX;
+    final double[] nodeY;
+    final double[] nodeWidth;
+    final double[] nodeHeight;
+    final MindMapNode.NodeShape[] nodeShapes;
+    final String[] nodeTexts;
+    final double[] nodeFontSizes;
+    // 填充色和边框色，ARGB格式
+    final int[] nodeFills;
+    final int[] nodeStrokes;
+
+    final int connectionCount;
+    // 每条连线8个坐标：起点、两个控制点、终点
+    final double[] connectionCurves;
+    // 每条连线6个坐标：箭头的三个顶点，没有箭头时不使用
+    final double[] connectionArrows;
+    final boolean[] connectionDashed;
+    final boolean[] connectionArrowed;
+
+    final double minX;
+    final double minY;
+    final double maxX;
+    final double maxY;
+
+    private ExportScene(int nodeCount, int connectionCount, double minX, double minY, double maxX, double maxY) {
+        this.nodeCount = nodeCount;
+        nodeX = new double[nodeCount];
+        nodeY = new double[nodeCount];
+        nodeWidth = new double[nodeCount];
+        nodeHeight = new double[nodeCount];
+        nodeShapes = new MindMapNode.NodeShape[nodeCount];
+        nodeTexts = new String[nodeCount];
+        nodeFontSizes = new double[nodeCount];
+        nodeFills = new int[nodeCount];
+        nodeStrokes = new int[nodeCount];
+        this.connectionCount = connectionCount;
+        connectionCurves = new double[connectionCount * 8];
+        connectionArrows = new double[connectionCount * 6];
+        connectionDashed = new boolean[connectionCount];
+        connectionArrowed = new boolean[connectionCount];
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * 复制思维导图的绘制信息，必须在JavaFX线程上调用
+     * 部分加载的思维导图会先读出剩余的节点。
+     * @param mindMap 思维导图
+     * @param maxLineLength 最大线长，与画布一致时传入{@link com.example.demo.view.MindMapView#getMaxLineLength()}，
+     *                      不需要缩短连线时传入{@link Double#POSITIVE_INFINITY}
+     * @return 绘制快照
+     */
+    public static ExportScene capture(MindMap mindMap, double maxLineLength) {
+        mindMap.loadAll();
+        Collection<MindMapNode> nodes = mindMap.getNodes();
+
+        int connectionCount = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (MindMapNode node : nodes) {
+            if (node.getParent() != null) {
+                connectionCount++;
+            }
+            minX = Math.min(minX, node.getX());
+            minY = Math.min(minY, node.getY());
+            maxX = Math.max(maxX, node.getX() + node.getWidth());
+            maxY = Math.max(maxY, node.getY() + node.getHeight());
+        }
+        if (nodes.isEmpty()) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        ExportScene scene = new ExportScene(nodes.size(), connectionCount,
+                minX - MARGIN, minY - MARGIN, maxX + MARGIN, maxY + MARGIN);
+        ConnectionGeometry geometry = new ConnectionGeometry();
+        double[] arrowPoints = new double[6];
+        int connection = 0;
+        int i = 0;
+        for (MindMapNode node : nodes) {
+            scene.nodeX[i] = node.getX();
+            scene.nodeY[i] = node.getY();
+            scene.nodeWidth[i] = node.getWidth();
+            scene.nodeHeight[i] = node.getHeight();
+            scene.nodeShapes[i] = node.getShape();
+            scene.nodeTexts[i] = node.getText();
+            scene.nodeFontSizes[i] = node.getFontSize();
+            // 导出的是文档内容，不绘制选中状态
+            Color color = node.getColor() != null ? node.getColor() : MindMapStyle.NORMAL_NODE_COLOR;
+            scene.nodeFills[i] = toArgb(color);
+            scene.nodeStrokes[i] = toArgb(color.darker());
+            i++;
+
+            if (node.getParent() == null) {
+                continue;
+            }
+            geometry.compute(node.getParent(), node, maxLineLength);
+            int c = connection * 8;
+            scene.connectionCurves[c] = geometry.getStartX();
+            scene.connectionCurves[c + 1] = geometry.getStartY();
+            scene.connectionCurves[c + 2] = geometry.getControlX1();
+            scene.connectionCurves[c + 3] = geometry.getControlY1();
+            scene.connectionCurves[c + 4] = geometry.getControlX2();
+            scene.connectionCurves[c + 5] = geometry.getControlY2();
+            scene.connectionCurves[c + 6] = geometry.getEndX();
+            scene.connectionCurves[c + 7] = geometry.getEndY();
+            scene.connectionDashed[connection] = geometry.isDashed();
+            if (geometry.isArrow()) {
+                scene.connectionArrowed[connection] = true;
+                geometry.getArrowPoints(arrowPoints);
+                System.arraycopy(arrowPoints, 0, scene.connectionArrows, connection * 6, 6);
+            }
+            connection++;
+        }
+        return scene;
+    }
+
+    /**
+     * 获取导出内容的宽度，包括四周的空白
+     * @return 宽度（场景坐标）
+     */
+    public double getWidth() {
+        return maxX - minX;
+    }
+
+    /**
+     * 获取导出内容的高度，包括四周的空白
+     * @return 高度（场景坐标）
+     */
+    public double getHeight() {
+        return maxY - minY;
+    }
+
+    /**
+     * 获取节点数量
+     * @return 节点数量
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * 获取连线的包围盒，包括箭头
+     * @param connection 连线序号
+     * @param bounds 长度为4的数组，依次写入minX、minY、maxX、maxY
+     */
+    void getConnectionBounds(int connection, double[] bounds) {
+        // 贝塞尔曲线位于四个控制点的凸包内
+        int c = connection * 8;
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < 8; k += 2) {
+            x0 = Math.min(x0, connectionCurves[c + k]);
+            y0 = Math.min(y0, connectionCurves[c + k + 1]);
+            x1 = Math.max(x1, connectionCurves[c + k]);
+            y1 = Math.max(y1, connectionCurves[c + k + 1]);
+        }
+        double margin = MindMapStyle.LINE_WIDTH + (connectionArrowed[connection] ? ConnectionGeometry.ARROW_SIZE : 0);
+        bounds[0] = x0 - margin;
+        bounds[1] = y0 - margin;
+        bounds[2] = x1 + margin;
+        bounds[3] = y1 + margin;
+    }
+
+    static int toArgb(Color color) {
+        return (int) Math.round(color.getOpacity() * 255) << 24
+                | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8
+                | (int) Math.round(color.getBlue() * 255);
+    }
+}
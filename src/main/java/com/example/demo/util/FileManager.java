@@ -5,46 +5,46 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
- * 文件管理工具类，用于保存和加载思维导图
+ * 文件管理工具类，用于选择文件以及保存和加载思维导图
+ * 界面中的保存和打开通过{@link MindMapPersistenceService}在后台线程上执行
  */
 public class FileManager {
 
+    private static final Log LOG = Log.get(FileManager.class);
+
     private static final String FILE_EXTENSION = "*.dt";
     private static final String FILE_DESCRIPTION = "思维导图文件";
+    // 达到该节点数的思维导图不压缩并写出索引，以便下次打开时按需加载
+    private static final int INDEXED_NODE_THRESHOLD = 50000;
+    // 写入时使用的临时文件后缀，写完后再改名为目标文件
+    private static final String TEMP_SUFFIX = ".tmp";
 
     /**
-     * 保存思维导图到文件
+     * 获取保存文件，思维导图还没有文件路径时弹出保存对话框
      * @param mindMap 要保存的思维导图
      * @param stage 当前舞台
-     * @return 是否成功保存
+     * @return 目标文件，用户取消时返回null
      */
-    public static boolean saveMindMap(MindMap mindMap, Stage stage) {
+    public static File chooseSaveFile(MindMap mindMap, Stage stage) {
         String filePath = mindMap.getFilePath();
-
-        // 如果没有文件路径，则弹出保存对话框
         if (filePath == null || filePath.isEmpty()) {
-            return saveAsMindMap(mindMap, stage);
-        }
-
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            oos.writeObject(mindMap);
-            mindMap.setModified(false);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            return chooseSaveAsFile(mindMap, stage);
         }
+        return new File(filePath);
     }
 
     /**
-     * 另存为思维导图
+     * 弹出另存为对话框
      * @param mindMap 要保存的思维导图
      * @param stage 当前舞台
-     * @return 是否成功保存
+     * @return 目标文件，用户取消时返回null
      */
-    public static boolean saveAsMindMap(MindMap mindMap, Stage stage) {
+    public static File chooseSaveAsFile(MindMap mindMap, Stage stage) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("保存思维导图");
         fileChooser.getExtensionFilters().add(
@@ -55,7 +55,7 @@ public class FileManager {
 
         File file = fileChooser.showSaveDialog(stage);
         if (file == null) {
-            return false;
+            return null;
         }
 
         // 确保文件有正确的扩展名
@@ -64,24 +64,15 @@ public class FileManager {
             path += ".dt";
             file = new File(path);
         }
-
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            mindMap.setFilePath(file.getPath());
-            oos.writeObject(mindMap);
-            mindMap.setModified(false);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return file;
     }
 
     /**
-     * 加载思维导图
+     * 弹出打开对话框
      * @param stage 当前舞台
-     * @return 加载的思维导图，如果取消或出错则返回null
+     * @return 选择的文件，用户取消时返回null
      */
-    public static MindMap loadMindMap(Stage stage) {
+    public static File chooseOpenFile(Stage stage) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("打开思维导图");
         fileChooser.getExtensionFilters().add(
@@ -89,45 +80,151 @@ public class FileManager {
 
         File file = fileChooser.showOpenDialog(stage);
         if (file == null) {
-            System.out.println("User canceled file selection");
-            return null;
+            LOG.debug("User canceled file selection");
         }
+        return file;
+    }
 
-        System.out.println("Attempting to load file: " + file.getPath());
+    /**
+     * 将思维导图以二进制格式写入文件
+     * @param mindMap 要保存的思维导图
+     * @param file 目标文件
+     * @throws IOException 写入失败
+     */
+    public static void writeMindMap(MindMap mindMap, File file) throws IOException {
+        // 部分加载的思维导图需要先读出剩余节点，同时释放对原文件的映射
+        mindMap.loadAll();
+        writeSnapshot(MindMapSnapshot.capture(mindMap), file, null);
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            Object obj = ois.readObject();
-            System.out.println("File loaded, object class: " + obj.getClass().getName());
+    /**
+     * 将快照写入文件，可以在任意线程上调用
+     * 先写入同一目录下的临时文件并同步到磁盘，再改名替换目标文件，
+     * 写入中途失败或取消时原文件保持不变。
+     * @param snapshot 思维导图快照
+     * @param file 目标文件
+     * @param progress 进度回调，可以为null
+     * @throws IOException 写入失败，或者进度回调要求取消
+     */
+    static void writeSnapshot(MindMapSnapshot snapshot, File file, IoProgress progress) throws IOException {
+        boolean compress = snapshot.count < INDEXED_NODE_THRESHOLD;
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(temp);
+                 CountingOutputStream counter = new CountingOutputStream(fileOut);
+                 OutputStream out = new BufferedOutputStream(counter)) {
+                MindMapFileFormat.write(snapshot, out, compress, progress == null ? null
+                        : (nodes, totalNodes) -> progress.update(nodes, totalNodes, counter.count, -1));
+                out.flush();
+                fileOut.getChannel().force(true);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+    }
 
-            if (obj instanceof MindMap) {
-                MindMap mindMap = (MindMap) obj;
-                mindMap.setFilePath(file.getPath());
-                mindMap.setModified(false);
-                System.out.println("Successfully loaded mind map: " + mindMap.getName());
+    /**
+     * 从文件读取思维导图，同时支持二进制格式和旧版本的Java序列化格式
+     * 带索引的文件通过内存映射按需加载，返回的思维导图只包含根节点附近的节点
+     * @param file 源文件
+     * @return 读取的对象，旧格式文件中可能不是思维导图
+     * @throws IOException 读取失败
+     * @throws ClassNotFoundException 旧格式文件中的类型无法识别
+     */
+    public static Object readMindMap(File file) throws IOException, ClassNotFoundException {
+        return readMindMap(file, null);
+    }
+
+    /**
+     * 从文件读取思维导图并报告进度，可以在任意线程上调用
+     * @param file 源文件
+     * @param progress 进度回调，可以为null；按需加载的文件和旧格式文件只在读取结束时报告一次
+     * @return 读取的对象，旧格式文件中可能不是思维导图
+     * @throws IOException 读取失败，或者进度回调要求取消
+     * @throws ClassNotFoundException 旧格式文件中的类型无法识别
+     */
+    static Object readMindMap(File file, IoProgress progress) throws IOException, ClassNotFoundException {
+        long totalBytes = file.length();
+        try (CountingInputStream counter = new CountingInputStream(new FileInputStream(file));
+             InputStream in = new BufferedInputStream(counter)) {
+            if (MindMapFileFormat.isIndexed(in) && totalBytes <= Integer.MAX_VALUE) {
+                MindMap mindMap = MappedMindMapFile.open(file);
+                if (progress != null) {
+                    progress.update(mindMap.getNodeCount(), mindMap.getTotalNodeCount(), totalBytes, totalBytes);
+                }
                 return mindMap;
-            } else {
-                System.err.println("Loaded object is not a MindMap: " + obj.getClass().getName());
-                showErrorAlert(stage, "文件格式错误", "所选文件不是有效的思维导图文件。");
-                return null;
             }
-        } catch (IOException e) {
-            System.err.println("IO error while loading file: " + e.getMessage());
-            e.printStackTrace();
-            showErrorAlert(stage, "文件读取错误", "无法读取文件，可能文件已损坏或格式不兼容。\n\n错误信息: " + e.getMessage());
-            return null;
-        } catch (ClassNotFoundException e) {
-            System.err.println("Class not found error: " + e.getMessage());
-            e.printStackTrace();
-            showErrorAlert(stage, "类型错误", "无法识别文件中的对象类型。\n\n错误信息: " + e.getMessage());
-            return null;
-        } catch (Exception e) {
-            System.err.println("Unexpected error: " + e.getMessage());
-            e.printStackTrace();
-            showErrorAlert(stage, "意外错误", "加载文件时发生意外错误。\n\n错误信息: " + e.getMessage());
-            return null;
+            if (MindMapFileFormat.isBinaryFormat(in)) {
+                return MindMapFileFormat.read(in, progress == null ? null
+                        : (nodes, totalNodes) -> progress.update(nodes, totalNodes, counter.count, totalBytes));
+            }
+            // 旧版本使用Java对象序列化保存
+            Object result = new ObjectInputStream(in).readObject();
+            if (progress != null) {
+                progress.update(0, 0, totalBytes, totalBytes);
+            }
+            return result;
         }
     }
 
+    /**
+     * 显示读取失败的错误对话框
+     * @param stage 当前舞台
+     * @param error 读取时发生的异常
+     */
+    public static void showLoadError(Stage stage, Throwable error) {
+        LOG.error("Error while loading file", error);
+        if (error instanceof IOException) {
+            showErrorAlert(stage, "文件读取错误", "无法读取文件，可能文件已损坏或格式不兼容。\n\n错误信息: " + error.getMessage());
+        } else if (error instanceof ClassNotFoundException) {
+            showErrorAlert(stage, "类型错误", "无法识别文件中的对象类型。\n\n错误信息: " + error.getMessage());
+        } else {
+            showErrorAlert(stage, "意外错误", "加载文件时发生意外错误。\n\n错误信息: " + error.getMessage());
+        }
+    }
+
+    /**
+     * 显示保存失败的错误对话框
+     * @param stage 当前舞台
+     * @param error 保存时发生的异常
+     */
+    public static void showSaveError(Stage stage, Throwable error) {
+        LOG.error("Error while saving file", error);
+        showErrorAlert(stage, "文件保存错误", "无法保存文件，原文件没有被修改。\n\n错误信息: " + error.getMessage());
+    }
+
+    /**
+     * 显示导出失败的错误对话框
+     * @param stage 当前舞台
+     * @param error 导出时发生的异常
+     */
+    public static void showExportError(Stage stage, Throwable error) {
+        LOG.error("Error while exporting", error);
+        showErrorAlert(stage, "导出错误", "无法导出文件。\n\n错误信息: " + error.getMessage());
+    }
+
+    /**
+     * 显示提示对话框
+     * @param stage 当前舞台
+     * @param title 标题
+     * @param message 消息
+     */
+    public static void showInfoAlert(Stage stage, String title, String message) {
+        javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.initOwner(stage);
+        alert.showAndWait();
+    }
+
     /**
      * 显示错误对话框
      * @param stage 当前舞台
@@ -142,4 +239,77 @@ public class FileManager {
         alert.initOwner(stage);
         alert.showAndWait();
     }
+
+    /**
+     * 读写进度回调，同时报告节点数量和字节数
+     */
+    interface IoProgress {
+        /**
+         * @param nodes 已处理的节点数量
+         * @param totalNodes 节点总数
+         * @param bytes 已读取或写出的字节数
+         * @param totalBytes 总字节数，写入时未知为-1
+         * @throws IOException 抛出异常以取消读写
+         */
+        void update(int nodes, int totalNodes, long bytes, long totalBytes) throws IOException;
+    }
+
+    /**
+     * 统计写出字节数的输出流
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        volatile long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * 统计读取字节数的输入流
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
 }
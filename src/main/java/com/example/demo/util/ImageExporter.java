@@ -1,76 +1,340 @@
 package com.example.demo.util;
 
-import javafx.embed.swing.SwingFXUtils;
-import javafx.scene.Node;
-import javafx.scene.SnapshotParameters;
-import javafx.scene.image.WritableImage;
+import com.example.demo.model.MindMap;
+import javafx.concurrent.Task;
+import javafx.scene.control.ChoiceDialog;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 图像导出工具类，用于将思维导图导出为图像文件
+ * 图像直接根据模型用Java2D绘制，而不是对界面截图，因此与窗口大小无关，
+ * 可以按任意分辨率导出整张思维导图。绘制和编码在后台线程上按条带流式进行，
+ * 内存占用只与图像宽度有关，见{@link BandedSceneImage}。
+ * SVG和PDF按节点逐个写出矢量图形，文件大小只与节点数量有关。
  */
 public class ImageExporter {
-    
+
+    /** 屏幕的逻辑分辨率，按此分辨率导出时一个场景单位对应一个像素 */
+    public static final double SCREEN_DPI = 96;
+    private static final double[] DPI_CHOICES = {72, 96, 150, 300, 600};
+    private static final float JPEG_QUALITY = 0.9f;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 导出进度回调
+     */
+    public interface Progress {
+        /**
+         * @param done 位图为已经绘制的像素行数，矢量图为已经写出的节点数
+         * @param total 位图的总行数或者节点总数
+         * @throws IOException 抛出异常以取消导出
+         */
+        void update(int done, int total) throws IOException;
+    }
+
+    /**
+     * 导出思维导图为JPG图像，必须在JavaFX线程上调用
+     * @param mindMap 要导出的思维导图
+     * @param maxLineLength 最大线长，见{@link ExportScene#capture(MindMap, double)}
+     * @param stage 当前舞台
+     * @return 已经开始执行的导出任务，用户取消时返回null
+     */
+    public static Task<File> exportAsJPG(MindMap mindMap, double maxLineLength, Stage stage) {
+        return exportImage(mindMap, maxLineLength, stage, "jpg", "JPG图像文件");
+    }
+
     /**
-     * 导出节点为JPG图像
-     * @param node 要导出的节点
+     * 导出思维导图为PNG图像，必须在JavaFX线程上调用
+     * @param mindMap 要导出的思维导图
+     * @param maxLineLength 最大线长，见{@link ExportScene#capture(MindMap, double)}
      * @param stage 当前舞台
-     * @return 是否成功导出
+     * @return 已经开始执行的导出任务，用户取消时返回null
      */
-    public static boolean exportAsJPG(Node node, Stage stage) {
-        return exportImage(node, stage, "jpg", "JPG图像文件");
+    public static Task<File> exportAsPNG(MindMap mindMap, double maxLineLength, Stage stage) {
+        return exportImage(mindMap, maxLineLength, stage, "png", "PNG图像文件");
     }
-    
+
     /**
-     * 导出节点为PNG图像
-     * @param node 要导出的节点
+     * 导出思维导图为SVG矢量图，必须在JavaFX线程上调用
+     * @param mindMap 要导出的思维导图
+     * @param maxLineLength 最大线长，见{@link ExportScene#capture(MindMap, double)}
      * @param stage 当前舞台
-     * @return 是否成功导出
+     * @return 已经开始执行的导出任务，用户取消时返回null
      */
-    public static boolean exportAsPNG(Node node, Stage stage) {
-        return exportImage(node, stage, "png", "PNG图像文件");
+    public static Task<File> exportAsSVG(MindMap mindMap, double maxLineLength, Stage stage) {
+        File file = chooseFile(stage, "svg", "SVG矢量图");
+        if (file == null) {
+            return null;
+        }
+        ExportScene scene = ExportScene.capture(mindMap, maxLineLength);
+        return startExport(file, "个节点", progress -> writeSvg(scene, file, progress));
     }
-    
+
     /**
-     * 导出节点为图像
-     * @param node 要导出的节点
+     * 导出思维导图为PDF文档，必须在JavaFX线程上调用
+     * @param mindMap 要导出的思维导图
+     * @param maxLineLength 最大线长，见{@link ExportScene#capture(MindMap, double)}
+     * @param stage 当前舞台
+     * @return 已经开始执行的导出任务，用户取消时返回null
+     */
+    public static Task<File> exportAsPDF(MindMap mindMap, double maxLineLength, Stage stage) {
+        File file = chooseFile(stage, "pdf", "PDF文档");
+        if (file == null) {
+            return null;
+        }
+        ExportScene scene = ExportScene.capture(mindMap, maxLineLength);
+        return startExport(file, "个节点", progress -> writePdf(scene, file, progress));
+    }
+
+    /**
+     * 选择文件和分辨率，然后在后台导出图像
+     * @param mindMap 要导出的思维导图
+     * @param maxLineLength 最大线长
      * @param stage 当前舞台
      * @param format 图像格式（jpg或png）
      * @param description 文件描述
-     * @return 是否成功导出
+     * @return 已经开始执行的导出任务，用户取消时返回null
      */
-    private static boolean exportImage(Node node, Stage stage, String format, String description) {
+    private static Task<File> exportImage(MindMap mindMap, double maxLineLength, Stage stage,
+                                          String format, String description) {
+        File file = chooseFile(stage, format, description);
+        if (file == null) {
+            return null;
+        }
+
+        ExportScene scene = ExportScene.capture(mindMap, maxLineLength);
+        Double dpi = chooseDpi(scene, stage);
+        if (dpi == null) {
+            return null;
+        }
+        return startExport(file, "行", progress -> writeImage(scene, file, format, dpi, progress));
+    }
+
+    /**
+     * 弹出导出文件的保存对话框
+     * @param stage 当前舞台
+     * @param format 文件扩展名
+     * @param description 文件描述
+     * @return 带有正确扩展名的文件，用户取消时返回null
+     */
+    private static File chooseFile(Stage stage, String format, String description) {
         FileChooser fileChooser = new FileChooser();
-        fileChooser.setTitle("导出为" + format.toUpperCase() + "图像");
+        fileChooser.setTitle("导出为" + format.toUpperCase());
         fileChooser.getExtensionFilters().add(
                 new FileChooser.ExtensionFilter(description, "*." + format));
-        
+
         File file = fileChooser.showSaveDialog(stage);
         if (file == null) {
-            return false;
+            return null;
         }
-        
+
         // 确保文件有正确的扩展名
         String path = file.getPath();
         if (!path.toLowerCase().endsWith("." + format)) {
             path += "." + format;
-            file = new File(path);
         }
-        
+        return new File(path);
+    }
+
+    /**
+     * 在后台线程上执行导出
+     * @param file 目标文件
+     * @param unit 进度的单位，用于状态栏消息
+     * @param export 导出操作
+     * @return 已经开始执行的任务，结果为目标文件
+     */
+    private static Task<File> startExport(File file, String unit, ExportAction export) {
+        Task<File> task = new Task<>() {
+            @Override
+            protected File call() throws Exception {
+                updateTitle(file.getName());
+                updateMessage("正在导出 " + file.getName());
+                export.run((done, total) -> {
+                    if (isCancelled()) {
+                        throw new InterruptedIOException("已取消");
+                    }
+                    updateProgress(done, total);
+                    updateMessage(String.format("正在导出 %s：%d / %d %s", file.getName(), done, total, unit));
+                });
+                return file;
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    private interface ExportAction {
+        void run(Progress progress) throws IOException;
+    }
+
+    /**
+     * 让用户选择导出分辨率，选项中显示对应的图像尺寸
+     * @return 每英寸像素数，用户取消时返回null
+     */
+    private static Double chooseDpi(ExportScene scene, Stage stage) {
+        Map<String, Double> choices = new LinkedHashMap<>();
+        String defaultChoice = null;
+        for (double dpi : DPI_CHOICES) {
+            double scale = dpi / SCREEN_DPI;
+            String label = String.format("%.0f DPI（%d × %d 像素）", dpi,
+                    (long) Math.ceil(scene.getWidth() * scale), (long) Math.ceil(scene.getHeight() * scale));
+            choices.put(label, dpi);
+            if (dpi == SCREEN_DPI) {
+                defaultChoice = label;
+            }
+        }
+
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(defaultChoice, choices.keySet());
+        dialog.setTitle("导出图像");
+        dialog.setHeaderText(null);
+        dialog.setContentText("分辨率：");
+        dialog.initOwner(stage);
+        Optional<String> result = dialog.showAndWait();
+        return result.map(choices::get).orElse(null);
+    }
+
+    /**
+     * 把绘制快照写成图像文件，可以在任意线程上调用
+     * 写入失败或取消时删除不完整的文件。
+     * @param scene 绘制快照
+     * @param file 目标文件
+     * @param format 图像格式（jpg或png）
+     * @param dpi 每英寸像素数，{@link #SCREEN_DPI}时与屏幕上的大小相同
+     * @param progress 进度回调，可以为null
+     * @throws IOException 写入失败、图像太大，或者进度回调要求取消
+     */
+    public static void writeImage(ExportScene scene, File file, String format, double dpi,
+                                  Progress progress) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("不支持的图像格式：" + format);
+        }
+        ImageWriter writer = writers.next();
+        BandedSceneImage image = new BandedSceneImage(scene, dpi / SCREEN_DPI, progress);
+        boolean jpeg = "jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format);
         try {
-            // 创建快照
-            WritableImage image = node.snapshot(new SnapshotParameters(), null);
-            
-            // 保存图像
-            return ImageIO.write(SwingFXUtils.fromFXImage(image, null), format, file);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            if (jpeg) {
+                // 提前检查尺寸，避免写出一半才失败
+                image.createLazyRaster();
+            }
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (jpeg) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            IIOMetadata metadata = writer.getDefaultImageMetadata(
+                    ImageTypeSpecifier.createFromRenderedImage(image), param);
+            setResolution(metadata, dpi);
+
+            file.delete();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+                if (out == null) {
+                    throw new IOException("无法写入文件：" + file);
+                }
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, metadata), param);
+            }
+            if (progress != null) {
+                progress.update(image.getHeight(), image.getHeight());
+            }
+        } catch (UncheckedIOException e) {
+            file.delete();
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        } finally {
+            writer.dispose();
+            image.dispose();
+        }
+    }
+
+    /**
+     * 把绘制快照写成SVG文件，可以在任意线程上调用
+     * 写入失败或取消时删除不完整的文件。
+     * @param scene 绘制快照
+     * @param file 目标文件
+     * @param progress 进度回调，可以为null
+     * @throws IOException 写入失败，或者进度回调要求取消
+     */
+    public static void writeSvg(ExportScene scene, File file, Progress progress) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            SvgWriter.write(scene, out, progress);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * 把绘制快照写成PDF文件，可以在任意线程上调用
+     * 写入失败或取消时删除不完整的文件。
+     * @param scene 绘制快照
+     * @param file 目标文件
+     * @param progress 进度回调，可以为null
+     * @throws IOException 写入失败，或者进度回调要求取消
+     */
+    public static void writePdf(ExportScene scene, File file, Progress progress) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), STREAM_BUFFER_SIZE)) {
+            PdfWriter.write(scene, out, progress);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * 通过标准元数据格式写入分辨率，PNG写入pHYs块，JPEG写入JFIF密度
+     */
+    private static void setResolution(IIOMetadata metadata, double dpi) throws IIOInvalidTreeException {
+        if (metadata == null || !metadata.isStandardMetadataFormatSupported() || metadata.isReadOnly()) {
+            return;
         }
+        String millimetersPerPixel = Double.toString(25.4 / dpi);
+        IIOMetadataNode horizontal = new IIOMetadataNode("HorizontalPixelSize");
+        horizontal.setAttribute("value", millimetersPerPixel);
+        IIOMetadataNode vertical = new IIOMetadataNode("VerticalPixelSize");
+        vertical.setAttribute("value", millimetersPerPixel);
+        IIOMetadataNode dimension = new IIOMetadataNode("Dimension");
+        dimension.appendChild(horizontal);
+        dimension.appendChild(vertical);
+        IIOMetadataNode root = new IIOMetadataNode("javax_imageio_1.0");
+        root.appendChild(dimension);
+        metadata.mergeTree("javax_imageio_1.0", root);
     }
 }
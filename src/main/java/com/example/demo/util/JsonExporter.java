@@ -0,0 +1,125 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMap;
+import javafx.scene.paint.Color;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 把思维导图导出为JSON，供其他工具读取
+ * 节点按先序写成一个扁平数组，通过parent引用父节点的id，没有父节点时为null。
+ * 边生成边写出，不在内存中拼接整个文档。
+ */
+public class JsonExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 导出思维导图，不在JavaFX线程上使用时调用方需要保证思维导图没有被同时修改
+     * 部分加载的思维导图会先读出剩余的节点。
+     * @param mindMap 思维导图
+     * @param file 目标文件
+     * @throws IOException 写入失败
+     */
+    public static void write(MindMap mindMap, File file) throws IOException {
+        mindMap.loadAll();
+        MindMapSnapshot snapshot = MindMapSnapshot.capture(mindMap);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            write(snapshot, out);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    private static void write(MindMapSnapshot snapshot, Writer out) throws IOException {
+        StringBuilder buffer = new StringBuilder(8192);
+        buffer.append("{\"name\":");
+        appendString(buffer, snapshot.name);
+        buffer.append(",\"nodeCount\":").append(snapshot.count).append(",\"nodes\":[");
+        for (int i = 0; i < snapshot.count; i++) {
+            buffer.append(i == 0 ? "\n{\"id\":" : ",\n{\"id\":");
+            appendString(buffer, snapshot.ids[i]);
+            buffer.append(",\"parent\":");
+            if (snapshot.parents[i] < 0) {
+                buffer.append("null");
+            } else {
+                appendString(buffer, snapshot.ids[snapshot.parents[i]]);
+            }
+            buffer.append(",\"text\":");
+            appendString(buffer, snapshot.texts[i]);
+            appendNumber(buffer, "x", snapshot.xs[i]);
+            appendNumber(buffer, "y", snapshot.ys[i]);
+            appendNumber(buffer, "width", snapshot.widths[i]);
+            appendNumber(buffer, "height", snapshot.heights[i]);
+            buffer.append(",\"shape\":\"").append(snapshot.shapes[i].name());
+            buffer.append("\",\"lineStyle\":\"").append(snapshot.lineStyles[i].name()).append('"');
+            appendNumber(buffer, "fontSize", snapshot.fontSizes[i]);
+            appendNumber(buffer, "sizeScale", snapshot.sizeScales[i]);
+            Color color = snapshot.colors[i];
+            if (color != null) {
+                buffer.append(",\"color\":\"").append(toHex(color)).append('"');
+            }
+            buffer.append('}');
+            if (buffer.length() > 8192) {
+                out.append(buffer);
+                buffer.setLength(0);
+            }
+        }
+        buffer.append("\n]}\n");
+        out.append(buffer);
+    }
+
+    private static void appendNumber(StringBuilder buffer, String name, double value) {
+        buffer.append(",\"").append(name).append("\":");
+        VectorFormat.appendNumber(buffer, value);
+    }
+
+    static void appendString(StringBuilder buffer, String value) {
+        if (value == null) {
+            buffer.append("null");
+            return;
+        }
+        buffer.append('"');
+        for (int k = 0; k < value.length(); k++) {
+            char ch = value.charAt(k);
+            switch (ch) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        buffer.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        buffer.append(ch);
+                    }
+                    break;
+            }
+        }
+        buffer.append('"');
+    }
+
+    private static String toHex(Color color) {
+        return String.format("#%02x%02x%02x", Math.round(color.getRed() * 255),
+                Math.round(color.getGreen() * 255), Math.round(color.getBlue() * 255));
+    }
+}
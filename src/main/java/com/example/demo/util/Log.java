@@ -0,0 +1,295 @@
+package com.example.demo.util;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 分级日志
+ * 每个类持有一个日志对象，低于当前级别的调用只做一次整数比较后直接返回，
+ * 不会格式化消息，也不会创建日志记录。参数中的基本类型仍然会在调用前装箱，
+ * 因此逐个节点输出的跟踪信息必须先用{@link #isTraceEnabled()}判断。
+ * <p>
+ * 消息中的{}依次替换为参数。日志写到标准错误，最近的记录同时保存在内存中，
+ * 供调试界面查看和导出。默认级别为INFO，可以通过系统属性demo.log.level修改。
+ */
+public final class Log {
+
+    /**
+     * 日志级别，从低到高
+     */
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /**
+     * 日志记录
+     */
+    public static final class Record {
+        private final long timestamp;
+        private final Level level;
+        private final String logger;
+        private final String thread;
+        private final String message;
+        private final String error;
+
+        Record(long timestamp, Level level, String logger, String thread, String message, String error) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.logger = logger;
+            this.thread = thread;
+            this.message = message;
+            this.error = error;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+
+        public String getLogger() {
+            return logger;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * 获取异常的堆栈信息
+         * @return 堆栈信息，没有异常时为null
+         */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            String text = TIME_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()))
+                    + ' ' + level + " [" + thread + "] " + logger + " - " + message;
+            return error == null ? text : text + System.lineSeparator() + error;
+        }
+    }
+
+    private static final String LEVEL_PROPERTY = "demo.log.level";
+    private static final int HISTORY_SIZE = 1000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static volatile int threshold = initialLevel().ordinal();
+    private static volatile PrintStream output = System.err;
+
+    // 最近的日志记录，环形缓冲区
+    private static final Record[] history = new Record[HISTORY_SIZE];
+    private static int historyStart;
+    private static int historySize;
+
+    private final String name;
+
+    private Log(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 获取类的日志对象
+     * @param type 使用日志的类
+     * @return 日志对象
+     */
+    public static Log get(Class<?> type) {
+        return new Log(type.getSimpleName());
+    }
+
+    /**
+     * 获取当前的日志级别
+     * @return 日志级别
+     */
+    public static Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    /**
+     * 设置日志级别，立即对所有日志对象生效
+     * @param level 日志级别
+     */
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    /**
+     * 设置日志的输出目标
+     * @param stream 输出流，为null时只保存在内存中
+     */
+    public static void setOutput(PrintStream stream) {
+        output = stream;
+    }
+
+    /**
+     * 获取最近的日志记录
+     * @return 按时间排列的记录
+     */
+    public static List<Record> getRecentRecords() {
+        synchronized (history) {
+            List<Record> records = new ArrayList<>(historySize);
+            for (int i = 0; i < historySize; i++) {
+                records.add(history[(historyStart + i) % HISTORY_SIZE]);
+            }
+            return records;
+        }
+    }
+
+    public boolean isTraceEnabled() {
+        return threshold <= Level.TRACE.ordinal();
+    }
+
+    public boolean isDebugEnabled() {
+        return threshold <= Level.DEBUG.ordinal();
+    }
+
+    public boolean isEnabled(Level level) {
+        return threshold <= level.ordinal();
+    }
+
+    public void trace(String message) {
+        if (threshold <= Level.TRACE.ordinal()) {
+            log(Level.TRACE, message, null);
+        }
+    }
+
+    public void trace(String format, Object arg) {
+        if (threshold <= Level.TRACE.ordinal()) {
+            log(Level.TRACE, format(format, arg), null);
+        }
+    }
+
+    public void trace(String format, Object arg1, Object arg2) {
+        if (threshold <= Level.TRACE.ordinal()) {
+            log(Level.TRACE, format(format, arg1, arg2), null);
+        }
+    }
+
+    public void trace(String format, Object... args) {
+        if (threshold <= Level.TRACE.ordinal()) {
+            log(Level.TRACE, format(format, args), null);
+        }
+    }
+
+    public void debug(String message) {
+        if (threshold <= Level.DEBUG.ordinal()) {
+            log(Level.DEBUG, message, null);
+        }
+    }
+
+    public void debug(String format, Object arg) {
+        if (threshold <= Level.DEBUG.ordinal()) {
+            log(Level.DEBUG, format(format, arg), null);
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (threshold <= Level.DEBUG.ordinal()) {
+            log(Level.DEBUG, format(format, arg1, arg2), null);
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (threshold <= Level.DEBUG.ordinal()) {
+            log(Level.DEBUG, format(format, args), null);
+        }
+    }
+
+    public void info(String message) {
+        if (threshold <= Level.INFO.ordinal()) {
+            log(Level.INFO, message, null);
+        }
+    }
+
+    public void info(String format, Object... args) {
+        if (threshold <= Level.INFO.ordinal()) {
+            log(Level.INFO, format(format, args), null);
+        }
+    }
+
+    public void warn(String message) {
+        if (threshold <= Level.WARN.ordinal()) {
+            log(Level.WARN, message, null);
+        }
+    }
+
+    public void warn(String message, Throwable error) {
+        if (threshold <= Level.WARN.ordinal()) {
+            log(Level.WARN, message, error);
+        }
+    }
+
+    public void error(String message) {
+        if (threshold <= Level.ERROR.ordinal()) {
+            log(Level.ERROR, message, null);
+        }
+    }
+
+    public void error(String message, Throwable error) {
+        if (threshold <= Level.ERROR.ordinal()) {
+            log(Level.ERROR, message, error);
+        }
+    }
+
+    private void log(Level level, String message, Throwable error) {
+        String stackTrace = null;
+        if (error != null) {
+            StringWriter writer = new StringWriter();
+            error.printStackTrace(new PrintWriter(writer));
+            stackTrace = writer.toString().trim();
+        }
+        Record record = new Record(System.currentTimeMillis(), level, name,
+                Thread.currentThread().getName(), message, stackTrace);
+        synchronized (history) {
+            if (historySize < HISTORY_SIZE) {
+                history[(historyStart + historySize++) % HISTORY_SIZE] = record;
+            } else {
+                history[historyStart] = record;
+                historyStart = (historyStart + 1) % HISTORY_SIZE;
+            }
+        }
+        PrintStream stream = output;
+        if (stream != null) {
+            stream.println(record);
+        }
+    }
+
+    private static String format(String format, Object... args) {
+        StringBuilder builder = new StringBuilder(format.length() + 16 * args.length);
+        int argument = 0;
+        int start = 0;
+        int index;
+        while (argument < args.length && (index = format.indexOf("{}", start)) >= 0) {
+            builder.append(format, start, index).append(args[argument++]);
+            start = index + 2;
+        }
+        return builder.append(format, start, format.length()).toString();
+    }
+
+    private static Level initialLevel() {
+        String value = System.getProperty(LEVEL_PROPERTY);
+        if (value != null) {
+            try {
+                return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("无效的日志级别: " + value);
+            }
+        }
+        return Level.INFO;
+    }
+}
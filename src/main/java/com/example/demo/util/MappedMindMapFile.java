@@ -0,0 +1,319 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import com.example.demo.model.NodeLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 按需加载的思维导图文件
+ * 将带索引的二进制文件映射到内存，打开时只创建靠近根节点的一部分节点，
+ * 其余分支在展开、滚动到可见区域或按ID查找时才从映射的文件中读取。
+ * 映射使用单个缓冲区，因此文件大小不能超过2GB。
+ * 与思维导图模型一样，只能在JavaFX应用线程中使用。
+ */
+public final class MappedMindMapFile implements NodeLoader {
+
+    /** 打开文件时预先加载的节点数量 */
+    private static final int INITIAL_NODE_BUDGET = 1500;
+
+    private ByteBuffer buffer;
+    private final int nodeCount;
+    private final int stringOffsetsPosition;
+    private final int nodeOffsetsPosition;
+    private final int subtreeSizesPosition;
+    private final BufferRecordInput record = new BufferRecordInput();
+
+    // 已创建的节点，按文件中的序号
+    private MindMapNode[] materialized;
+    private final Map<MindMapNode, Integer> indexOf = new IdentityHashMap<>();
+    // 按ID查找节点序号的开放寻址表，第一次查找尚未加载的节点时建立，存放序号+1
+    private int[] idTable;
+
+    private MappedMindMapFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int size = buffer.limit();
+        if (size < MindMapFileFormat.HEADER_SIZE + Long.BYTES) {
+            throw new IOException("文件不完整");
+        }
+        for (int i = 0; i < MindMapFileFormat.MAGIC.length; i++) {
+            if (buffer.get(i) != MindMapFileFormat.MAGIC[i]) {
+                throw new IOException("不是思维导图二进制文件");
+            }
+        }
+        int version = buffer.get(MindMapFileFormat.MAGIC.length) & 0xFF;
+        int flags = buffer.get(MindMapFileFormat.MAGIC.length + 1) & 0xFF;
+        if (version > MindMapFileFormat.VERSION
+                || (flags & MindMapFileFormat.FLAG_INDEXED) == 0
+                || (flags & MindMapFileFormat.FLAG_COMPRESSED) != 0) {
+            throw new IOException("文件没有索引，无法按需加载");
+        }
+
+        long indexOffset = buffer.getLong(size - Long.BYTES);
+        if (indexOffset < MindMapFileFormat.HEADER_SIZE || indexOffset > size - Long.BYTES - 2 * Integer.BYTES) {
+            throw new IOException("索引位置错误");
+        }
+        int index = (int) indexOffset;
+        int stringCount = buffer.getInt(index);
+        nodeCount = buffer.getInt(index + Integer.BYTES);
+        stringOffsetsPosition = index + 2 * Integer.BYTES;
+        nodeOffsetsPosition = stringOffsetsPosition + stringCount * Long.BYTES;
+        subtreeSizesPosition = nodeOffsetsPosition + nodeCount * Long.BYTES;
+        if (nodeCount <= 0 || stringCount < 0
+                || (long) subtreeSizesPosition + (long) nodeCount * Integer.BYTES != size - Long.BYTES) {
+            throw new IOException("索引大小错误");
+        }
+        materialized = new MindMapNode[nodeCount];
+    }
+
+    /**
+     * 打开带索引的思维导图文件，只加载根节点附近的节点
+     * @param file 文件
+     * @return 部分加载的思维导图，不再使用时通过{@link MindMap#loadAll()}或
+     *         {@link MindMap#setNodeLoader(NodeLoader)}释放映射
+     * @throws IOException 读取失败或文件没有索引
+     */
+    public static MindMap open(File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("文件过大，无法映射到内存");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return new MappedMindMapFile(buffer).createMindMap();
+    }
+
+    /**
+     * 创建思维导图：根节点和所有自由节点，然后按广度优先加载到预算数量
+     */
+    private MindMap createMindMap() throws IOException {
+        buffer.position(MindMapFileFormat.HEADER_SIZE);
+        String name = readString();
+
+        MindMap mindMap = new MindMap(materialize(0));
+        for (int i = subtreeSize(0); i < nodeCount; i += subtreeSize(i)) {
+            mindMap.addNodeToMap(materialize(i));
+        }
+        mindMap.setNodeLoader(this);
+
+        // 主根节点总是第一个
+        Deque<MindMapNode> queue = new ArrayDeque<>(mindMap.getRootNodes());
+        while (!queue.isEmpty() && mindMap.getNodeCount() < INITIAL_NODE_BUDGET) {
+            MindMapNode node = queue.poll();
+            if (mindMap.loadChildren(node)) {
+                queue.addAll(node.getChildren());
+            }
+        }
+
+        mindMap.setName(name);
+        mindMap.setModified(false);
+        return mindMap;
+    }
+
+    @Override
+    public int getChildCount(MindMapNode node) {
+        Integer index = indexOf.get(node);
+        if (index == null) {
+            return 0;
+        }
+        int count = 0;
+        int end = index + subtreeSize(index);
+        for (int child = index + 1; child < end; child += subtreeSize(child)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public List<MindMapNode> loadChildren(MindMapNode node) {
+        Integer index = indexOf.get(node);
+        if (index == null) {
+            return List.of();
+        }
+        List<MindMapNode> children = new ArrayList<>();
+        int end = index + subtreeSize(index);
+        try {
+            for (int child = index + 1; child < end; child += subtreeSize(child)) {
+                children.add(materialize(child));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return children;
+    }
+
+    @Override
+    public MindMapNode findLoadedAncestor(String id) {
+        try {
+            int index = findIndex(id);
+            if (index < 0 || materialized[index] != null) {
+                // 文件中没有该节点，或者节点已经加载过（之后被删除）
+                return null;
+            }
+            for (int parent = parentIndex(index); parent >= 0; parent = parentIndex(parent)) {
+                if (materialized[parent] != null) {
+                    return materialized[parent];
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int getTotalNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public void close() {
+        // 映射在缓冲区被回收时解除
+        buffer = null;
+        materialized = null;
+        indexOf.clear();
+        idTable = null;
+    }
+
+    /**
+     * 从文件中创建指定序号的节点
+     */
+    private MindMapNode materialize(int index) throws IOException {
+        buffer.position(nodeOffset(index));
+        MindMapFileFormat.readVarInt(buffer); // 父节点序号
+        MindMapNode node = MindMapFileFormat.readNode(record, this::string);
+        materialized[index] = node;
+        indexOf.put(node, index);
+        return node;
+    }
+
+    private int nodeOffset(int index) {
+        return (int) buffer.getLong(nodeOffsetsPosition + index * Long.BYTES);
+    }
+
+    private int subtreeSize(int index) {
+        return buffer.getInt(subtreeSizesPosition + index * Integer.BYTES);
+    }
+
+    private int parentIndex(int index) throws IOException {
+        buffer.position(nodeOffset(index));
+        return MindMapFileFormat.readVarInt(buffer) - 1;
+    }
+
+    /**
+     * 读取指定序号节点的ID，不创建节点
+     */
+    private String readId(int index) throws IOException {
+        buffer.position(nodeOffset(index));
+        MindMapFileFormat.readVarInt(buffer); // 父节点序号
+        int idRef = MindMapFileFormat.readVarInt(buffer);
+        return idRef == 0
+                ? new UUID(buffer.getLong(), buffer.getLong()).toString()
+                : string(idRef - 1);
+    }
+
+    /**
+     * 按ID查找节点序号
+     * @return 序号，没有找到时返回-1
+     */
+    private int findIndex(String id) throws IOException {
+        if (idTable == null) {
+            buildIdTable();
+        }
+        int mask = idTable.length - 1;
+        for (int slot = hash(id) & mask; idTable[slot] != 0; slot = (slot + 1) & mask) {
+            int index = idTable[slot] - 1;
+            if (id.equals(readId(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void buildIdTable() throws IOException {
+        int capacity = Integer.highestOneBit(Math.max(nodeCount, 1) * 2 - 1) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < nodeCount; i++) {
+            int slot = hash(readId(i)) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        idTable = table;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private String string(int index) {
+        int position = buffer.position();
+        try {
+            buffer.position((int) buffer.getLong(stringOffsetsPosition + index * Long.BYTES));
+            return readString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.position(position);
+        }
+    }
+
+    private String readString() throws IOException {
+        int length = MindMapFileFormat.readVarInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 从映射的缓冲区中读取节点记录
+     */
+    private final class BufferRecordInput implements MindMapFileFormat.RecordInput {
+        @Override
+        public int readVarInt() throws IOException {
+            return MindMapFileFormat.readVarInt(buffer);
+        }
+
+        @Override
+        public int readUnsignedByte() {
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public long readLong() {
+            return buffer.getLong();
+        }
+
+        @Override
+        public double readDouble() {
+            return buffer.getDouble();
+        }
+
+        @Override
+        public float readFloat() {
+            return buffer.getFloat();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.demo.util;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 运行时指标：计数器、数值和分布
+ * 指标按名称注册一次，之后在热点路径上只做几次整数运算，可以一直开启。
+ * 名称使用“模块.指标”的形式，例如layout.time，调试界面按名称查询，
+ * 也可以连同最近的日志一起导出为JSON文件。
+ */
+public final class Metrics {
+
+    /**
+     * 指标的公共部分
+     */
+    public abstract static class Metric {
+        private final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        abstract void appendJson(StringBuilder buffer);
+    }
+
+    /**
+     * 只增不减的计数器，可以在多个线程上同时使用
+     */
+    public static final class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name) {
+            super(name);
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        void appendJson(StringBuilder buffer) {
+            buffer.append("\"type\":\"counter\",\"value\":").append(get());
+        }
+
+        @Override
+        public String toString() {
+            return getName() + " = " + get();
+        }
+    }
+
+    /**
+     * 记录最新值的指标，例如节点数量
+     */
+    public static final class Gauge extends Metric {
+        private volatile long value;
+
+        Gauge(String name) {
+            super(name);
+        }
+
+        public void set(long value) {
+            this.value = value;
+        }
+
+        public long get() {
+            return value;
+        }
+
+        @Override
+        void appendJson(StringBuilder buffer) {
+            buffer.append("\"type\":\"gauge\",\"value\":").append(value);
+        }
+
+        @Override
+        public String toString() {
+            return getName() + " = " + value;
+        }
+    }
+
+    /**
+     * 一系列采样值的分布，例如每帧的耗时或分配的内存
+     * 除了累计的次数、总和与最大值，还保存最近若干次的采样，用于显示当前的平均值。
+     */
+    public static final class Distribution extends Metric {
+        private static final int RECENT_SIZE = 64; // 必须是2的幂
+
+        private final String unit;
+        private final long[] recent = new long[RECENT_SIZE];
+        private long count;
+        private long total;
+        private long max;
+        private long last;
+
+        Distribution(String name, String unit) {
+            super(name);
+            this.unit = unit;
+        }
+
+        /**
+         * 开始计时
+         * @return 开始时间，传给{@link #stop(long)}
+         */
+        public long start() {
+            return System.nanoTime();
+        }
+
+        /**
+         * 结束计时并记录耗时
+         * @param start {@link #start()}返回的开始时间
+         */
+        public void stop(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        /**
+         * 记录一个采样值
+         * @param value 采样值
+         */
+        public synchronized void record(long value) {
+            recent[(int) (count & (RECENT_SIZE - 1))] = value;
+            count++;
+            total += value;
+            last = value;
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        /**
+         * 获取单位，计时为ns，内存为B
+         * @return 单位
+         */
+        public String getUnit() {
+            return unit;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getLast() {
+            return last;
+        }
+
+        public synchronized long getMax() {
+            return max;
+        }
+
+        public synchronized double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * 获取最近若干次采样的平均值
+         * @return 平均值，没有采样时为0
+         */
+        public synchronized double getRecentMean() {
+            int size = (int) Math.min(count, RECENT_SIZE);
+            if (size == 0) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += recent[i];
+            }
+            return (double) sum / size;
+        }
+
+        @Override
+        synchronized void appendJson(StringBuilder buffer) {
+            buffer.append("\"type\":\"distribution\",\"unit\":\"").append(unit)
+                    .append("\",\"count\":").append(count)
+                    .append(",\"last\":").append(last)
+                    .append(",\"max\":").append(max)
+                    .append(",\"mean\":");
+            VectorFormat.appendNumber(buffer, getMean());
+            buffer.append(",\"recentMean\":");
+            VectorFormat.appendNumber(buffer, getRecentMean());
+        }
+
+        @Override
+        public String toString() {
+            double scale = "ns".equals(unit) ? 1e-6 : 1;
+            String shown = "ns".equals(unit) ? "ms" : unit;
+            return String.format("%s = %.2f %s（最近平均 %.2f，最大 %.2f，%d 次）", getName(),
+                    getLast() * scale, shown, getRecentMean() * scale, getMax() * scale, getCount());
+        }
+    }
+
+    private static final Map<String, Metric> METRICS = new ConcurrentSkipListMap<>();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = initAllocationTracking();
+    private static boolean garbageCollectionTracked;
+
+    private Metrics() {
+    }
+
+    /**
+     * 获取或注册计数器
+     * @param name 指标名称
+     * @return 计数器
+     */
+    public static Counter counter(String name) {
+        return register(name, Counter.class, () -> new Counter(name));
+    }
+
+    /**
+     * 获取或注册数值指标
+     * @param name 指标名称
+     * @return 数值指标
+     */
+    public static Gauge gauge(String name) {
+        return register(name, Gauge.class, () -> new Gauge(name));
+    }
+
+    /**
+     * 获取或注册以纳秒为单位的耗时分布
+     * @param name 指标名称
+     * @return 耗时分布
+     */
+    public static Distribution timer(String name) {
+        return register(name, Distribution.class, () -> new Distribution(name, "ns"));
+    }
+
+    /**
+     * 获取或注册以字节为单位的内存分布
+     * @param name 指标名称
+     * @return 内存分布
+     */
+    public static Distribution bytes(String name) {
+        return register(name, Distribution.class, () -> new Distribution(name, "B"));
+    }
+
+    /**
+     * 按名称查找指标
+     * @param name 指标名称
+     * @return 指标，未注册时返回null
+     */
+    public static Metric get(String name) {
+        return METRICS.get(name);
+    }
+
+    /**
+     * 获取所有指标
+     * @return 按名称排序的指标
+     */
+    public static List<Metric> getAll() {
+        return new ArrayList<>(METRICS.values());
+    }
+
+    /**
+     * 获取当前线程累计分配的内存，两次调用的差值就是这段时间内分配的内存
+     * @return 分配的字节数，JVM不支持时返回-1
+     */
+    public static long allocatedBytes() {
+        return ALLOCATION_SUPPORTED
+                ? ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes()
+                : -1;
+    }
+
+    /**
+     * 开始记录每次垃圾回收的停顿时间，记为gc.pause，重复调用没有影响
+     * 停顿时间来自JVM的回收通知，并发回收器报告的是整个回收周期的时间。
+     */
+    public static synchronized void trackGarbageCollection() {
+        if (garbageCollectionTracked) {
+            return;
+        }
+        garbageCollectionTracked = true;
+        Distribution pauses = timer("gc.pause");
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(collector instanceof NotificationEmitter)) {
+                continue;
+            }
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    GarbageCollectionNotificationInfo info =
+                            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                    pauses.record(info.getGcInfo().getDuration() * 1_000_000L);
+                }
+            }, null, null);
+        }
+    }
+
+    /**
+     * 把所有指标和最近的日志导出为JSON文件
+     * @param file 目标文件
+     * @throws IOException 写入失败
+     */
+    public static void dump(File file) throws IOException {
+        StringBuilder buffer = new StringBuilder(64 * 1024);
+        buffer.append("{\"timestamp\":").append(System.currentTimeMillis()).append(",\"metrics\":[");
+        boolean first = true;
+        for (Metric metric : METRICS.values()) {
+            buffer.append(first ? "\n{\"name\":" : ",\n{\"name\":");
+            JsonExporter.appendString(buffer, metric.getName());
+            buffer.append(',');
+            metric.appendJson(buffer);
+            buffer.append('}');
+            first = false;
+        }
+        buffer.append("\n],\"log\":[");
+        first = true;
+        for (Log.Record record : Log.getRecentRecords()) {
+            buffer.append(first ? "\n{\"timestamp\":" : ",\n{\"timestamp\":").append(record.getTimestamp());
+            buffer.append(",\"level\":\"").append(record.getLevel()).append("\",\"logger\":");
+            JsonExporter.appendString(buffer, record.getLogger());
+            buffer.append(",\"thread\":");
+            JsonExporter.appendString(buffer, record.getThread());
+            buffer.append(",\"message\":");
+            JsonExporter.appendString(buffer, record.getMessage());
+            if (record.getError() != null) {
+                buffer.append(",\"error\":");
+                JsonExporter.appendString(buffer, record.getError());
+            }
+            buffer.append('}');
+            first = false;
+        }
+        buffer.append("\n]}\n");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.append(buffer);
+        }
+    }
+
+    private static <T extends Metric> T register(String name, Class<T> type, Supplier<T> factory) {
+        Metric metric = METRICS.computeIfAbsent(name, key -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("指标" + name + "已经注册为其他类型");
+        }
+        return type.cast(metric);
+    }
+
+    private static boolean initAllocationTracking() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        if (!threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        return true;
+    }
+}
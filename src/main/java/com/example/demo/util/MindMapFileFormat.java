@@ -0,0 +1,616 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import javafx.scene.paint.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 思维导图的二进制文件格式
+ *
+ * 文件结构：
+ * <pre>
+ * 文件头   魔数 "DTMM"、版本号(1字节)、标志(1字节，第0位表示正文经过Deflate压缩)
+ * 正文     名称
+ *          字符串表：数量，然后是每个字符串（节点文本和非UUID格式的节点ID）
+ *          节点数量，然后按先序依次写出每个节点：
+ *              父节点序号+1（0表示没有父节点）
+ *              ID：0表示随后是UUID的两个long，否则为字符串表序号+1
+ *              文本的字符串表序号
+ *              标志位、形状、连线样式
+ *              x、y、宽、高、缩放比例、字号（double）
+ *              颜色的红、绿、蓝和不透明度（float，与Color内部精度相同，有颜色时才写出）
+ * 索引     （版本2，仅在正文未压缩时写出，文件头标志第1位）
+ *          字符串数量、节点数量（int）
+ *          每个字符串的文件偏移（long）
+ *          每个节点记录的文件偏移（long）
+ *          每个节点的子树节点数（int），由于按先序排列，节点i的子树就是[i, i+子树节点数)
+ *          索引的文件偏移（long，位于文件末尾）
+ * </pre>
+ * 所有整数都使用变长编码，字符串为变长编码的长度加UTF-8字节。
+ * 父节点总是先于子节点写出，读取时不需要递归，子节点的顺序也得以保留。
+ * 带索引的文件可以由{@link MappedMindMapFile}映射到内存中按需加载。
+ */
+public final class MindMapFileFormat {
+
+    /** 当前格式版本 */
+    public static final int VERSION = 2;
+
+    static final byte[] MAGIC = {'D', 'T', 'M', 'M'};
+    static final int HEADER_SIZE = MAGIC.length + 2;
+    static final int FLAG_COMPRESSED = 1;
+    static final int FLAG_INDEXED = 1 << 1;
+
+    // 节点标志位
+    static final int NODE_CENTER = 1;
+    static final int NODE_MANUALLY_POSITIONED = 1 << 1;
+    static final int NODE_SELECTED = 1 << 2;
+    static final int NODE_HAS_COLOR = 1 << 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 报告进度的节点间隔
+    private static final int PROGRESS_INTERVAL = 4096;
+
+    private static final MindMapNode.NodeShape[] SHAPES = MindMapNode.NodeShape.values();
+    private static final MindMapNode.LineStyle[] LINE_STYLES = MindMapNode.LineStyle.values();
+
+    private MindMapFileFormat() {
+    }
+
+    /**
+     * 判断输入流是否以本格式的魔数开头，不消耗输入流中的数据
+     * @param in 支持mark的输入流
+     * @return 是否为二进制格式
+     * @throws IOException 读取失败
+     */
+    public static boolean isBinaryFormat(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            for (byte b : MAGIC) {
+                if (in.read() != b) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * 判断输入流中的文件是否带有索引，可以按需加载，不消耗输入流中的数据
+     * @param in 支持mark的输入流
+     * @return 是否带有索引
+     * @throws IOException 读取失败
+     */
+    public static boolean isIndexed(InputStream in) throws IOException {
+        in.mark(HEADER_SIZE);
+        try {
+            for (byte b : MAGIC) {
+                if (in.read() != b) {
+                    return false;
+                }
+            }
+            return in.read() >= 2 && (in.read() & FLAG_INDEXED) != 0;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * 写出思维导图，未压缩时同时写出索引
+     * @param mindMap 思维导图，必须已经全部加载
+     * @param out 输出流，不会被关闭
+     * @param compress 是否压缩正文
+     * @throws IOException 写入失败
+     */
+    public static void write(MindMap mindMap, OutputStream out, boolean compress) throws IOException {
+        if (!mindMap.isFullyLoaded()) {
+            throw new IOException("思维导图尚未全部加载");
+        }
+        write(MindMapSnapshot.capture(mindMap), out, compress, null);
+    }
+
+    /**
+     * 写出思维导图快照，可以在任意线程上调用
+     * @param snapshot 快照
+     * @param out 输出流，不会被关闭
+     * @param compress 是否压缩正文
+     * @param progress 进度回调，可以为null
+     * @throws IOException 写入失败，或者进度回调要求取消
+     */
+    static void write(MindMapSnapshot snapshot, OutputStream out, boolean compress, Progress progress)
+            throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(compress ? FLAG_COMPRESSED : FLAG_INDEXED);
+
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            OutputStream body = compress
+                    ? new DeflaterOutputStream(new NonClosingOutputStream(out), deflater, BUFFER_SIZE)
+                    : new NonClosingOutputStream(out);
+            try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(body, BUFFER_SIZE))) {
+                writeBody(snapshot, data, !compress, progress);
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * 读取思维导图，输入流必须位于文件头
+     * @param in 输入流，不会被关闭
+     * @return 思维导图
+     * @throws IOException 读取失败或格式错误
+     */
+    public static MindMap read(InputStream in) throws IOException {
+        return read(in, null);
+    }
+
+    /**
+     * 读取思维导图并报告进度，可以在任意线程上调用
+     * @param in 输入流，不会被关闭
+     * @param progress 进度回调，可以为null
+     * @return 思维导图
+     * @throws IOException 读取失败、格式错误，或者进度回调要求取消
+     */
+    public static MindMap read(InputStream in, Progress progress) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        header.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("不是思维导图二进制文件");
+            }
+        }
+        int version = header.readUnsignedByte();
+        if (version > VERSION) {
+            throw new IOException("不支持的文件版本: " + version);
+        }
+        int flags = header.readUnsignedByte();
+
+        Inflater inflater = (flags & FLAG_COMPRESSED) != 0 ? new Inflater() : null;
+        try {
+            InputStream body = inflater != null
+                    ? new InflaterInputStream(in, inflater, BUFFER_SIZE)
+                    : in;
+            return readBody(new DataInputStream(new BufferedInputStream(body, BUFFER_SIZE)), progress);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private static void writeBody(MindMapSnapshot snapshot, DataOutputStream out, boolean indexed, Progress progress)
+            throws IOException {
+        int count = snapshot.count;
+        long[] stringOffsets = null;
+        long[] nodeOffsets = null;
+        int[] subtreeSizes = null;
+
+        // 字符串表
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        UUID[] uuids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            intern(snapshot.texts[i], stringIndex, strings);
+            uuids[i] = parseUuid(snapshot.ids[i]);
+            if (uuids[i] == null) {
+                intern(snapshot.ids[i], stringIndex, strings);
+            }
+        }
+
+        writeString(out, snapshot.name);
+        writeVarInt(out, strings.size());
+        if (indexed) {
+            stringOffsets = new long[strings.size()];
+            nodeOffsets = new long[count];
+            subtreeSizes = new int[count];
+        }
+        for (int i = 0; i < strings.size(); i++) {
+            if (indexed) {
+                stringOffsets[i] = position(out);
+            }
+            writeString(out, strings.get(i));
+        }
+
+        writeVarInt(out, count);
+        for (int i = 0; i < count; i++) {
+            if (indexed) {
+                nodeOffsets[i] = position(out);
+                subtreeSizes[i] = 1;
+            }
+            writeVarInt(out, snapshot.parents[i] + 1);
+
+            UUID uuid = uuids[i];
+            if (uuid != null) {
+                writeVarInt(out, 0);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                writeVarInt(out, stringIndex.get(snapshot.ids[i]) + 1);
+            }
+            writeVarInt(out, stringIndex.get(snapshot.texts[i]));
+
+            writeAttributes(out, snapshot.flags[i], snapshot.shapes[i], snapshot.lineStyles[i],
+                    snapshot.xs[i], snapshot.ys[i], snapshot.widths[i], snapshot.heights[i],
+                    snapshot.sizeScales[i], snapshot.fontSizes[i], snapshot.colors[i]);
+            reportProgress(progress, i + 1, count);
+        }
+
+        if (indexed) {
+            // 先序排列中子节点总在父节点之后，倒序累加即可得到子树大小
+            for (int i = count - 1; i > 0; i--) {
+                if (snapshot.parents[i] >= 0) {
+                    subtreeSizes[snapshot.parents[i]] += subtreeSizes[i];
+                }
+            }
+
+            long indexOffset = position(out);
+            out.writeInt(strings.size());
+            out.writeInt(count);
+            for (long offset : stringOffsets) {
+                out.writeLong(offset);
+            }
+            for (long offset : nodeOffsets) {
+                out.writeLong(offset);
+            }
+            for (int size : subtreeSizes) {
+                out.writeInt(size);
+            }
+            out.writeLong(indexOffset);
+        }
+    }
+
+    /**
+     * 获取当前写入位置在文件中的偏移
+     * DataOutputStream的计数在超过int范围后不再增加，此时无法写出索引
+     */
+    private static long position(DataOutputStream out) throws IOException {
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IOException("文件过大，无法写出索引");
+        }
+        return HEADER_SIZE + (long) out.size();
+    }
+
+    private static MindMap readBody(DataInputStream in, Progress progress) throws IOException {
+        String name = readString(in);
+        int stringCount = readVarInt(in);
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            strings[i] = readString(in);
+        }
+
+        int nodeCount = readVarInt(in);
+        if (nodeCount == 0) {
+            throw new IOException("文件中没有节点");
+        }
+        RecordInput record = new StreamRecordInput(in);
+        MindMapNode[] nodes = new MindMapNode[nodeCount];
+        MindMap mindMap = null;
+        for (int i = 0; i < nodeCount; i++) {
+            int parent = readVarInt(in) - 1;
+            if (parent >= i) {
+                throw new IOException("节点顺序错误: " + i);
+            }
+            MindMapNode node = readNode(record, index -> strings[index]);
+
+            if (parent >= 0) {
+                nodes[parent].addChild(node);
+            }
+            if (i == 0) {
+                // 第一个节点总是根节点
+                mindMap = new MindMap(node);
+            } else {
+                mindMap.addNodeToMap(node);
+            }
+            nodes[i] = node;
+            reportProgress(progress, i + 1, nodeCount);
+        }
+
+        mindMap.setName(name);
+        mindMap.setModified(false);
+        return mindMap;
+    }
+
+    /**
+     * 读取父节点序号之后的节点记录
+     * @param in 记录数据
+     * @param strings 按序号查找字符串表
+     * @return 新创建的节点，尚未加入父节点和思维导图
+     * @throws IOException 读取失败
+     */
+    static MindMapNode readNode(RecordInput in, IntFunction<String> strings) throws IOException {
+        int idRef = in.readVarInt();
+        String id = idRef == 0
+                ? new UUID(in.readLong(), in.readLong()).toString()
+                : strings.apply(idRef - 1);
+        MindMapNode node = new MindMapNode(id, strings.apply(in.readVarInt()));
+
+        readNodeAttributes(in, node);
+        return node;
+    }
+
+    /**
+     * 写出节点文本之后的属性：标志位、形状、连线样式、几何信息、字号和颜色
+     * @param out 输出流
+     * @param node 节点
+     * @throws IOException 写入失败
+     */
+    static void writeNodeAttributes(DataOutputStream out, MindMapNode node) throws IOException {
+        writeAttributes(out, nodeFlags(node), node.getShape(), node.getLineStyle(),
+                node.getX(), node.getY(), node.getWidth(), node.getHeight(),
+                node.getSizeScale(), node.getFontSize(), node.getColor());
+    }
+
+    /**
+     * 计算节点的标志位
+     * @param node 节点
+     * @return 标志位
+     */
+    static int nodeFlags(MindMapNode node) {
+        int flags = 0;
+        if (node.isCenterNode()) {
+            flags |= NODE_CENTER;
+        }
+        if (node.isManuallyPositioned()) {
+            flags |= NODE_MANUALLY_POSITIONED;
+        }
+        if (node.isSelected()) {
+            flags |= NODE_SELECTED;
+        }
+        if (node.getColor() != null) {
+            flags |= NODE_HAS_COLOR;
+        }
+        return flags;
+    }
+
+    private static void writeAttributes(DataOutputStream out, int flags,
+                                        MindMapNode.NodeShape shape, MindMapNode.LineStyle lineStyle,
+                                        double x, double y, double width, double height,
+                                        double sizeScale, double fontSize, Color color) throws IOException {
+        out.writeByte(flags);
+        // 旧版本文件中读出的节点可能缺少这两个字段
+        out.writeByte(shape != null ? shape.ordinal() : MindMapNode.NodeShape.ROUNDED_RECTANGLE.ordinal());
+        out.writeByte(lineStyle != null ? lineStyle.ordinal() : MindMapNode.LineStyle.SOLID.ordinal());
+
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(width);
+        out.writeDouble(height);
+        out.writeDouble(sizeScale);
+        out.writeDouble(fontSize);
+        if (color != null) {
+            out.writeFloat((float) color.getRed());
+            out.writeFloat((float) color.getGreen());
+            out.writeFloat((float) color.getBlue());
+            out.writeFloat((float) color.getOpacity());
+        }
+    }
+
+    /**
+     * 每处理一定数量的节点报告一次进度
+     */
+    private static void reportProgress(Progress progress, int nodes, int totalNodes) throws IOException {
+        if (progress != null && (nodes % PROGRESS_INTERVAL == 0 || nodes == totalNodes)) {
+            progress.update(nodes, totalNodes);
+        }
+    }
+
+    /**
+     * 读取节点文本之后的属性，写入已有的节点
+     * @param in 记录数据
+     * @param node 节点
+     * @throws IOException 读取失败
+     */
+    static void readNodeAttributes(RecordInput in, MindMapNode node) throws IOException {
+        int flags = in.readUnsignedByte();
+        node.setCenterNode((flags & NODE_CENTER) != 0);
+        node.setManuallyPositioned((flags & NODE_MANUALLY_POSITIONED) != 0);
+        node.setSelected((flags & NODE_SELECTED) != 0);
+        node.setShape(SHAPES[in.readUnsignedByte()]);
+        node.setLineStyle(LINE_STYLES[in.readUnsignedByte()]);
+
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double width = in.readDouble();
+        double height = in.readDouble();
+        // 保存的宽高已经包含缩放比例，setSizeScale会按比例调整当前宽高，所以必须先设置缩放比例再设置宽高，
+        // 否则缩放比例不为1的节点每读取一次（包括编辑日志重放到已有节点）就会再放大一次
+        node.setSizeScale(in.readDouble());
+        node.setX(x);
+        node.setY(y);
+        node.setWidth(width);
+        node.setHeight(height);
+        node.setFontSize(in.readDouble());
+        node.setColor((flags & NODE_HAS_COLOR) != 0
+                ? new Color(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat())
+                : null);
+    }
+
+    private static void intern(String string, Map<String, Integer> stringIndex, List<String> strings) {
+        if (!stringIndex.containsKey(string)) {
+            stringIndex.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    /**
+     * 解析标准格式的UUID字符串，格式不标准时返回null，以保证读回的ID与原来完全一致
+     */
+    private static UUID parseUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从映射的缓冲区中读取变长整数
+     * @param buffer 缓冲区，读取后位置移动到整数之后
+     * @return 整数值
+     */
+    static int readVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读写进度回调
+     */
+    public interface Progress {
+        /**
+         * 报告已处理的节点数量
+         * @param nodes 已读取或写出的节点数量
+         * @param totalNodes 节点总数
+         * @throws IOException 抛出异常以取消读写，例如{@link java.io.InterruptedIOException}
+         */
+        void update(int nodes, int totalNodes) throws IOException;
+    }
+
+    /**
+     * 节点记录的数据来源，流式读取和内存映射读取共用同一套解码逻辑
+     */
+    interface RecordInput {
+        int readVarInt() throws IOException;
+
+        int readUnsignedByte() throws IOException;
+
+        long readLong() throws IOException;
+
+        double readDouble() throws IOException;
+
+        float readFloat() throws IOException;
+    }
+
+    /**
+     * 从数据流中读取节点记录
+     */
+    static final class StreamRecordInput implements RecordInput {
+        private final DataInputStream in;
+
+        StreamRecordInput(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int readVarInt() throws IOException {
+            return MindMapFileFormat.readVarInt(in);
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return in.readUnsignedByte();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return in.readLong();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return in.readDouble();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return in.readFloat();
+        }
+    }
+
+    /**
+     * 关闭时只刷新不关闭底层流，使调用方可以继续管理底层流
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,641 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapEditListener;
+import com.example.demo.model.MindMapNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 思维导图的编辑日志
+ * 每次编辑都以一条记录追加到文件旁边的"文件名.journal"中，保存时只需写入一条提交标记，
+ * 耗时与编辑数量成正比，而不是与节点总数成正比。
+ *
+ * 日志结构：
+ * <pre>
+ * 文件头   魔数 "DTJL"、版本号(1字节)、快照文件的长度(long)和内容摘要(SHA-256的前8字节)
+ * 记录     长度(int)、CRC32(int)、内容
+ *          内容的第一个字节为类型：
+ *              节点    ID、父节点ID（可为空）、在父节点中的位置、文本、节点属性（与快照文件相同）
+ *              删除    ID
+ *              提交    没有内容，表示用户在此处保存
+ * </pre>
+ * 节点记录保存节点修改后的完整状态，重放时按ID创建或覆盖节点。
+ * 文件头中的快照信息与快照文件不一致时说明快照已被完整保存或合并覆盖，日志作废，
+ * 因此同一段记录不会被重放两次。快照按内容摘要识别而不是按修改时间，
+ * 修改时间精度较粗或被复制、还原时同样可靠。版本1的日志头记录的是修改时间，
+ * 打开时仍按旧方式校验一次，随后改写为新的日志头。
+ *
+ * 记录在JavaFX应用线程中编码，由后台线程批量写入，每批只调用一次fsync，
+ * 因此程序崩溃时最多丢失最近{@link #BATCH_DELAY_MS}毫秒内的编辑。
+ * 日志超过{@link #COMPACT_THRESHOLD}字节后，后台线程在提交之后读取快照、重放已提交的记录、
+ * 写出新的快照并替换原文件，再清空日志。
+ */
+public final class MindMapJournal implements MindMapEditListener {
+
+    private static final Log LOG = Log.get(MindMapJournal.class);
+
+    /** 日志文件的扩展名 */
+    public static final String EXTENSION = ".journal";
+
+    /** 两次fsync之间最长的间隔 */
+    static final long BATCH_DELAY_MS = 200;
+
+    /** 日志超过该大小后在提交时合并到快照 */
+    static final long COMPACT_THRESHOLD = 4L * 1024 * 1024;
+
+    private static final byte[] MAGIC = {'D', 'T', 'J', 'L'};
+    private static final int VERSION = 2;
+    // 日志头中保存快照修改时间的旧版本，长度与当前版本相同
+    private static final int LEGACY_VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 1 + 2 * Long.BYTES;
+    private static final int VERSION_OFFSET = MAGIC.length;
+    private static final int SNAPSHOT_LENGTH_OFFSET = VERSION_OFFSET + 1;
+    private static final int SNAPSHOT_DIGEST_OFFSET = SNAPSHOT_LENGTH_OFFSET + Long.BYTES;
+    private static final int FRAME_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final int RECORD_NODE = 1;
+    private static final int RECORD_DELETE = 2;
+    private static final int RECORD_COMMIT = 3;
+
+    private final File snapshotFile;
+    private final FileChannel channel;
+    private final ScheduledExecutorService writer;
+
+    // 等待写入的记录，由JavaFX应用线程追加，写入线程取出
+    private final List<byte[]> pending = new ArrayList<>();
+    private boolean flushScheduled;
+
+    // 以下字段只在写入线程中访问
+    private long committedLength;
+    private IOException writeError;
+
+    private MindMapJournal(File snapshotFile, FileChannel channel, long committedLength) {
+        this.snapshotFile = snapshotFile;
+        this.channel = channel;
+        this.committedLength = committedLength;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mind-map-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 获取快照文件对应的日志文件
+     * @param snapshotFile 快照文件
+     * @return 日志文件
+     */
+    public static File journalFile(File snapshotFile) {
+        return new File(snapshotFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * 为思维导图打开日志并开始记录编辑
+     * 已有的有效日志会保留，末尾不完整的记录被截掉；日志无效时重新创建。
+     * @param mindMap 思维导图，应当已经通过{@link #replay(MindMap, File)}重放过日志
+     * @param snapshotFile 思维导图的快照文件
+     * @return 日志
+     * @throws IOException 打开失败
+     */
+    public static MindMapJournal attach(MindMap mindMap, File snapshotFile) throws IOException {
+        File file = journalFile(snapshotFile);
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ScanResult scan = scan(channel, snapshotFile, null);
+            if (scan == null) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(header(snapshotFile)), 0);
+                channel.force(false);
+                scan = new ScanResult(HEADER_SIZE, HEADER_SIZE, 0, 0, false);
+            } else {
+                boolean changed = false;
+                if (scan.legacyHeader) {
+                    channel.write(ByteBuffer.wrap(header(snapshotFile)), 0);
+                    changed = true;
+                }
+                if (scan.validLength < channel.size()) {
+                    channel.truncate(scan.validLength);
+                    changed = true;
+                }
+                if (changed) {
+                    channel.force(false);
+                }
+            }
+            channel.position(scan.validLength);
+
+            MindMapJournal journal = new MindMapJournal(snapshotFile, channel, scan.committedLength);
+            mindMap.setEditListener(journal);
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 在刚读取的快照上重放日志
+     * @param mindMap 从快照文件读取的思维导图
+     * @param snapshotFile 快照文件
+     * @return 重放的结果，没有有效日志时两个数量都为0
+     * @throws IOException 读取失败
+     */
+    public static Recovery replay(MindMap mindMap, File snapshotFile) throws IOException {
+        File file = journalFile(snapshotFile);
+        if (!file.isFile()) {
+            return new Recovery(0, 0);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ScanResult scan = scan(channel, snapshotFile, mindMap);
+            return scan == null
+                    ? new Recovery(0, 0)
+                    : new Recovery(scan.committedRecords, scan.uncommittedRecords);
+        }
+    }
+
+    /**
+     * 在刚读取的快照上只重放已经提交的记录，得到用户最后一次保存时的状态
+     * 用于不打开界面的批处理，没有保存的修改不会出现在结果中。
+     * @param mindMap 从快照文件读取的思维导图
+     * @param snapshotFile 快照文件
+     * @return 重放的记录数量
+     * @throws IOException 读取失败
+     */
+    public static int replayCommitted(MindMap mindMap, File snapshotFile) throws IOException {
+        File file = journalFile(snapshotFile);
+        if (!file.isFile()) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ScanResult scan = scan(channel, snapshotFile, null);
+            if (scan == null || scan.committedLength <= HEADER_SIZE) {
+                return 0;
+            }
+            byte[] committed = new byte[(int) (scan.committedLength - HEADER_SIZE)];
+            readFully(channel, ByteBuffer.wrap(committed), HEADER_SIZE);
+            applyRecords(mindMap, committed);
+            return scan.committedRecords;
+        }
+    }
+
+    @Override
+    public void nodeEdited(MindMapNode node) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(RECORD_NODE);
+            MindMapFileFormat.writeString(out, node.getId());
+            MindMapNode parent = node.getParent();
+            MindMapFileFormat.writeString(out, parent != null ? parent.getId() : null);
+            MindMapFileFormat.writeVarInt(out, parent != null ? parent.getChildren().indexOf(node) : 0);
+            MindMapFileFormat.writeString(out, node.getText());
+            MindMapFileFormat.writeNodeAttributes(out, node);
+            append(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void nodeDeleted(MindMapNode node) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(RECORD_DELETE);
+            MindMapFileFormat.writeString(out, node.getId());
+            append(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 提交：写入提交标记并等待所有记录落盘，相当于保存
+     * 日志较大时随后在后台合并到快照。
+     * @throws IOException 写入失败
+     */
+    public void commit() throws IOException {
+        append(new byte[]{RECORD_COMMIT});
+        await(writer.submit(() -> {
+            flushPending();
+            if (channel.size() > COMPACT_THRESHOLD) {
+                writer.execute(this::compactQuietly);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * 丢弃最后一次提交之后的记录，用于用户选择不保存修改时
+     * @throws IOException 写入失败
+     */
+    public void discardUncommitted() throws IOException {
+        await(writer.submit(() -> {
+            synchronized (pending) {
+                pending.clear();
+            }
+            checkWriteError();
+            channel.truncate(committedLength);
+            channel.position(committedLength);
+            channel.force(false);
+            return null;
+        }));
+    }
+
+    /**
+     * 停止记录：写出尚未写入的记录，等待后台合并完成后关闭日志文件
+     * @param mindMap 思维导图，不再通知日志
+     */
+    public void close(MindMap mindMap) {
+        mindMap.setEditListener(null);
+        writer.execute(() -> {
+            try {
+                flushPending();
+            } catch (IOException e) {
+                LOG.warn("写入编辑日志失败", e);
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("关闭编辑日志失败", e);
+        }
+    }
+
+    /**
+     * 把记录加入等待队列，并安排在批处理间隔之后写入
+     */
+    private void append(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        byte[] frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + record.length)
+                .putInt(record.length)
+                .putInt((int) crc.getValue())
+                .put(record)
+                .array();
+        synchronized (pending) {
+            pending.add(frame);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        writer.schedule(() -> {
+            try {
+                flushPending();
+            } catch (IOException e) {
+                LOG.warn("写入编辑日志失败", e);
+            }
+        }, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在写入线程中写出所有等待的记录，然后调用一次fsync
+     */
+    private void flushPending() throws IOException {
+        List<byte[]> frames;
+        synchronized (pending) {
+            frames = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        checkWriteError();
+        if (frames.isEmpty()) {
+            return;
+        }
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[frames.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.wrap(frames.get(i));
+            }
+            long position = channel.position();
+            for (int i = 0; i < buffers.length; i++) {
+                while (buffers[i].hasRemaining()) {
+                    channel.write(buffers, i, buffers.length - i);
+                }
+                position += frames.get(i).length;
+                if (frames.get(i)[FRAME_HEADER_SIZE] == RECORD_COMMIT) {
+                    committedLength = position;
+                }
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            writeError = e;
+            throw e;
+        }
+    }
+
+    private void checkWriteError() throws IOException {
+        if (writeError != null) {
+            throw new IOException("编辑日志写入失败", writeError);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("合并编辑日志失败", e);
+        }
+    }
+
+    /**
+     * 在写入线程中把已提交的记录合并到快照
+     * 合并期间新的编辑留在等待队列中，合并结束后再写入新的日志。
+     * 在替换快照和清空日志之间崩溃时，日志头中的快照信息与新快照不一致，
+     * 日志会被作废，此时只丢失最后一次提交之后的记录。
+     */
+    private void compact() throws IOException {
+        flushPending();
+        if (committedLength <= HEADER_SIZE) {
+            return;
+        }
+
+        Object loaded;
+        try {
+            loaded = FileManager.readMindMap(snapshotFile);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("快照文件格式错误", e);
+        }
+        if (!(loaded instanceof MindMap)) {
+            throw new IOException("快照文件格式错误");
+        }
+        MindMap snapshot = (MindMap) loaded;
+        snapshot.loadAll();
+        byte[] committed = new byte[(int) (committedLength - HEADER_SIZE)];
+        readFully(channel, ByteBuffer.wrap(committed), HEADER_SIZE);
+        applyRecords(snapshot, committed);
+
+        // 先写临时文件再改名替换，写入中途崩溃时原快照和日志都保持有效
+        FileManager.writeMindMap(snapshot, snapshotFile);
+
+        // 保留最后一次提交之后的记录
+        byte[] tail = new byte[(int) (channel.size() - committedLength)];
+        readFully(channel, ByteBuffer.wrap(tail), committedLength);
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(header(snapshotFile)), 0);
+        channel.write(ByteBuffer.wrap(tail), HEADER_SIZE);
+        channel.force(false);
+        committedLength = HEADER_SIZE;
+        channel.position(HEADER_SIZE + tail.length);
+    }
+
+    /**
+     * 检查日志头并逐条校验记录
+     * @param mindMap 不为null时把每条有效记录应用到思维导图
+     * @return 扫描结果，日志头无效或与快照不一致时返回null
+     */
+    private static ScanResult scan(FileChannel channel, File snapshotFile, MindMap mindMap) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) size];
+        readFully(channel, ByteBuffer.wrap(bytes), 0);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return null;
+            }
+        }
+        // 先比较长度，长度不同时不必计算摘要
+        if (buffer.getLong(SNAPSHOT_LENGTH_OFFSET) != snapshotFile.length()) {
+            return null;
+        }
+        int version = bytes[VERSION_OFFSET];
+        long snapshotId = buffer.getLong(SNAPSHOT_DIGEST_OFFSET);
+        if (version == VERSION) {
+            if (snapshotId != snapshotDigest(snapshotFile)) {
+                return null;
+            }
+        } else if (version != LEGACY_VERSION || snapshotId != snapshotFile.lastModified()) {
+            return null;
+        }
+
+        int position = HEADER_SIZE;
+        int committedLength = HEADER_SIZE;
+        int records = 0;
+        int committedRecords = 0;
+        CRC32 crc = new CRC32();
+        while (size - position >= FRAME_HEADER_SIZE + 1) {
+            int length = buffer.getInt(position);
+            int checksum = buffer.getInt(position + Integer.BYTES);
+            int start = position + FRAME_HEADER_SIZE;
+            if (length <= 0 || length > size - start) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, start, length);
+            if ((int) crc.getValue() != checksum) {
+                // 崩溃时没有写完的记录
+                break;
+            }
+            if (bytes[start] == RECORD_COMMIT) {
+                committedLength = start + length;
+                committedRecords = records;
+            } else {
+                records++;
+                if (mindMap != null) {
+                    applyRecord(mindMap, new DataInputStream(new ByteArrayInputStream(bytes, start, length)));
+                }
+            }
+            position = start + length;
+        }
+        return new ScanResult(position, committedLength, committedRecords, records - committedRecords,
+                version == LEGACY_VERSION);
+    }
+
+    /**
+     * 依次应用没有文件头的记录序列，跳过提交标记
+     */
+    private static void applyRecords(MindMap mindMap, byte[] frames) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(frames);
+        while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+            int length = buffer.getInt();
+            buffer.getInt();
+            int start = buffer.position();
+            if (frames[start] != RECORD_COMMIT) {
+                applyRecord(mindMap, new DataInputStream(new ByteArrayInputStream(frames, start, length)));
+            }
+            buffer.position(start + length);
+        }
+    }
+
+    private static void applyRecord(MindMap mindMap, DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        String id = MindMapFileFormat.readString(in);
+        MindMapNode node = mindMap.getNodeById(id);
+        if (type == RECORD_DELETE) {
+            if (node != null) {
+                mindMap.deleteNode(node);
+            }
+            return;
+        }
+        if (type != RECORD_NODE) {
+            throw new IOException("未知的日志记录类型: " + type);
+        }
+
+        String parentId = MindMapFileFormat.readString(in);
+        int index = MindMapFileFormat.readVarInt(in);
+        String text = MindMapFileFormat.readString(in);
+        boolean created = node == null;
+        if (created) {
+            node = new MindMapNode(id, text);
+        }
+        node.setText(text);
+        MindMapFileFormat.readNodeAttributes(new MindMapFileFormat.StreamRecordInput(in), node);
+
+        MindMapNode parent = parentId != null ? mindMap.getNodeById(parentId) : null;
+        if (parent != null) {
+            mindMap.loadChildren(parent);
+        }
+        if (node.getParent() != parent
+                || (parent != null && parent.getChildren().indexOf(node) != index)) {
+            if (node.getParent() != null) {
+                node.getParent().removeChild(node);
+            }
+            if (parent != null) {
+                parent.addChild(index, node);
+            }
+        }
+        if (created) {
+            mindMap.addNodeToMap(node);
+        }
+    }
+
+    /**
+     * 日志头：魔数、版本号和快照文件的长度与内容摘要
+     */
+    private static byte[] header(File snapshotFile) throws IOException {
+        return ByteBuffer.allocate(HEADER_SIZE)
+                .put(MAGIC)
+                .put((byte) VERSION)
+                .putLong(snapshotFile.length())
+                .putLong(snapshotDigest(snapshotFile))
+                .array();
+    }
+
+    /**
+     * 快照文件内容的SHA-256摘要的前8字节，快照不存在时为0
+     */
+    private static long snapshotDigest(File snapshotFile) throws IOException {
+        if (!snapshotFile.isFile()) {
+            return 0;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 每个Java平台都必须支持SHA-256
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new FileInputStream(snapshotFile)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待编辑日志写入时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("编辑日志写入失败", cause);
+        }
+    }
+
+    /**
+     * 重放日志的结果
+     */
+    public static final class Recovery {
+        private final int committedRecords;
+        private final int uncommittedRecords;
+
+        Recovery(int committedRecords, int uncommittedRecords) {
+            this.committedRecords = committedRecords;
+            this.uncommittedRecords = uncommittedRecords;
+        }
+
+        /**
+         * 获取已提交的记录数量
+         * @return 已提交的记录数量
+         */
+        public int getCommittedRecords() {
+            return committedRecords;
+        }
+
+        /**
+         * 获取最后一次提交之后的记录数量，大于0说明上次没有保存就退出了
+         * @return 未提交的记录数量
+         */
+        public int getUncommittedRecords() {
+            return uncommittedRecords;
+        }
+    }
+
+    private static final class ScanResult {
+        final long validLength;
+        final long committedLength;
+        final int committedRecords;
+        final int uncommittedRecords;
+        // 日志头是旧版本，打开日志时需要改写
+        final boolean legacyHeader;
+
+        ScanResult(long validLength, long committedLength, int committedRecords, int uncommittedRecords,
+                   boolean legacyHeader) {
+            this.validLength = validLength;
+            this.committedLength = committedLength;
+            this.committedRecords = committedRecords;
+            this.uncommittedRecords = uncommittedRecords;
+            this.legacyHeader = legacyHeader;
+        }
+    }
+}
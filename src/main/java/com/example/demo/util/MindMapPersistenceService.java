@@ -0,0 +1,121 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMap;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 后台保存和打开思维导图
+ * 保存时在JavaFX线程上复制一份快照，序列化和写文件在后台线程上进行；
+ * 打开时读取文件和重放编辑日志都在后台线程上进行，完成后再把思维导图交给界面。
+ * 任务通过消息和进度报告已处理的节点数和字节数，取消后原文件保持不变。
+ * 同一时间只有一个读写任务在执行，后提交的任务排队等待。
+ */
+public class MindMapPersistenceService {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mind-map-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 在后台保存思维导图，必须在JavaFX线程上调用
+     * 部分加载的思维导图会先读出剩余的节点。保存成功后更新文件路径，
+     * 如果保存期间没有新的编辑，同时清除修改标记。
+     * @param mindMap 思维导图
+     * @param file 目标文件
+     * @return 已经开始执行的任务
+     */
+    public Task<Void> save(MindMap mindMap, File file) {
+        mindMap.loadAll();
+        MindMapSnapshot snapshot = MindMapSnapshot.capture(mindMap);
+        long editCount = mindMap.getEditCount();
+
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                updateMessage("正在保存 " + file.getName());
+                FileManager.writeSnapshot(snapshot, file, (nodes, totalNodes, bytes, totalBytes) -> {
+                    checkCancelled(this);
+                    updateProgress(nodes, totalNodes);
+                    updateMessage(String.format("正在保存 %s：%d / %d 个节点，已写入 %s",
+                            file.getName(), nodes, totalNodes, formatBytes(bytes)));
+                });
+                return null;
+            }
+        };
+        // 先于调用方的处理器执行，调用方看到的已经是保存后的状态
+        task.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, event -> {
+            mindMap.setFilePath(file.getPath());
+            if (mindMap.getEditCount() == editCount) {
+                mindMap.setModified(false);
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * 在后台打开思维导图，并重放文件旁的编辑日志
+     * 上次没有保存就退出时恢复的修改会使返回的思维导图处于已修改状态。
+     * @param file 源文件
+     * @return 已经开始执行的任务，结果为打开的思维导图
+     */
+    public Task<MindMap> load(File file) {
+        Task<MindMap> task = new Task<>() {
+            @Override
+            protected MindMap call() throws Exception {
+                updateMessage("正在打开 " + file.getName());
+                Object loaded = FileManager.readMindMap(file, (nodes, totalNodes, bytes, totalBytes) -> {
+                    checkCancelled(this);
+                    updateProgress(bytes, totalBytes);
+                    updateMessage(String.format("正在打开 %s：%d / %d 个节点，%s / %s",
+                            file.getName(), nodes, totalNodes, formatBytes(bytes), formatBytes(totalBytes)));
+                });
+                if (!(loaded instanceof MindMap)) {
+                    throw new IOException("所选文件不是有效的思维导图文件");
+                }
+                MindMap mindMap = (MindMap) loaded;
+                try {
+                    checkCancelled(this);
+                    mindMap.setFilePath(file.getPath());
+
+                    updateMessage("正在恢复编辑日志 " + file.getName());
+                    MindMapJournal.Recovery recovery = MindMapJournal.replay(mindMap, file);
+                    mindMap.setModified(recovery.getUncommittedRecords() > 0);
+                    checkCancelled(this);
+                } catch (IOException | RuntimeException e) {
+                    // 释放按需加载时对文件的映射
+                    mindMap.setNodeLoader(null);
+                    throw e;
+                }
+                return mindMap;
+            }
+        };
+        executor.execute(task);
+        return task;
+    }
+
+    private static void checkCancelled(Task<?> task) throws InterruptedIOException {
+        if (task.isCancelled()) {
+            throw new InterruptedIOException("已取消");
+        }
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
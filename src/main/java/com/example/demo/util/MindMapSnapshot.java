@@ -0,0 +1,107 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 保存用的思维导图快照
+ * 在JavaFX线程上按先序把所有节点的字段复制到数组中，之后模型可以继续修改，
+ * 后台线程只读取快照进行序列化。字符串和颜色都是不可变对象，直接共享引用。
+ */
+final class MindMapSnapshot {
+
+    final String name;
+    final int count;
+    // 按先序排列：先是根节点所在的树，然后是各个自由节点所在的树
+    final String[] ids;
+    final String[] texts;
+    // 父节点序号，没有父节点时为-1
+    final int[] parents;
+    final int[] flags;
+    final MindMapNode.NodeShape[] shapes;
+    final MindMapNode.LineStyle[] lineStyles;
+    final double[] xs;
+    final double[] ys;
+    final double[] widths;
+    final double[] heights;
+    final double[] sizeScales;
+    final double[] fontSizes;
+    final Color[] colors;
+
+    private MindMapSnapshot(String name, int count) {
+        this.name = name;
+        this.count = count;
+        ids = new String[count];
+        texts = new String[count];
+        parents = new int[count];
+        flags = new int[count];
+        shapes = new MindMapNode.NodeShape[count];
+        lineStyles = new MindMapNode.LineStyle[count];
+        xs = new double[count];
+        ys = new double[count];
+        widths = new double[count];
+        heights = new double[count];
+        sizeScales = new double[count];
+        fontSizes = new double[count];
+        colors = new Color[count];
+    }
+
+    /**
+     * 复制思维导图，必须在JavaFX线程上调用
+     * @param mindMap 已经全部加载的思维导图
+     * @return 快照
+     */
+    static MindMapSnapshot capture(MindMap mindMap) {
+        List<MindMapNode> nodes = collectNodes(mindMap);
+        Map<MindMapNode, Integer> indexOf = new IdentityHashMap<>(nodes.size() * 2);
+        MindMapSnapshot snapshot = new MindMapSnapshot(mindMap.getName(), nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            MindMapNode node = nodes.get(i);
+            indexOf.put(node, i);
+            Integer parent = node.getParent() != null ? indexOf.get(node.getParent()) : null;
+            snapshot.parents[i] = parent != null ? parent : -1;
+            snapshot.ids[i] = node.getId();
+            snapshot.texts[i] = node.getText();
+            snapshot.flags[i] = MindMapFileFormat.nodeFlags(node);
+            snapshot.shapes[i] = node.getShape();
+            snapshot.lineStyles[i] = node.getLineStyle();
+            snapshot.xs[i] = node.getX();
+            snapshot.ys[i] = node.getY();
+            snapshot.widths[i] = node.getWidth();
+            snapshot.heights[i] = node.getHeight();
+            snapshot.sizeScales[i] = node.getSizeScale();
+            snapshot.fontSizes[i] = node.getFontSize();
+            snapshot.colors[i] = node.getColor();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 按先序收集所有节点：先是根节点所在的树，然后是各个自由节点所在的树
+     */
+    private static List<MindMapNode> collectNodes(MindMap mindMap) {
+        List<MindMapNode> result = new ArrayList<>(mindMap.getNodeCount());
+        Deque<MindMapNode> stack = new ArrayDeque<>();
+        // 主根节点总是第一个
+        for (MindMapNode treeRoot : mindMap.getRootNodes()) {
+            stack.push(treeRoot);
+            while (!stack.isEmpty()) {
+                MindMapNode node = stack.pop();
+                result.add(node);
+                List<MindMapNode> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+        return result;
+    }
+}
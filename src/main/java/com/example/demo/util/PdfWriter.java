@@ -0,0 +1,396 @@
+package com.example.demo.util;
+
+import com.example.demo.view.MindMapStyle;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 把绘制快照写成单页PDF
+ * 页面内容流边生成边压缩写出，对象的偏移量在写出时记录，最后写交叉引用表。
+ * 文字使用PDF阅读器内置的宋体（STSong-Light，Adobe-GB1字符集），不需要嵌入字体文件，
+ * 可以显示中文；字宽按字体的标准宽度计算：ASCII字符为半角，其余为全角。
+ */
+final class PdfWriter {
+
+    private static final int PROGRESS_INTERVAL = 4096;
+    // 一个场景单位（屏幕像素）对应的点数：72 / 96
+    private static final double POINTS_PER_UNIT = 0.75;
+    // 常见阅读器支持的最大页面边长（点），超过时通过UserUnit放大
+    private static final double MAX_PAGE_SIZE = 14400;
+    // 用四段贝塞尔曲线近似椭圆时控制点的比例
+    private static final double KAPPA = 0.5522847498;
+    // 宋体的上升和下降高度（字号的比例）
+    private static final double FONT_ASCENT = 0.857;
+    private static final double FONT_DESCENT = 0.143;
+    private static final int OBJECT_COUNT = 8;
+
+    private final ExportScene scene;
+    private final CountingOutputStream out;
+    private final long[] offsets = new long[OBJECT_COUNT + 1];
+    private final StringBuilder buffer = new StringBuilder(8192);
+    private int lastFill;
+    private int lastStroke;
+
+    private PdfWriter(ExportScene scene, OutputStream out) {
+        this.scene = scene;
+        this.out = new CountingOutputStream(out);
+    }
+
+    /**
+     * 写出PDF文档
+     * @param scene 绘制快照
+     * @param out 输出
+     * @param progress 进度回调，报告已写出的节点数，可以为null
+     * @throws IOException 写入失败，或者进度回调要求取消
+     */
+    static void write(ExportScene scene, OutputStream out, ImageExporter.Progress progress) throws IOException {
+        new PdfWriter(scene, out).write(progress);
+    }
+
+    private void write(ImageExporter.Progress progress) throws IOException {
+        double userUnit = Math.max(1, Math.max(scene.getWidth(), scene.getHeight()) * POINTS_PER_UNIT / MAX_PAGE_SIZE);
+        double scale = POINTS_PER_UNIT / userUnit;
+
+        buffer.append("%PDF-1.6\n%âãÏÓ\n");
+        beginObject(1);
+        buffer.append("<< /Type /Catalog /Pages 2 0 R >>\n");
+        endObject();
+        beginObject(2);
+        buffer.append("<< /Type /Pages /Kids [3 0 R] /Count 1 >>\n");
+        endObject();
+        beginObject(3);
+        buffer.append("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 ");
+        VectorFormat.appendNumbers(buffer, scene.getWidth() * scale, scene.getHeight() * scale);
+        buffer.append(']');
+        if (userUnit > 1) {
+            buffer.append(" /UserUnit ");
+            VectorFormat.appendNumber(buffer, userUnit);
+        }
+        buffer.append(" /Resources << /Font << /F1 6 0 R >> >> /Contents 4 0 R >>\n");
+        endObject();
+
+        beginObject(4);
+        buffer.append("<< /Length 5 0 R /Filter /FlateDecode >>\nstream\n");
+        flushBuffer(out);
+        long streamStart = out.count;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        DeflaterOutputStream content = new DeflaterOutputStream(out, deflater, 65536);
+        try {
+            writeContent(content, scale, progress);
+            content.finish();
+        } finally {
+            deflater.end();
+        }
+        long streamLength = out.count - streamStart;
+        buffer.append("\nendstream\n");
+        endObject();
+        beginObject(5);
+        buffer.append(streamLength).append('\n');
+        endObject();
+
+        beginObject(6);
+        buffer.append("<< /Type /Font /Subtype /Type0 /BaseFont /STSong-Light-UniGB-UCS2-H")
+                .append(" /Encoding /UniGB-UCS2-H /DescendantFonts [7 0 R] >>\n");
+        endObject();
+        beginObject(7);
+        buffer.append("<< /Type /Font /Subtype /CIDFontType0 /BaseFont /STSong-Light")
+                .append(" /CIDSystemInfo << /Registry (Adobe) /Ordering (GB1) /Supplement 2 >>")
+                .append(" /FontDescriptor 8 0 R /DW 1000 /W [1 95 500] >>\n");
+        endObject();
+        beginObject(8);
+        buffer.append("<< /Type /FontDescriptor /FontName /STSong-Light /Flags 6")
+                .append(" /FontBBox [-25 -254 1000 880] /ItalicAngle 0 /Ascent 857 /Descent -143")
+                .append(" /CapHeight 857 /StemV 91 >>\n");
+        endObject();
+
+        flushBuffer(out);
+        long xref = out.count;
+        buffer.append("xref\n0 ").append(OBJECT_COUNT + 1).append("\n0000000000 65535 f \n");
+        for (int i = 1; i <= OBJECT_COUNT; i++) {
+            String offset = Long.toString(offsets[i]);
+            buffer.append("0000000000", offset.length(), 10).append(offset).append(" 00000 n \n");
+        }
+        buffer.append("trailer\n<< /Size ").append(OBJECT_COUNT + 1).append(" /Root 1 0 R >>\nstartxref\n")
+                .append(xref).append("\n%%EOF\n");
+        flushBuffer(out);
+        out.flush();
+    }
+
+    /**
+     * 写出页面内容：白色背景、连线、箭头，然后依次是各个节点的图形和文字
+     */
+    private void writeContent(OutputStream content, double scale, ImageExporter.Progress progress)
+            throws IOException {
+        // 翻转y轴，之后的坐标都使用场景坐标
+        VectorFormat.appendNumbers(buffer, scale, 0, 0, -scale, -scene.minX * scale, scene.maxY * scale);
+        buffer.append(" cm\n1 g\n");
+        VectorFormat.appendNumbers(buffer, scene.minX, scene.minY, scene.getWidth(), scene.getHeight());
+        buffer.append(" re f\n");
+
+        // 先画连线，节点盖在连线上面
+        buffer.append("1 J 1 j ");
+        VectorFormat.appendNumber(buffer, MindMapStyle.LINE_WIDTH);
+        buffer.append(" w\n");
+        appendColor(ExportScene.toArgb(MindMapStyle.LINE_COLOR), true);
+        writeConnections(content, false);
+        buffer.append("[5 5] 0 d\n");
+        writeConnections(content, true);
+        buffer.append("[] 0 d\n");
+        writeArrows(content);
+
+        buffer.append("0 J 0 j 1 w\n");
+        lastFill = -1;
+        lastStroke = -1;
+        for (int i = 0; i < scene.nodeCount; i++) {
+            writeNode(i);
+            if ((i + 1) % PROGRESS_INTERVAL == 0) {
+                flushBuffer(content);
+                if (progress != null) {
+                    progress.update(i + 1, scene.nodeCount);
+                }
+            }
+        }
+        flushBuffer(content);
+        if (progress != null) {
+            progress.update(scene.nodeCount, scene.nodeCount);
+        }
+    }
+
+    private void writeConnections(OutputStream content, boolean dashed) throws IOException {
+        boolean any = false;
+        double[] c = scene.connectionCurves;
+        for (int i = 0; i < scene.connectionCount; i++) {
+            if (scene.connectionDashed[i] != dashed) {
+                continue;
+            }
+            int o = i * 8;
+            VectorFormat.appendNumbers(buffer, c[o], c[o + 1]);
+            buffer.append(" m ");
+            VectorFormat.appendNumbers(buffer, c[o + 2], c[o + 3], c[o + 4], c[o + 5], c[o + 6], c[o + 7]);
+            buffer.append(" c\n");
+            any = true;
+            if (buffer.length() > 8192) {
+                flushBuffer(content);
+            }
+        }
+        if (any) {
+            buffer.append("S\n");
+        }
+    }
+
+    private void writeArrows(OutputStream content) throws IOException {
+        boolean any = false;
+        double[] a = scene.connectionArrows;
+        for (int i = 0; i < scene.connectionCount; i++) {
+            if (!scene.connectionArrowed[i]) {
+                continue;
+            }
+            int p = i * 6;
+            VectorFormat.appendNumbers(buffer, a[p], a[p + 1]);
+            buffer.append(" m ");
+            VectorFormat.appendNumbers(buffer, a[p + 2], a[p + 3]);
+            buffer.append(" l ");
+            VectorFormat.appendNumbers(buffer, a[p + 4], a[p + 5]);
+            buffer.append(" l h\n");
+            any = true;
+            if (buffer.length() > 8192) {
+                flushBuffer(content);
+            }
+        }
+        if (any) {
+            // 画布上箭头使用图形上下文默认的黑色填充
+            buffer.append("0 g f\n");
+        }
+    }
+
+    private void writeNode(int i) {
+        double x = scene.nodeX[i];
+        double y = scene.nodeY[i];
+        double w = scene.nodeWidth[i];
+        double h = scene.nodeHeight[i];
+        if (scene.nodeFills[i] != lastFill) {
+            lastFill = scene.nodeFills[i];
+            appendColor(lastFill, false);
+        }
+        if (scene.nodeStrokes[i] != lastStroke) {
+            lastStroke = scene.nodeStrokes[i];
+            appendColor(lastStroke, true);
+        }
+
+        switch (scene.nodeShapes[i]) {
+            case ROUNDED_RECTANGLE:
+                appendRoundedRectangle(x, y, w, h, MindMapStyle.NODE_CORNER_RADIUS / 2);
+                break;
+            case ELLIPSE:
+                appendEllipse(x + w / 2, y + h / 2, w / 2, h / 2);
+                break;
+            case DIAMOND:
+                appendPolygon(x + w / 2, y, x + w, y + h / 2, x + w / 2, y + h, x, y + h / 2);
+                break;
+            case HEXAGON:
+                double sixthWidth = w / 6;
+                appendPolygon(x + sixthWidth, y, x + w - sixthWidth, y, x + w, y + h / 2,
+                        x + w - sixthWidth, y + h, x + sixthWidth, y + h, x, y + h / 2);
+                break;
+            default:
+                VectorFormat.appendNumbers(buffer, x, y, w, h);
+                buffer.append(" re\n");
+                break;
+        }
+        buffer.append("B\n");
+
+        String text = scene.nodeTexts[i];
+        if (text != null && !text.isEmpty()) {
+            double fontSize = scene.nodeFontSizes[i];
+            double textWidth = 0;
+            for (int k = 0; k < text.length(); k++) {
+                textWidth += text.charAt(k) < 0x80 ? 0.5 : 1;
+            }
+            textWidth *= fontSize;
+            // 文字在节点内水平居中，上升和下降部分整体垂直居中；文字矩阵再翻转一次y轴使文字正立
+            buffer.append("BT 1 g /F1 ");
+            VectorFormat.appendNumber(buffer, fontSize);
+            buffer.append(" Tf 1 0 0 -1 ");
+            VectorFormat.appendNumbers(buffer, x + (w - textWidth) / 2,
+                    y + h / 2 + (FONT_ASCENT - FONT_DESCENT) / 2 * fontSize);
+            buffer.append(" Tm <");
+            appendUcs2(text);
+            buffer.append("> Tj ET\n");
+            // 文字改变了填充色
+            lastFill = -1;
+        }
+    }
+
+    private void appendRoundedRectangle(double x, double y, double w, double h, double r) {
+        double k = r * (1 - KAPPA);
+        VectorFormat.appendNumbers(buffer, x + r, y);
+        buffer.append(" m ");
+        VectorFormat.appendNumbers(buffer, x + w - r, y);
+        buffer.append(" l ");
+        VectorFormat.appendNumbers(buffer, x + w - k, y, x + w, y + k, x + w, y + r);
+        buffer.append(" c ");
+        VectorFormat.appendNumbers(buffer, x + w, y + h - r);
+        buffer.append(" l ");
+        VectorFormat.appendNumbers(buffer, x + w, y + h - k, x + w - k, y + h, x + w - r, y + h);
+        buffer.append(" c ");
+        VectorFormat.appendNumbers(buffer, x + r, y + h);
+        buffer.append(" l ");
+        VectorFormat.appendNumbers(buffer, x + k, y + h, x, y + h - k, x, y + h - r);
+        buffer.append(" c ");
+        VectorFormat.appendNumbers(buffer, x, y + r);
+        buffer.append(" l ");
+        VectorFormat.appendNumbers(buffer, x, y + k, x + k, y, x + r, y);
+        buffer.append(" c h\n");
+    }
+
+    private void appendEllipse(double cx, double cy, double rx, double ry) {
+        double kx = rx * KAPPA;
+        double ky = ry * KAPPA;
+        VectorFormat.appendNumbers(buffer, cx + rx, cy);
+        buffer.append(" m ");
+        VectorFormat.appendNumbers(buffer, cx + rx, cy + ky, cx + kx, cy + ry, cx, cy + ry);
+        buffer.append(" c ");
+        VectorFormat.appendNumbers(buffer, cx - kx, cy + ry, cx - rx, cy + ky, cx - rx, cy);
+        buffer.append(" c ");
+        VectorFormat.appendNumbers(buffer, cx - rx, cy - ky, cx - kx, cy - ry, cx, cy - ry);
+        buffer.append(" c ");
+        VectorFormat.appendNumbers(buffer, cx + kx, cy - ry, cx + rx, cy - ky, cx + rx, cy);
+        buffer.append(" c h\n");
+    }
+
+    private void appendPolygon(double... points) {
+        for (int k = 0; k < points.length; k += 2) {
+            VectorFormat.appendNumbers(buffer, points[k], points[k + 1]);
+            buffer.append(k == 0 ? " m " : " l ");
+        }
+        buffer.append("h\n");
+    }
+
+    /**
+     * 追加UTF-16BE编码的十六进制文字，基本多文种平面以外的字符替换为问号
+     */
+    private void appendUcs2(String text) {
+        for (int k = 0; k < text.length(); k++) {
+            char ch = text.charAt(k);
+            if (Character.isSurrogate(ch) || ch < 0x20) {
+                ch = ch < 0x20 ? ' ' : '?';
+            }
+            for (int shift = 12; shift >= 0; shift -= 4) {
+                buffer.append(Character.forDigit((ch >> shift) & 0xf, 16));
+            }
+        }
+    }
+
+    private void appendColor(int argb, boolean stroke) {
+        appendComponent((argb >> 16) & 0xff);
+        buffer.append(' ');
+        appendComponent((argb >> 8) & 0xff);
+        buffer.append(' ');
+        appendComponent(argb & 0xff);
+        buffer.append(stroke ? " RG\n" : " rg\n");
+    }
+
+    /**
+     * 追加0到1之间的颜色分量，保留三位小数
+     */
+    private void appendComponent(int value) {
+        int thousandths = Math.round(value * 1000f / 255);
+        if (thousandths >= 1000) {
+            buffer.append('1');
+            return;
+        }
+        buffer.append('.');
+        buffer.append((char) ('0' + thousandths / 100));
+        buffer.append((char) ('0' + thousandths / 10 % 10));
+        buffer.append((char) ('0' + thousandths % 10));
+    }
+
+    private void beginObject(int number) throws IOException {
+        flushBuffer(out);
+        offsets[number] = out.count;
+        buffer.append(number).append(" 0 obj\n");
+    }
+
+    private void endObject() {
+        buffer.append("endobj\n");
+    }
+
+    /**
+     * 把缓冲区中的文本按单字节写出，内容都是ASCII字符
+     */
+    private void flushBuffer(OutputStream target) throws IOException {
+        byte[] bytes = new byte[buffer.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) buffer.charAt(i);
+        }
+        target.write(bytes);
+        buffer.setLength(0);
+    }
+
+    /**
+     * 统计写出字节数的输出流，用于记录对象的偏移量
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 松散四叉树空间索引
+ * 按矩形范围保存对象，支持增量更新和矩形范围查询。
+ * 对象根据中心点放入象限，象限的范围向外扩展其子树中最大对象的半边长，
+ * 因此跨越象限边界的对象也能放到较深的层级，不会堆积在根节点；
+ * 查询时也只会进入真正可能包含结果的象限。
+ * 达到最小尺寸的象限无法再拆分，超出容量的对象（例如布局之前都在原点的节点）放入该象限的溢出列表，
+ * 溢出列表记录所有对象的外接矩形，查询范围与之不相交时整体跳过。
+ * 每个条目记录自己在列表中的位置，移除时与最后一个交换，不需要在列表中查找。
+ * @param <T> 索引对象类型
+ */
+public class QuadTree<T> {
+
+    private static final int NODE_CAPACITY = 16;   // 单个象限在拆分前最多容纳的对象数
+    private static final double MIN_HALF_SIZE = 8;  // 象限的最小半边长，小于此值不再拆分
+    private static final double INITIAL_HALF_SIZE = 512;
+
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private Quad<T> root;
+
+    /**
+     * 插入对象，如果对象已存在则更新其范围
+     * @param item 对象
+     * @param minX 左边界
+     * @param minY 上边界
+     * @param maxX 右边界
+     * @param maxY 下边界
+     */
+    public void put(T item, double minX, double minY, double maxX, double maxY) {
+        Entry<T> entry = entries.get(item);
+        if (entry == null) {
+            entry = new Entry<>(item);
+            entries.put(item, entry);
+        } else {
+            Quad<T> owner = entry.owner;
+            entry.set(minX, minY, maxX, maxY);
+            // 仍然属于原象限并且无法下沉到子象限时，直接原地更新
+            if (owner.covers(entry) && (owner.children == null || owner.childFor(entry) == null)) {
+                owner.raiseExtent(entry.extent());
+                if (entry.inOverflow) {
+                    owner.includeOverflow(entry);
+                }
+                return;
+            }
+            owner.removeEntry(entry);
+            insert(entry);
+            return;
+        }
+        entry.set(minX, minY, maxX, maxY);
+        insert(entry);
+    }
+
+    /**
+     * 移除对象
+     * @param item 对象
+     * @return 对象是否存在
+     */
+    public boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        entry.owner.removeEntry(entry);
+        return true;
+    }
+
+    /**
+     * 判断对象是否在索引中
+     * @param item 对象
+     * @return 是否存在
+     */
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * 获取对象数量
+     * @return 对象数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        entries.clear();
+        root = null;
+    }
+
+    /**
+     * 查询与指定矩形相交的所有对象
+     * @param minX 左边界
+     * @param minY 上边界
+     * @param maxX 右边界
+     * @param maxY 下边界
+     * @param action 对每个相交对象执行的操作
+     */
+    public void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        if (root != null && root.intersects(minX, minY, maxX, maxY)) {
+            query(root, minX, minY, maxX, maxY, action);
+        }
+    }
+
+    private void query(Quad<T> quad, double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        List<Entry<T>> items = quad.items;
+        for (int i = 0, n = items.size(); i < n; i++) {
+            Entry<T> entry = items.get(i);
+            if (entry.maxX >= minX && entry.minX <= maxX && entry.maxY >= minY && entry.minY <= maxY) {
+                action.accept(entry.item);
+            }
+        }
+
+        List<Entry<T>> overflow = quad.overflow;
+        if (overflow != null && !overflow.isEmpty()
+                && quad.overflowMaxX >= minX && quad.overflowMinX <= maxX
+                && quad.overflowMaxY >= minY && quad.overflowMinY <= maxY) {
+            for (int i = 0, n = overflow.size(); i < n; i++) {
+                Entry<T> entry = overflow.get(i);
+                if (entry.maxX >= minX && entry.minX <= maxX && entry.maxY >= minY && entry.minY <= maxY) {
+                    action.accept(entry.item);
+                }
+            }
+        }
+
+        Quad<T>[] children = quad.children;
+        if (children != null) {
+            // 先判断子象限是否相交再递归，减少方法调用
+            for (int i = 0; i < 4; i++) {
+                Quad<T> child = children[i];
+                if (child.intersects(minX, minY, maxX, maxY)) {
+                    query(child, minX, minY, maxX, maxY, action);
+                }
+            }
+        }
+    }
+
+    /**
+     * 将条目插入到能容纳它的最深象限
+     * @param entry 条目
+     */
+    private void insert(Entry<T> entry) {
+        growToCover(entry);
+
+        Quad<T> quad = root;
+        while (quad.children != null) {
+            Quad<T> child = quad.childFor(entry);
+            if (child == null) {
+                break;
+            }
+            quad = child;
+        }
+        quad.add(entry);
+    }
+
+    /**
+     * 扩大根象限直到能容纳指定条目
+     * @param entry 条目
+     */
+    private void growToCover(Entry<T> entry) {
+        if (root == null) {
+            double half = INITIAL_HALF_SIZE;
+            while (half < entry.extent()) {
+                half *= 2;
+            }
+            root = new Quad<>(entry.centerX(), entry.centerY(), half);
+            return;
+        }
+
+        while (!root.covers(entry)) {
+            Quad<T> oldRoot = root;
+            double half = oldRoot.half;
+            // 新根的中心向条目方向偏移，原根成为新根的一个子象限
+            double centerX = oldRoot.centerX + (entry.centerX() < oldRoot.centerX ? -half : half);
+            double centerY = oldRoot.centerY + (entry.centerY() < oldRoot.centerY ? -half : half);
+            Quad<T> newRoot = new Quad<>(centerX, centerY, half * 2);
+            newRoot.split();
+            newRoot.children[newRoot.quadrantOf(oldRoot.centerX, oldRoot.centerY)] = oldRoot;
+            newRoot.maxExtent = oldRoot.maxExtent;
+            oldRoot.parent = newRoot;
+            root = newRoot;
+        }
+    }
+
+    /**
+     * 索引条目
+     */
+    private static final class Entry<T> {
+        private final T item;
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+        private Quad<T> owner;
+        // 在所属象限的items或overflow列表中的位置
+        private int slot;
+        private boolean inOverflow;
+
+        Entry(T item) {
+            this.item = item;
+        }
+
+        void set(double minX, double minY, double maxX, double maxY) {
+            // 非法坐标会导致根象限无限扩大，按原点处理
+            if (!Double.isFinite(minX + minY + maxX + maxY)) {
+                minX = minY = maxX = maxY = 0;
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        double centerX() {
+            return (minX + maxX) / 2;
+        }
+
+        double centerY() {
+            return (minY + maxY) / 2;
+        }
+
+        /**
+         * 获取条目的最大半边长
+         */
+        double extent() {
+            return Math.max(maxX - minX, maxY - minY) / 2;
+        }
+    }
+
+    /**
+     * 四叉树象限
+     */
+    private static final class Quad<T> {
+        private final double centerX;
+        private final double centerY;
+        private final double half;
+        private final List<Entry<T>> items = new ArrayList<>(4);
+        // 无法拆分时超出容量的条目及其外接矩形，第一次使用时创建。移除条目时外接矩形不缩小，列表清空时重置
+        private List<Entry<T>> overflow;
+        private double overflowMinX;
+        private double overflowMinY;
+        private double overflowMaxX;
+        private double overflowMaxY;
+        private Quad<T>[] children;
+        private Quad<T> parent;
+        // 子树中最大对象的半边长，子树从未有过对象时为-1。移除对象时不缩小，只会偏保守
+        private double maxExtent = -1;
+
+        Quad(double centerX, double centerY, double half) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.half = half;
+        }
+
+        /**
+         * 判断条目的中心是否在象限内，并且条目不会超出象限的松散范围
+         */
+        boolean covers(Entry<T> entry) {
+            double x = entry.centerX();
+            double y = entry.centerY();
+            return x >= centerX - half && x < centerX + half
+                    && y >= centerY - half && y < centerY + half
+                    && entry.extent() <= half;
+        }
+
+        /**
+         * 判断查询范围是否与象限的松散范围相交，子树为空时总是不相交
+         */
+        boolean intersects(double minX, double minY, double maxX, double maxY) {
+            if (maxExtent < 0) {
+                return false;
+            }
+            double looseHalf = half + maxExtent;
+            return maxX >= centerX - looseHalf && minX <= centerX + looseHalf
+                    && maxY >= centerY - looseHalf && minY <= centerY + looseHalf;
+        }
+
+        int quadrantOf(double x, double y) {
+            return (x >= centerX ? 1 : 0) + (y >= centerY ? 2 : 0);
+        }
+
+        /**
+         * 获取能容纳条目的子象限，如果条目太大则返回null
+         */
+        Quad<T> childFor(Entry<T> entry) {
+            if (entry.extent() > half / 2) {
+                return null;
+            }
+            return children[quadrantOf(entry.centerX(), entry.centerY())];
+        }
+
+        void add(Entry<T> entry) {
+            entry.owner = this;
+            raiseExtent(entry.extent());
+            if (children == null && items.size() >= NODE_CAPACITY && half / 2 < MIN_HALF_SIZE) {
+                addOverflow(entry);
+                return;
+            }
+            entry.inOverflow = false;
+            entry.slot = items.size();
+            items.add(entry);
+            if (children == null && items.size() > NODE_CAPACITY && half / 2 >= MIN_HALF_SIZE) {
+                split();
+                // 将能下沉的条目移动到子象限
+                List<Entry<T>> remaining = new ArrayList<>(items.size());
+                List<Entry<T>> moved = new ArrayList<>(items.size());
+                for (Entry<T> item : items) {
+                    (childFor(item) != null ? moved : remaining).add(item);
+                }
+                items.clear();
+                for (Entry<T> item : remaining) {
+                    item.slot = items.size();
+                    items.add(item);
+                }
+                for (Entry<T> item : moved) {
+                    childFor(item).add(item);
+                }
+            }
+        }
+
+        private void addOverflow(Entry<T> entry) {
+            if (overflow == null) {
+                overflow = new ArrayList<>();
+            }
+            if (overflow.isEmpty()) {
+                overflowMinX = entry.minX;
+                overflowMinY = entry.minY;
+                overflowMaxX = entry.maxX;
+                overflowMaxY = entry.maxY;
+            } else {
+                includeOverflow(entry);
+            }
+            entry.inOverflow = true;
+            entry.slot = overflow.size();
+            overflow.add(entry);
+        }
+
+        /**
+         * 扩大溢出列表的外接矩形使其包含条目
+         */
+        void includeOverflow(Entry<T> entry) {
+            overflowMinX = Math.min(overflowMinX, entry.minX);
+            overflowMinY = Math.min(overflowMinY, entry.minY);
+            overflowMaxX = Math.max(overflowMaxX, entry.maxX);
+            overflowMaxY = Math.max(overflowMaxY, entry.maxY);
+        }
+
+        /**
+         * 从本象限移除条目，用列表中最后一个条目填补它的位置
+         */
+        void removeEntry(Entry<T> entry) {
+            List<Entry<T>> list = entry.inOverflow ? overflow : items;
+            Entry<T> last = list.remove(list.size() - 1);
+            if (last != entry) {
+                last.slot = entry.slot;
+                list.set(entry.slot, last);
+            }
+        }
+
+        /**
+         * 将本象限及所有上级象限的最大半边长提高到至少指定值
+         */
+        void raiseExtent(double extent) {
+            for (Quad<T> quad = this; quad != null && quad.maxExtent < extent; quad = quad.parent) {
+                quad.maxExtent = extent;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void split() {
+            double quarter = half / 2;
+            children = (Quad<T>[]) new Quad<?>[4];
+            children[0] = new Quad<>(centerX - quarter, centerY - quarter, quarter);
+            children[1] = new Quad<>(centerX + quarter, centerY - quarter, quarter);
+            children[2] = new Quad<>(centerX - quarter, centerY + quarter, quarter);
+            children[3] = new Quad<>(centerX + quarter, centerY + quarter, quarter);
+            for (Quad<T> child : children) {
+                child.parent = this;
+            }
+        }
+    }
+}
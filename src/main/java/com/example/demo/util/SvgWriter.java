@@ -0,0 +1,227 @@
+package com.example.demo.util;
+
+import com.example.demo.model.MindMapNode;
+import com.example.demo.view.MindMapStyle;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 把绘制快照写成SVG
+ * 样式集中写在样式表里，所有实线连线合并成一条路径，虚线和箭头各一条，
+ * 每个节点只输出图形和文字两个元素，文件大小与节点数量成正比。
+ */
+final class SvgWriter {
+
+    // 每写出这么多个节点报告一次进度，同时把缓冲区写入输出
+    private static final int PROGRESS_INTERVAL = 4096;
+
+    private final ExportScene scene;
+    private final Writer out;
+    private final StringBuilder buffer = new StringBuilder(8192);
+
+    private SvgWriter(ExportScene scene, Writer out) {
+        this.scene = scene;
+        this.out = out;
+    }
+
+    /**
+     * 写出SVG文档
+     * @param scene 绘制快照
+     * @param out 输出，使用UTF-8编码
+     * @param progress 进度回调，报告已写出的节点数，可以为null
+     * @throws IOException 写入失败，或者进度回调要求取消
+     */
+    static void write(ExportScene scene, Writer out, ImageExporter.Progress progress) throws IOException {
+        new SvgWriter(scene, out).write(progress);
+    }
+
+    private void write(ImageExporter.Progress progress) throws IOException {
+        buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        buffer.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        VectorFormat.appendNumber(buffer, scene.getWidth());
+        buffer.append("\" height=\"");
+        VectorFormat.appendNumber(buffer, scene.getHeight());
+        buffer.append("\" viewBox=\"");
+        VectorFormat.appendNumbers(buffer, scene.minX, scene.minY, scene.getWidth(), scene.getHeight());
+        buffer.append("\">\n<style>\n");
+        buffer.append(".c{fill:none;stroke:").append(toHex(ExportScene.toArgb(MindMapStyle.LINE_COLOR)));
+        buffer.append(";stroke-width:");
+        VectorFormat.appendNumber(buffer, MindMapStyle.LINE_WIDTH);
+        buffer.append(";stroke-linecap:round;stroke-linejoin:round}\n");
+        buffer.append(".d{stroke-dasharray:5 5}\n");
+        buffer.append(".n{stroke-width:1}\n");
+        buffer.append("text{fill:#fff;font-family:'").append(MindMapStyle.FONT_FAMILY)
+                .append("',sans-serif;text-anchor:middle;dominant-baseline:central}\n");
+        buffer.append("</style>\n<rect x=\"");
+        VectorFormat.appendNumber(buffer, scene.minX);
+        buffer.append("\" y=\"");
+        VectorFormat.appendNumber(buffer, scene.minY);
+        buffer.append("\" width=\"100%\" height=\"100%\" fill=\"#fff\"/>\n");
+
+        // 先画连线，节点盖在连线上面
+        writeConnections(false);
+        writeConnections(true);
+        writeArrows();
+
+        buffer.append("<g class=\"n\">\n");
+        for (int i = 0; i < scene.nodeCount; i++) {
+            writeNode(i);
+            if ((i + 1) % PROGRESS_INTERVAL == 0) {
+                flushBuffer();
+                if (progress != null) {
+                    progress.update(i + 1, scene.nodeCount);
+                }
+            }
+        }
+        buffer.append("</g>\n</svg>\n");
+        flushBuffer();
+        if (progress != null) {
+            progress.update(scene.nodeCount, scene.nodeCount);
+        }
+    }
+
+    private void writeConnections(boolean dashed) throws IOException {
+        boolean started = false;
+        double[] c = scene.connectionCurves;
+        for (int i = 0; i < scene.connectionCount; i++) {
+            if (scene.connectionDashed[i] != dashed) {
+                continue;
+            }
+            if (!started) {
+                buffer.append(dashed ? "<path class=\"c d\" d=\"" : "<path class=\"c\" d=\"");
+                started = true;
+            }
+            int o = i * 8;
+            buffer.append('M');
+            VectorFormat.appendNumbers(buffer, c[o], c[o + 1]);
+            buffer.append('C');
+            VectorFormat.appendNumbers(buffer, c[o + 2], c[o + 3], c[o + 4], c[o + 5], c[o + 6], c[o + 7]);
+            if (buffer.length() > 8192) {
+                flushBuffer();
+            }
+        }
+        if (started) {
+            buffer.append("\"/>\n");
+        }
+    }
+
+    private void writeArrows() throws IOException {
+        boolean started = false;
+        double[] a = scene.connectionArrows;
+        for (int i = 0; i < scene.connectionCount; i++) {
+            if (!scene.connectionArrowed[i]) {
+                continue;
+            }
+            if (!started) {
+                // 画布上箭头使用图形上下文默认的黑色填充
+                buffer.append("<path d=\"");
+                started = true;
+            }
+            int p = i * 6;
+            buffer.append('M');
+            VectorFormat.appendNumbers(buffer, a[p], a[p + 1], a[p + 2], a[p + 3], a[p + 4], a[p + 5]);
+            buffer.append('Z');
+            if (buffer.length() > 8192) {
+                flushBuffer();
+            }
+        }
+        if (started) {
+            buffer.append("\"/>\n");
+        }
+    }
+
+    private void writeNode(int i) {
+        double x = scene.nodeX[i];
+        double y = scene.nodeY[i];
+        double w = scene.nodeWidth[i];
+        double h = scene.nodeHeight[i];
+        switch (scene.nodeShapes[i]) {
+            case ELLIPSE:
+                buffer.append("<ellipse cx=\"");
+                VectorFormat.appendNumber(buffer, x + w / 2);
+                buffer.append("\" cy=\"");
+                VectorFormat.appendNumber(buffer, y + h / 2);
+                buffer.append("\" rx=\"");
+                VectorFormat.appendNumber(buffer, w / 2);
+                buffer.append("\" ry=\"");
+                VectorFormat.appendNumber(buffer, h / 2);
+                break;
+            case DIAMOND:
+                buffer.append("<polygon points=\"");
+                VectorFormat.appendNumbers(buffer, x + w / 2, y, x + w, y + h / 2, x + w / 2, y + h, x, y + h / 2);
+                break;
+            case HEXAGON:
+                double sixthWidth = w / 6;
+                buffer.append("<polygon points=\"");
+                VectorFormat.appendNumbers(buffer, x + sixthWidth, y, x + w - sixthWidth, y, x + w, y + h / 2,
+                        x + w - sixthWidth, y + h, x + sixthWidth, y + h, x, y + h / 2);
+                break;
+            default:
+                buffer.append("<rect x=\"");
+                VectorFormat.appendNumber(buffer, x);
+                buffer.append("\" y=\"");
+                VectorFormat.appendNumber(buffer, y);
+                buffer.append("\" width=\"");
+                VectorFormat.appendNumber(buffer, w);
+                buffer.append("\" height=\"");
+                VectorFormat.appendNumber(buffer, h);
+                if (scene.nodeShapes[i] == MindMapNode.NodeShape.ROUNDED_RECTANGLE) {
+                    // 圆角直径与画布一致，SVG中使用半径
+                    buffer.append("\" rx=\"");
+                    VectorFormat.appendNumber(buffer, MindMapStyle.NODE_CORNER_RADIUS / 2);
+                }
+                break;
+        }
+        buffer.append("\" fill=\"").append(toHex(scene.nodeFills[i]));
+        buffer.append("\" stroke=\"").append(toHex(scene.nodeStrokes[i])).append("\"/>\n");
+
+        String text = scene.nodeTexts[i];
+        if (text != null && !text.isEmpty()) {
+            buffer.append("<text x=\"");
+            VectorFormat.appendNumber(buffer, x + w / 2);
+            buffer.append("\" y=\"");
+            VectorFormat.appendNumber(buffer, y + h / 2);
+            buffer.append("\" font-size=\"");
+            VectorFormat.appendNumber(buffer, scene.nodeFontSizes[i]);
+            buffer.append("\">");
+            appendEscaped(text);
+            buffer.append("</text>\n");
+        }
+    }
+
+    private void appendEscaped(String text) {
+        for (int k = 0; k < text.length(); k++) {
+            char ch = text.charAt(k);
+            switch (ch) {
+                case '&':
+                    buffer.append("&amp;");
+                    break;
+                case '<':
+                    buffer.append("&lt;");
+                    break;
+                case '>':
+                    buffer.append("&gt;");
+                    break;
+                default:
+                    // XML不允许大部分控制字符
+                    if (ch >= 0x20 || ch == '\t') {
+                        buffer.append(ch);
+                    } else {
+                        buffer.append(' ');
+                    }
+                    break;
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.append(buffer);
+        buffer.setLength(0);
+    }
+
+    private static String toHex(int argb) {
+        String hex = Integer.toHexString(argb & 0xffffff);
+        return "#" + "000000".substring(hex.length()) + hex;
+    }
+}
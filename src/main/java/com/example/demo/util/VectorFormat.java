@@ -0,0 +1,48 @@
+package com.example.demo.util;
+
+/**
+ * 矢量导出共用的数字格式化
+ * 坐标保留两位小数并去掉末尾的零，不经过{@link String#format}，
+ * 导出数万个节点时格式化不会成为瓶颈。
+ */
+final class VectorFormat {
+
+    private VectorFormat() {
+    }
+
+    /**
+     * 追加一个数字，最多保留两位小数
+     * @param out 输出
+     * @param value 数值
+     */
+    static void appendNumber(StringBuilder out, double value) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths < 0) {
+            out.append('-');
+            hundredths = -hundredths;
+        }
+        out.append(hundredths / 100);
+        int fraction = (int) (hundredths % 100);
+        if (fraction != 0) {
+            out.append('.');
+            out.append((char) ('0' + fraction / 10));
+            if (fraction % 10 != 0) {
+                out.append((char) ('0' + fraction % 10));
+            }
+        }
+    }
+
+    /**
+     * 追加一组以空格分隔的数字
+     * @param out 输出
+     * @param values 数值
+     */
+    static void appendNumbers(StringBuilder out, double... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            appendNumber(out, values[i]);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.demo.view;
+
+import com.example.demo.model.MindMapNode;
+
+/**
+ * 父节点与子节点之间连线的几何信息
+ * 起点和终点位于两端节点的边缘，中间为三次贝塞尔曲线。
+ * 画布绘制和导出共用同一套计算，保证导出的图与屏幕上一致。
+ */
+public final class ConnectionGeometry {
+
+    /** 箭头长度 */
+    public static final double ARROW_SIZE = 10.0;
+    private static final double ARROW_ANGLE = Math.PI / 6; // 30度角
+
+    private double startX;
+    private double startY;
+    private double controlX1;
+    private double controlY1;
+    private double controlX2;
+    private double controlY2;
+    private double endX;
+    private double endY;
+    private double dirX;
+    private double dirY;
+    private MindMapNode.LineStyle lineStyle;
+
+    /**
+     * 根据两端节点的当前状态计算连线
+     * @param node 父节点
+     * @param child 子节点
+     * @param maxLineLength 最大线长，超过时连线会被缩短
+     */
+    public void compute(MindMapNode node, MindMapNode child, double maxLineLength) {
+        // 计算节点中心点（用于计算方向）
+        double nodeCenterX = node.getX() + node.getWidth() / 2;
+        double nodeCenterY = node.getY() + node.getHeight() / 2;
+        double childCenterX = child.getX() + child.getWidth() / 2;
+        double childCenterY = child.getY() + child.getHeight() / 2;
+
+        // 计算节点之间的方向向量
+        dirX = childCenterX - nodeCenterX;
+        dirY = childCenterY - nodeCenterY;
+
+        // 归一化方向向量
+        double length = Math.sqrt(dirX * dirX + dirY * dirY);
+        if (length < 0.001) {
+            // 防止除以0
+            dirX = 1.0;
+            dirY = 0.0;
+        } else {
+            dirX /= length;
+            dirY /= length;
+        }
+
+        // 计算连线的起点（父节点边缘）
+        // 根据节点形状计算起点
+        if (node.getShape() == MindMapNode.NodeShape.ELLIPSE) {
+            // 椭圆形节点的边缘点
+            double radiusX = node.getWidth() / 2;
+            double radiusY = node.getHeight() / 2;
+            double angle = Math.atan2(dirY, dirX);
+            startX = nodeCenterX + radiusX * Math.cos(angle);
+            startY = nodeCenterY + radiusY * Math.sin(angle);
+        } else if (node.getShape() == MindMapNode.NodeShape.DIAMOND || node.getShape() == MindMapNode.NodeShape.HEXAGON) {
+            // 菱形或六边形节点的边缘点
+            // 简化处理，使用矩形边缘的计算方式
+            if (Math.abs(dirX) > Math.abs(dirY)) {
+                // 水平方向为主
+                startX = nodeCenterX + (dirX > 0 ? node.getWidth() / 2 : -node.getWidth() / 2);
+                startY = nodeCenterY + dirY * (node.getWidth() / 2) / Math.abs(dirX);
+            } else {
+                // 垂直方向为主
+                startX = nodeCenterX + dirX * (node.getHeight() / 2) / Math.abs(dirY);
+                startY = nodeCenterY + (dirY > 0 ? node.getHeight() / 2 : -node.getHeight() / 2);
+            }
+        } else {
+            // 矩形或圆角矩形
+            // 计算与边缘的交点
+            double halfWidth = node.getWidth() / 2;
+            double halfHeight = node.getHeight() / 2;
+
+            // 计算直线方程 y = slope * x + b
+            double slope = dirY / dirX; // 注意除零问题
+
+            if (Math.abs(dirX) < 0.001) {
+                // 垂直线
+                startX = nodeCenterX;
+                startY = nodeCenterY + (dirY > 0 ? halfHeight : -halfHeight);
+            } else if (Math.abs(dirY) < 0.001) {
+                // 水平线
+                startX = nodeCenterX + (dirX > 0 ? halfWidth : -halfWidth);
+                startY = nodeCenterY;
+            } else {
+                // 斜线
+                // 计算与矩形边的交点
+                double xIntersectTop = (nodeCenterY - halfHeight - (nodeCenterY - slope * nodeCenterX)) / slope;
+                double xIntersectBottom = (nodeCenterY + halfHeight - (nodeCenterY - slope * nodeCenterX)) / slope;
+                double yIntersectLeft = slope * (nodeCenterX - halfWidth) + (nodeCenterY - slope * nodeCenterX);
+                double yIntersectRight = slope * (nodeCenterX + halfWidth) + (nodeCenterY - slope * nodeCenterX);
+
+                // 检查交点是否在矩形边上
+                if (dirX > 0 && Math.abs(xIntersectTop - nodeCenterX) <= halfWidth) {
+                    // 上边交点
+                    startX = xIntersectTop;
+                    startY = nodeCenterY - halfHeight;
+                } else if (dirX < 0 && Math.abs(xIntersectBottom - nodeCenterX) <= halfWidth) {
+                    // 下边交点
+                    startX = xIntersectBottom;
+                    startY = nodeCenterY + halfHeight;
+                } else if (dirY > 0 && Math.abs(yIntersectLeft - nodeCenterY) <= halfHeight) {
+                    // 左边交点
+                    startX = nodeCenterX - halfWidth;
+                    startY = yIntersectLeft;
+                } else {
+                    // 右边交点
+                    startX = nodeCenterX + halfWidth;
+                    startY = yIntersectRight;
+                }
+            }
+        }
+
+        // 计算连线的终点（子节点边缘）
+        // 根据节点形状计算终点
+        if (child.getShape() == MindMapNode.NodeShape.ELLIPSE) {
+            // 椭圆形节点的边缘点
+            double radiusX = child.getWidth() / 2;
+            double radiusY = child.getHeight() / 2;
+            double angle = Math.atan2(-dirY, -dirX); // 注意方向相反
+            endX = childCenterX + radiusX * Math.cos(angle);
+            endY = childCenterY + radiusY * Math.sin(angle);
+        } else if (child.getShape() == MindMapNode.NodeShape.DIAMOND || child.getShape() == MindMapNode.NodeShape.HEXAGON) {
+            // 菱形或六边形节点的边缘点
+            // 简化处理，使用矩形边缘的计算方式
+            if (Math.abs(dirX) > Math.abs(dirY)) {
+                // 水平方向为主
+                endX = childCenterX + (dirX < 0 ? child.getWidth() / 2 : -child.getWidth() / 2);
+                endY = childCenterY - dirY * (child.getWidth() / 2) / Math.abs(dirX);
+            } else {
+                // 垂直方向为主
+                endX = childCenterX - dirX * (child.getHeight() / 2) / Math.abs(dirY);
+                endY = childCenterY + (dirY < 0 ? child.getHeight() / 2 : -child.getHeight() / 2);
+            }
+        } else {
+            // 矩形或圆角矩形
+            // 计算与边缘的交点
+            double halfWidth = child.getWidth() / 2;
+            double halfHeight = child.getHeight() / 2;
+
+            // 计算直线方程 y = slope * x + b
+            // 注意这里的方向是从子节点到父节点，所以方向相反
+            double reverseX = -dirX;
+            double reverseY = -dirY;
+            double slope = reverseY / reverseX; // 注意除零问题
+
+            if (Math.abs(reverseX) < 0.001) {
+                // 垂直线
+                endX = childCenterX;
+                endY = childCenterY + (reverseY > 0 ? halfHeight : -halfHeight);
+            } else if (Math.abs(reverseY) < 0.001) {
+                // 水平线
+                endX = childCenterX + (reverseX > 0 ? halfWidth : -halfWidth);
+                endY = childCenterY;
+            } else {
+                // 斜线
+                // 计算与矩形边的交点
+                double xIntersectTop = (childCenterY - halfHeight - (childCenterY - slope * childCenterX)) / slope;
+                double xIntersectBottom = (childCenterY + halfHeight - (childCenterY - slope * childCenterX)) / slope;
+                double yIntersectLeft = slope * (childCenterX - halfWidth) + (childCenterY - slope * childCenterX);
+                double yIntersectRight = slope * (childCenterX + halfWidth) + (childCenterY - slope * childCenterX);
+
+                // 检查交点是否在矩形边上
+                if (reverseX > 0 && Math.abs(xIntersectTop - childCenterX) <= halfWidth) {
+                    // 上边交点
+                    endX = xIntersectTop;
+                    endY = childCenterY - halfHeight;
+                } else if (reverseX < 0 && Math.abs(xIntersectBottom - childCenterX) <= halfWidth) {
+                    // 下边交点
+                    endX = xIntersectBottom;
+                    endY = childCenterY + halfHeight;
+                } else if (reverseY > 0 && Math.abs(yIntersectLeft - childCenterY) <= halfHeight) {
+                    // 左边交点
+                    endX = childCenterX - halfWidth;
+                    endY = yIntersectLeft;
+                } else {
+                    // 右边交点
+                    endX = childCenterX + halfWidth;
+                    endY = yIntersectRight;
+                }
+            }
+        }
+
+        // 计算控制点，创建优雅的曲线
+        double dx = Math.abs(endX - startX);
+        double dy = Math.abs(endY - startY);
+        double distance = Math.sqrt(dx * dx + dy * dy);
+
+        // 检查线条是否太长，如果太长则缩短
+        if (distance > maxLineLength) {
+            // 缩短线条，保持方向不变
+            double scale = maxLineLength / distance;
+
+            // 计算新的起点和终点，保持节点边缘的连接点不变
+            double newStartX = startX + (endX - startX) * (1 - scale) * 0.5;
+            double newStartY = startY + (endY - startY) * (1 - scale) * 0.5;
+            double newEndX = endX - (endX - startX) * (1 - scale) * 0.5;
+            double newEndY = endY - (endY - startY) * (1 - scale) * 0.5;
+
+            startX = newStartX;
+            startY = newStartY;
+            endX = newEndX;
+            endY = newEndY;
+        }
+
+        // 根据节点相对位置决定曲线方向
+        if (Math.abs(endX - startX) > Math.abs(endY - startY)) {
+            // 水平方向距离更大，使用水平控制点
+            double midX = (startX + endX) / 2;
+            controlX1 = midX;
+            controlY1 = startY;
+            controlX2 = midX;
+            controlY2 = endY;
+        } else {
+            // 垂直方向距离更大，使用垂直控制点
+            double midY = (startY + endY) / 2;
+            controlX1 = startX;
+            controlY1 = midY;
+            controlX2 = endX;
+            controlY2 = midY;
+        }
+
+        lineStyle = child.getLineStyle();
+    }
+
+    public double getStartX() {
+        return startX;
+    }
+
+    public double getStartY() {
+        return startY;
+    }
+
+    public double getControlX1() {
+        return controlX1;
+    }
+
+    public double getControlY1() {
+        return controlY1;
+    }
+
+    public double getControlX2() {
+        return controlX2;
+    }
+
+    public double getControlY2() {
+        return controlY2;
+    }
+
+    public double getEndX() {
+        return endX;
+    }
+
+    public double getEndY() {
+        return endY;
+    }
+
+    public MindMapNode.LineStyle getLineStyle() {
+        return lineStyle;
+    }
+
+    /**
+     * 判断连线是否为虚线
+     * @return 是否为虚线
+     */
+    public boolean isDashed() {
+        return lineStyle == MindMapNode.LineStyle.DASHED || lineStyle == MindMapNode.LineStyle.ARROW_DASHED;
+    }
+
+    /**
+     * 判断连线末端是否有箭头
+     * @return 是否有箭头
+     */
+    public boolean isArrow() {
+        return lineStyle == MindMapNode.LineStyle.ARROW_SOLID || lineStyle == MindMapNode.LineStyle.ARROW_DASHED;
+    }
+
+    /**
+     * 计算箭头的三个顶点，第一个顶点为连线终点
+     * @param points 长度为6的数组，依次写入三个顶点的x、y坐标
+     */
+    public void getArrowPoints(double[] points) {
+        // 箭头方向与连线方向相反
+        double arrowDirX = -dirX;
+        double arrowDirY = -dirY;
+
+        points[0] = endX;
+        points[1] = endY;
+        points[2] = endX + ARROW_SIZE * (arrowDirX * Math.cos(ARROW_ANGLE) + arrowDirY * Math.sin(ARROW_ANGLE));
+        points[3] = endY + ARROW_SIZE * (arrowDirY * Math.cos(ARROW_ANGLE) - arrowDirX * Math.sin(ARROW_ANGLE));
+        points[4] = endX + ARROW_SIZE * (arrowDirX * Math.cos(ARROW_ANGLE) - arrowDirY * Math.sin(ARROW_ANGLE));
+        points[5] = endY + ARROW_SIZE * (arrowDirY * Math.cos(ARROW_ANGLE) + arrowDirX * Math.sin(ARROW_ANGLE));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.demo.view;
+
+import com.example.demo.model.MindMapNode;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * 父节点与子节点之间的一条连线
+ * 缓存连线的几何信息和包围盒，只有在端点节点变化时才重新计算
+ */
+final class ConnectionVisual {
+
+    private final MindMapNode child;
+    private MindMapNode parent;
+
+    // 连线几何信息（画布坐标）
+    private final ConnectionGeometry geometry = new ConnectionGeometry();
+    private final double[] arrowPoints = new double[6];
+
+    // 连线包围盒（画布坐标），尚未计算时为NaN
+    private double minX = Double.NaN;
+    private double minY = Double.NaN;
+    private double maxX = Double.NaN;
+    private double maxY = Double.NaN;
+
+    // 上一次计算时两端节点的状态，用于判断连线是否需要重新计算
+    private final double[] endpoints = new double[8];
+    private MindMapNode.NodeShape parentShape;
+    private MindMapNode.NodeShape childShape;
+    private double computedMaxLineLength = Double.NaN;
+
+    // 最近一次被同步的帧号，用于找出已被删除的连线
+    private long frame;
+
+    /**
+     * 创建连线
+     * @param parent 父节点
+     * @param child 子节点
+     */
+    ConnectionVisual(MindMapNode parent, MindMapNode child) {
+        this.parent = parent;
+        this.child = child;
+    }
+
+    MindMapNode getParent() {
+        return parent;
+    }
+
+    void setParent(MindMapNode parent) {
+        this.parent = parent;
+    }
+
+    MindMapNode getChild() {
+        return child;
+    }
+
+    long getFrame() {
+        return frame;
+    }
+
+    void setFrame(long frame) {
+        this.frame = frame;
+    }
+
+    /**
+     * 判断连线是否已经计算过几何信息
+     * @return 是否已有包围盒
+     */
+    boolean hasBounds() {
+        return !Double.isNaN(minX);
+    }
+
+    double getMinX() {
+        return minX;
+    }
+
+    double getMinY() {
+        return minY;
+    }
+
+    double getMaxX() {
+        return maxX;
+    }
+
+    double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * 判断两端节点自上一次计算以来是否发生了变化
+     * @param maxLineLength 最大线长
+     * @return 是否需要重新计算
+     */
+    boolean isStale(double maxLineLength) {
+        return !hasBounds()
+                || maxLineLength != computedMaxLineLength
+                || parent.getShape() != parentShape
+                || child.getShape() != childShape
+                || child.getLineStyle() != geometry.getLineStyle()
+                || parent.getX() != endpoints[0] || parent.getY() != endpoints[1]
+                || parent.getWidth() != endpoints[2] || parent.getHeight() != endpoints[3]
+                || child.getX() != endpoints[4] || child.getY() != endpoints[5]
+                || child.getWidth() != endpoints[6] || child.getHeight() != endpoints[7];
+    }
+
+    /**
+     * 根据两端节点的当前状态重新计算连线几何信息和包围盒
+     * @param maxLineLength 最大线长
+     * @param lineWidth 线宽
+     */
+    void compute(double maxLineLength, double lineWidth) {
+        MindMapNode node = parent;
+
+        // 记录计算时两端节点的状态
+        endpoints[0] = node.getX();
+        endpoints[1] = node.getY();
+        endpoints[2] = node.getWidth();
+        endpoints[3] = node.getHeight();
+        endpoints[4] = child.getX();
+        endpoints[5] = child.getY();
+        endpoints[6] = child.getWidth();
+        endpoints[7] = child.getHeight();
+        parentShape = node.getShape();
+        childShape = child.getShape();
+        computedMaxLineLength = maxLineLength;
+
+        geometry.compute(node, child, maxLineLength);
+        double startX = geometry.getStartX();
+        double startY = geometry.getStartY();
+        double endX = geometry.getEndX();
+        double endY = geometry.getEndY();
+        double controlX1 = geometry.getControlX1();
+        double controlY1 = geometry.getControlY1();
+        double controlX2 = geometry.getControlX2();
+        double controlY2 = geometry.getControlY2();
+
+        // 曲线位于起点、终点和控制点构成的包围盒内，箭头向外扩展箭头长度
+        double margin = lineWidth + (geometry.isArrow() ? ConnectionGeometry.ARROW_SIZE : 0);
+        minX = Math.min(Math.min(startX, endX), Math.min(controlX1, controlX2)) - margin;
+        minY = Math.min(Math.min(startY, endY), Math.min(controlY1, controlY2)) - margin;
+        maxX = Math.max(Math.max(startX, endX), Math.max(controlX1, controlX2)) + margin;
+        maxY = Math.max(Math.max(startY, endY), Math.max(controlY1, controlY2)) + margin;
+    }
+
+    /**
+     * 将连线的起点到终点的直线加入当前路径，简化显示时使用
+     * 不绘制虚线和箭头，所有连线可以合并为一条路径一次描边
+     * @param gc 图形上下文
+     */
+    void appendLine(GraphicsContext gc) {
+        gc.moveTo(geometry.getStartX(), geometry.getStartY());
+        gc.lineTo(geometry.getEndX(), geometry.getEndY());
+    }
+
+    /**
+     * 在图形上下文上绘制连线
+     * @param gc 图形上下文
+     */
+    void stroke(GraphicsContext gc) {
+        // 根据节点的线条样式设置虚线模式
+        if (geometry.isDashed()) {
+            // 虚线模式
+            gc.setLineDashes(5, 5);
+        } else {
+            // 实线模式
+            gc.setLineDashes(null);
+        }
+
+        // 绘制简洁的连线
+        gc.beginPath();
+        gc.moveTo(geometry.getStartX(), geometry.getStartY());
+        gc.bezierCurveTo(geometry.getControlX1(), geometry.getControlY1(),
+                geometry.getControlX2(), geometry.getControlY2(),
+                geometry.getEndX(), geometry.getEndY());
+        gc.stroke();
+
+        // 如果是箭头样式，绘制箭头
+        if (geometry.isArrow()) {
+            geometry.getArrowPoints(arrowPoints);
+            gc.beginPath();
+            gc.moveTo(arrowPoints[0], arrowPoints[1]);
+            gc.lineTo(arrowPoints[2], arrowPoints[3]);
+            gc.lineTo(arrowPoints[4], arrowPoints[5]);
+            gc.closePath();
+            gc.fill();
+        }
+    }
+}
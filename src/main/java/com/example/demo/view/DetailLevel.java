@@ -0,0 +1,14 @@
+package com.example.demo.view;
+
+/**
+ * 画布的细节级别，由缩放比例决定
+ * 缩小到文字和阴影都看不清时，用更简单的图形代替，减少每帧需要绘制的内容
+ */
+public enum DetailLevel {
+    /** 完整显示：节点形状、文字、阴影和曲线连线 */
+    FULL,
+    /** 简化显示：节点画成不带文字、边框和阴影的矩形色块，连线画成直线 */
+    SIMPLIFIED,
+    /** 概览：较深的分支合并为一个半透明色块，所有内容直接绘制在连线画布上 */
+    OVERVIEW
+}
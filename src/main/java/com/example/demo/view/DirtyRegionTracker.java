@@ -0,0 +1,134 @@
+package com.example.demo.view;
+
+/**
+ * 脏区域记录器
+ * 收集需要重绘的矩形区域（画布坐标），区域过多时合并为一个包围矩形，
+ * 避免逐个重绘大量零散的小区域
+ */
+final class DirtyRegionTracker {
+
+    private static final int MAX_REGIONS = 32;
+
+    // 每个区域依次保存 minX, minY, maxX, maxY
+    private final double[] regions = new double[MAX_REGIONS * 4];
+    private int count;
+    private boolean full;
+
+    /**
+     * 添加一个脏区域
+     * @param minX 左边界
+     * @param minY 上边界
+     * @param maxX 右边界
+     * @param maxY 下边界
+     */
+    void add(double minX, double minY, double maxX, double maxY) {
+        if (full || Double.isNaN(minX)) {
+            return;
+        }
+
+        // 与已有区域重叠时直接合并
+        for (int i = 0; i < count; i++) {
+            int offset = i * 4;
+            if (minX <= regions[offset + 2] && maxX >= regions[offset]
+                    && minY <= regions[offset + 3] && maxY >= regions[offset + 1]) {
+                regions[offset] = Math.min(regions[offset], minX);
+                regions[offset + 1] = Math.min(regions[offset + 1], minY);
+                regions[offset + 2] = Math.max(regions[offset + 2], maxX);
+                regions[offset + 3] = Math.max(regions[offset + 3], maxY);
+                return;
+            }
+        }
+
+        if (count == MAX_REGIONS) {
+            // 区域过多，合并成一个包围矩形
+            collapse();
+            add(minX, minY, maxX, maxY);
+            return;
+        }
+
+        int offset = count * 4;
+        regions[offset] = minX;
+        regions[offset + 1] = minY;
+        regions[offset + 2] = maxX;
+        regions[offset + 3] = maxY;
+        count++;
+    }
+
+    /**
+     * 标记整个画布都需要重绘
+     */
+    void markFull() {
+        full = true;
+        count = 0;
+    }
+
+    /**
+     * 判断是否需要重绘整个画布
+     * @return 是否整体重绘
+     */
+    boolean isFull() {
+        return full;
+    }
+
+    /**
+     * 判断是否没有任何脏区域
+     * @return 是否为空
+     */
+    boolean isEmpty() {
+        return !full && count == 0;
+    }
+
+    /**
+     * 获取脏区域数量
+     * @return 区域数量
+     */
+    int size() {
+        return count;
+    }
+
+    double getMinX(int index) {
+        return regions[index * 4];
+    }
+
+    double getMinY(int index) {
+        return regions[index * 4 + 1];
+    }
+
+    double getMaxX(int index) {
+        return regions[index * 4 + 2];
+    }
+
+    double getMaxY(int index) {
+        return regions[index * 4 + 3];
+    }
+
+    /**
+     * 清空所有脏区域
+     */
+    void clear() {
+        full = false;
+        count = 0;
+    }
+
+    /**
+     * 将所有区域合并为一个包围矩形
+     */
+    private void collapse() {
+        double minX = regions[0];
+        double minY = regions[1];
+        double maxX = regions[2];
+        double maxY = regions[3];
+        for (int i = 1; i < count; i++) {
+            int offset = i * 4;
+            minX = Math.min(minX, regions[offset]);
+            minY = Math.min(minY, regions[offset + 1]);
+            maxX = Math.max(maxX, regions[offset + 2]);
+            maxY = Math.max(maxY, regions[offset + 3]);
+        }
+        regions[0] = minX;
+        regions[1] = minY;
+        regions[2] = maxX;
+        regions[3] = maxY;
+        count = 1;
+    }
+}
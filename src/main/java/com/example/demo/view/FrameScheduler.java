@@ -0,0 +1,181 @@
+package com.example.demo.view;
+
+import com.example.demo.util.Metrics;
+import javafx.animation.AnimationTimer;
+
+/**
+ * 帧调度器
+ * 布局和绘制请求只做标记，在下一个JavaFX脉冲中统一执行，
+ * 每个脉冲最多执行一次布局和一次绘制。连续的尺寸变化或模型修改因此合并为一帧。
+ * 没有待处理的请求时计时器自动停止，空闲时不占用CPU。
+ */
+public class FrameScheduler {
+
+    // 每帧的耗时和JavaFX线程在帧内分配的内存
+    private static final Metrics.Distribution FRAME_TIME = Metrics.timer("frame.time");
+    private static final Metrics.Distribution FRAME_ALLOCATED = Metrics.bytes("frame.allocated");
+
+    private final Runnable layoutTask;
+    private final Runnable paintTask;
+    private final AnimationTimer timer;
+
+    private boolean layoutDirty;
+    private boolean paintDirty;
+    private boolean running;
+    private boolean inFrame;
+
+    // 统计计数
+    private long layoutRequests;
+    private long paintRequests;
+    private long layoutsPerformed;
+    private long paintsPerformed;
+    private long coalescedRequests;
+    private long frames;
+
+    /**
+     * 创建帧调度器
+     * @param layoutTask 执行布局的任务
+     * @param paintTask 执行绘制的任务
+     */
+    public FrameScheduler(Runnable layoutTask, Runnable paintTask) {
+        this.layoutTask = layoutTask;
+        this.paintTask = paintTask;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                runFrame();
+            }
+        };
+    }
+
+    /**
+     * 请求在下一帧重新布局，布局之后总会重新绘制
+     */
+    public void requestLayout() {
+        layoutRequests++;
+        if (layoutDirty) {
+            coalescedRequests++;
+        }
+        layoutDirty = true;
+        paintDirty = true;
+        schedule();
+    }
+
+    /**
+     * 请求在下一帧重新绘制
+     */
+    public void requestPaint() {
+        paintRequests++;
+        if (paintDirty) {
+            coalescedRequests++;
+        }
+        paintDirty = true;
+        schedule();
+    }
+
+    /**
+     * 立即执行所有待处理的布局和绘制，例如在导出图像或命中测试之前
+     */
+    public void flush() {
+        if (layoutDirty || paintDirty) {
+            runFrame();
+        }
+    }
+
+    /**
+     * 判断是否有待处理的请求
+     * @return 是否有待处理的布局或绘制
+     */
+    public boolean isPending() {
+        return layoutDirty || paintDirty;
+    }
+
+    /**
+     * 判断是否有待处理的布局请求
+     * @return 是否有待处理的布局
+     */
+    public boolean isLayoutPending() {
+        return layoutDirty;
+    }
+
+    public long getLayoutRequests() {
+        return layoutRequests;
+    }
+
+    public long getPaintRequests() {
+        return paintRequests;
+    }
+
+    public long getLayoutsPerformed() {
+        return layoutsPerformed;
+    }
+
+    public long getPaintsPerformed() {
+        return paintsPerformed;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * 获取被合并掉的多余请求数量，即到达时同类请求已在等待执行的次数
+     * @return 被合并的请求数量
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests;
+    }
+
+    /**
+     * 有待处理的请求时启动计时器
+     */
+    private void schedule() {
+        if (!running && !inFrame) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * 执行一帧：先布局，再绘制
+     */
+    private void runFrame() {
+        if (inFrame) {
+            // 布局或绘制过程中产生的请求留到本帧末尾处理
+            return;
+        }
+        inFrame = true;
+        long start = FRAME_TIME.start();
+        long allocatedBefore = Metrics.allocatedBytes();
+        try {
+            if (layoutDirty) {
+                layoutDirty = false;
+                layoutsPerformed++;
+                layoutTask.run();
+            }
+            if (paintDirty) {
+                paintDirty = false;
+                paintsPerformed++;
+                paintTask.run();
+            }
+            frames++;
+        } finally {
+            inFrame = false;
+            FRAME_TIME.stop(start);
+            if (allocatedBefore >= 0) {
+                FRAME_ALLOCATED.record(Metrics.allocatedBytes() - allocatedBefore);
+            }
+        }
+
+        if (layoutDirty || paintDirty) {
+            // 本帧执行过程中又产生了新的请求，下一个脉冲再处理
+            if (!running) {
+                running = true;
+                timer.start();
+            }
+        } else if (running) {
+            running = false;
+            timer.stop();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.view;
+
+import javafx.scene.paint.Color;
+
+/**
+ * 节点和连线的绘制样式常量
+ * 与{@link MindMapView}分开存放，导出和命令行批处理引用这些常量时不会初始化JavaFX图形管线。
+ */
+public final class MindMapStyle {
+
+    /** 节点的最小宽度 */
+    public static final double NODE_MIN_WIDTH = 120;
+    /** 节点的高度 */
+    public static final double NODE_HEIGHT = 40;
+    /** 文字两侧的内边距 */
+    public static final double NODE_PADDING = 15;
+    /** 圆角矩形节点的圆角直径 */
+    public static final double NODE_CORNER_RADIUS = 6;
+    /** 没有设置颜色的节点使用的颜色 */
+    public static final Color NORMAL_NODE_COLOR = Color.web("#4dabf7");
+    /** 连线颜色 */
+    public static final Color LINE_COLOR = Color.web("#adb5bd");
+    /** 连线宽度 */
+    public static final double LINE_WIDTH = 2.0;
+    /** 节点文字的字体 */
+    public static final String FONT_FAMILY = "Segoe UI";
+
+    private MindMapStyle() {
+    }
+}
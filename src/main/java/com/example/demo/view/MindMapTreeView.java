@@ -1,21 +1,91 @@
 package com.example.demo.view;
 
+import com.example.demo.event.MindMapChanges;
+import com.example.demo.event.MindMapEvent;
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
+import com.example.demo.util.Log;
+import javafx.collections.ObservableList;
+import javafx.event.EventHandler;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 思维导图树形结构视图
+ * 树形项按需创建：一个分支第一次展开时才为它的子节点创建树形项，尚未加载的分支同时从文件中加载，
+ * 所以侧边栏的开销只与展开的部分有关。视图订阅思维导图的修改事件，只插入、删除、移动或刷新
+ * 受影响的树形项，其他分支的展开状态和当前选中项保持不变。
  */
 public class MindMapTreeView extends TreeView<MindMapNode> {
 
+    private static final Log LOG = Log.get(MindMapTreeView.class);
+
     private MindMap mindMap;
-    private Map<String, TreeItem<MindMapNode>> nodeItemMap;
+    // 已经创建的树形项，未展开的分支下的节点没有树形项
+    private Map<String, NodeTreeItem> nodeItemMap;
+    private TreeItem<MindMapNode> freeNodesFolder;
     private NodeSelectListener nodeSelectListener;
+    private BranchLoadListener branchLoadListener;
+    // 结构更新期间选中项的临时变化不通知监听器
+    private boolean updating;
+    // 正在为展开的分支创建子项，期间加载节点引起的修改事件不需要处理
+    private boolean populating;
+    private final EventHandler<MindMapEvent> changeHandler = event -> applyChanges(event.getChanges());
+
+    /**
+     * 按需创建子节点的树形项
+     */
+    private final class NodeTreeItem extends TreeItem<MindMapNode> {
+        private boolean populated;
+        // 根节点的树形项在子节点之后还有自由节点文件夹
+        private final boolean root;
+
+        NodeTreeItem(MindMapNode node, boolean root) {
+            super(node);
+            this.root = root;
+        }
+
+        /**
+         * 第一次访问时创建子节点的树形项，TreeView只会访问展开的分支
+         */
+        @Override
+        public ObservableList<TreeItem<MindMapNode>> getChildren() {
+            if (!populated) {
+                populated = true;
+                populate(this);
+            }
+            return super.getChildren();
+        }
+
+        @Override
+        public boolean isLeaf() {
+            if (root) {
+                return false;
+            }
+            if (populated) {
+                return super.getChildren().isEmpty();
+            }
+            MindMapNode node = getValue();
+            return node.getChildren().isEmpty() && !node.hasUnloadedChildren();
+        }
+
+        /**
+         * 获取已经创建的子项，不会触发创建
+         * @return 子项，尚未创建时为null
+         */
+        List<TreeItem<MindMapNode>> getCreatedChildren() {
+            return populated ? super.getChildren() : null;
+        }
+    }
 
     /**
      * 创建思维导图树形视图
@@ -25,7 +95,7 @@ public class MindMapTreeView extends TreeView<MindMapNode> {
 
         // 设置选择监听器
         getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
-            if (newValue != null && nodeSelectListener != null) {
+            if (newValue != null && !updating && nodeSelectListener != null) {
                 nodeSelectListener.onNodeSelected(newValue.getValue());
             }
         });
@@ -36,38 +106,44 @@ public class MindMapTreeView extends TreeView<MindMapNode> {
      * @param mindMap 思维导图
      */
     public void setMindMap(MindMap mindMap) {
+        if (this.mindMap != mindMap) {
+            if (this.mindMap != null) {
+                this.mindMap.removeChangeHandler(changeHandler);
+            }
+            if (mindMap != null) {
+                mindMap.addChangeHandler(changeHandler);
+            }
+        }
         this.mindMap = mindMap;
         this.nodeItemMap.clear();
 
         if (mindMap == null) {
+            freeNodesFolder = null;
             setRoot(null);
             return;
         }
 
-        // 创建根节点
-        TreeItem<MindMapNode> rootItem = createTreeItem(mindMap.getRootNode());
+        // 创建根节点，子节点在展开时创建
+        NodeTreeItem rootItem = new NodeTreeItem(mindMap.getRootNode(), true);
+        nodeItemMap.put(mindMap.getRootNode().getId(), rootItem);
 
         // 创建自由节点文件夹 - 始终创建，即使没有自由节点
-        TreeItem<MindMapNode> freeNodesFolder = new TreeItem<>(new MindMapNode("自由节点"));
+        freeNodesFolder = new TreeItem<>(new MindMapNode("自由节点"));
         freeNodesFolder.setExpanded(true); // 始终展开自由节点文件夹
 
-        // 添加自由节点
-        int freeNodeCount = 0;
-        System.out.println("Checking for free nodes among " + mindMap.getAllNodes().size() + " total nodes");
-        for (MindMapNode node : mindMap.getAllNodes()) {
-            // 如果节点没有父节点且不是中心节点，则它是自由节点
-            if (node.getParent() == null && !node.isCenterNode()) {
-                System.out.println("Found free node: " + node.getText() + " (ID: " + node.getId() + ")");
-                TreeItem<MindMapNode> freeNodeItem = new TreeItem<>(node);
-                freeNodesFolder.getChildren().add(freeNodeItem);
-                nodeItemMap.put(node.getId(), freeNodeItem);
-                freeNodeCount++;
+        // 添加自由节点，思维导图维护着没有父节点的节点，不需要扫描所有节点
+        List<TreeItem<MindMapNode>> freeNodeItems = new ArrayList<>(mindMap.getFreeNodeCount());
+        for (MindMapNode node : mindMap.getRootNodes()) {
+            // 除中心节点之外没有父节点的节点是自由节点
+            if (!node.isCenterNode()) {
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Found free node: {} (ID: {})", node.getText(), node.getId());
+                }
+                freeNodeItems.add(createTreeItem(node));
             }
         }
-        System.out.println("Free node count: " + freeNodeCount);
-
-        // 始终添加自由节点文件夹，即使没有自由节点
-        rootItem.getChildren().add(freeNodesFolder);
+        freeNodesFolder.getChildren().setAll(freeNodeItems);
+        LOG.debug("Free node count: {}", freeNodeItems.size());
 
         setRoot(rootItem);
         rootItem.setExpanded(true);
@@ -82,67 +158,338 @@ public class MindMapTreeView extends TreeView<MindMapNode> {
     }
 
     /**
-     * 选择指定的节点
+     * 设置分支加载监听器
+     * @param listener 监听器
+     */
+    public void setBranchLoadListener(BranchLoadListener listener) {
+        this.branchLoadListener = listener;
+    }
+
+    /**
+     * 选择指定的节点，节点所在的分支尚未展开时逐级展开
      * @param node 要选择的节点
      */
     public void selectNode(MindMapNode node) {
-        if (node == null || nodeItemMap.isEmpty()) {
+        TreeItem<MindMapNode> item = node != null ? findOrCreateItem(node) : null;
+        if (item == null) {
             getSelectionModel().clearSelection();
             return;
         }
 
-        TreeItem<MindMapNode> item = nodeItemMap.get(node.getId());
+        // 展开所有父节点
+        TreeItem<MindMapNode> parent = item.getParent();
+        while (parent != null) {
+            parent.setExpanded(true);
+            parent = parent.getParent();
+        }
+        getSelectionModel().select(item);
+    }
+
+    /**
+     * 根据一批修改更新受影响的树形项
+     * 结构修改太多时重新创建，文本和样式的修改只重新绘制可见的单元格
+     * @param changes 修改记录
+     */
+    private void applyChanges(MindMapChanges changes) {
+        if (mindMap == null || populating) {
+            return;
+        }
+        if (changes.isOverflowed(MindMapChanges.Type.STRUCTURE)) {
+            updateTree();
+            return;
+        }
+
+        if (changes.contains(MindMapChanges.Type.STRUCTURE)) {
+            updating = true;
+            try {
+                // 子节点先于父节点删除，父节点先于子节点加入
+                for (MindMapNode node : changes.getRemoved()) {
+                    nodeRemoved(node);
+                }
+                for (MindMapNode node : changes.getMoved()) {
+                    nodeMoved(node);
+                }
+                for (MindMapNode node : changes.getAdded()) {
+                    nodeAdded(node);
+                }
+            } finally {
+                updating = false;
+            }
+            // 父节点的树形项可能还没有创建子项，需要刷新它是否显示展开按钮
+            refresh();
+        } else if (changes.contains(MindMapChanges.Type.TEXT)
+                && (changes.isOverflowed(MindMapChanges.Type.TEXT)
+                    || containsItem(changes.getNodes(MindMapChanges.Type.TEXT)))) {
+            refresh();
+        }
+    }
+
+    /**
+     * 在已经展开的父节点下插入新节点的树形项
+     * @param node 新节点，作为子节点时已经加入父节点
+     */
+    private void nodeAdded(MindMapNode node) {
+        // 展开分支时已经创建过的不再重复创建
+        if (nodeItemMap.containsKey(node.getId())) {
+            return;
+        }
+        NodeTreeItem item = new NodeTreeItem(node, false);
+        if (insertItem(node, item)) {
+            nodeItemMap.put(node.getId(), item);
+        }
+    }
+
+    /**
+     * 移除被删除的节点及其子节点的树形项
+     * @param node 被删除的节点
+     */
+    private void nodeRemoved(MindMapNode node) {
+        NodeTreeItem item = nodeItemMap.get(node.getId());
         if (item != null) {
+            detachItem(item);
+            unregister(item);
+        }
+    }
+
+    /**
+     * 父节点发生变化后，例如连接到其他节点或断开成为自由节点，
+     * 把已有的树形项连同展开的子项一起移动到新的位置，展开和选中状态不变
+     * @param node 父节点发生变化的节点
+     */
+    private void nodeMoved(MindMapNode node) {
+        NodeTreeItem item = nodeItemMap.get(node.getId());
+        if (item == null) {
+            nodeAdded(node);
+            return;
+        }
+
+        boolean selected = getSelectionModel().getSelectedItem() == item;
+        detachItem(item);
+        if (!insertItem(node, item)) {
+            // 新的父节点还没有展开，树形项在展开时重新创建
+            unregister(item);
+        } else if (selected) {
             getSelectionModel().select(item);
+        }
+    }
 
-            // 展开所有父节点
-            TreeItem<MindMapNode> parent = item.getParent();
-            while (parent != null) {
-                parent.setExpanded(true);
-                parent = parent.getParent();
+    /**
+     * 判断是否有节点已经创建了树形项
+     * @param nodes 节点
+     * @return 是否有
+     */
+    private boolean containsItem(Iterable<MindMapNode> nodes) {
+        for (MindMapNode node : nodes) {
+            if (nodeItemMap.containsKey(node.getId())) {
+                return true;
             }
         }
+        return false;
     }
 
     /**
-     * 更新树形结构
+     * 重新创建树形结构，保留展开的分支和选中的节点
+     * 用于一次修改的节点太多、无法逐个更新的情况
      */
     public void updateTree() {
         if (mindMap == null) {
             return;
         }
 
-        // 保存当前选中的节点
+        // 保存当前选中的节点和展开的分支
         MindMapNode selectedNode = null;
         TreeItem<MindMapNode> selectedItem = getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
             selectedNode = selectedItem.getValue();
         }
+        Set<String> expandedIds = new HashSet<>();
+        for (NodeTreeItem item : nodeItemMap.values()) {
+            if (item.isExpanded()) {
+                expandedIds.add(item.getValue().getId());
+            }
+        }
 
         // 重新创建树形结构
-        setMindMap(mindMap);
+        updating = true;
+        try {
+            setMindMap(mindMap);
+
+            // 父节点总是先于子节点展开，按深度顺序处理
+            Deque<NodeTreeItem> pending = new ArrayDeque<>();
+            pending.add((NodeTreeItem) getRoot());
+            for (TreeItem<MindMapNode> freeItem : freeNodesFolder.getChildren()) {
+                pending.add((NodeTreeItem) freeItem);
+            }
+            while (!pending.isEmpty()) {
+                NodeTreeItem item = pending.poll();
+                if (!expandedIds.contains(item.getValue().getId())) {
+                    continue;
+                }
+                item.setExpanded(true);
+                for (TreeItem<MindMapNode> child : item.getChildren()) {
+                    if (child instanceof NodeTreeItem) {
+                        pending.add((NodeTreeItem) child);
+                    }
+                }
+            }
+        } finally {
+            updating = false;
+        }
 
         // 恢复选中状态
-        if (selectedNode != null) {
+        if (selectedNode != null && mindMap.getNodeById(selectedNode.getId()) != null) {
             selectNode(selectedNode);
         }
     }
 
     /**
-     * 递归创建树形项
+     * 创建树形项，子项在第一次展开时创建
      * @param node 思维导图节点
      * @return 树形项
      */
-    private TreeItem<MindMapNode> createTreeItem(MindMapNode node) {
-        TreeItem<MindMapNode> item = new TreeItem<>(node);
+    private NodeTreeItem createTreeItem(MindMapNode node) {
+        NodeTreeItem item = new NodeTreeItem(node, false);
         nodeItemMap.put(node.getId(), item);
+        return item;
+    }
+
+    /**
+     * 为树形项创建子项，尚未加载的分支先从文件中加载
+     * @param item 树形项
+     */
+    private void populate(NodeTreeItem item) {
+        MindMapNode node = item.getValue();
+        boolean loaded;
+        populating = true;
+        try {
+            loaded = node.hasUnloadedChildren() && mindMap != null && mindMap.loadChildren(node);
+        } finally {
+            populating = false;
+        }
 
-        // 递归创建子节点
+        List<TreeItem<MindMapNode>> childItems = new ArrayList<>(node.getChildren().size() + 1);
         for (MindMapNode child : node.getChildren()) {
-            item.getChildren().add(createTreeItem(child));
+            childItems.add(createTreeItem(child));
         }
+        if (item.root && freeNodesFolder != null) {
+            childItems.add(freeNodesFolder);
+        }
+        // 直接修改父类的列表，避免再次进入getChildren
+        item.getCreatedChildren().addAll(childItems);
 
-        return item;
+        if (loaded && branchLoadListener != null) {
+            branchLoadListener.onBranchLoaded(node);
+        }
+    }
+
+    /**
+     * 把树形项插入到节点当前父节点的树形项下
+     * @param node 节点
+     * @param item 节点的树形项
+     * @return 是否已插入，父节点的子项尚未创建时不插入
+     */
+    private boolean insertItem(MindMapNode node, NodeTreeItem item) {
+        MindMapNode parent = node.getParent();
+        if (parent == null) {
+            if (node.isCenterNode() || freeNodesFolder == null) {
+                return false;
+            }
+            freeNodesFolder.getChildren().add(item);
+            return true;
+        }
+
+        NodeTreeItem parentItem = nodeItemMap.get(parent.getId());
+        List<TreeItem<MindMapNode>> siblings = parentItem != null ? parentItem.getCreatedChildren() : null;
+        if (siblings == null) {
+            return false;
+        }
+        // 子项与模型中的子节点顺序一致，根节点的自由节点文件夹始终在最后
+        int index = Math.min(parent.getChildren().indexOf(node), siblings.size());
+        if (parentItem.root) {
+            index = Math.min(index, siblings.size() - 1);
+        }
+        siblings.add(Math.max(index, 0), item);
+        return true;
+    }
+
+    /**
+     * 从父树形项中移除
+     * @param item 树形项
+     */
+    private void detachItem(NodeTreeItem item) {
+        TreeItem<MindMapNode> parentItem = item.getParent();
+        if (parentItem == null) {
+            return;
+        }
+        List<TreeItem<MindMapNode>> siblings = parentItem instanceof NodeTreeItem
+                ? ((NodeTreeItem) parentItem).getCreatedChildren()
+                : parentItem.getChildren();
+        if (siblings != null) {
+            siblings.remove(item);
+        }
+    }
+
+    /**
+     * 移除树形项及其已经创建的所有子项的索引
+     * @param item 树形项
+     */
+    private void unregister(NodeTreeItem item) {
+        Deque<NodeTreeItem> stack = new ArrayDeque<>();
+        stack.push(item);
+        while (!stack.isEmpty()) {
+            NodeTreeItem current = stack.pop();
+            nodeItemMap.remove(current.getValue().getId(), current);
+            List<TreeItem<MindMapNode>> children = current.getCreatedChildren();
+            if (children != null) {
+                for (TreeItem<MindMapNode> child : children) {
+                    if (child instanceof NodeTreeItem) {
+                        stack.push((NodeTreeItem) child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 查找节点的树形项，所在的分支还没有创建子项时从最近的已有树形项开始逐级创建
+     * @param node 节点
+     * @return 树形项，节点不在树中时为null
+     */
+    private TreeItem<MindMapNode> findOrCreateItem(MindMapNode node) {
+        NodeTreeItem item = nodeItemMap.get(node.getId());
+        if (item != null) {
+            return item;
+        }
+
+        List<MindMapNode> path = new ArrayList<>();
+        MindMapNode ancestor = node.getParent();
+        while (ancestor != null && !nodeItemMap.containsKey(ancestor.getId())) {
+            path.add(ancestor);
+            ancestor = ancestor.getParent();
+        }
+        if (ancestor == null) {
+            return null;
+        }
+        nodeItemMap.get(ancestor.getId()).getChildren();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            NodeTreeItem pathItem = nodeItemMap.get(path.get(i).getId());
+            if (pathItem == null) {
+                return null;
+            }
+            pathItem.getChildren();
+        }
+        return nodeItemMap.get(node.getId());
+    }
+
+    /**
+     * 分支加载监听器接口
+     */
+    public interface BranchLoadListener {
+        /**
+         * 当展开的分支从文件中加载了新的节点时调用
+         * @param node 加载了子节点的节点
+         */
+        void onBranchLoaded(MindMapNode node);
     }
 
     /**
@@ -1,13 +1,23 @@
 package com.example.demo.view;
 
+import com.example.demo.event.MindMapChanges;
+import com.example.demo.event.MindMapEvent;
+import com.example.demo.layout.AsyncLayoutRunner;
 import com.example.demo.layout.LayoutStrategy;
 import com.example.demo.model.MindMap;
 import com.example.demo.model.MindMapNode;
+import com.example.demo.model.NodeSpatialIndex;
+import com.example.demo.util.Log;
+import com.example.demo.util.Metrics;
+import com.example.demo.util.QuadTree;
+import javafx.event.EventHandler;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
-import javafx.scene.effect.DropShadow;
 import javafx.scene.effect.InnerShadow;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
@@ -18,13 +28,6 @@ import javafx.scene.paint.LinearGradient;
 import javafx.scene.paint.Stop;
 import javafx.scene.paint.CycleMethod;
 import javafx.scene.shape.Circle;
-import javafx.scene.shape.Ellipse;
-import javafx.scene.shape.Polygon;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
-import javafx.scene.text.Font;
-import javafx.scene.text.FontWeight;
-import javafx.scene.text.Text;
 import javafx.scene.Cursor;
 import javafx.scene.transform.Scale;
 import javafx.scene.transform.Translate;
@@ -32,13 +35,29 @@ import javafx.scene.transform.Translate;
 import com.example.demo.model.MindMapNode.NodeShape;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * 思维导图绘图区视图
  */
 public class MindMapView extends Pane {
 
+    private static final Log LOG = Log.get(MindMapView.class);
+
+    // 每帧的绘制统计
+    private static final Metrics.Distribution PAINT_TIME = Metrics.timer("paint.time");
+    private static final Metrics.Gauge MODEL_NODES = Metrics.gauge("paint.totalNodes");
+    private static final Metrics.Gauge VISIBLE_NODES = Metrics.gauge("paint.visibleNodes");
+    private static final Metrics.Gauge UPDATED_NODES = Metrics.gauge("paint.updatedNodes");
+    private static final Metrics.Gauge UPDATED_CONNECTIONS = Metrics.gauge("paint.updatedConnections");
+
     private MindMap mindMap;
     private LayoutStrategy layoutStrategy;
     private MindMapNode selectedNode;
@@ -60,8 +79,6 @@ public class MindMapView extends Pane {
     private double translateX = 0;
     private double translateY = 0;
     private double scaleValue = 1.0;
-    private final Translate translate = new Translate();
-    private final Scale scale = new Scale();
 
     // 右键菜单
     private ContextMenu contextMenu;
@@ -70,16 +87,83 @@ public class MindMapView extends Pane {
     private Object controller;
 
     // 节点样式常量
-    private static final double NODE_MIN_WIDTH = 120;
-    private static final double NODE_HEIGHT = 40;
-    private static final double NODE_PADDING = 15;
-    private static final double NODE_CORNER_RADIUS = 6;
+    static final double NODE_CORNER_RADIUS = MindMapStyle.NODE_CORNER_RADIUS;
     private static final Color CENTER_NODE_COLOR = Color.web("#339af0");
-    private static final Color NORMAL_NODE_COLOR = Color.web("#4dabf7");
-    private static final Color SELECTED_NODE_COLOR = Color.web("#fa5252");
-    private static final Color LINE_COLOR = Color.web("#adb5bd");
-    private static final double LINE_WIDTH = 2.0;
-    private static final String FONT_FAMILY = "Segoe UI";
+    static final Color NORMAL_NODE_COLOR = MindMapStyle.NORMAL_NODE_COLOR;
+    static final Color SELECTED_NODE_COLOR = Color.web("#fa5252");
+    private static final Color LINE_COLOR = MindMapStyle.LINE_COLOR;
+    private static final double LINE_WIDTH = MindMapStyle.LINE_WIDTH;
+    static final String FONT_FAMILY = MindMapStyle.FONT_FAMILY;
+
+    // 保留模式绘制：连线画布和节点图层只创建一次
+    private final Canvas linesCanvas = new Canvas();
+    private final Group nodeLayer = new Group();
+    private final Translate nodeLayerTranslate = new Translate();
+    private final Scale nodeLayerScale = new Scale();
+    // 已创建的节点图形，按节点ID索引
+    private final Map<String, NodeVisual> nodeVisuals = new HashMap<>();
+    // 已创建的连线，按子节点ID索引（每个节点最多只有一个父节点）
+    private final Map<String, ConnectionVisual> connectionVisuals = new HashMap<>();
+    // 连线包围盒的空间索引，用于查找与脏区域相交的连线
+    private final QuadTree<ConnectionVisual> connectionIndex = new QuadTree<>();
+    private final DirtyRegionTracker dirtyRegions = new DirtyRegionTracker();
+    // 连线画布上一次重绘时使用的变换
+    private double paintedTranslateX = Double.NaN;
+    private double paintedTranslateY = Double.NaN;
+    private double paintedScale = Double.NaN;
+    // 当前节点图形对应的思维导图，不同时需要完全重建
+    private MindMap renderedMindMap;
+    // 绘制帧号，用于找出已经被删除或移出视口的图形
+    private long frameCounter;
+    // 视口向外扩展的范围（屏幕像素）
+    private static final double VIEWPORT_MARGIN = 100;
+    // 一帧内新建的节点图形超过此数量时整体重新排序，而不是逐个插入
+    private static final int BULK_INSERT_THRESHOLD = 32;
+    // 部分加载的思维导图中，每帧最多加载的可见分支数量
+    private static final int MAX_BRANCH_LOADS_PER_FRAME = 64;
+    private final List<MindMapNode> visibleUnloadedBranches = new ArrayList<>();
+
+    // 细节级别：缩放比例低于阈值时简化节点和连线，更低时把较深的分支合并为色块
+    private static final double DEFAULT_SIMPLIFIED_SCALE = 0.5;
+    private static final double DEFAULT_OVERVIEW_SCALE = 0.3;
+    private static final int DEFAULT_AGGREGATE_DEPTH = 3;
+    // 放大时缩放比例需要超过阈值的这个倍数才恢复更高的细节级别，避免在阈值附近来回切换
+    private static final double DETAIL_HYSTERESIS = 1.05;
+    // 每帧最多新建或恢复完整显示的节点图形数量，其余的在后续帧中逐步完成，避免从概览放大时卡顿
+    private static final int MAX_DETAIL_UPGRADES_PER_FRAME = 1000;
+    private double simplifiedScale = DEFAULT_SIMPLIFIED_SCALE;
+    private double overviewScale = DEFAULT_OVERVIEW_SCALE;
+    private int aggregateDepth = DEFAULT_AGGREGATE_DEPTH;
+    private DetailLevel detailLevel = DetailLevel.FULL;
+    private DetailLevel paintedDetailLevel;
+    private final NodeAggregates aggregates = new NodeAggregates();
+    private int upgradeBudget;
+    private boolean upgradesPending;
+    // 当前帧的同步状态，供空间索引查询的回调使用
+    private long currentFrame;
+    private int updatedCount;
+    private int visibleCount;
+    private double maxLineLength;
+    private final List<NodeVisual> createdVisuals = new ArrayList<>();
+    private final Consumer<MindMapNode> syncNodeAction = this::syncNodeVisual;
+    private final Consumer<MindMapNode> syncConnectionAction = this::syncConnection;
+
+    // 模型修改后重绘，绘制时只更新状态发生变化的图形，同一帧内的多批修改只绘制一次
+    private final EventHandler<MindMapEvent> changeHandler = this::handleModelChanged;
+
+    // 后台布局执行器
+    private final AsyncLayoutRunner layoutRunner = new AsyncLayoutRunner();
+    // 帧调度器，合并同一个脉冲内的布局和绘制请求
+    private final FrameScheduler frameScheduler = new FrameScheduler(this::performLayout, this::render);
+    // 性能面板，第一次显示时创建
+    private PerformanceHud performanceHud;
+    // 上一次布局时的视图尺寸，只有尺寸变化时才需要重新布局
+    private double laidOutWidth = -1;
+    private double laidOutHeight = -1;
+    // 上一次完整布局使用的策略和画布尺寸，增量布局只能在相同条件下进行
+    private LayoutStrategy lastLayoutStrategy;
+    private double lastLayoutWidth;
+    private double lastLayoutHeight;
 
     /**
      * 创建思维导图视图
@@ -97,12 +181,9 @@ public class MindMapView extends Pane {
         // 初始化右键菜单
         initContextMenu();
 
-        // 初始化变换
-        getTransforms().addAll(translate, scale);
-        scale.setPivotX(0);
-        scale.setPivotY(0);
-        scale.setX(scaleValue);
-        scale.setY(scaleValue);
+        // 初始化绘制图层，连线画布在下，节点图层在上
+        nodeLayer.getTransforms().addAll(nodeLayerTranslate, nodeLayerScale);
+        getChildren().addAll(linesCanvas, nodeLayer);
     }
 
     /**
@@ -127,8 +208,7 @@ public class MindMapView extends Pane {
                         method.setAccessible(true);
                         method.invoke(getController());
                     } catch (Exception e) {
-                        System.err.println("Error calling addChildNode: " + e.getMessage());
-                        e.printStackTrace();
+                        LOG.error("Error calling addChildNode", e);
                     }
                 });
             }
@@ -146,8 +226,7 @@ public class MindMapView extends Pane {
                         method.setAccessible(true);
                         method.invoke(getController());
                     } catch (Exception e) {
-                        System.err.println("Error calling addSiblingNode: " + e.getMessage());
-                        e.printStackTrace();
+                        LOG.error("Error calling addSiblingNode", e);
                     }
                 });
             }
@@ -165,8 +244,7 @@ public class MindMapView extends Pane {
                         method.setAccessible(true);
                         method.invoke(getController());
                     } catch (Exception e) {
-                        System.err.println("Error calling editNodeText: " + e.getMessage());
-                        e.printStackTrace();
+                        LOG.error("Error calling editNodeText", e);
                     }
                 });
             }
@@ -184,8 +262,7 @@ public class MindMapView extends Pane {
                         method.setAccessible(true);
                         method.invoke(getController());
                     } catch (Exception e) {
-                        System.err.println("Error calling changeNodeShape: " + e.getMessage());
-                        e.printStackTrace();
+                        LOG.error("Error calling changeNodeShape", e);
                     }
                 });
             }
@@ -203,8 +280,7 @@ public class MindMapView extends Pane {
                         method.setAccessible(true);
                         method.invoke(getController());
                     } catch (Exception e) {
-                        System.err.println("Error calling changeNodeSize: " + e.getMessage());
-                        e.printStackTrace();
+                        LOG.error("Error calling changeNodeSize", e);
                     }
                 });
             }
@@ -222,8 +298,7 @@ public class MindMapView extends Pane {
                         method.setAccessible(true);
                         method.invoke(getController());
                     } catch (Exception e) {
-                        System.err.println("Error calling changeNodeFont: " + e.getMessage());
-                        e.printStackTrace();
+                        LOG.error("Error calling changeNodeFont", e);
                     }
                 });
             }
@@ -241,8 +316,7 @@ public class MindMapView extends Pane {
                         method.setAccessible(true);
                         method.invoke(getController());
                     } catch (Exception e) {
-                        System.err.println("Error calling deleteNode: " + e.getMessage());
-                        e.printStackTrace();
+                        LOG.error("Error calling deleteNode", e);
                     }
                 });
             }
@@ -264,14 +338,25 @@ public class MindMapView extends Pane {
 
     /**
      * 设置思维导图
+     * 只有换成另一个思维导图时才重新计算所有节点的大小，编辑后由调用者更新被修改的节点
      * @param mindMap 思维导图
      */
     public void setMindMap(MindMap mindMap) {
+        boolean changed = this.mindMap != mindMap;
+        if (changed) {
+            if (this.mindMap != null) {
+                this.mindMap.removeChangeHandler(changeHandler);
+            }
+            if (mindMap != null) {
+                mindMap.addChangeHandler(changeHandler);
+            }
+        }
         this.mindMap = mindMap;
         this.selectedNode = null;
-        updateNodeSizes();
+        if (changed) {
+            updateNodeSizes();
+        }
         applyLayout();
-        draw();
     }
 
     /**
@@ -282,7 +367,6 @@ public class MindMapView extends Pane {
         this.layoutStrategy = layoutStrategy;
         if (mindMap != null) {
             applyLayout();
-            draw();
         }
     }
 
@@ -326,487 +410,653 @@ public class MindMapView extends Pane {
         return controller;
     }
 
+    /**
+     * 获取当前的布局策略
+     * @return 布局策略，没有设置时为null
+     */
+    public LayoutStrategy getLayoutStrategy() {
+        return layoutStrategy;
+    }
+
+    /**
+     * 显示或隐藏左上角的性能面板
+     * @param visible 是否显示
+     */
+    public void setPerformanceHudVisible(boolean visible) {
+        if (performanceHud == null) {
+            if (!visible) {
+                return;
+            }
+            performanceHud = new PerformanceHud(this::getLayoutStrategy);
+            performanceHud.relocate(8, 8);
+            // 在节点图层之上，不受平移和缩放影响
+            getChildren().add(performanceHud);
+        }
+        performanceHud.setVisible(visible);
+    }
+
+    /**
+     * 判断性能面板是否显示
+     * @return 是否显示
+     */
+    public boolean isPerformanceHudVisible() {
+        return performanceHud != null && performanceHud.isVisible();
+    }
+
+    /**
+     * 设置细节级别的缩放阈值
+     * @param simplifiedScale 缩放比例低于此值时节点画成不带文字和阴影的色块，连线画成直线
+     * @param overviewScale 缩放比例低于此值时较深的分支合并为一个色块，不能大于simplifiedScale
+     */
+    public void setDetailThresholds(double simplifiedScale, double overviewScale) {
+        if (!(overviewScale <= simplifiedScale)) {
+            throw new IllegalArgumentException("概览阈值不能大于简化阈值: " + overviewScale + " > " + simplifiedScale);
+        }
+        this.simplifiedScale = simplifiedScale;
+        this.overviewScale = overviewScale;
+        draw();
+    }
+
+    /**
+     * 设置概览级别的聚合深度，更深的节点合并到该深度上的祖先节点的分支色块中
+     * @param aggregateDepth 聚合深度，0表示每棵树只显示根节点
+     */
+    public void setAggregateDepth(int aggregateDepth) {
+        if (aggregateDepth < 0) {
+            throw new IllegalArgumentException("聚合深度不能为负数: " + aggregateDepth);
+        }
+        this.aggregateDepth = aggregateDepth;
+        draw();
+    }
+
+    /**
+     * 获取最近一次绘制使用的细节级别
+     * @return 细节级别
+     */
+    public DetailLevel getDetailLevel() {
+        return detailLevel;
+    }
+
+    /**
+     * 获取帧调度器，可用于读取布局和绘制的统计计数
+     * @return 帧调度器
+     */
+    public FrameScheduler getFrameScheduler() {
+        return frameScheduler;
+    }
+
+    /**
+     * 立即完成所有待处理的布局和绘制，例如在导出图像之前
+     */
+    public void flush() {
+        frameScheduler.flush();
+    }
+
+    /**
+     * 获取上一帧绘制连线时使用的最大线长，导出时用它得到与屏幕一致的连线
+     * @return 最大线长
+     */
+    public double getMaxLineLength() {
+        return maxLineLength;
+    }
+
     /**
      * 应用布局
+     * 布局在下一帧执行，同一帧内的多次请求只执行一次
      */
     public void applyLayout() {
+        frameScheduler.requestLayout();
+    }
+
+    /**
+     * 执行布局，由帧调度器调用
+     */
+    private void performLayout() {
         if (mindMap != null && layoutStrategy != null) {
-            // 获取画布尺寸，如果画布尚未初始化，使用父容器的尺寸
-            double width = getWidth() > 0 ? getWidth() : (getParent() != null ? getParent().getBoundsInLocal().getWidth() : 800);
-            double height = getHeight() > 0 ? getHeight() : (getParent() != null ? getParent().getBoundsInLocal().getHeight() : 600);
+            double width = getLayoutWidth();
+            double height = getLayoutHeight();
+
+            // 应用布局，较大的思维导图在后台计算，完成后再重绘
+            layoutRunner.run(mindMap, layoutStrategy, width, height, this::draw);
+            lastLayoutStrategy = layoutStrategy;
+            lastLayoutWidth = width;
+            lastLayoutHeight = height;
 
-            // 应用布局
-            layoutStrategy.applyLayout(mindMap, width, height);
+            LOG.debug("Applying layout: {}, canvas size: {}x{}", layoutStrategy.getName(), width, height);
+        }
+    }
 
-            // 输出调试信息
-            System.out.println("Applying layout: " + layoutStrategy.getName());
-            System.out.println("Canvas size: " + width + "x" + height);
+    /**
+     * 在节点增删后应用增量布局
+     * 只有上一次完整布局已经完成、策略和画布尺寸都没有变化、并且布局策略支持时，
+     * 才只重新布局受影响的子树，否则退回到完整布局
+     * @param changedNode 子节点发生变化的节点
+     */
+    public void applyIncrementalLayout(MindMapNode changedNode) {
+        if (mindMap == null || layoutStrategy == null) {
+            return;
+        }
+        boolean applied;
+        mindMap.beginUpdate();
+        try {
+            applied = changedNode != null
+                    && !frameScheduler.isLayoutPending()
+                    && !layoutRunner.isRunning()
+                    && layoutStrategy == lastLayoutStrategy
+                    && getLayoutWidth() == lastLayoutWidth
+                    && getLayoutHeight() == lastLayoutHeight
+                    && layoutStrategy.applyIncrementalLayout(mindMap, changedNode, lastLayoutWidth, lastLayoutHeight);
+        } finally {
+            mindMap.endUpdate();
+        }
+        if (applied) {
+            draw();
+        } else {
+            applyLayout();
         }
     }
 
+    /**
+     * 获取布局使用的画布宽度，如果画布尚未初始化，使用父容器的宽度
+     * @return 画布宽度
+     */
+    private double getLayoutWidth() {
+        return getWidth() > 0 ? getWidth() : (getParent() != null ? getParent().getBoundsInLocal().getWidth() : 800);
+    }
+
+    /**
+     * 获取布局使用的画布高度，如果画布尚未初始化，使用父容器的高度
+     * @return 画布高度
+     */
+    private double getLayoutHeight() {
+        return getHeight() > 0 ? getHeight() : (getParent() != null ? getParent().getBoundsInLocal().getHeight() : 600);
+    }
+
     /**
      * 绘制思维导图
+     * 绘制在下一帧执行，同一帧内的多次请求只绘制一次
      */
     public void draw() {
-        System.out.println("MindMapView.draw() called");
-        getChildren().clear();
+        frameScheduler.requestPaint();
+    }
 
+    /**
+     * 执行绘制，由帧调度器调用
+     * 只为视口内的节点和连线创建图形，节点图形在第一次进入视口时创建，之后只更新发生变化的节点；
+     * 连线画布只重绘发生变化的连线所在的区域。
+     * 缩小到一定程度后按细节级别简化绘制，概览级别下不使用节点图层，直接在连线画布上绘制
+     */
+    private void render() {
         if (mindMap == null) {
-            System.out.println("Cannot draw: mind map is null");
+            LOG.debug("Cannot draw: mind map is null");
+            clearVisuals();
+            GraphicsContext gc = linesCanvas.getGraphicsContext2D();
+            gc.clearRect(0, 0, linesCanvas.getWidth(), linesCanvas.getHeight());
             return;
         }
 
-        // 创建画布
+        long paintStart = PAINT_TIME.start();
+
+        // 切换到另一个思维导图时才完全重建
+        if (renderedMindMap != mindMap) {
+            clearVisuals();
+            renderedMindMap = mindMap;
+        }
+
         double width = getWidth() > 0 ? getWidth() : (getParent() != null ? getParent().getBoundsInLocal().getWidth() : 800);
         double height = getHeight() > 0 ? getHeight() : (getParent() != null ? getParent().getBoundsInLocal().getHeight() : 600);
 
-        // 创建两个画布，一个用于连线，一个用于节点
-        // 这样可以确保节点始终在连线上方显示
-        Canvas linesCanvas = new Canvas(width, height);
-        GraphicsContext linesGc = linesCanvas.getGraphicsContext2D();
-        getChildren().add(linesCanvas); // 先添加连线画布
-
-        System.out.println("Canvas created with size: " + width + "x" + height);
+        // 画布只在视图尺寸变化时调整大小
+        if (linesCanvas.getWidth() != width || linesCanvas.getHeight() != height) {
+            linesCanvas.setWidth(width);
+            linesCanvas.setHeight(height);
+            dirtyRegions.markFull();
+        }
+        // 平移、缩放或细节级别变化时整个画布都需要重绘
+        detailLevel = chooseDetailLevel();
+        if (translateX != paintedTranslateX || translateY != paintedTranslateY || scaleValue != paintedScale
+                || detailLevel != paintedDetailLevel) {
+            dirtyRegions.markFull();
+        }
 
-        // 应用当前的变换到画布上下文
-        linesGc.save();
-        linesGc.translate(translateX, translateY);
-        linesGc.scale(scaleValue, scaleValue);
+        // 节点图层应用当前的变换
+        nodeLayerTranslate.setX(translateX);
+        nodeLayerTranslate.setY(translateY);
+        nodeLayerScale.setX(scaleValue);
+        nodeLayerScale.setY(scaleValue);
+
+        // 计算视口在画布坐标中的范围，并向外扩展一些，避免拖动时边缘出现空白
+        Bounds viewport = getParent() != null
+                ? parentToLocal(getParent().getLayoutBounds())
+                : new BoundingBox(0, 0, width, height);
+        double margin = VIEWPORT_MARGIN / scaleValue;
+        double minX = (viewport.getMinX() - translateX) / scaleValue - margin;
+        double minY = (viewport.getMinY() - translateY) / scaleValue - margin;
+        double maxX = (viewport.getMaxX() - translateX) / scaleValue + margin;
+        double maxY = (viewport.getMaxY() - translateY) / scaleValue + margin;
+
+        if (detailLevel == DetailLevel.OVERVIEW) {
+            renderOverview(width, height, minX, minY, maxX, maxY);
+            PAINT_TIME.stop(paintStart);
+            return;
+        }
+        nodeLayer.setVisible(true);
+
+        NodeSpatialIndex spatialIndex = mindMap.getSpatialIndex();
+        currentFrame = ++frameCounter;
+        updatedCount = 0;
+        visibleCount = 0;
+        upgradeBudget = MAX_DETAIL_UPGRADES_PER_FRAME;
+        upgradesPending = false;
+        createdVisuals.clear();
+        visibleUnloadedBranches.clear();
+
+        // 同步视口内的节点图形，只修改状态发生变化的节点
+        spatialIndex.queryNodes(minX, minY, maxX, maxY, syncNodeAction);
+        int nodesUpdated = updatedCount;
+        int nodesVisible = visibleCount;
+        removeStaleNodeVisuals();
+        insertCreatedVisuals();
+
+        // 同步视口内的连线，只重新计算端点发生变化的连线
+        updatedCount = 0;
+        visibleCount = 0;
+        maxLineLength = Math.min(width, height) * 0.8;
+        spatialIndex.queryConnections(minX, minY, maxX, maxY, syncConnectionAction);
+        int connectionsUpdated = updatedCount + removeStaleConnections();
+
+        paintConnections(width, height);
+        loadVisibleBranches();
+        if (upgradesPending) {
+            // 本帧没有处理完的节点在下一帧继续
+            draw();
+        }
 
-        // 绘制所有节点的连线，包括根节点和自由节点
-        for (MindMapNode node : mindMap.getAllNodes()) {
-            // 如果节点有子节点，则绘制连线
-            if (!node.getChildren().isEmpty()) {
-                drawConnections(linesGc, node);
-            }
+        PAINT_TIME.stop(paintStart);
+        MODEL_NODES.set(spatialIndex.size());
+        VISIBLE_NODES.set(nodesVisible);
+        UPDATED_NODES.set(nodesUpdated);
+        UPDATED_CONNECTIONS.set(connectionsUpdated);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Drawing {} of {} nodes, {} nodes and {} connections updated",
+                    nodesVisible, spatialIndex.size(), nodesUpdated, connectionsUpdated);
         }
+    }
 
-        linesGc.restore();
+    /**
+     * 以概览级别绘制：节点图层隐藏，已有的节点图形保留下来，放大时直接复用；
+     * 单独绘制的节点、分支色块和直线连线都画在连线画布上，每次整体重绘
+     * @param width 画布宽度
+     * @param height 画布高度
+     * @param minX 视口左边界（画布坐标）
+     * @param minY 视口上边界
+     * @param maxX 视口右边界
+     * @param maxY 视口下边界
+     */
+    private void renderOverview(double width, double height, double minX, double minY, double maxX, double maxY) {
+        nodeLayer.setVisible(false);
+        aggregates.update(mindMap, aggregateDepth);
+
+        GraphicsContext gc = linesCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        gc.save();
+        gc.translate(translateX, translateY);
+        gc.scale(scaleValue, scaleValue);
+        int painted = aggregates.paint(gc, minX, minY, maxX, maxY, scaleValue);
+        gc.restore();
+
+        paintedTranslateX = translateX;
+        paintedTranslateY = translateY;
+        paintedScale = scaleValue;
+        paintedDetailLevel = DetailLevel.OVERVIEW;
+        dirtyRegions.clear();
+
+        MODEL_NODES.set(mindMap.getNodeCount());
+        VISIBLE_NODES.set(painted);
+        UPDATED_NODES.set(0);
+        UPDATED_CONNECTIONS.set(0);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Drawing overview: {} items for {} nodes", painted, mindMap.getNodeCount());
+        }
+    }
 
-        // 绘制节点 - 直接添加到容器中，而不是画在画布上
-        // 这样可以确保节点始终在连线上方显示
-        List<MindMapNode> allNodes = new ArrayList<>(mindMap.getAllNodes());
-        System.out.println("Drawing " + allNodes.size() + " nodes");
+    /**
+     * 根据当前缩放比例选择细节级别
+     * 缩小时立即降低细节级别；放大时缩放比例超过阈值一定比例后才恢复
+     * @return 细节级别
+     */
+    private DetailLevel chooseDetailLevel() {
+        DetailLevel level = detailLevelFor(scaleValue);
+        if (level.ordinal() < detailLevel.ordinal()) {
+            DetailLevel raised = detailLevelFor(scaleValue / DETAIL_HYSTERESIS);
+            return raised.ordinal() < detailLevel.ordinal() ? raised : detailLevel;
+        }
+        return level;
+    }
 
-        for (MindMapNode node : allNodes) {
-            drawNode(node);
-            System.out.println("Node " + node.getText() + " drawn at position: (" + node.getX() + ", " + node.getY() + ")");
+    private DetailLevel detailLevelFor(double scale) {
+        if (scale < overviewScale) {
+            return DetailLevel.OVERVIEW;
         }
+        return scale < simplifiedScale ? DetailLevel.SIMPLIFIED : DetailLevel.FULL;
+    }
 
-        System.out.println("MindMapView.draw() completed");
+    /**
+     * 清除所有节点图形和连线
+     */
+    private void clearVisuals() {
+        aggregates.clear();
+        nodeVisuals.clear();
+        nodeLayer.getChildren().clear();
+        connectionVisuals.clear();
+        connectionIndex.clear();
+        dirtyRegions.markFull();
+        renderedMindMap = null;
     }
 
     /**
-     * 绘制节点之间的连线
-     * @param gc 图形上下文
-     * @param node 当前节点
+     * 同步单个视口内节点的图形，新进入视口的节点先记录下来，稍后按绘制顺序插入图层
+     * @param node 节点
      */
-    private void drawConnections(GraphicsContext gc, MindMapNode node) {
-        gc.setStroke(LINE_COLOR);
-        gc.setLineWidth(LINE_WIDTH);
+    private void syncNodeVisual(MindMapNode node) {
+        if (node.hasUnloadedChildren() && visibleUnloadedBranches.size() < MAX_BRANCH_LOADS_PER_FRAME) {
+            visibleUnloadedBranches.add(node);
+        }
 
-        for (MindMapNode child : node.getChildren()) {
-            // 计算节点中心点（用于计算方向）
-            double nodeCenterX = node.getX() + node.getWidth() / 2;
-            double nodeCenterY = node.getY() + node.getHeight() / 2;
-            double childCenterX = child.getX() + child.getWidth() / 2;
-            double childCenterY = child.getY() + child.getHeight() / 2;
-
-            // 计算节点之间的方向向量
-            double dirX = childCenterX - nodeCenterX;
-            double dirY = childCenterY - nodeCenterY;
-
-            // 归一化方向向量
-            double length = Math.sqrt(dirX * dirX + dirY * dirY);
-            if (length < 0.001) {
-                // 防止除以0
-                dirX = 1.0;
-                dirY = 0.0;
-            } else {
-                dirX /= length;
-                dirY /= length;
+        // 新建图形和恢复完整显示的数量受每帧预算限制，超出的节点留到下一帧
+        boolean simplified = detailLevel != DetailLevel.FULL;
+        NodeVisual visual = nodeVisuals.get(node.getId());
+        if (visual == null) {
+            if (upgradeBudget == 0) {
+                upgradesPending = true;
+                return;
             }
-
-            // 计算连线的起点（父节点边缘）
-            double startX, startY;
-
-            // 根据节点形状计算起点
-            if (node.getShape() == MindMapNode.NodeShape.ELLIPSE) {
-                // 椭圆形节点的边缘点
-                double radiusX = node.getWidth() / 2;
-                double radiusY = node.getHeight() / 2;
-                double angle = Math.atan2(dirY, dirX);
-                startX = nodeCenterX + radiusX * Math.cos(angle);
-                startY = nodeCenterY + radiusY * Math.sin(angle);
-            } else if (node.getShape() == MindMapNode.NodeShape.DIAMOND || node.getShape() == MindMapNode.NodeShape.HEXAGON) {
-                // 菱形或六边形节点的边缘点
-                // 简化处理，使用矩形边缘的计算方式
-                if (Math.abs(dirX) > Math.abs(dirY)) {
-                    // 水平方向为主
-                    startX = nodeCenterX + (dirX > 0 ? node.getWidth() / 2 : -node.getWidth() / 2);
-                    startY = nodeCenterY + dirY * (node.getWidth() / 2) / Math.abs(dirX);
-                } else {
-                    // 垂直方向为主
-                    startX = nodeCenterX + dirX * (node.getHeight() / 2) / Math.abs(dirY);
-                    startY = nodeCenterY + (dirY > 0 ? node.getHeight() / 2 : -node.getHeight() / 2);
-                }
-            } else {
-                // 矩形或圆角矩形
-                // 计算与边缘的交点
-                double halfWidth = node.getWidth() / 2;
-                double halfHeight = node.getHeight() / 2;
-
-                // 计算直线方程 y = slope * x + b
-                double slope = dirY / dirX; // 注意除零问题
-
-                if (Math.abs(dirX) < 0.001) {
-                    // 垂直线
-                    startX = nodeCenterX;
-                    startY = nodeCenterY + (dirY > 0 ? halfHeight : -halfHeight);
-                } else if (Math.abs(dirY) < 0.001) {
-                    // 水平线
-                    startX = nodeCenterX + (dirX > 0 ? halfWidth : -halfWidth);
-                    startY = nodeCenterY;
+            upgradeBudget--;
+            visual = new NodeVisual(node, simplified);
+            nodeVisuals.put(node.getId(), visual);
+            createdVisuals.add(visual);
+            updatedCount++;
+        } else {
+            if (!simplified && visual.isSimplified()) {
+                if (upgradeBudget > 0) {
+                    upgradeBudget--;
                 } else {
-                    // 斜线
-                    // 计算与矩形边的交点
-                    double xIntersectTop = (nodeCenterY - halfHeight - (nodeCenterY - slope * nodeCenterX)) / slope;
-                    double xIntersectBottom = (nodeCenterY + halfHeight - (nodeCenterY - slope * nodeCenterX)) / slope;
-                    double yIntersectLeft = slope * (nodeCenterX - halfWidth) + (nodeCenterY - slope * nodeCenterX);
-                    double yIntersectRight = slope * (nodeCenterX + halfWidth) + (nodeCenterY - slope * nodeCenterX);
-
-                    // 检查交点是否在矩形边上
-                    if (dirX > 0 && Math.abs(xIntersectTop - nodeCenterX) <= halfWidth) {
-                        // 上边交点
-                        startX = xIntersectTop;
-                        startY = nodeCenterY - halfHeight;
-                    } else if (dirX < 0 && Math.abs(xIntersectBottom - nodeCenterX) <= halfWidth) {
-                        // 下边交点
-                        startX = xIntersectBottom;
-                        startY = nodeCenterY + halfHeight;
-                    } else if (dirY > 0 && Math.abs(yIntersectLeft - nodeCenterY) <= halfHeight) {
-                        // 左边交点
-                        startX = nodeCenterX - halfWidth;
-                        startY = yIntersectLeft;
-                    } else {
-                        // 右边交点
-                        startX = nodeCenterX + halfWidth;
-                        startY = yIntersectRight;
-                    }
+                    simplified = true;
+                    upgradesPending = true;
                 }
             }
+            if (visual.update(node, simplified) != 0) {
+                updatedCount++;
+            }
+        }
+        visual.setFrame(currentFrame);
+        visibleCount++;
+    }
 
-            // 计算连线的终点（子节点边缘）
-            double endX, endY;
-
-            // 根据节点形状计算终点
-            if (child.getShape() == MindMapNode.NodeShape.ELLIPSE) {
-                // 椭圆形节点的边缘点
-                double radiusX = child.getWidth() / 2;
-                double radiusY = child.getHeight() / 2;
-                double angle = Math.atan2(-dirY, -dirX); // 注意方向相反
-                endX = childCenterX + radiusX * Math.cos(angle);
-                endY = childCenterY + radiusY * Math.sin(angle);
-            } else if (child.getShape() == MindMapNode.NodeShape.DIAMOND || child.getShape() == MindMapNode.NodeShape.HEXAGON) {
-                // 菱形或六边形节点的边缘点
-                // 简化处理，使用矩形边缘的计算方式
-                if (Math.abs(dirX) > Math.abs(dirY)) {
-                    // 水平方向为主
-                    endX = childCenterX + (dirX < 0 ? child.getWidth() / 2 : -child.getWidth() / 2);
-                    endY = childCenterY - dirY * (child.getWidth() / 2) / Math.abs(dirX);
-                } else {
-                    // 垂直方向为主
-                    endX = childCenterX - dirX * (child.getHeight() / 2) / Math.abs(dirY);
-                    endY = childCenterY + (dirY < 0 ? child.getHeight() / 2 : -child.getHeight() / 2);
-                }
-            } else {
-                // 矩形或圆角矩形
-                // 计算与边缘的交点
-                double halfWidth = child.getWidth() / 2;
-                double halfHeight = child.getHeight() / 2;
-
-                // 计算直线方程 y = slope * x + b
-                // 注意这里的方向是从子节点到父节点，所以方向相反
-                double reverseX = -dirX;
-                double reverseY = -dirY;
-                double slope = reverseY / reverseX; // 注意除零问题
-
-                if (Math.abs(reverseX) < 0.001) {
-                    // 垂直线
-                    endX = childCenterX;
-                    endY = childCenterY + (reverseY > 0 ? halfHeight : -halfHeight);
-                } else if (Math.abs(reverseY) < 0.001) {
-                    // 水平线
-                    endX = childCenterX + (reverseX > 0 ? halfWidth : -halfWidth);
-                    endY = childCenterY;
-                } else {
-                    // 斜线
-                    // 计算与矩形边的交点
-                    double xIntersectTop = (childCenterY - halfHeight - (childCenterY - slope * childCenterX)) / slope;
-                    double xIntersectBottom = (childCenterY + halfHeight - (childCenterY - slope * childCenterX)) / slope;
-                    double yIntersectLeft = slope * (childCenterX - halfWidth) + (childCenterY - slope * childCenterX);
-                    double yIntersectRight = slope * (childCenterX + halfWidth) + (childCenterY - slope * childCenterX);
-
-                    // 检查交点是否在矩形边上
-                    if (reverseX > 0 && Math.abs(xIntersectTop - childCenterX) <= halfWidth) {
-                        // 上边交点
-                        endX = xIntersectTop;
-                        endY = childCenterY - halfHeight;
-                    } else if (reverseX < 0 && Math.abs(xIntersectBottom - childCenterX) <= halfWidth) {
-                        // 下边交点
-                        endX = xIntersectBottom;
-                        endY = childCenterY + halfHeight;
-                    } else if (reverseY > 0 && Math.abs(yIntersectLeft - childCenterY) <= halfHeight) {
-                        // 左边交点
-                        endX = childCenterX - halfWidth;
-                        endY = yIntersectLeft;
+    /**
+     * 加载滚动到视口内的节点尚未加载的子节点，加载后在下一帧重新布局
+     */
+    private void loadVisibleBranches() {
+        boolean loaded = false;
+        for (MindMapNode node : visibleUnloadedBranches) {
+            loaded |= mindMap.loadChildren(node);
+        }
+        visibleUnloadedBranches.clear();
+        if (loaded) {
+            applyLayout();
+        }
+    }
+
+    /**
+     * 移除已经被删除或移出视口的节点图形
+     */
+    private void removeStaleNodeVisuals() {
+        if (nodeVisuals.size() <= visibleCount) {
+            return;
+        }
+        Set<Group> removed = new HashSet<>();
+        Iterator<NodeVisual> iterator = nodeVisuals.values().iterator();
+        while (iterator.hasNext()) {
+            NodeVisual visual = iterator.next();
+            if (visual.getFrame() != currentFrame) {
+                removed.add(visual.getGroup());
+                iterator.remove();
+            }
+        }
+        nodeLayer.getChildren().removeAll(removed);
+    }
+
+    /**
+     * 将新创建的节点图形按绘制顺序插入节点图层
+     * 数量较少时逐个二分插入，否则整体重新排序
+     */
+    private void insertCreatedVisuals() {
+        if (createdVisuals.isEmpty()) {
+            return;
+        }
+        List<javafx.scene.Node> layer = nodeLayer.getChildren();
+        if (createdVisuals.size() <= BULK_INSERT_THRESHOLD) {
+            for (NodeVisual visual : createdVisuals) {
+                int low = 0;
+                int high = layer.size();
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (((NodeVisual) layer.get(mid).getUserData()).getZOrder() < visual.getZOrder()) {
+                        low = mid + 1;
                     } else {
-                        // 右边交点
-                        endX = childCenterX + halfWidth;
-                        endY = yIntersectRight;
+                        high = mid;
                     }
                 }
+                layer.add(low, visual.getGroup());
             }
-
-            // 设置线条样式
-            gc.setLineCap(javafx.scene.shape.StrokeLineCap.ROUND);
-            gc.setLineJoin(javafx.scene.shape.StrokeLineJoin.ROUND);
-
-            // 根据节点的线条样式设置虚线模式
-            switch (child.getLineStyle()) {
-                case DASHED:
-                case ARROW_DASHED:
-                    // 虚线模式
-                    gc.setLineDashes(5, 5);
-                    break;
-                default:
-                    // 实线模式
-                    gc.setLineDashes(null);
-                    break;
+        } else {
+            List<NodeVisual> sorted = new ArrayList<>(nodeVisuals.values());
+            sorted.sort(Comparator.comparingLong(NodeVisual::getZOrder));
+            List<javafx.scene.Node> groups = new ArrayList<>(sorted.size());
+            for (NodeVisual visual : sorted) {
+                groups.add(visual.getGroup());
             }
+            nodeLayer.getChildren().setAll(groups);
+        }
+        createdVisuals.clear();
+    }
 
-            // 计算控制点，创建优雅的曲线
-            double dx = Math.abs(endX - startX);
-            double dy = Math.abs(endY - startY);
-            double distance = Math.sqrt(dx * dx + dy * dy);
-
-            // 检查线条是否太长，如果太长则缩短
-            double maxLineLength = Math.min(getWidth(), getHeight()) * 0.8; // 最大线长为画布尺寸的80%
-            if (distance > maxLineLength) {
-                // 缩短线条，保持方向不变
-                double scale = maxLineLength / distance;
-
-                // 计算新的起点和终点，保持节点边缘的连接点不变
-                double newStartX = startX + (endX - startX) * (1 - scale) * 0.5;
-                double newStartY = startY + (endY - startY) * (1 - scale) * 0.5;
-                double newEndX = endX - (endX - startX) * (1 - scale) * 0.5;
-                double newEndY = endY - (endY - startY) * (1 - scale) * 0.5;
-
-                startX = newStartX;
-                startY = newStartY;
-                endX = newEndX;
-                endY = newEndY;
-
-                // 重新计算距离
-                dx = Math.abs(endX - startX);
-                dy = Math.abs(endY - startY);
-                distance = Math.sqrt(dx * dx + dy * dy);
-            }
+    /**
+     * 同步单条视口内的连线，端点发生变化时记录新旧位置所在的脏区域
+     * @param child 连线的子节点
+     */
+    private void syncConnection(MindMapNode child) {
+        MindMapNode parent = child.getParent();
+        ConnectionVisual connection = connectionVisuals.get(child.getId());
+        boolean dirty;
+        if (connection == null) {
+            connection = new ConnectionVisual(parent, child);
+            connectionVisuals.put(child.getId(), connection);
+            dirty = true;
+        } else if (connection.getParent() != parent) {
+            // 子节点被连接到了新的父节点
+            connection.setParent(parent);
+            dirty = true;
+        } else {
+            dirty = connection.isStale(maxLineLength);
+        }
 
-            // 曲线强度与距离成正比，但不超过一定值
-            double curveStrength = Math.min(distance * 0.15, 30);
+        if (dirty) {
+            updateConnection(connection, maxLineLength);
+            updatedCount++;
+        }
+        connection.setFrame(currentFrame);
+        visibleCount++;
+    }
 
-            // 绘制简洁的连线
-            gc.beginPath();
-            gc.moveTo(startX, startY);
-
-            // 根据节点相对位置决定曲线方向
-            double controlX1, controlY1, controlX2, controlY2;
-            if (Math.abs(endX - startX) > Math.abs(endY - startY)) {
-                // 水平方向距离更大，使用水平控制点
-                double midX = (startX + endX) / 2;
-                controlX1 = midX;
-                controlY1 = startY;
-                controlX2 = midX;
-                controlY2 = endY;
-            } else {
-                // 垂直方向距离更大，使用垂直控制点
-                double midY = (startY + endY) / 2;
-                controlX1 = startX;
-                controlY1 = midY;
-                controlX2 = endX;
-                controlY2 = midY;
+    /**
+     * 移除已经断开或移出视口的连线，并重绘其原来所在的区域
+     * @return 移除的连线数量
+     */
+    private int removeStaleConnections() {
+        int removedCount = 0;
+        if (connectionVisuals.size() > visibleCount) {
+            Iterator<ConnectionVisual> iterator = connectionVisuals.values().iterator();
+            while (iterator.hasNext()) {
+                ConnectionVisual connection = iterator.next();
+                if (connection.getFrame() != currentFrame) {
+                    dirtyRegions.add(connection.getMinX(), connection.getMinY(), connection.getMaxX(), connection.getMaxY());
+                    connectionIndex.remove(connection);
+                    iterator.remove();
+                    removedCount++;
+                }
             }
+        }
+        return removedCount;
+    }
 
-            gc.bezierCurveTo(controlX1, controlY1, controlX2, controlY2, endX, endY);
-            gc.stroke();
-
-            // 如果是箭头样式，绘制箭头
-            if (child.getLineStyle() == MindMapNode.LineStyle.ARROW_SOLID ||
-                child.getLineStyle() == MindMapNode.LineStyle.ARROW_DASHED) {
-
-                // 计算箭头方向 - 使用已经计算好的方向向量
-                double arrowSize = 10.0;
-
-                // 箭头方向与连线方向相反
-                double arrowDirX = -dirX;
-                double arrowDirY = -dirY;
+    /**
+     * 重新计算连线的几何信息，并将新旧位置都标记为脏区域
+     * @param connection 连线
+     * @param maxLineLength 最大线长
+     */
+    private void updateConnection(ConnectionVisual connection, double maxLineLength) {
+        if (connection.hasBounds()) {
+            dirtyRegions.add(connection.getMinX(), connection.getMinY(), connection.getMaxX(), connection.getMaxY());
+        }
+        connection.compute(maxLineLength, LINE_WIDTH);
+        dirtyRegions.add(connection.getMinX(), connection.getMinY(), connection.getMaxX(), connection.getMaxY());
+        connectionIndex.put(connection, connection.getMinX(), connection.getMinY(), connection.getMaxX(), connection.getMaxY());
+    }
 
-                // 计算箭头的两个端点
-                double arrowAngle = Math.PI / 6; // 30度角
+    /**
+     * 在连线画布上重绘脏区域
+     * 整体重绘时清空整个画布；否则只清除并重绘每个脏区域，
+     * 通过空间索引只绘制与脏区域相交的连线。简化显示时连线画成直线，合并为一条路径描边
+     * @param width 画布宽度
+     * @param height 画布高度
+     */
+    private void paintConnections(double width, double height) {
+        if (dirtyRegions.isEmpty()) {
+            return;
+        }
 
-                double ax1 = endX + arrowSize * (arrowDirX * Math.cos(arrowAngle) + arrowDirY * Math.sin(arrowAngle));
-                double ay1 = endY + arrowSize * (arrowDirY * Math.cos(arrowAngle) - arrowDirX * Math.sin(arrowAngle));
+        GraphicsContext gc = linesCanvas.getGraphicsContext2D();
+        gc.setStroke(LINE_COLOR);
+        gc.setLineWidth(LINE_WIDTH);
+        gc.setLineCap(javafx.scene.shape.StrokeLineCap.ROUND);
+        gc.setLineJoin(javafx.scene.shape.StrokeLineJoin.ROUND);
+        boolean simplified = detailLevel != DetailLevel.FULL;
+        Consumer<ConnectionVisual> strokeAction = simplified
+                ? connection -> connection.appendLine(gc)
+                : connection -> connection.stroke(gc);
+        if (simplified) {
+            gc.setLineDashes(null);
+        }
 
-                double ax2 = endX + arrowSize * (arrowDirX * Math.cos(arrowAngle) - arrowDirY * Math.sin(arrowAngle));
-                double ay2 = endY + arrowSize * (arrowDirY * Math.cos(arrowAngle) + arrowDirX * Math.sin(arrowAngle));
+        if (dirtyRegions.isFull()) {
+            gc.clearRect(0, 0, width, height);
+            gc.save();
+            // 应用当前的变换到画布上下文
+            gc.translate(translateX, translateY);
+            gc.scale(scaleValue, scaleValue);
+            beginConnections(gc, simplified);
+            for (ConnectionVisual connection : connectionVisuals.values()) {
+                strokeAction.accept(connection);
+            }
+            endConnections(gc, simplified);
+            gc.restore();
+        } else {
+            for (int i = 0; i < dirtyRegions.size(); i++) {
+                // 将脏区域转换为屏幕坐标，并扩展到整像素
+                double left = Math.max(0, Math.floor(translateX + dirtyRegions.getMinX(i) * scaleValue) - 1);
+                double top = Math.max(0, Math.floor(translateY + dirtyRegions.getMinY(i) * scaleValue) - 1);
+                double right = Math.min(width, Math.ceil(translateX + dirtyRegions.getMaxX(i) * scaleValue) + 1);
+                double bottom = Math.min(height, Math.ceil(translateY + dirtyRegions.getMaxY(i) * scaleValue) + 1);
+                if (right <= left || bottom <= top) {
+                    continue;
+                }
 
-                // 绘制箭头
+                gc.save();
                 gc.beginPath();
-                gc.moveTo(endX, endY);
-                gc.lineTo(ax1, ay1);
-                gc.lineTo(ax2, ay2);
-                gc.closePath();
-                gc.fill();
+                gc.rect(left, top, right - left, bottom - top);
+                gc.clip();
+                gc.clearRect(left, top, right - left, bottom - top);
+
+                gc.translate(translateX, translateY);
+                gc.scale(scaleValue, scaleValue);
+                beginConnections(gc, simplified);
+                connectionIndex.query(
+                        (left - translateX) / scaleValue, (top - translateY) / scaleValue,
+                        (right - translateX) / scaleValue, (bottom - translateY) / scaleValue,
+                        strokeAction);
+                endConnections(gc, simplified);
+                gc.restore();
             }
-
-            // 递归绘制子节点的连线
-            drawConnections(gc, child);
         }
+
+        paintedTranslateX = translateX;
+        paintedTranslateY = translateY;
+        paintedScale = scaleValue;
+        paintedDetailLevel = detailLevel;
+        dirtyRegions.clear();
     }
 
     /**
-     * 绘制单个节点
-     * @param node 要绘制的节点
+     * 简化显示时开始一条包含所有直线连线的路径
+     * @param gc 图形上下文
+     * @param simplified 是否简化显示
      */
-    private void drawNode(MindMapNode node) {
-        // 选择基础颜色
-        Color baseColor;
-        if (node.isSelected()) {
-            // 选中状态使用高亮颜色
-            baseColor = SELECTED_NODE_COLOR;
-        } else {
-            // 使用节点自定义颜色
-            baseColor = node.getColor();
+    private static void beginConnections(GraphicsContext gc, boolean simplified) {
+        if (simplified) {
+            gc.beginPath();
         }
-
-        // 创建节点形状
-        Shape shape = createNodeShape(node);
-
-        // 设置节点填充颜色
-        shape.setFill(baseColor);
-        shape.setStroke(baseColor.darker());
-        shape.setStrokeWidth(1);
-
-        // 添加阴影效果，使节点看起来有浅浅的浮动感
-        DropShadow dropShadow = new DropShadow();
-        dropShadow.setRadius(4.0);
-        dropShadow.setOffsetX(0.0);
-        dropShadow.setOffsetY(2.0);
-        dropShadow.setColor(Color.color(0, 0, 0, 0.2));
-        shape.setEffect(dropShadow);
-
-        // 创建节点文本
-        Text text = new Text(node.getText());
-        text.setFont(Font.font(FONT_FAMILY, FontWeight.NORMAL, node.getFontSize()));
-        text.setFill(Color.WHITE);
-        text.setTextAlignment(javafx.scene.text.TextAlignment.CENTER); // 设置文本居中对齐
-
-        // 计算文本位置，使其居中
-        double textWidth = text.getBoundsInLocal().getWidth();
-        double textHeight = text.getBoundsInLocal().getHeight();
-
-        // 确保文本在节点中心
-        text.setX(node.getX() + (node.getWidth() - textWidth) / 2);
-        text.setY(node.getY() + (node.getHeight() + textHeight) / 2);
-
-        // 创建包含节点和文本的组
-        javafx.scene.Group nodeGroup = new javafx.scene.Group(shape, text);
-
-        // 应用当前的变换
-        nodeGroup.getTransforms().addAll(
-            new Translate(translateX, translateY),
-            new Scale(scaleValue, scaleValue, 0, 0)
-        );
-
-        // 将节点组添加到视图
-        getChildren().add(nodeGroup);
     }
 
     /**
-     * 根据节点形状创建对应的图形
-     * @param node 节点
-     * @return 图形
+     * 简化显示时一次描边所有直线连线
+     * @param gc 图形上下文
+     * @param simplified 是否简化显示
      */
-    private Shape createNodeShape(MindMapNode node) {
-        double x = node.getX();
-        double y = node.getY();
-        double width = node.getWidth();
-        double height = node.getHeight();
-
-        switch (node.getShape()) {
-            case RECTANGLE:
-                // 矩形
-                return new Rectangle(x, y, width, height);
-
-            case ROUNDED_RECTANGLE:
-                // 圆角矩形
-                Rectangle roundedRect = new Rectangle(x, y, width, height);
-                roundedRect.setArcWidth(NODE_CORNER_RADIUS);
-                roundedRect.setArcHeight(NODE_CORNER_RADIUS);
-                return roundedRect;
-
-            case ELLIPSE:
-                // 椭圆形
-                return new Ellipse(
-                        x + width / 2, // 中心点X
-                        y + height / 2, // 中心点Y
-                        width / 2, // X半径
-                        height / 2  // Y半径
-                );
-
-            case DIAMOND:
-                // 菱形
-                Polygon diamond = new Polygon();
-                diamond.getPoints().addAll(new Double[]{
-                    x + width / 2, y, // 顶点
-                    x + width, y + height / 2, // 右点
-                    x + width / 2, y + height, // 底点
-                    x, y + height / 2  // 左点
-                });
-                return diamond;
-
-            case HEXAGON:
-                // 六边形
-                Polygon hexagon = new Polygon();
-                double sixthWidth = width / 6;
-                hexagon.getPoints().addAll(new Double[]{
-                    x + sixthWidth, y, // 左上
-                    x + width - sixthWidth, y, // 右上
-                    x + width, y + height / 2, // 右中
-                    x + width - sixthWidth, y + height, // 右下
-                    x + sixthWidth, y + height, // 左下
-                    x, y + height / 2  // 左中
-                });
-                return hexagon;
-
-            default:
-                // 默认为矩形
-                return new Rectangle(x, y, width, height);
+    private static void endConnections(GraphicsContext gc, boolean simplified) {
+        if (simplified) {
+            gc.stroke();
         }
     }
 
     /**
      * 更新所有节点的大小
+     * 节点较多时先在后台线程上估算尺寸并布局，JavaFX测量修正了尺寸之后再布局一次
      */
     private void updateNodeSizes() {
         if (mindMap == null) {
             return;
         }
 
-        for (MindMapNode node : mindMap.getAllNodes()) {
-            updateNodeSize(node);
+        MindMap sized = mindMap;
+        TextMeasurer.getDefault().sizeNodes(sized, () -> {
+            // 测量期间已经切换到另一个思维导图时不需要重新布局
+            if (mindMap == sized) {
+                applyLayout();
+            }
+        });
+    }
+
+    /**
+     * 处理思维导图的修改：为新加入的节点计算大小，然后重绘
+     * 延迟加载的分支在打开文件之后才读出，只有这里能让它们和打开时加载的节点使用相同的测量结果；
+     * 新建的节点已经由调用者计算过大小，再次计算时直接命中测量缓存。
+     * 大小的修改会作为下一批修改再次通知，其中不包含新加入的节点，不会重复计算
+     * @param event 修改事件
+     */
+    private void handleModelChanged(MindMapEvent event) {
+        MindMapChanges changes = event.getChanges();
+        if (changes.isOverflowed(MindMapChanges.Type.STRUCTURE)) {
+            updateNodeSizes();
+        } else if (!changes.getAdded().isEmpty()) {
+            mindMap.beginUpdate();
+            try {
+                TextMeasurer.getDefault().sizeNodes(changes.getAdded());
+            } finally {
+                mindMap.endUpdate();
+            }
         }
+        draw();
     }
 
     /**
@@ -814,16 +1064,8 @@ public class MindMapView extends Pane {
      * @param node 要更新的节点
      */
     public void updateNodeSize(MindMapNode node) {
-        // 创建临时文本对象来计算文本宽度
-        Text text = new Text(node.getText());
-        text.setFont(Font.font(FONT_FAMILY, FontWeight.NORMAL, node.getFontSize()));
-
-        // 计算节点宽度（文本宽度加上内边距）
-        double baseWidth = Math.max(NODE_MIN_WIDTH, text.getBoundsInLocal().getWidth() + 2 * NODE_PADDING);
-
-        // 考虑缩放比例
-        node.setWidth(baseWidth * node.getSizeScale());
-        node.setHeight(NODE_HEIGHT * node.getSizeScale());
+        // 宽度为文本宽度加上内边距，并考虑缩放比例，相同的文本只测量一次
+        TextMeasurer.getDefault().sizeNode(node);
     }
 
     /**
@@ -831,7 +1073,7 @@ public class MindMapView extends Pane {
      * @param event 鼠标事件
      */
     private void handleMouseClick(MouseEvent event) {
-        System.out.println("Mouse clicked: " + event.getButton());
+        LOG.debug("Mouse clicked: {}", event.getButton());
 
         // 如果是拖拽操作结束后的点击，不处理
         if (mindMap == null || draggedNode != null) {
@@ -859,7 +1101,7 @@ public class MindMapView extends Pane {
                     return;
                 }
             } catch (Exception e) {
-                System.err.println("Error calling handleConnectionModeClick: " + e.getMessage());
+                LOG.warn("Error calling handleConnectionModeClick", e);
             }
         }
 
@@ -873,7 +1115,7 @@ public class MindMapView extends Pane {
 
             // 如果是右键，显示右键菜单
             if (event.getButton() == MouseButton.SECONDARY) {
-                System.out.println("Showing context menu for node: " + clickedNode.getText());
+                LOG.debug("Showing context menu for node: {}", clickedNode.getText());
 
                 // 根据节点类型启用/禁用菜单项
                 for (MenuItem item : contextMenu.getItems()) {
@@ -945,8 +1187,13 @@ public class MindMapView extends Pane {
             double offsetY = (event.getY() - dragStartY) / scaleValue;
 
             // 更新节点位置，并标记为手动定位
-            draggedNode.setX(nodeStartX + offsetX, true);
-            draggedNode.setY(nodeStartY + offsetY, true);
+            mindMap.beginUpdate();
+            try {
+                draggedNode.setX(nodeStartX + offsetX, true);
+                draggedNode.setY(nodeStartY + offsetY, true);
+            } finally {
+                mindMap.endUpdate();
+            }
 
             // 重绘
             draw();
@@ -958,12 +1205,13 @@ public class MindMapView extends Pane {
             // 更新画布位置
             translateX += offsetX;
             translateY += offsetY;
-            translate.setX(translateX);
-            translate.setY(translateY);
 
             // 更新拖拽起始点
             canvasDragStartX = event.getX();
             canvasDragStartY = event.getY();
+
+            // 重绘，使新进入视口的节点显示出来
+            draw();
         }
     }
 
@@ -973,13 +1221,13 @@ public class MindMapView extends Pane {
      */
     private void handleMouseReleased(MouseEvent event) {
         if (draggedNode != null) {
-            // 结束节点拖拽
-            draggedNode = null;
-
-            // 标记思维导图为已修改
+            // 标记思维导图为已修改，并记录节点的新位置
             if (mindMap != null) {
-                mindMap.setModified(true);
+                mindMap.nodeEdited(draggedNode);
             }
+
+            // 结束节点拖拽
+            draggedNode = null;
         } else if (canvasDragging) {
             // 结束画布拖拽
             canvasDragging = false;
@@ -1017,8 +1265,6 @@ public class MindMapView extends Pane {
 
         // 更新缩放值
         scaleValue = newScale;
-        scale.setX(scaleValue);
-        scale.setY(scaleValue);
 
         // 计算鼠标在缩放后的画布坐标
         double newCanvasX = (mouseX - translateX) / scaleValue;
@@ -1027,8 +1273,9 @@ public class MindMapView extends Pane {
         // 调整平移量，使鼠标位置下的点保持不变
         translateX += (newCanvasX - oldCanvasX) * scaleValue;
         translateY += (newCanvasY - oldCanvasY) * scaleValue;
-        translate.setX(translateX);
-        translate.setY(translateY);
+
+        // 重绘，使新进入视口的节点显示出来
+        draw();
     }
 
     /**
@@ -1042,24 +1289,20 @@ public class MindMapView extends Pane {
             return null;
         }
 
+        // 布局尚未执行时先完成，保证使用最新的节点位置
+        frameScheduler.flush();
+
         // 将屏幕坐标转换为画布坐标
         double canvasX = (x - translateX) / scaleValue;
         double canvasY = (y - translateY) / scaleValue;
 
-        // 从所有节点中查找
-        for (MindMapNode node : mindMap.getAllNodes()) {
-            double nodeLeft = node.getX();
-            double nodeRight = node.getX() + node.getWidth();
-            double nodeTop = node.getY();
-            double nodeBottom = node.getY() + node.getHeight();
-
-            if (canvasX >= nodeLeft && canvasX <= nodeRight &&
-                canvasY >= nodeTop && canvasY <= nodeBottom) {
-                return node;
-            }
+        // 通过空间索引查找，重叠时返回最上层的节点
+        MindMapNode node = mindMap.getSpatialIndex().findNodeAt(canvasX, canvasY);
+        if (detailLevel == DetailLevel.OVERVIEW) {
+            // 概览级别下较深的节点合并在分支色块中，点击色块时选中分支的根节点
+            node = node != null ? NodeAggregates.ownerOf(node, aggregateDepth) : aggregates.findBlobAt(canvasX, canvasY);
         }
-
-        return null;
+        return node;
     }
 
     /**
@@ -1077,10 +1320,13 @@ public class MindMapView extends Pane {
     protected void layoutChildren() {
         super.layoutChildren();
 
-        // 当容器大小改变时，重新应用布局并绘制
-        if (mindMap != null && layoutStrategy != null) {
-            applyLayout();
-            draw();
+        // 只有容器大小改变时才重新布局，连续的尺寸变化会合并到同一帧
+        if (getWidth() != laidOutWidth || getHeight() != laidOutHeight) {
+            laidOutWidth = getWidth();
+            laidOutHeight = getHeight();
+            if (mindMap != null && layoutStrategy != null) {
+                applyLayout();
+            }
         }
     }
 
@@ -0,0 +1,244 @@
+package com.example.demo.view;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import com.example.demo.util.QuadTree;
+import javafx.scene.canvas.GraphicsContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 概览级别的绘制数据
+ * 深度不超过聚合深度的节点单独绘制为色块，更深的分支合并到它在聚合深度上的祖先，
+ * 绘制为覆盖整个分支的半透明色块。
+ * 聚合结果只在思维导图的结构或几何信息变化后重新计算（按{@link MindMap#getModCount()}判断），
+ * 平移和缩放时只查询视口内的条目，绘制数量与思维导图的总节点数无关。
+ */
+final class NodeAggregates {
+
+    // 分支色块的不透明度
+    private static final double BLOB_OPACITY = 0.3;
+    // 分支色块在节点范围之外留出的空白
+    private static final double BLOB_PADDING = MindMapStyle.NODE_HEIGHT / 2;
+
+    private final QuadTree<Item> index = new QuadTree<>();
+    // 计算时对应的思维导图、修改次数和聚合深度
+    private MindMap builtMindMap;
+    private long builtModCount = -1;
+    private int builtDepth = -1;
+
+    // 遍历分支和绘制时重复使用的缓冲区
+    private final Deque<MindMapNode> stack = new ArrayDeque<>();
+    private final List<Item> blobs = new ArrayList<>();
+    private final List<Item> boxes = new ArrayList<>();
+    private final Consumer<Item> collectAction = this::collect;
+
+    // 点击测试的查询状态
+    private double hitX;
+    private double hitY;
+    private Item hitResult;
+    private final Consumer<Item> hitTestAction = this::hitTest;
+
+    /**
+     * 思维导图发生变化或聚合深度不同时重新计算
+     * @param mindMap 思维导图
+     * @param depth 聚合深度，更深的节点合并到该深度上的祖先
+     */
+    void update(MindMap mindMap, int depth) {
+        if (mindMap == builtMindMap && mindMap.getModCount() == builtModCount && depth == builtDepth) {
+            return;
+        }
+        index.clear();
+        for (MindMapNode root : mindMap.getRootNodes()) {
+            add(root, 0, depth);
+        }
+        builtMindMap = mindMap;
+        builtModCount = mindMap.getModCount();
+        builtDepth = depth;
+    }
+
+    /**
+     * 清除计算结果，例如切换思维导图时
+     */
+    void clear() {
+        index.clear();
+        builtMindMap = null;
+        builtModCount = -1;
+        builtDepth = -1;
+    }
+
+    /**
+     * 获取节点所在的色块对应的节点，即节点在聚合深度上的祖先；深度不超过聚合深度的节点返回自身
+     * @param node 节点
+     * @param depth 聚合深度
+     * @return 单独绘制的节点
+     */
+    static MindMapNode ownerOf(MindMapNode node, int depth) {
+        for (int i = node.getDepth(); i > depth; i--) {
+            node = node.getParent();
+        }
+        return node;
+    }
+
+    /**
+     * 查找包含指定坐标的分支色块，重叠时返回绘制顺序最靠后的
+     * @param x X坐标（画布坐标）
+     * @param y Y坐标（画布坐标）
+     * @return 色块对应的节点，没有时返回null
+     */
+    MindMapNode findBlobAt(double x, double y) {
+        hitX = x;
+        hitY = y;
+        hitResult = null;
+        index.query(x, y, x, y, hitTestAction);
+        MindMapNode result = hitResult != null ? hitResult.node : null;
+        hitResult = null;
+        return result;
+    }
+
+    /**
+     * 绘制与指定范围相交的内容：先画分支色块，再画视口内节点连向父节点的直线，最后画节点色块
+     * 调用者负责清空画布并设置好平移和缩放
+     * @param gc 图形上下文
+     * @param minX 左边界（画布坐标）
+     * @param minY 上边界
+     * @param maxX 右边界
+     * @param maxY 下边界
+     * @param scale 缩放比例，用于保持连线至少一个像素宽
+     * @return 绘制的条目数量
+     */
+    int paint(GraphicsContext gc, double minX, double minY, double maxX, double maxY, double scale) {
+        blobs.clear();
+        boxes.clear();
+        index.query(minX, minY, maxX, maxY, collectAction);
+
+        // 色块重叠时按节点的绘制顺序叠放
+        blobs.sort((a, b) -> Long.compare(a.node.getZOrder(), b.node.getZOrder()));
+        gc.setGlobalAlpha(BLOB_OPACITY);
+        for (Item blob : blobs) {
+            double width = blob.maxX - blob.minX;
+            double height = blob.maxY - blob.minY;
+            double arc = Math.min(width, height) / 2;
+            gc.setFill(NodeVisual.fillColor(blob.node));
+            gc.fillRoundRect(blob.minX, blob.minY, width, height, arc, arc);
+        }
+        gc.setGlobalAlpha(1);
+
+        // 所有连线合并为一条路径，只描边一次
+        gc.setStroke(MindMapStyle.LINE_COLOR);
+        gc.setLineWidth(Math.max(MindMapStyle.LINE_WIDTH, 1 / scale));
+        gc.setLineDashes(null);
+        gc.beginPath();
+        for (Item box : boxes) {
+            MindMapNode node = box.node;
+            MindMapNode parent = node.getParent();
+            if (parent != null) {
+                gc.moveTo(parent.getX() + parent.getWidth() / 2, parent.getY() + parent.getHeight() / 2);
+                gc.lineTo(node.getX() + node.getWidth() / 2, node.getY() + node.getHeight() / 2);
+            }
+        }
+        gc.stroke();
+
+        for (Item box : boxes) {
+            MindMapNode node = box.node;
+            gc.setFill(NodeVisual.fillColor(node));
+            gc.fillRect(node.getX(), node.getY(), node.getWidth(), node.getHeight());
+        }
+
+        int painted = blobs.size() + boxes.size();
+        blobs.clear();
+        boxes.clear();
+        return painted;
+    }
+
+    /**
+     * 添加单独绘制的节点，深度达到聚合深度时把整个分支合并为一个色块
+     * 递归深度不超过聚合深度，更深的分支使用显式栈遍历
+     * @param node 节点
+     * @param depth 节点深度
+     * @param aggregateDepth 聚合深度
+     */
+    private void add(MindMapNode node, int depth, int aggregateDepth) {
+        // 连向父节点的直线只随视口内的子节点绘制，两端都在视口外的连线省略
+        Item box = new Item(node, false, node.getX(), node.getY(),
+                node.getX() + node.getWidth(), node.getY() + node.getHeight());
+        index.put(box, box.minX, box.minY, box.maxX, box.maxY);
+
+        List<MindMapNode> children = node.getChildren();
+        if (children.isEmpty()) {
+            return;
+        }
+        if (depth < aggregateDepth) {
+            for (MindMapNode child : children) {
+                add(child, depth + 1, aggregateDepth);
+            }
+            return;
+        }
+
+        Item blob = new Item(node, true, node.getX(), node.getY(),
+                node.getX() + node.getWidth(), node.getY() + node.getHeight());
+        stack.clear();
+        for (MindMapNode child : children) {
+            stack.push(child);
+        }
+        while (!stack.isEmpty()) {
+            MindMapNode descendant = stack.pop();
+            blob.include(descendant);
+            for (MindMapNode child : descendant.getChildren()) {
+                stack.push(child);
+            }
+        }
+        blob.minX -= BLOB_PADDING;
+        blob.minY -= BLOB_PADDING;
+        blob.maxX += BLOB_PADDING;
+        blob.maxY += BLOB_PADDING;
+        index.put(blob, blob.minX, blob.minY, blob.maxX, blob.maxY);
+    }
+
+    private void collect(Item item) {
+        (item.blob ? blobs : boxes).add(item);
+    }
+
+    private void hitTest(Item item) {
+        if (item.blob && (hitResult == null || item.node.getZOrder() > hitResult.node.getZOrder())
+                && hitX >= item.minX && hitX <= item.maxX && hitY >= item.minY && hitY <= item.maxY) {
+            hitResult = item;
+        }
+    }
+
+    /**
+     * 单独绘制的节点或合并后的分支色块
+     */
+    private static final class Item {
+        final MindMapNode node;
+        final boolean blob;
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+
+        Item(MindMapNode node, boolean blob, double minX, double minY, double maxX, double maxY) {
+            this.node = node;
+            this.blob = blob;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        /**
+         * 扩展范围使其包含节点
+         * @param node 节点
+         */
+        void include(MindMapNode node) {
+            minX = Math.min(minX, node.getX());
+            minY = Math.min(minY, node.getY());
+            maxX = Math.max(maxX, node.getX() + node.getWidth());
+            maxY = Math.max(maxY, node.getY() + node.getHeight());
+        }
+    }
+}
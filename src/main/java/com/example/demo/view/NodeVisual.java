@@ -0,0 +1,289 @@
+package com.example.demo.view;
+
+import com.example.demo.model.MindMapNode;
+import com.example.demo.model.MindMapNode.NodeShape;
+import javafx.scene.Group;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
+
+/**
+ * 单个节点在画布上的图形对象（保留模式）
+ * 图形只创建一次，之后只在节点状态变化时修改对应的属性
+ */
+final class NodeVisual {
+
+    // update() 返回的变化标志
+    static final int CHANGED_APPEARANCE = 1; // 颜色、文本等只影响节点本身的变化
+    static final int CHANGED_GEOMETRY = 2;   // 位置、大小、形状或连线样式变化，相关连线需要重绘
+
+    // 所有节点共用同一个阴影效果，避免每个节点都分配一个
+    private static final DropShadow NODE_SHADOW = createShadow();
+
+    private final Group group;
+    private final Text text;
+    private Shape shape;
+
+    // 上一次绘制时的节点状态，用于判断哪些属性需要更新
+    private NodeShape shapeType;
+    private boolean simplified;
+    private double x = Double.NaN;
+    private double y = Double.NaN;
+    private double width = Double.NaN;
+    private double height = Double.NaN;
+    private double fontSize = Double.NaN;
+    private String label;
+    private Color fill;
+    private MindMapNode.LineStyle lineStyle;
+
+    // 绘制顺序，节点图层中的图形按此排序
+    private final long zOrder;
+    // 最近一次被同步的帧号，用于找出已被删除或移出视口的节点
+    private long frame;
+
+    /**
+     * 创建节点图形
+     * @param node 对应的节点
+     * @param simplified 是否简化显示
+     */
+    NodeVisual(MindMapNode node, boolean simplified) {
+        this.text = new Text();
+        this.text.setFill(Color.WHITE);
+        this.text.setTextAlignment(javafx.scene.text.TextAlignment.CENTER); // 设置文本居中对齐
+        this.group = new Group();
+        this.group.setUserData(this);
+        this.zOrder = node.getZOrder();
+        update(node, simplified);
+    }
+
+    /**
+     * 获取节点图形所在的组
+     * @return 节点组
+     */
+    Group getGroup() {
+        return group;
+    }
+
+    /**
+     * 获取最近一次同步的帧号
+     * @return 帧号
+     */
+    long getFrame() {
+        return frame;
+    }
+
+    /**
+     * 设置最近一次同步的帧号
+     * @param frame 帧号
+     */
+    void setFrame(long frame) {
+        this.frame = frame;
+    }
+
+    /**
+     * 获取绘制顺序
+     * @return 绘制顺序
+     */
+    long getZOrder() {
+        return zOrder;
+    }
+
+    /**
+     * 判断图形是否为简化显示
+     * @return 是否简化显示
+     */
+    boolean isSimplified() {
+        return simplified;
+    }
+
+    /**
+     * 获取节点的填充颜色：选中时为高亮颜色，否则为节点自定义颜色
+     * @param node 节点
+     * @return 填充颜色
+     */
+    static Color fillColor(MindMapNode node) {
+        Color color = node.isSelected() ? MindMapView.SELECTED_NODE_COLOR : node.getColor();
+        return color != null ? color : MindMapView.NORMAL_NODE_COLOR;
+    }
+
+    /**
+     * 根据节点当前状态更新图形，只修改发生变化的部分
+     * @param node 对应的节点
+     * @param simplified 是否简化显示：只画不带文字、边框和阴影的矩形
+     * @return 变化标志，没有变化时为0
+     */
+    int update(MindMapNode node, boolean simplified) {
+        int changed = 0;
+
+        // 形状类型或简化状态变化时需要替换图形对象
+        if (shape == null || shapeType != node.getShape() || this.simplified != simplified) {
+            shapeType = node.getShape();
+            this.simplified = simplified;
+            if (simplified) {
+                shape = createShape(NodeShape.RECTANGLE);
+                group.getChildren().setAll(shape);
+            } else {
+                shape = createShape(shapeType);
+                shape.setStrokeWidth(1);
+                shape.setEffect(NODE_SHADOW);
+                group.getChildren().setAll(shape, text);
+            }
+            x = Double.NaN; // 强制重新设置几何属性和颜色
+            fill = null;
+            changed |= CHANGED_GEOMETRY;
+        }
+
+        boolean geometryChanged = node.getX() != x || node.getY() != y
+                || node.getWidth() != width || node.getHeight() != height;
+        if (geometryChanged) {
+            x = node.getX();
+            y = node.getY();
+            width = node.getWidth();
+            height = node.getHeight();
+            layoutShape(shape, simplified ? NodeShape.RECTANGLE : shapeType, x, y, width, height);
+            changed |= CHANGED_GEOMETRY;
+        }
+
+        // 连线样式属于连向本节点的连线
+        if (node.getLineStyle() != lineStyle) {
+            lineStyle = node.getLineStyle();
+            changed |= CHANGED_GEOMETRY;
+        }
+
+        // 选中状态使用高亮颜色，否则使用节点自定义颜色
+        Color baseColor = fillColor(node);
+        if (!baseColor.equals(fill)) {
+            fill = baseColor;
+            shape.setFill(baseColor);
+            if (!simplified) {
+                shape.setStroke(baseColor.darker());
+            }
+            changed |= CHANGED_APPEARANCE;
+        }
+
+        // 简化显示时不更新文字，恢复完整显示时会强制重新设置位置，文字随之更新
+        if (simplified) {
+            return changed;
+        }
+
+        boolean textChanged = false;
+        if (node.getFontSize() != fontSize) {
+            fontSize = node.getFontSize();
+            text.setFont(TextMeasurer.getDefault().getNodeFont(fontSize));
+            textChanged = true;
+        }
+        if (!node.getText().equals(label)) {
+            label = node.getText();
+            text.setText(label);
+            textChanged = true;
+        }
+
+        // 文本内容、字体或节点位置变化时重新居中文本
+        if (textChanged || geometryChanged) {
+            double textWidth = text.getBoundsInLocal().getWidth();
+            double textHeight = text.getBoundsInLocal().getHeight();
+            text.setX(x + (width - textWidth) / 2);
+            text.setY(y + (height + textHeight) / 2);
+            changed |= CHANGED_APPEARANCE;
+        }
+
+        return changed;
+    }
+
+    /**
+     * 根据节点形状创建对应的图形
+     * @param shapeType 节点形状
+     * @return 图形
+     */
+    private static Shape createShape(NodeShape shapeType) {
+        switch (shapeType) {
+            case ROUNDED_RECTANGLE:
+                // 圆角矩形
+                Rectangle roundedRect = new Rectangle();
+                roundedRect.setArcWidth(MindMapView.NODE_CORNER_RADIUS);
+                roundedRect.setArcHeight(MindMapView.NODE_CORNER_RADIUS);
+                return roundedRect;
+
+            case ELLIPSE:
+                // 椭圆形
+                return new Ellipse();
+
+            case DIAMOND:
+            case HEXAGON:
+                // 菱形或六边形
+                return new Polygon();
+
+            case RECTANGLE:
+            default:
+                // 矩形
+                return new Rectangle();
+        }
+    }
+
+    /**
+     * 设置图形的位置和大小
+     * @param shape 图形
+     * @param shapeType 节点形状
+     * @param x X坐标
+     * @param y Y坐标
+     * @param width 宽度
+     * @param height 高度
+     */
+    private static void layoutShape(Shape shape, NodeShape shapeType, double x, double y, double width, double height) {
+        switch (shapeType) {
+            case ELLIPSE:
+                Ellipse ellipse = (Ellipse) shape;
+                ellipse.setCenterX(x + width / 2);
+                ellipse.setCenterY(y + height / 2);
+                ellipse.setRadiusX(width / 2);
+                ellipse.setRadiusY(height / 2);
+                break;
+
+            case DIAMOND:
+                ((Polygon) shape).getPoints().setAll(
+                    x + width / 2, y, // 顶点
+                    x + width, y + height / 2, // 右点
+                    x + width / 2, y + height, // 底点
+                    x, y + height / 2  // 左点
+                );
+                break;
+
+            case HEXAGON:
+                double sixthWidth = width / 6;
+                ((Polygon) shape).getPoints().setAll(
+                    x + sixthWidth, y, // 左上
+                    x + width - sixthWidth, y, // 右上
+                    x + width, y + height / 2, // 右中
+                    x + width - sixthWidth, y + height, // 右下
+                    x + sixthWidth, y + height, // 左下
+                    x, y + height / 2  // 左中
+                );
+                break;
+
+            default:
+                Rectangle rect = (Rectangle) shape;
+                rect.setX(x);
+                rect.setY(y);
+                rect.setWidth(width);
+                rect.setHeight(height);
+                break;
+        }
+    }
+
+    /**
+     * 创建节点阴影效果，使节点看起来有浅浅的浮动感
+     * @return 阴影效果
+     */
+    private static DropShadow createShadow() {
+        DropShadow dropShadow = new DropShadow();
+        dropShadow.setRadius(4.0);
+        dropShadow.setOffsetX(0.0);
+        dropShadow.setOffsetY(2.0);
+        dropShadow.setColor(Color.color(0, 0, 0, 0.2));
+        return dropShadow;
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.demo.view;
+
+import com.example.demo.layout.LayoutStrategy;
+import com.example.demo.util.Metrics;
+import javafx.animation.AnimationTimer;
+import javafx.event.Event;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * 绘图区左上角的性能面板
+ * 显示时用自己的计时器在每个JavaFX脉冲记录一帧：脉冲间隔、本帧中布局和绘制的耗时以及分配的内存，
+ * 最近的帧保存在环形缓冲区中，绘制成耗时直方图，也可以导出为CSV文件附在问题报告中。
+ * 文本每隔一段时间才刷新一次，面板本身的开销不会明显影响测量结果。
+ * 隐藏时计时器停止，不产生任何开销。
+ */
+public class PerformanceHud extends VBox {
+
+    private static final int FRAME_HISTORY = 1024; // 必须是2的幂
+    private static final long TEXT_REFRESH_NANOS = 250_000_000L;
+    private static final double HISTOGRAM_WIDTH = 256;
+    private static final double HISTOGRAM_HEIGHT = 60;
+    // 直方图的满刻度，超过的帧画成红色的满格
+    private static final double HISTOGRAM_MAX_MILLIS = 50;
+    private static final double FRAME_BUDGET_MILLIS = 1000.0 / 60;
+
+    private final Supplier<LayoutStrategy> layoutStrategy;
+    private final Label statsLabel = new Label();
+    private final Canvas histogram = new Canvas(HISTOGRAM_WIDTH, HISTOGRAM_HEIGHT);
+    private final AnimationTimer timer;
+
+    // 每帧的记录，按帧序号对FRAME_HISTORY取模存放
+    private final long[] frameTimes = new long[FRAME_HISTORY];
+    private final long[] frameIntervals = new long[FRAME_HISTORY];
+    private final long[] frameWork = new long[FRAME_HISTORY];
+    private final long[] framePaint = new long[FRAME_HISTORY];
+    private final long[] frameAllocated = new long[FRAME_HISTORY];
+    private long frameCount;
+
+    private final Metrics.Distribution frameTime = Metrics.timer("frame.time");
+    private final Metrics.Distribution frameAllocation = Metrics.bytes("frame.allocated");
+    private final Metrics.Distribution paintTime = Metrics.timer("paint.time");
+    private final Metrics.Distribution gcPause = Metrics.timer("gc.pause");
+    private final Metrics.Gauge visibleNodes = Metrics.gauge("paint.visibleNodes");
+    private final Metrics.Gauge totalNodes = Metrics.gauge("paint.totalNodes");
+
+    private long lastPulse;
+    private long lastWorkCount;
+    private long lastPaintCount;
+    private long lastTextRefresh;
+    // 最近一秒内的脉冲时间，用于计算帧率
+    private final Deque<Long> recentPulses = new ArrayDeque<>();
+
+    /**
+     * 创建性能面板
+     * @param layoutStrategy 获取当前布局策略，用于显示该策略上一次的布局耗时
+     */
+    public PerformanceHud(Supplier<LayoutStrategy> layoutStrategy) {
+        this.layoutStrategy = layoutStrategy;
+        Metrics.trackGarbageCollection();
+
+        setSpacing(4);
+        setPadding(new Insets(6));
+        setBackground(new Background(new BackgroundFill(Color.rgb(0, 0, 0, 0.7), new CornerRadii(4), Insets.EMPTY)));
+        statsLabel.setTextFill(Color.WHITE);
+        statsLabel.setFont(Font.font("Monospaced", 12));
+
+        Button dumpButton = new Button("导出帧数据");
+        dumpButton.setFocusTraversable(false);
+        dumpButton.setOnAction(event -> dumpFrames());
+        getChildren().addAll(statsLabel, histogram, dumpButton);
+
+        // 面板上的鼠标操作不传给绘图区
+        addEventHandler(MouseEvent.ANY, Event::consume);
+        addEventHandler(ScrollEvent.ANY, Event::consume);
+
+        timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                recordFrame(now);
+            }
+        };
+        visibleProperty().addListener((observable, wasVisible, isVisible) -> {
+            if (isVisible) {
+                lastPulse = 0;
+                recentPulses.clear();
+                timer.start();
+            } else {
+                timer.stop();
+            }
+        });
+        if (isVisible()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * 记录一帧，由计时器在每个脉冲调用
+     * 帧调度器在同一个脉冲中工作时，本帧的耗时就是它最新记录的值
+     */
+    private void recordFrame(long now) {
+        if (lastPulse != 0) {
+            int slot = (int) (frameCount & (FRAME_HISTORY - 1));
+            frameTimes[slot] = now;
+            frameIntervals[slot] = now - lastPulse;
+            long workCount = frameTime.getCount();
+            boolean worked = workCount != lastWorkCount;
+            frameWork[slot] = worked ? frameTime.getLast() : 0;
+            frameAllocated[slot] = worked ? frameAllocation.getLast() : 0;
+            long paintCount = paintTime.getCount();
+            framePaint[slot] = paintCount != lastPaintCount ? paintTime.getLast() : 0;
+            lastWorkCount = workCount;
+            lastPaintCount = paintCount;
+            frameCount++;
+        } else {
+            lastWorkCount = frameTime.getCount();
+            lastPaintCount = paintTime.getCount();
+        }
+        lastPulse = now;
+
+        recentPulses.addLast(now);
+        while (now - recentPulses.peekFirst() > 1_000_000_000L) {
+            recentPulses.removeFirst();
+        }
+
+        if (now - lastTextRefresh >= TEXT_REFRESH_NANOS) {
+            lastTextRefresh = now;
+            statsLabel.setText(formatStats());
+        }
+        drawHistogram();
+    }
+
+    private String formatStats() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        LayoutStrategy strategy = layoutStrategy.get();
+        String layoutName = strategy != null ? strategy.getClass().getSimpleName() : "无";
+        Metrics.Metric layoutMetric = Metrics.get("layout.time." + layoutName);
+        String layoutTime = layoutMetric instanceof Metrics.Distribution
+                ? String.format("%.1f ms", ((Metrics.Distribution) layoutMetric).getLast() / 1e6)
+                : "-";
+
+        StringBuilder text = new StringBuilder(256);
+        text.append(String.format("FPS %d  帧间隔 %.1f ms%n", Math.max(0, recentPulses.size() - 1), averageInterval() / 1e6));
+        text.append(String.format("布局 %s: %s%n", layoutName, layoutTime));
+        text.append(String.format("绘制 %.2f ms（平均 %.2f，最大 %.2f）%n",
+                paintTime.getLast() / 1e6, paintTime.getRecentMean() / 1e6, paintTime.getMax() / 1e6));
+        text.append(String.format("帧内分配 %.1f KB%n", frameAllocation.getRecentMean() / 1024));
+        text.append(String.format("节点 %d / %d，场景图 %d%n", visibleNodes.get(), totalNodes.get(), countSceneNodes()));
+        text.append(String.format("堆 %d / %d MB%n", usedHeap >> 20, runtime.maxMemory() >> 20));
+        text.append(String.format("GC %d 次，上次 %.1f ms，最长 %.1f ms",
+                gcPause.getCount(), gcPause.getLast() / 1e6, gcPause.getMax() / 1e6));
+        return text.toString();
+    }
+
+    private double averageInterval() {
+        int frames = (int) Math.min(frameCount, 60);
+        if (frames == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 1; i <= frames; i++) {
+            total += frameIntervals[(int) ((frameCount - i) & (FRAME_HISTORY - 1))];
+        }
+        return (double) total / frames;
+    }
+
+    /**
+     * 统计场景图中的节点数，不递归，避免很深的场景图导致栈溢出
+     */
+    private int countSceneNodes() {
+        if (getScene() == null || getScene().getRoot() == null) {
+            return 0;
+        }
+        int count = 0;
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(getScene().getRoot());
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            count++;
+            if (node instanceof Parent) {
+                for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                    pending.push(child);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 绘制最近的帧间隔，每一列是一帧，最右侧是最新的帧
+     * 蓝色部分是本帧中布局和绘制的耗时，其余部分是等待和JavaFX自身的处理
+     */
+    private void drawHistogram() {
+        GraphicsContext gc = histogram.getGraphicsContext2D();
+        gc.clearRect(0, 0, HISTOGRAM_WIDTH, HISTOGRAM_HEIGHT);
+        double scale = HISTOGRAM_HEIGHT / HISTOGRAM_MAX_MILLIS;
+        int columns = (int) Math.min(frameCount, (long) HISTOGRAM_WIDTH);
+        for (int i = 0; i < columns; i++) {
+            int slot = (int) ((frameCount - 1 - i) & (FRAME_HISTORY - 1));
+            double x = HISTOGRAM_WIDTH - 1 - i;
+            double intervalMillis = frameIntervals[slot] / 1e6;
+            double height = Math.min(HISTOGRAM_HEIGHT, intervalMillis * scale);
+            gc.setFill(intervalMillis > HISTOGRAM_MAX_MILLIS ? Color.RED
+                    : intervalMillis > FRAME_BUDGET_MILLIS * 1.5 ? Color.ORANGE : Color.LIMEGREEN);
+            gc.fillRect(x, HISTOGRAM_HEIGHT - height, 1, height);
+            double work = Math.min(height, frameWork[slot] / 1e6 * scale);
+            if (work > 0) {
+                gc.setFill(Color.DEEPSKYBLUE);
+                gc.fillRect(x, HISTOGRAM_HEIGHT - work, 1, work);
+            }
+        }
+        // 60帧和30帧对应的参考线
+        gc.setStroke(Color.rgb(255, 255, 255, 0.5));
+        gc.setLineWidth(1);
+        for (double millis : new double[] {FRAME_BUDGET_MILLIS, FRAME_BUDGET_MILLIS * 2}) {
+            double y = Math.round(HISTOGRAM_HEIGHT - millis * scale) + 0.5;
+            gc.strokeLine(0, y, HISTOGRAM_WIDTH, y);
+        }
+    }
+
+    /**
+     * 把最近的帧记录导出为CSV文件
+     */
+    private void dumpFrames() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("导出帧数据");
+        fileChooser.setInitialFileName("frames.csv");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV文件", "*.csv"));
+        File file = fileChooser.showSaveDialog(getScene() != null ? getScene().getWindow() : null);
+        if (file == null) {
+            return;
+        }
+        try {
+            writeFrames(file);
+        } catch (IOException e) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("导出错误");
+            alert.setHeaderText(null);
+            alert.setContentText("无法导出帧数据。\n\n错误信息: " + e.getMessage());
+            alert.showAndWait();
+        }
+    }
+
+    /**
+     * 写出最近的帧记录，每行一帧，时间以毫秒为单位
+     * @param file 目标文件
+     * @throws IOException 写入失败
+     */
+    private void writeFrames(File file) throws IOException {
+        int frames = (int) Math.min(frameCount, FRAME_HISTORY);
+        long first = frameCount - frames;
+        long origin = frames > 0 ? frameTimes[(int) (first & (FRAME_HISTORY - 1))] : 0;
+        StringBuilder buffer = new StringBuilder(64 * (frames + 1));
+        buffer.append("frame,time_ms,interval_ms,work_ms,paint_ms,allocated_bytes\n");
+        for (long frame = first; frame < frameCount; frame++) {
+            int slot = (int) (frame & (FRAME_HISTORY - 1));
+            buffer.append(frame).append(',')
+                    .append(String.format(Locale.ROOT, "%.3f,%.3f,%.3f,%.3f,", (frameTimes[slot] - origin) / 1e6,
+                            frameIntervals[slot] / 1e6, frameWork[slot] / 1e6, framePaint[slot] / 1e6))
+                    .append(frameAllocated[slot]).append('\n');
+        }
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.append(buffer);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.example.demo.view;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import com.example.demo.util.Metrics;
+import javafx.application.Platform;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+
+import java.awt.font.FontRenderContext;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+/**
+ * 文字测量服务
+ * 按（字体族、字重、字号）缓存显示用的Font对象，按（字号、文本）在有界的LRU缓存中保存测量结果，
+ * 相同文本的节点只测量一次。
+ * <p>
+ * 节点尺寸以JavaFX的Text测量为准，与绘制文字使用同一套字体和度量，只能在JavaFX线程上进行。
+ * 节点较多时先在后台线程上用Java2D的字体度量并行估算宽度：Java2D与JavaFX的度量和缺少字体时的
+ * 替代字体都不相同，因此估算值按每个字号的校准比例修正后先写回节点，使布局可以立即开始；
+ * 随后在JavaFX线程上分批用Text重新测量，每批不超过{@link #CORRECTION_BUDGET_NANOS}，
+ * 只修改与估算值不同的节点，全部完成后再布局一次。
+ */
+public final class TextMeasurer {
+
+    // 测量结果缓存的容量
+    static final int CACHE_CAPACITY = 16_384;
+    // 节点数不少于此值时在后台线程上估算宽度
+    static final int PARALLEL_THRESHOLD = 2000;
+    // JavaFX线程上每批修正的时间上限
+    static final long CORRECTION_BUDGET_NANOS = 4_000_000L;
+    // 测量结果缓存按键的哈希分成的段数，并行测量时各线程大多访问不同的段
+    private static final int CACHE_STRIPES = 16;
+    // 计算校准比例用的样本，包含常见的拉丁字母、数字和中文
+    static final String[] CALIBRATION_SAMPLES = {
+            "Mind map", "New Node", "Central Topic", "The quick brown fox jumps over the lazy dog",
+            "0123456789", "Q3 2024 roadmap", "中心主题", "新节点", "思维导图", "分支主题 Branch"
+    };
+
+    private static final TextMeasurer DEFAULT = new TextMeasurer(CACHE_CAPACITY);
+
+    private static final Metrics.Counter CACHE_HITS = Metrics.counter("text.cacheHits");
+    private static final Metrics.Counter CACHE_MISSES = Metrics.counter("text.cacheMisses");
+    private static final Metrics.Counter CORRECTED = Metrics.counter("text.corrected");
+    private static final Metrics.Distribution MEASURE_TIME = Metrics.timer("text.measureNodes");
+
+    private final Map<FontKey, Font> fonts = new ConcurrentHashMap<>();
+    private final Map<Double, java.awt.Font> estimateFonts = new ConcurrentHashMap<>();
+    private final FontRenderContext renderContext = new FontRenderContext(null, true, true);
+    // JavaFX的测量结果，只在JavaFX线程上访问
+    private final WidthCache widths;
+    // Java2D的估算结果，在后台线程上并行访问
+    private final WidthCache estimates;
+    // 每个字号的校准比例（JavaFX宽度 / Java2D宽度），只在JavaFX线程上计算
+    private final Map<Double, Double> calibrations = new ConcurrentHashMap<>();
+    // 测量用的文本对象，只在JavaFX线程上使用
+    private Text measureText;
+    // 每次开始计算整个思维导图的大小时加一，旧的估算和修正不再写回
+    private long sizingGeneration;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "text-measure");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 创建测量服务
+     * @param capacity 测量结果缓存的容量
+     */
+    TextMeasurer(int capacity) {
+        widths = new WidthCache(capacity);
+        estimates = new WidthCache(capacity);
+    }
+
+    /**
+     * 获取共用的测量服务
+     * @return 测量服务
+     */
+    public static TextMeasurer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 获取字体，相同参数总是返回同一个对象
+     * @param family 字体族
+     * @param weight 字重
+     * @param size 字号
+     * @return 字体
+     */
+    public Font getFont(String family, FontWeight weight, double size) {
+        return fonts.computeIfAbsent(new FontKey(family, weight, size),
+                key -> Font.font(key.family, key.weight, key.size));
+    }
+
+    /**
+     * 获取节点文字使用的字体
+     * @param size 字号
+     * @return 字体
+     */
+    public Font getNodeFont(double size) {
+        return getFont(MindMapStyle.FONT_FAMILY, FontWeight.NORMAL, size);
+    }
+
+    /**
+     * 用绘制节点文字的JavaFX字体测量宽度，必须在JavaFX线程上调用
+     * @param fontSize 字号
+     * @param text 文本
+     * @return 宽度
+     */
+    public double measureWidth(double fontSize, String text) {
+        TextKey key = new TextKey(fontSize, text);
+        Double width = widths.get(key);
+        if (width != null) {
+            CACHE_HITS.increment();
+            return width;
+        }
+
+        CACHE_MISSES.increment();
+        if (measureText == null) {
+            measureText = new Text();
+        }
+        measureText.setFont(getNodeFont(fontSize));
+        measureText.setText(key.text);
+        width = measureText.getBoundsInLocal().getWidth();
+        widths.put(key, width);
+        return width;
+    }
+
+    /**
+     * 用Java2D的字体度量估算宽度，未经校准，可以在任意线程上调用
+     * @param fontSize 字号
+     * @param text 文本
+     * @return 宽度
+     */
+    double estimateWidth(double fontSize, String text) {
+        TextKey key = new TextKey(fontSize, text);
+        Double width = estimates.get(key);
+        if (width != null) {
+            return width;
+        }
+        // 测量在锁外进行，多个线程同时测量同一文本时结果相同，后写入的覆盖先写入的
+        java.awt.Font font = estimateFonts.computeIfAbsent(fontSize,
+                size -> new java.awt.Font(MindMapStyle.FONT_FAMILY, java.awt.Font.PLAIN, 1).deriveFont(size.floatValue()));
+        width = font.getStringBounds(key.text, renderContext).getWidth();
+        estimates.put(key, width);
+        return width;
+    }
+
+    /**
+     * 获取字号的校准比例，即样本文本的JavaFX宽度之和与Java2D宽度之和的比值，必须在JavaFX线程上调用
+     * @param fontSize 字号
+     * @return 估算宽度乘以此比例后接近JavaFX的宽度
+     */
+    double calibration(double fontSize) {
+        return calibrations.computeIfAbsent(fontSize, size -> {
+            double measured = 0;
+            double estimated = 0;
+            for (String sample : CALIBRATION_SAMPLES) {
+                measured += measureWidth(size, sample);
+                estimated += estimateWidth(size, sample);
+            }
+            return estimated > 0 ? measured / estimated : 1;
+        });
+    }
+
+    /**
+     * 按节点的文本和字号计算节点大小：宽度为文本宽度加两侧内边距，不小于最小宽度，再乘以缩放比例
+     * 必须在JavaFX线程上调用
+     * @param node 节点
+     */
+    public void sizeNode(MindMapNode node) {
+        applySize(node, measureWidth(node.getFontSize(), node.getText()));
+    }
+
+    /**
+     * 在JavaFX线程上计算一组节点的大小，用于少量节点，例如新加入的节点
+     * @param nodes 节点
+     */
+    public void sizeNodes(Collection<MindMapNode> nodes) {
+        long start = MEASURE_TIME.start();
+        for (MindMapNode node : nodes) {
+            sizeNode(node);
+        }
+        MEASURE_TIME.stop(start);
+    }
+
+    /**
+     * 计算思维导图中所有节点的大小，必须在JavaFX线程上调用
+     * 节点较少时直接测量；较多时先复制各节点的文本和字号，在后台线程上并行估算，
+     * 通过{@link Platform#runLater}回到JavaFX线程把校准后的估算值作为一批修改写回节点并执行onApplied，
+     * 再分批用JavaFX测量修正，有节点被修正时最后再执行一次onApplied。
+     * 写回时文本或字号已经变化的节点直接按新的内容测量；期间再次调用时，之前的估算和修正不再写回。
+     * @param mindMap 思维导图
+     * @param onApplied 尺寸写回之后执行的操作，例如重新布局
+     */
+    public void sizeNodes(MindMap mindMap, Runnable onApplied) {
+        long generation = ++sizingGeneration;
+        Collection<MindMapNode> nodes = mindMap.getNodes();
+        if (nodes.size() < PARALLEL_THRESHOLD) {
+            mindMap.beginUpdate();
+            try {
+                sizeNodes(nodes);
+            } finally {
+                mindMap.endUpdate();
+            }
+            onApplied.run();
+            return;
+        }
+
+        MindMapNode[] array = nodes.toArray(new MindMapNode[0]);
+        String[] texts = new String[array.length];
+        double[] fontSizes = new double[array.length];
+        // 字号通常只有几种，校准在这里完成，后台线程只读取结果
+        Map<Double, Double> ratios = new HashMap<>();
+        for (int i = 0; i < array.length; i++) {
+            texts[i] = array[i].getText();
+            fontSizes[i] = array[i].getFontSize();
+            ratios.computeIfAbsent(fontSizes[i], this::calibration);
+        }
+        executor.execute(() -> {
+            long start = MEASURE_TIME.start();
+            double[] textWidths = new double[array.length];
+            IntStream.range(0, array.length).parallel().forEach(i ->
+                    textWidths[i] = estimateWidth(fontSizes[i], texts[i]) * ratios.get(fontSizes[i]));
+            MEASURE_TIME.stop(start);
+            Platform.runLater(() -> {
+                if (generation != sizingGeneration) {
+                    return;
+                }
+                mindMap.beginUpdate();
+                try {
+                    for (int i = 0; i < array.length; i++) {
+                        MindMapNode node = array[i];
+                        if (node.getText().equals(texts[i]) && node.getFontSize() == fontSizes[i]) {
+                            applySize(node, textWidths[i]);
+                        } else {
+                            sizeNode(node);
+                        }
+                    }
+                } finally {
+                    mindMap.endUpdate();
+                }
+                onApplied.run();
+                correct(mindMap, array, 0, false, generation, onApplied);
+            });
+        });
+    }
+
+    /**
+     * 从指定位置开始用JavaFX测量修正节点大小，超过时间上限后留到下一次{@link Platform#runLater}继续
+     * @param changed 之前的批次是否修改过节点
+     */
+    private void correct(MindMap mindMap, MindMapNode[] nodes, int from, boolean changed,
+                         long generation, Runnable onApplied) {
+        if (generation != sizingGeneration) {
+            return;
+        }
+        long deadline = System.nanoTime() + CORRECTION_BUDGET_NANOS;
+        int i = from;
+        mindMap.beginUpdate();
+        try {
+            for (; i < nodes.length; i++) {
+                if ((i & 63) == 0 && i > from && System.nanoTime() > deadline) {
+                    break;
+                }
+                MindMapNode node = nodes[i];
+                double textWidth = measureWidth(node.getFontSize(), node.getText());
+                if (nodeWidth(node, textWidth) != node.getWidth()) {
+                    applySize(node, textWidth);
+                    CORRECTED.increment();
+                    changed = true;
+                }
+            }
+        } finally {
+            mindMap.endUpdate();
+        }
+
+        if (i < nodes.length) {
+            int next = i;
+            boolean changedSoFar = changed;
+            Platform.runLater(() -> correct(mindMap, nodes, next, changedSoFar, generation, onApplied));
+        } else if (changed) {
+            onApplied.run();
+        }
+    }
+
+    /**
+     * 清空测量结果和校准比例，例如字体发生变化之后
+     */
+    public void clear() {
+        widths.clear();
+        estimates.clear();
+        calibrations.clear();
+    }
+
+    private static double nodeWidth(MindMapNode node, double textWidth) {
+        return Math.max(MindMapStyle.NODE_MIN_WIDTH, textWidth + 2 * MindMapStyle.NODE_PADDING) * node.getSizeScale();
+    }
+
+    private static void applySize(MindMapNode node, double textWidth) {
+        node.setWidth(nodeWidth(node, textWidth));
+        node.setHeight(MindMapStyle.NODE_HEIGHT * node.getSizeScale());
+    }
+
+    /**
+     * 有界的LRU测量结果缓存，按键的哈希分段加锁
+     */
+    private static final class WidthCache {
+        private final Map<TextKey, Double>[] stripes;
+
+        @SuppressWarnings("unchecked")
+        WidthCache(int capacity) {
+            int stripeCapacity = Math.max(1, capacity / CACHE_STRIPES);
+            stripes = (Map<TextKey, Double>[]) new Map<?, ?>[CACHE_STRIPES];
+            for (int i = 0; i < CACHE_STRIPES; i++) {
+                stripes[i] = new LinkedHashMap<>(Math.min(stripeCapacity, 1024), 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<TextKey, Double> eldest) {
+                        return size() > stripeCapacity;
+                    }
+                };
+            }
+        }
+
+        Double get(TextKey key) {
+            Map<TextKey, Double> stripe = stripes[key.hash & (CACHE_STRIPES - 1)];
+            synchronized (stripe) {
+                return stripe.get(key);
+            }
+        }
+
+        void put(TextKey key, double width) {
+            Map<TextKey, Double> stripe = stripes[key.hash & (CACHE_STRIPES - 1)];
+            synchronized (stripe) {
+                stripe.put(key, width);
+            }
+        }
+
+        void clear() {
+            for (Map<TextKey, Double> stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * 字体缓存的键
+     */
+    private static final class FontKey {
+        private final String family;
+        private final FontWeight weight;
+        private final double size;
+
+        FontKey(String family, FontWeight weight, double size) {
+            this.family = family;
+            this.weight = weight;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FontKey)) {
+                return false;
+            }
+            FontKey other = (FontKey) o;
+            return family.equals(other.family) && weight == other.weight
+                    && Double.compare(size, other.size) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return (family.hashCode() * 31 + weight.hashCode()) * 31 + Double.hashCode(size);
+        }
+    }
+
+    /**
+     * 测量结果缓存的键
+     */
+    private static final class TextKey {
+        private final double fontSize;
+        private final String text;
+        private final int hash;
+
+        TextKey(double fontSize, String text) {
+            this.fontSize = fontSize;
+            this.text = text != null ? text : "";
+            int h = Double.hashCode(fontSize) * 31 + this.text.hashCode();
+            // 混合高位，使分段均匀
+            this.hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TextKey)) {
+                return false;
+            }
+            TextKey other = (TextKey) o;
+            return hash == other.hash && Double.compare(fontSize, other.fontSize) == 0 && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
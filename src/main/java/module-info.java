@@ -11,6 +11,7 @@ module com.example.demo {
     requires eu.hansolo.tilesfx;
     requires com.almasb.fxgl.all;
     requires javafx.swing;
+    requires jdk.management;
 
     opens com.example.demo to javafx.fxml;
     opens com.example.demo.controller to javafx.fxml;
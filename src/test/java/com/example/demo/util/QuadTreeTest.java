@@ -0,0 +1,108 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 四叉树：大量中心重合的对象（例如布局之前都在原点的节点）不能使插入、移除和查询退化为平方复杂度
+ * 索引按对象的引用区分，测试中使用同一组对象插入和移除
+ */
+class QuadTreeTest {
+
+    private static final int COINCIDENT = 200_000;
+
+    @Test
+    void coincidentEntriesCanBeQueriedAndRemoved() {
+        QuadTree<Object> tree = new QuadTree<>();
+        Object[] items = items(COINCIDENT + 100);
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < COINCIDENT; i++) {
+                tree.put(items[i], 0, 0, 0, 0);
+            }
+        });
+        // 分散的对象不受影响
+        for (int i = 0; i < 100; i++) {
+            tree.put(items[COINCIDENT + i], 1000 + i * 50, 1000, 1000 + i * 50 + 40, 1030);
+        }
+        assertEquals(COINCIDENT + 100, tree.size());
+
+        assertEquals(COINCIDENT, count(tree, -1, -1, 1, 1));
+        assertEquals(0, count(tree, 100, 100, 200, 200));
+        assertEquals(1, count(tree, 1000, 1000, 1010, 1010));
+
+        // 移除的顺序与插入不同，每次移除都必须是常数时间
+        assertTimeout(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < COINCIDENT; i += 2) {
+                assertTrue(tree.remove(items[i]));
+            }
+            for (int i = COINCIDENT - 1; i >= 0; i -= 2) {
+                assertTrue(tree.remove(items[i]));
+            }
+        });
+        assertEquals(100, tree.size());
+        assertEquals(0, count(tree, -1, -1, 1, 1));
+        assertFalse(tree.contains(items[0]));
+        assertEquals(100, count(tree, 0, 0, 10_000, 10_000));
+    }
+
+    @Test
+    void coincidentEntriesMovedAwayAreFoundAtNewPosition() {
+        QuadTree<Object> tree = new QuadTree<>();
+        Object[] items = items(10_000);
+        for (Object item : items) {
+            tree.put(item, 0, 0, 0, 0);
+        }
+        // 模拟第一次布局：重合的对象逐个移动到各自的位置
+        for (int i = 0; i < items.length; i++) {
+            double x = (i % 100) * 100;
+            double y = (i / 100) * 40;
+            tree.put(items[i], x, y, x + 80, y + 30);
+        }
+
+        Set<Object> found = new HashSet<>();
+        tree.query(0, 0, 9_999, 3_999, found::add);
+        assertEquals(items.length, found.size());
+        List<Object> single = new ArrayList<>();
+        // 第10行第5列：x为500到580，y为400到430
+        tree.query(510, 410, 520, 420, single::add);
+        assertEquals(List.of(items[1005]), single);
+    }
+
+    @Test
+    void overflowEntryGrowingInPlaceIsStillFound() {
+        QuadTree<Object> tree = new QuadTree<>();
+        Object[] items = items(1000);
+        for (Object item : items) {
+            tree.put(item, 0, 0, 0, 0);
+        }
+        // 中心不变、范围稍微变大，条目原地更新
+        tree.put(items[500], -2, -2, 2, 2);
+        List<Object> found = new ArrayList<>();
+        tree.query(1.5, 1.5, 3, 3, found::add);
+        assertEquals(List.of(items[500]), found);
+    }
+
+    private static Object[] items(int count) {
+        Object[] items = new Object[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = new Object();
+        }
+        return items;
+    }
+
+    private static int count(QuadTree<Object> tree, double minX, double minY, double maxX, double maxY) {
+        int[] count = new int[1];
+        tree.query(minX, minY, maxX, maxY, item -> count[0]++);
+        return count[0];
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo.view;
+
+import com.example.demo.model.MindMap;
+import com.example.demo.model.MindMapNode;
+import javafx.application.Platform;
+import javafx.scene.text.Text;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 文字测量：节点宽度必须与绘制时Text的宽度一致，后台估算经过校准后接近绘制宽度
+ * 需要JavaFX工具包，没有图形环境时跳过
+ */
+class TextMeasurerTest {
+
+    // 与校准样本不同的文本，覆盖空文本、短文本、长文本、数字、标点和中英文混排
+    private static final String[] SAMPLES = {
+            "", "A", "iiii", "WWWW", "Hello, world!", "Project plan for next quarter",
+            "1234567890.5%", "节点", "需求分析与设计", "API 设计评审", "(draft) v2 - 待确认"
+    };
+    private static final double FONT_SIZE = 14;
+    // 校准后的估算值与绘制宽度之间允许的相对误差，估算只用于修正之前的第一次布局
+    private static final double ESTIMATE_TOLERANCE = 0.25;
+
+    private static boolean toolkitAvailable;
+
+    @BeforeAll
+    static void startToolkit() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            Platform.startup(started::countDown);
+            toolkitAvailable = started.await(10, TimeUnit.SECONDS);
+        } catch (IllegalStateException e) {
+            // 已经启动过
+            toolkitAvailable = true;
+        } catch (UnsupportedOperationException | UnsatisfiedLinkError e) {
+            toolkitAvailable = false;
+        }
+    }
+
+    @Test
+    void measuredWidthMatchesRenderedText() throws Exception {
+        assumeTrue(toolkitAvailable, "JavaFX工具包不可用");
+        TextMeasurer measurer = new TextMeasurer(TextMeasurer.CACHE_CAPACITY);
+        onFxThread(() -> {
+            for (String sample : SAMPLES) {
+                assertEquals(renderedWidth(measurer, FONT_SIZE, sample),
+                        measurer.measureWidth(FONT_SIZE, sample), 1e-9, sample);
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void calibratedEstimateIsCloseToRenderedWidth() throws Exception {
+        assumeTrue(toolkitAvailable, "JavaFX工具包不可用");
+        TextMeasurer measurer = new TextMeasurer(TextMeasurer.CACHE_CAPACITY);
+        onFxThread(() -> {
+            double ratio = measurer.calibration(FONT_SIZE);
+            for (String sample : SAMPLES) {
+                double rendered = renderedWidth(measurer, FONT_SIZE, sample);
+                double estimated = measurer.estimateWidth(FONT_SIZE, sample) * ratio;
+                assertEquals(rendered, estimated, Math.max(1, rendered * ESTIMATE_TOLERANCE), sample);
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void backgroundSizingEndsWithRenderedWidths() throws Exception {
+        assumeTrue(toolkitAvailable, "JavaFX工具包不可用");
+        TextMeasurer measurer = new TextMeasurer(TextMeasurer.CACHE_CAPACITY);
+        MindMap mindMap = onFxThread(() -> {
+            MindMap map = new MindMap("中心主题");
+            MindMapNode root = map.getRootNode();
+            for (int i = 0; i < TextMeasurer.PARALLEL_THRESHOLD + 500; i++) {
+                map.addChildNode(root, SAMPLES[i % SAMPLES.length] + " " + i);
+            }
+            return map;
+        });
+
+        CountDownLatch applied = new CountDownLatch(1);
+        onFxThread(() -> {
+            measurer.sizeNodes(mindMap, applied::countDown);
+            return null;
+        });
+        assertTrue(applied.await(10, TimeUnit.SECONDS), "估算结果没有写回");
+
+        // 修正分批进行，等待所有节点的宽度都等于绘制宽度
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        int mismatched;
+        do {
+            mismatched = onFxThread(() -> {
+                int count = 0;
+                for (MindMapNode node : mindMap.getNodes()) {
+                    double textWidth = renderedWidth(measurer, node.getFontSize(), node.getText());
+                    double expected = Math.max(MindMapStyle.NODE_MIN_WIDTH, textWidth + 2 * MindMapStyle.NODE_PADDING)
+                            * node.getSizeScale();
+                    if (Math.abs(node.getWidth() - expected) > 1e-9) {
+                        count++;
+                    }
+                }
+                return count;
+            });
+        } while (mismatched > 0 && System.nanoTime() < deadline);
+        assertEquals(0, mismatched);
+    }
+
+    private static double renderedWidth(TextMeasurer measurer, double fontSize, String label) {
+        // 与NodeVisual相同的字体和测量方式
+        Text text = new Text(label);
+        text.setFont(measurer.getNodeFont(fontSize));
+        return text.getBoundsInLocal().getWidth();
+    }
+
+    private static <T> T onFxThread(Callable<T> action) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(action.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.get(10, TimeUnit.SECONDS);
+    }
+}